@@ -4,640 +4,11413 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.ArrayList;
 import java.util.PriorityQueue;
 import java.util.Comparator;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import com.sun.net.httpserver.HttpServer;
 
 public class WasteCollectionSwingVisualizer{
 
+    // Versioned store for the area network. Writers serialise on the graph, apply their edits to the
+    // builder and publish a fresh immutable CompactGraph; readers just take the current snapshot, so
+    // route queries and painting never lock and never see a half-applied edit.
     private static class Graph {
-        private final Map<String, List<Route>> adjacencyList = new HashMap<>();
+        private final CompactGraph.Builder builder = new CompactGraph.Builder();
+        private static final ExecutorService indexBuilder = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "route-index-builder");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private volatile CompactGraph compact = builder.build(0); // current snapshot
+        private long version;
+        private boolean keepHierarchy;
+        private volatile RouteCache routeCache; // null until enabled
 
         public void addArea(String area) {
-            adjacencyList.putIfAbsent(area, new ArrayList<>());
+            update(edit -> edit.addArea(area));
         }
 
         public void addRoute(String from, String to, int distance) {
-            adjacencyList.get(from).add(new Route(to, distance));
-            adjacencyList.get(to).add(new Route(from, distance)); // Assuming undirected graph
+            update(edit -> edit.addRoute(from, to, distance)); // Assuming undirected graph
         }
 
-        public List<String> getOptimizedRoute(String start, String destination) {
-            PriorityQueue<Route> pq = new PriorityQueue<>(Comparator.comparingInt(r -> r.distance));
-            Map<String, Integer> distances = new HashMap<>();
-            Map<String, String> previous = new HashMap<>();
+        // Map position of an area in km; once every area has one, A* search becomes available.
+        public void setAreaLocation(String area, double x, double y) {
+            update(edit -> edit.setLocation(edit.addArea(area), x, y));
+        }
 
-            for (String area : adjacencyList.keySet()) {
-                distances.put(area, Integer.MAX_VALUE);
+        // Applies a batch of edits and publishes them as one new snapshot. Use this for bulk loads:
+        // every publication copies the whole network.
+        public synchronized void update(Consumer<CompactGraph.Builder> edits) {
+            int before = builder.modifications;
+            edits.accept(builder);
+            if (builder.modifications == before) return;
+            CompactGraph next = builder.build(++version);
+            compact = next;
+            if (routeCache != null) {
+                routeCache.published(next);
             }
-            distances.put(start, 0);
-            pq.add(new Route(start, 0));
+            if (keepHierarchy) {
+                scheduleHierarchy(next);
+            }
+        }
 
-            while (!pq.isEmpty()) {
-                Route current = pq.poll();
-                String currentArea = current.area;
+        public CompactGraph compact() {
+            return compact;
+        }
 
-                if (currentArea.equals(destination)) break;
+        public synchronized CompactGraph.Image image() {
+            return builder.image();
+        }
 
-                for (Route neighbor : adjacencyList.get(currentArea)) {
-                    int newDist = distances.get(currentArea) + neighbor.distance;
-                    if (newDist < distances.get(neighbor.area)) {
-                        distances.put(neighbor.area, newDist);
-                        previous.put(neighbor.area, currentArea);
-                        pq.add(new Route(neighbor.area, newDist));
-                    }
-                }
-            }
+        // Replaces the still empty graph with a saved one, published as a single snapshot.
+        public void load(CompactGraph.Image image) {
+            update(edit -> edit.load(image));
+        }
 
-            List<String> path = new ArrayList<>();
-            for (String at = destination; at != null; at = previous.get(at)) {
-                path.add(at);
+        // Keeps a contraction hierarchy for the current snapshot. After an edit the new snapshot has
+        // none until the background rebuild finishes, so queries fall back to plain search meanwhile.
+        public synchronized void enableHierarchy() {
+            keepHierarchy = true;
+            if (compact.hierarchy() == null) {
+                scheduleHierarchy(compact);
             }
-            Collections.reverse(path);
-            return path;
         }
-    }
 
-    private static class Route {
-        String area;
-        int distance;
+        // Starts caching route answers and popular sources' shortest-path trees; see RouteCache.
+        public synchronized RouteCache enableRouteCache(int routes) {
+            if (routeCache == null) {
+                routeCache = new RouteCache(routes, compact);
+            }
+            return routeCache;
+        }
 
-        Route(String area, int distance) {
-            this.area = area;
-            this.distance = distance;
+        public RouteCache routeCache() {
+            return routeCache;
         }
-    }
 
-    private static class TrieNode {
-        Map<Character, TrieNode> children = new HashMap<>();
-        String recyclingTip = null;
-    }
+        private void scheduleHierarchy(CompactGraph snapshot) {
+            indexBuilder.execute(() -> {
+                if (snapshot == compact) { // skip snapshots already replaced by later edits
+                    snapshot.attachHierarchy(ContractionHierarchy.build(snapshot));
+                }
+            });
+        }
 
-    private static class RecyclingTrie {
-        private final TrieNode root = new TrieNode();
+        public List<String> getOptimizedRoute(String start, String destination) {
+            return getOptimizedRoute(start, destination, SearchStrategy.DIJKSTRA);
+        }
 
-        public void addRecyclingTip(String item, String tip) {
-            TrieNode current = root;
-            for (char c : item.toLowerCase().toCharArray()) {
-                current.children.putIfAbsent(c, new TrieNode());
-                current = current.children.get(c);
-            }
-            current.recyclingTip = tip;
+        public List<String> getOptimizedRoute(String start, String destination, SearchStrategy strategy) {
+            long started = System.nanoTime();
+            RouteEngine engine = RouteEngine.current();
+            List<String> route = engine.findRoute(compact(), start, destination, strategy);
+            Metrics.ROUTE_QUERIES.recordSince(started);
+            Metrics.ROUTE_SETTLED.record(engine.settled());
+            return route;
         }
 
-        public String getRecyclingTip(String item) {
-            TrieNode current = root;
-            for (char c : item.toLowerCase().toCharArray()) {
-                if (!current.children.containsKey(c)) {
-                    return "No recycling tips available for this item.";
-                }
-                current = current.children.get(c);
-            }
-            return current.recyclingTip != null ? current.recyclingTip : "No specific tip available for this item.";
+        // Nearest-facility distances on the current snapshot, out to bound km; unknown areas are not facilities.
+        public Coverage coverage(Collection<String> facilities, int bound) {
+            long started = System.nanoTime();
+            CompactGraph graph = compact();
+            Coverage coverage = Coverage.of(graph, facilities.stream().mapToInt(graph::idOf).filter(id -> id >= 0).toArray(), bound);
+            Metrics.COVERAGE.recordSince(started);
+            return coverage;
         }
     }
 
-    private static final Graph areaGraph = new Graph();
-    private static final RecyclingTrie recyclingTrie = new RecyclingTrie();
-    private static final Map<String, Integer> wasteProductionData = new HashMap<>();
-    private static final Map<String, String> wasteCategories = new HashMap<>();
-    private static final List<String> citizenFeedback = new ArrayList<>();
-    private static final List<String> communityPrograms = new ArrayList<>();
-    private static final List<String> policyUpdates = new ArrayList<>();
+    private enum SearchStrategy {
+        DIJKSTRA("Dijkstra"),
+        BIDIRECTIONAL("bidirectional Dijkstra"),
+        A_STAR("A*"),
+        CONTRACTION_HIERARCHY("contraction hierarchy");
 
+        final String label;
 
-    public static void main(String[] args) {
-        initializeData();
-        initializeWasteCategories();
-        SwingUtilities.invokeLater(WasteCollectionSwingVisualizer::showMainMenu);
-    }
-    
-    
-   
-    private static void initializeData() {
-        initializeGraph();
-        initializeRecyclingTips();
-        initializeWasteCategories();
-        initializeCommunityAndPolicyData(); // Initialize new data
+        SearchStrategy(String label) {
+            this.label = label;
+        }
     }
 
+    // Dijkstra over a CompactGraph without per-query garbage. Each thread keeps one engine whose
+    // arrays are sized to the largest graph seen and are reset lazily through a generation stamp.
+    private static class RouteEngine {
+        private static final ThreadLocal<RouteEngine> ENGINES = ThreadLocal.withInitial(RouteEngine::new);
 
-    private static void initializeGraph() {
-        areaGraph.addArea("A");
-        areaGraph.addArea("B");
-        areaGraph.addArea("C");
-        areaGraph.addArea("D");
-        areaGraph.addArea("E");
-        
-        areaGraph.addRoute("A", "B", 5);
-        areaGraph.addRoute("A", "C", 10);
-        areaGraph.addRoute("B", "C", 2);
-        areaGraph.addRoute("C", "D", 3);
-        areaGraph.addRoute("B", "D", 8);
-        areaGraph.addRoute("A", "E", 7);
-    }
-
-    private static void initializeRecyclingTips() {
-        recyclingTrie.addRecyclingTip("plastic", "Rinse and place in blue recycling bin.");
-        recyclingTrie.addRecyclingTip("glass", "Separate by color and recycle in green bin.");
-        recyclingTrie.addRecyclingTip("paper", "Flatten and put in paper recycling bin.");
-        recyclingTrie.addRecyclingTip("cardboard", "Flatten and put in the cardboard recycling bin.");
-        recyclingTrie.addRecyclingTip("metal", "Clean and place in the metal recycling bin.");
-        recyclingTrie.addRecyclingTip("aluminum", "Rinse and recycle in aluminum bin.");
-        recyclingTrie.addRecyclingTip("steel", "Place in the metal recycling bin.");
-        recyclingTrie.addRecyclingTip("tin cans", "Rinse and recycle in metal bin.");
-        recyclingTrie.addRecyclingTip("plastic_bottles", "Rinse and recycle in the plastic bin.");
-        recyclingTrie.addRecyclingTip("magazines", "Flatten and recycle in the paper bin.");
-        recyclingTrie.addRecyclingTip("newspapers", "Flatten and recycle in the paper bin.");
-        recyclingTrie.addRecyclingTip("envelopes", "Remove any plastic windows and recycle in paper bin.");
-        recyclingTrie.addRecyclingTip("cereal_boxes", "Flatten and recycle in the cardboard bin.");
-        recyclingTrie.addRecyclingTip("junk_mail", "Flatten and recycle in paper bin.");
-        recyclingTrie.addRecyclingTip("egg_cartons", "Recycling in the paper or cardboard bin.");
-        recyclingTrie.addRecyclingTip("plastic_bags", "Recycling at special plastic bag collection points.");
-        recyclingTrie.addRecyclingTip("batteries", "Take to a designated e-waste or hazardous waste facility.");
-        recyclingTrie.addRecyclingTip("electronics", "Drop off at designated e-waste collection centers.");
-        recyclingTrie.addRecyclingTip("light_bulbs", "Dispose of at a hazardous waste collection point.");
-        recyclingTrie.addRecyclingTip("printer_cartridges", "Take to a recycling center for printer cartridges.");
-        recyclingTrie.addRecyclingTip("cds_dvds", "Recycle at electronic waste collection points.");
-        recyclingTrie.addRecyclingTip("paint", "Take to a hazardous waste recycling center.");
-        recyclingTrie.addRecyclingTip("motor_oil", "Take to a hazardous waste collection site.");
-        recyclingTrie.addRecyclingTip("furniture", "Donate if in good condition, otherwise check local waste programs.");
-        recyclingTrie.addRecyclingTip("clothing", "Donate to charity or take to textile recycling centers.");
-        recyclingTrie.addRecyclingTip("shoes", "Donate if still usable or take to textile recycling bins.");
-        recyclingTrie.addRecyclingTip("tvs", "Recycle at an electronic waste recycling center.");
-        recyclingTrie.addRecyclingTip("computers", "Take to a designated e-waste facility.");
-        recyclingTrie.addRecyclingTip("phones", "Recycle at an electronic waste recycling center.");
-        recyclingTrie.addRecyclingTip("bicycles", "Donate to local charity or recycle at a bike recycling center.");
-        recyclingTrie.addRecyclingTip("fabrics", "Take to textile recycling centers.");
-        recyclingTrie.addRecyclingTip("carpet", "Check for local carpet recycling programs.");
-        recyclingTrie.addRecyclingTip("mirrors", "Dispose of in specialized recycling centers.");
-        recyclingTrie.addRecyclingTip("kitchenware", "Donate or check with local recycling centers.");
-        recyclingTrie.addRecyclingTip("toys", "Donate if in good condition or recycle at a toy recycling center.");
-        recyclingTrie.addRecyclingTip("furniture", "Donate if in good condition or check with local programs.");
-        recyclingTrie.addRecyclingTip("batteries", "Recycle at designated collection points.");
-        recyclingTrie.addRecyclingTip("tyres", "Check with local tire recycling programs.");
-        recyclingTrie.addRecyclingTip("wood", "Can be recycled at specialized recycling facilities.");
-        recyclingTrie.addRecyclingTip("plastics", "Separate types of plastic before recycling.");
-        recyclingTrie.addRecyclingTip("straws", "Avoid using plastic straws, use alternatives like paper.");
-        recyclingTrie.addRecyclingTip("plastic_cutlery", "Recycle if possible or avoid disposable plastic.");
-        recyclingTrie.addRecyclingTip("styrofoam", "Take to specific recycling centers for styrofoam.");
-        recyclingTrie.addRecyclingTip("wine_bottles", "Rinse and place in glass recycling bins.");
-        recyclingTrie.addRecyclingTip("beer_bottles", "Rinse and recycle in glass bins.");
-        recyclingTrie.addRecyclingTip("food_cans", "Rinse and recycle in the metal bin.");
-        recyclingTrie.addRecyclingTip("pizza_boxes", "Recycle if free from food, otherwise compost.");
-        recyclingTrie.addRecyclingTip("wrapping_paper", "Recycle if free from plastic and glitter.");
-        recyclingTrie.addRecyclingTip("gift_bags", "Recycle paper gift bags, reuse plastic ones.");
-        recyclingTrie.addRecyclingTip("shrink_wrap", "Take to a specialized plastic recycling center.");
-        recyclingTrie.addRecyclingTip("bubble_wrap", "Check with local recycling centers.");
-        recyclingTrie.addRecyclingTip("aluminum_foil", "Rinse and recycle in aluminum recycling bins.");
-    }
+        private final SearchState forward = new SearchState();
+        private final SearchState backward = new SearchState();
+        private int meeting = -1; // area where the two bidirectional searches met, -1 otherwise
+        private ContractionHierarchy usedHierarchy; // set when the last path has shortcuts to unpack
 
-    
-    private static void initializeWasteCategories() {
-        wasteCategories.put("plastic", "Recyclable");
-        wasteCategories.put("glass", "Recyclable");
-        wasteCategories.put("paper", "Recyclable");
-        wasteCategories.put("food", "Organic");
-        wasteCategories.put("electronics", "Hazardous");
-        wasteCategories.put("metal", "Recyclable");
-        wasteCategories.put("aluminum", "Recyclable");
-        wasteCategories.put("steel", "Recyclable");
-        wasteCategories.put("cardboard", "Recyclable");
-        wasteCategories.put("wood", "Compostable");
-        wasteCategories.put("rubber", "Non-Recyclable");
-        wasteCategories.put("textiles", "Recyclable");
-        wasteCategories.put("fabric", "Recyclable");
-        wasteCategories.put("batteries", "Hazardous");
-        wasteCategories.put("lightbulbs", "Hazardous");
-        wasteCategories.put("cellphones", "Electronic Waste");
-        wasteCategories.put("computers", "Electronic Waste");
-        wasteCategories.put("fridges", "Electronic Waste");
-        wasteCategories.put("microwaves", "Electronic Waste");
-        wasteCategories.put("toiletries", "Organic");
-        wasteCategories.put("fruit_peels", "Organic");
-        wasteCategories.put("vegetable_scraps", "Organic");
-        wasteCategories.put("flowers", "Organic");
-        wasteCategories.put("coffee_grounds", "Organic");
-        wasteCategories.put("eggshells", "Organic");
-        wasteCategories.put("meat_bones", "Non-Recyclable");
-        wasteCategories.put("chips_bags", "Non-Recyclable");
-        wasteCategories.put("plastic_bottles", "Recyclable");
-        wasteCategories.put("plastic_bags", "Non-Recyclable");
-        wasteCategories.put("shoes", "Non-Recyclable");
-        wasteCategories.put("car_tires", "Non-Recyclable");
-        wasteCategories.put("glass_bottles", "Recyclable");
-        wasteCategories.put("paper_towels", "Compostable");
-        wasteCategories.put("napkins", "Compostable");
-        wasteCategories.put("milk_cartons", "Recyclable");
-        wasteCategories.put("juice_boxes", "Recyclable");
-        wasteCategories.put("magazines", "Recyclable");
-        wasteCategories.put("newspapers", "Recyclable");
-        wasteCategories.put("books", "Recyclable");
-        wasteCategories.put("paint_cans", "Hazardous");
-        wasteCategories.put("oil_filters", "Hazardous");
-        wasteCategories.put("cleaning_products", "Hazardous");
-        wasteCategories.put("clothing", "Recyclable");
-        wasteCategories.put("dishes", "Recyclable");
-        wasteCategories.put("cutlery", "Recyclable");
-        wasteCategories.put("cans", "Recyclable");
-        wasteCategories.put("bottles", "Recyclable");
-        wasteCategories.put("jars", "Recyclable");
-        wasteCategories.put("packaging_materials", "Recyclable");
-        wasteCategories.put("plastic_wrap", "Non-Recyclable");
-        wasteCategories.put("styrofoam", "Non-Recyclable");
-        wasteCategories.put("syringes", "Hazardous");
-        wasteCategories.put("medicine", "Hazardous");
-        wasteCategories.put("sharp_objects", "Hazardous");
-        wasteCategories.put("furniture", "Non-Recyclable");
-        wasteCategories.put("garden_tools", "Non-Recyclable");
-    }
-    
-    
-    private static void showMainMenu() {
-        JFrame frame = new JFrame("Smart Waste Management System");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        frame.setSize(400, 300);
-        frame.setLayout(new GridLayout(5, 1));
+        // Statistics of the last query on this thread
+        private int settled;
+        private int relaxed;
+        private int lastDistance;
 
-        JButton citizenButton = new JButton("Citizen");
-        JButton collectorButton = new JButton("Collector");
-        JButton staffButton = new JButton("Waste Management Staff");
-        JButton routesButton = new JButton("Display All Routes");
-        JButton exitButton = new JButton("Exit");
+        public static RouteEngine current() {
+            return ENGINES.get();
+        }
 
-        citizenButton.addActionListener(e -> showCitizenDashboard());
-        collectorButton.addActionListener(e -> showCollectorDashboard());
-        staffButton.addActionListener(e -> showWasteManagementDashboard());
-        routesButton.addActionListener(e -> displayAllRoutes());
-        exitButton.addActionListener(e -> frame.dispose());
+        public int settled() {
+            return settled;
+        }
 
-        frame.add(citizenButton);
-        frame.add(collectorButton);
-        frame.add(staffButton);
-        frame.add(routesButton);
-        frame.add(exitButton);
+        public int relaxed() {
+            return relaxed;
+        }
 
-        frame.setVisible(true);
-    }
+        public int lastDistance() {
+            return lastDistance;
+        }
 
-    private static void showCitizenDashboard() {
-        JFrame frame = new JFrame("Citizen Dashboard");
-        frame.setSize(400, 300);
-        frame.setLayout(new GridLayout(3, 1));
+        public List<String> findRoute(CompactGraph graph, String start, String destination) {
+            return findRoute(graph, start, destination, SearchStrategy.DIJKSTRA);
+        }
 
-        JButton feedbackButton = new JButton("Submit Feedback");
-        JButton recyclingTipButton = new JButton("Get Recycling Tips");
-        JButton communityProgramsButton = new JButton("View Community Programs"); // New button
-        JButton policyUpdatesButton = new JButton("View Policy Updates");
-        JButton wasteCategoriesButton = new JButton("View Waste Categories"); 
-        JButton backButton = new JButton("Back to Main Menu");
+        // Returns the area names from start to destination, or an empty list when there is no route.
+        public List<String> findRoute(CompactGraph graph, String start, String destination, SearchStrategy strategy) {
+            int source = graph.idOf(start);
+            int target = graph.idOf(destination);
+            if (source < 0 || target < 0) {
+                settled = relaxed = 0;
+                lastDistance = Integer.MAX_VALUE;
+                return new ArrayList<>();
+            }
+            if (shortestDistance(graph, source, target, strategy) == Integer.MAX_VALUE) {
+                return new ArrayList<>();
+            }
+            if (usedHierarchy != null) {
+                return hierarchyPath(graph, usedHierarchy);
+            }
+            List<String> path = forward.pathTo(graph, meeting >= 0 ? meeting : target);
+            if (meeting >= 0) {
+                for (int at = backward.previous(meeting); at != -1; at = backward.previous(at)) {
+                    path.add(graph.areaName(at));
+                }
+            }
+            return path;
+        }
 
-        feedbackButton.addActionListener(e -> submitFeedback());
-        recyclingTipButton.addActionListener(e -> getRecyclingTips());
-        communityProgramsButton.addActionListener(e -> viewCommunityPrograms()); // Action for community programs
-        policyUpdatesButton.addActionListener(e -> viewPolicyUpdates());
-        wasteCategoriesButton.addActionListener(e -> viewWasteCategories());
-        backButton.addActionListener(e -> frame.dispose());
+        // One-to-many: writes the distance from source to each target into out[offset ..], stopping as
+        // soon as every target has been settled. Unreachable targets get Integer.MAX_VALUE.
+        public void distancesFrom(CompactGraph graph, int source, int[] targets, int[] out, int offset) {
+            settled = relaxed = 0;
+            meeting = -1;
+            usedHierarchy = null;
+            SearchState state = forward;
+            state.reset(graph.areaCount());
+            backward.reset(graph.areaCount()); // its labels mark which areas are targets
+            int remaining = 0;
+            for (int target : targets) {
+                if (backward.distance(target) == Integer.MAX_VALUE) {
+                    backward.mark(target);
+                    remaining++;
+                }
+            }
+            state.reach(source, 0, -1, 0);
 
-        frame.add(feedbackButton);
-        frame.add(recyclingTipButton);
-        frame.add(communityProgramsButton); // Add new button
-        frame.add(policyUpdatesButton);
-        frame.add(wasteCategoriesButton);
-        frame.add(backButton);
+            while (!state.heap.isEmpty() && remaining > 0) {
+                int current = state.heap.poll();
+                settled++;
+                checkCancelled();
+                if (backward.distance(current) == 0) remaining--;
+                int currentDistance = state.distance(current);
 
-        frame.setVisible(true);
-    }
-    
-    private static void viewWasteCategories() {
-        String product = JOptionPane.showInputDialog("Enter a product name to check its waste category:");
-
-        if (product != null && !product.isEmpty()) {
-            // Check if the product exists in the waste categories map
-            String category = wasteCategories.get(product.toLowerCase());
-            
-            if (category != null) {
-                JOptionPane.showMessageDialog(null, "The product '" + product + "' is categorized as: " + category);
-            } else {
-                JOptionPane.showMessageDialog(null, "Sorry, no category found for the product '" + product + "'.");
+                for (int r = graph.offsets[current]; r < graph.offsets[current + 1]; r++) {
+                    relaxed++;
+                    int neighbor = graph.targets[r];
+                    int newDist = currentDistance + graph.distances[r];
+                    if (newDist < state.distance(neighbor)) {
+                        state.reach(neighbor, newDist, current, newDist);
+                    }
+                }
+            }
+            for (int i = 0; i < targets.length; i++) {
+                out[offset + i] = state.distance(targets[i]);
             }
-        } else {
-            JOptionPane.showMessageDialog(null, "Please enter a valid product name.");
         }
-    }
 
-    private static void submitFeedback() {
-        String feedback = JOptionPane.showInputDialog("Enter your feedback:");
-        if (feedback != null && !feedback.isEmpty()) {
-            citizenFeedback.add(feedback);
-            JOptionPane.showMessageDialog(null, "Thank you for your feedback!");
+        // One-to-all: fills distance and parent (-1 at the source and for unreachable areas) for every area.
+        public void shortestPathTree(CompactGraph graph, int source, int[] distance, int[] parent) {
+            settled = relaxed = 0;
+            meeting = -1;
+            usedHierarchy = null;
+            SearchState state = forward;
+            state.reset(graph.areaCount());
+            state.reach(source, 0, -1, 0);
+            while (!state.heap.isEmpty()) {
+                int current = state.heap.poll();
+                settled++;
+                checkCancelled();
+                int currentDistance = state.distance(current);
+                for (int r = graph.offsets[current]; r < graph.offsets[current + 1]; r++) {
+                    relaxed++;
+                    int neighbor = graph.targets[r];
+                    int newDist = currentDistance + graph.distances[r];
+                    if (newDist < state.distance(neighbor)) {
+                        state.reach(neighbor, newDist, current, newDist);
+                    }
+                }
+            }
+            for (int area = 0; area < graph.areaCount(); area++) {
+                distance[area] = forward.distance(area);
+                parent[area] = forward.previous(area);
+            }
         }
-    }
 
-    private static void getRecyclingTips() {
-        String item = JOptionPane.showInputDialog("Enter item name for recycling tips:");
-        if (item != null && !item.isEmpty()) {
-            String tip = recyclingTrie.getRecyclingTip(item);
-            JOptionPane.showMessageDialog(null, tip);
+        public int shortestDistance(CompactGraph graph, int source, int target, SearchStrategy strategy) {
+            settled = relaxed = 0;
+            meeting = -1;
+            usedHierarchy = null;
+            switch (strategy) {
+                case CONTRACTION_HIERARCHY:
+                    ContractionHierarchy hierarchy = graph.hierarchy();
+                    lastDistance = hierarchy != null ? hierarchyQuery(graph, hierarchy, source, target)
+                            : bidirectional(graph, source, target);
+                    break;
+                case BIDIRECTIONAL:
+                    lastDistance = bidirectional(graph, source, target);
+                    break;
+                case A_STAR:
+                    lastDistance = graph.hasLocations() ? aStar(graph, source, target) : dijkstra(graph, source, target);
+                    break;
+                default:
+                    lastDistance = dijkstra(graph, source, target);
+            }
+            return lastDistance;
         }
-    }
 
-    
-    
- // Method to initialize programs and policy updates
-    private static void initializeCommunityAndPolicyData() {
-        // Example community programs
-        communityPrograms.add("Plastic Waste Reduction Campaign - Organizing community cleanups every weekend.");
-        communityPrograms.add("Composting Program - Encouraging households to compost organic waste.");
+        private int dijkstra(CompactGraph graph, int source, int target) {
+            SearchState state = forward;
+            state.reset(graph.areaCount());
+            state.reach(source, 0, -1, 0);
 
-        // Example policy updates
-        policyUpdates.add("New Policy on Electronic Waste - All e-waste should be dropped off at designated collection points.");
-        policyUpdates.add("Ban on Single-Use Plastics - Effective from next month, single-use plastics will be banned in public spaces.");
-    }
+            while (!state.heap.isEmpty()) {
+                int current = state.heap.poll();
+                settled++;
+                checkCancelled();
+                if (current == target) break;
+                int currentDistance = state.distance(current);
 
-    // Method to view community programs
-    private static void viewCommunityPrograms() {
-        if (communityPrograms.isEmpty()) {
-            JOptionPane.showMessageDialog(null, "No active community programs.");
-        } else {
-            String programs = String.join("\n", communityPrograms);
-            JOptionPane.showMessageDialog(null, "Community Waste Reduction Programs:\n" + programs);
+                for (int r = graph.offsets[current]; r < graph.offsets[current + 1]; r++) {
+                    relaxed++;
+                    int neighbor = graph.targets[r];
+                    int newDist = currentDistance + graph.distances[r];
+                    if (newDist < state.distance(neighbor)) {
+                        state.reach(neighbor, newDist, current, newDist);
+                    }
+                }
+            }
+            return state.distance(target);
         }
-    }
 
-    // Method to view policy updates
-    private static void viewPolicyUpdates() {
-        if (policyUpdates.isEmpty()) {
-            JOptionPane.showMessageDialog(null, "No policy updates available.");
-        } else {
-            String policies = String.join("\n", policyUpdates);
-            JOptionPane.showMessageDialog(null, "Waste Disposal Policy Updates:\n" + policies);
+        // Time-dependent Dijkstra: each route's time is taken for the moment the truck enters it. Returns the
+        // seconds from departure to arrival, Integer.MAX_VALUE when every way is closed. Exact as long as
+        // leaving later never means arriving earlier, which smooth profiles keep true.
+        public int earliestArrival(Traffic.View view, int source, int target, long departure) {
+            CompactGraph graph = view.graph;
+            settled = relaxed = 0;
+            meeting = -1;
+            usedHierarchy = null;
+            SearchState state = forward;
+            state.reset(graph.areaCount());
+            state.reach(source, 0, -1, 0);
+
+            while (!state.heap.isEmpty()) {
+                int current = state.heap.poll();
+                settled++;
+                checkCancelled();
+                if (current == target) break;
+                int elapsed = state.distance(current);
+
+                for (int r = graph.offsets[current]; r < graph.offsets[current + 1]; r++) {
+                    relaxed++;
+                    int time = view.travelTime(r, departure + elapsed);
+                    if (time == Integer.MAX_VALUE) continue;
+                    long arrival = (long) elapsed + time;
+                    int neighbor = graph.targets[r];
+                    if (arrival < state.distance(neighbor)) {
+                        state.reach(neighbor, (int) arrival, current, (int) arrival);
+                    }
+                }
+            }
+            lastDistance = state.distance(target);
+            return lastDistance;
         }
-    }
 
-    // Method to add a new community program
-    private static void addCommunityProgram() {
-        String program = JOptionPane.showInputDialog("Enter new community waste reduction program:");
-        if (program != null && !program.isEmpty()) {
-            communityPrograms.add(program);
-            JOptionPane.showMessageDialog(null, "New community program added successfully!");
+        // Areas from the source of the last earliestArrival search to target.
+        public List<String> forwardPath(CompactGraph graph, int target) {
+            return forward.pathTo(graph, target);
         }
-    }
 
-    // Method to add a new policy update
-    private static void addPolicyUpdate() {
-        String update = JOptionPane.showInputDialog("Enter new waste disposal policy update:");
-        if (update != null && !update.isEmpty()) {
-            policyUpdates.add(update);
-            JOptionPane.showMessageDialog(null, "New policy update added successfully!");
+        // Goal-directed Dijkstra; the heap is keyed by distance plus the straight-line lower bound.
+        private int aStar(CompactGraph graph, int source, int target) {
+            SearchState state = forward;
+            state.reset(graph.areaCount());
+            state.reach(source, 0, -1, graph.lowerBound(source, target));
+
+            while (!state.heap.isEmpty()) {
+                int current = state.heap.poll();
+                settled++;
+                checkCancelled();
+                if (current == target) break;
+                int currentDistance = state.distance(current);
+
+                for (int r = graph.offsets[current]; r < graph.offsets[current + 1]; r++) {
+                    relaxed++;
+                    int neighbor = graph.targets[r];
+                    int newDist = currentDistance + graph.distances[r];
+                    if (newDist < state.distance(neighbor)) {
+                        state.reach(neighbor, newDist, current, newDist + graph.lowerBound(neighbor, target));
+                    }
+                }
+            }
+            return state.distance(target);
         }
-    }
 
- 
+        // Grows a search from each end (routes are undirected) and always expands the side with the
+        // smaller queue head; stops once the two heads together can no longer beat the best meeting.
+        private int bidirectional(CompactGraph graph, int source, int target) {
+            forward.reset(graph.areaCount());
+            backward.reset(graph.areaCount());
+            forward.reach(source, 0, -1, 0);
+            backward.reach(target, 0, -1, 0);
+            int best = Integer.MAX_VALUE;
+            if (source == target) {
+                meeting = source;
+                best = 0;
+            }
 
-    private static void showWasteManagementDashboard() {
-        JFrame frame = new JFrame("Waste Management Dashboard");
-        frame.setSize(400, 300);
-        frame.setLayout(new GridLayout(3, 1));
+            while (!forward.heap.isEmpty() && !backward.heap.isEmpty()) {
+                if ((long) forward.heap.peekKey() + backward.heap.peekKey() >= best) break;
+                SearchState side = forward.heap.peekKey() <= backward.heap.peekKey() ? forward : backward;
+                SearchState other = side == forward ? backward : forward;
+                int current = side.heap.poll();
+                settled++;
+                checkCancelled();
+                int currentDistance = side.distance(current);
 
-        
-        JButton viewFeedbackButton = new JButton("View Citizen Feedback");
-        JButton addRouteButton = new JButton("Add New Route");
-        JButton backButton = new JButton("Back to Main Menu");
-        JButton communityProgramButton = new JButton("Community Waste Reduction Program");
-        JButton policyUpdatesButton = new JButton("Waste Disposal Policy Updates");
+                for (int r = graph.offsets[current]; r < graph.offsets[current + 1]; r++) {
+                    relaxed++;
+                    int neighbor = graph.targets[r];
+                    int newDist = currentDistance + graph.distances[r];
+                    if (newDist < side.distance(neighbor)) {
+                        side.reach(neighbor, newDist, current, newDist);
+                    }
+                    int otherDist = other.distance(neighbor);
+                    if (otherDist != Integer.MAX_VALUE && (long) side.distance(neighbor) + otherDist < best) {
+                        best = side.distance(neighbor) + otherDist;
+                        meeting = neighbor;
+                    }
+                }
+            }
+            return best;
+        }
 
-        
-        viewFeedbackButton.addActionListener(e -> viewCitizenFeedback());
-        addRouteButton.addActionListener(e -> addNewRoute());
-        backButton.addActionListener(e -> frame.dispose());
-        communityProgramButton.addActionListener(e -> showCommunityProgramDashboard());
-        policyUpdatesButton.addActionListener(e -> showPolicyUpdateDashboard());
-        
-        frame.add(viewFeedbackButton);
-        frame.add(addRouteButton);
-        frame.add(communityProgramButton);
-        frame.add(policyUpdatesButton);
-        frame.add(backButton);
-        
+        // Bidirectional search that only follows routes and shortcuts towards higher-ranked areas; each
+        // side stops as soon as its queue head can no longer improve the best meeting distance.
+        private int hierarchyQuery(CompactGraph graph, ContractionHierarchy hierarchy, int source, int target) {
+            usedHierarchy = hierarchy;
+            forward.reset(graph.areaCount());
+            backward.reset(graph.areaCount());
+            forward.reach(source, 0, -1, 0);
+            backward.reach(target, 0, -1, 0);
+            int best = Integer.MAX_VALUE;
+            if (source == target) {
+                meeting = source;
+                best = 0;
+            }
 
-        frame.setVisible(true);
-    }
-    
-    private static void showCommunityProgramDashboard() {
-        JFrame frame = new JFrame("Community Waste Reduction Program");
-        frame.setSize(400, 300);
-        frame.setLayout(new GridLayout(3, 1));
+            while (true) {
+                boolean forwardOpen = !forward.heap.isEmpty() && forward.heap.peekKey() < best;
+                boolean backwardOpen = !backward.heap.isEmpty() && backward.heap.peekKey() < best;
+                if (!forwardOpen && !backwardOpen) break;
+                SearchState side = forwardOpen && (!backwardOpen || forward.heap.peekKey() <= backward.heap.peekKey())
+                        ? forward : backward;
+                SearchState other = side == forward ? backward : forward;
+                int current = side.heap.poll();
+                settled++;
+                int currentDistance = side.distance(current);
+                if (stalled(hierarchy, side, current, currentDistance)) continue;
 
-        JButton viewProgramsButton = new JButton("View Community Programs");
-        JButton addProgramButton = new JButton("Add New Program");
-        JButton backButton = new JButton("Back to Main Menu");
+                for (int e = hierarchy.upOffsets[current]; e < hierarchy.upOffsets[current + 1]; e++) {
+                    relaxed++;
+                    int neighbor = hierarchy.upTargets[e];
+                    int newDist = currentDistance + hierarchy.upDistances[e];
+                    if (newDist < side.distance(neighbor)) {
+                        side.reach(neighbor, newDist, current, newDist);
+                    }
+                    int otherDist = other.distance(neighbor);
+                    if (otherDist != Integer.MAX_VALUE && (long) side.distance(neighbor) + otherDist < best) {
+                        best = side.distance(neighbor) + otherDist;
+                        meeting = neighbor;
+                    }
+                }
+            }
+            return best;
+        }
 
-        viewProgramsButton.addActionListener(e -> viewCommunityPrograms());
-        addProgramButton.addActionListener(e -> addCommunityProgram());
-        backButton.addActionListener(e -> frame.dispose());
+        // Long searches give up once their thread is interrupted, e.g. by AsyncRouter cancelling a stale query.
+        private void checkCancelled() {
+            if ((settled & 0xFFF) == 0 && Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Route query cancelled");
+            }
+        }
 
-        frame.add(viewProgramsButton);
-        frame.add(addProgramButton);
-        frame.add(backButton);
+        // Stall-on-demand: a higher-ranked neighbour that already offers a shorter way here proves that
+        // this label is not on a shortest up-down path, so its routes need not be relaxed.
+        private boolean stalled(ContractionHierarchy hierarchy, SearchState side, int area, int distance) {
+            for (int e = hierarchy.upOffsets[area]; e < hierarchy.upOffsets[area + 1]; e++) {
+                int neighborDistance = side.distance(hierarchy.upTargets[e]);
+                if (neighborDistance != Integer.MAX_VALUE && neighborDistance + hierarchy.upDistances[e] < distance) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
-        frame.setVisible(true);
+        private List<String> hierarchyPath(CompactGraph graph, ContractionHierarchy hierarchy) {
+            List<String> path = new ArrayList<>();
+            int[] upward = new int[16];
+            int count = 0;
+            for (int at = meeting; at != -1; at = forward.previous(at)) {
+                if (count == upward.length) upward = Arrays.copyOf(upward, count * 2);
+                upward[count++] = at;
+            }
+            path.add(graph.areaName(upward[count - 1]));
+            for (int i = count - 1; i > 0; i--) {
+                hierarchy.unpack(upward[i], upward[i - 1], graph, path);
+            }
+            for (int at = meeting, next = backward.previous(at); next != -1; at = next, next = backward.previous(at)) {
+                hierarchy.unpack(at, next, graph, path);
+            }
+            return path;
+        }
     }
 
-    private static void showPolicyUpdateDashboard() {
-        JFrame frame = new JFrame("Waste Disposal Policy Updates");
-        frame.setSize(400, 300);
-        frame.setLayout(new GridLayout(3, 1));
+    // Shortcut index for point-to-point queries. Areas are contracted one at a time, least important
+    // first, and a shortcut is added whenever the only shortest path between two remaining neighbours
+    // went through the contracted area. Queries then only search towards higher-ranked areas.
+    // An index belongs to the immutable CompactGraph it was built from.
+    private static class ContractionHierarchy {
+        private static final int WITNESS_SETTLE_LIMIT = 400;
 
-        JButton viewPoliciesButton = new JButton("View Policy Updates");
-        JButton addPolicyButton = new JButton("Add New Policy Update");
-        JButton backButton = new JButton("Back to Main Menu");
+        final int[] rank;
+        // Upward routes and shortcuts; middle is the contracted area a shortcut bypasses, -1 for a route
+        final int[] upOffsets;
+        final int[] upTargets;
+        final int[] upDistances;
+        final int[] upMiddles;
+        final int shortcutCount;
 
-        viewPoliciesButton.addActionListener(e -> viewPolicyUpdates());
-        addPolicyButton.addActionListener(e -> addPolicyUpdate());
-        backButton.addActionListener(e -> frame.dispose());
+        private ContractionHierarchy(int[] rank, int[] upOffsets, int[] upTargets, int[] upDistances, int[] upMiddles,
+                                     int shortcutCount) {
+            this.rank = rank;
+            this.upOffsets = upOffsets;
+            this.upTargets = upTargets;
+            this.upDistances = upDistances;
+            this.upMiddles = upMiddles;
+            this.shortcutCount = shortcutCount;
+        }
 
-        frame.add(viewPoliciesButton);
-        frame.add(addPolicyButton);
-        frame.add(backButton);
+        static ContractionHierarchy build(CompactGraph graph) {
+            return new Contractor(graph).run();
+        }
 
-        frame.setVisible(true);
+        // Appends the areas after 'from' on the route or shortcut from -> to, expanding nested shortcuts.
+        void unpack(int from, int to, CompactGraph graph, List<String> path) {
+            int[] stack = new int[16];
+            int top = 0;
+            stack[top++] = to;
+            int at = from;
+            while (top > 0) {
+                int next = stack[top - 1];
+                int middle = middleOf(at, next);
+                if (middle < 0) {
+                    path.add(graph.areaName(next));
+                    at = next;
+                    top--;
+                } else {
+                    if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                    stack[top++] = middle;
+                }
+            }
+        }
+
+        // The cheapest edge between two areas is stored once, on the lower-ranked end.
+        private int middleOf(int a, int b) {
+            int low = rank[a] < rank[b] ? a : b;
+            int high = low == a ? b : a;
+            int middle = -1;
+            int best = Integer.MAX_VALUE;
+            for (int e = upOffsets[low]; e < upOffsets[low + 1]; e++) {
+                if (upTargets[e] == high && upDistances[e] < best) {
+                    best = upDistances[e];
+                    middle = upMiddles[e];
+                }
+            }
+            return middle;
+        }
+
+        // Mutable adjacency used while contracting; each list holds at most one edge per neighbour.
+        private static class Contractor {
+            private final int areaCount;
+            private final int[][] edgeTargets;
+            private final int[][] edgeDistances;
+            private final int[][] edgeMiddles;
+            private final int[] edgeCounts;
+            private final boolean[] contracted;
+            private final int[] contractedNeighbors;
+            private final SearchState witness = new SearchState();
+            private int[] neighbors = new int[16];
+            private int[] neighborDistances = new int[16];
+            private int shortcutCount;
+
+            Contractor(CompactGraph graph) {
+                areaCount = graph.areaCount();
+                edgeTargets = new int[areaCount][];
+                edgeDistances = new int[areaCount][];
+                edgeMiddles = new int[areaCount][];
+                edgeCounts = new int[areaCount];
+                contracted = new boolean[areaCount];
+                contractedNeighbors = new int[areaCount];
+                for (int area = 0; area < areaCount; area++) {
+                    int degree = Math.max(4, graph.offsets[area + 1] - graph.offsets[area]);
+                    edgeTargets[area] = new int[degree];
+                    edgeDistances[area] = new int[degree];
+                    edgeMiddles[area] = new int[degree];
+                }
+                for (int area = 0; area < areaCount; area++) {
+                    for (int r = graph.offsets[area]; r < graph.offsets[area + 1]; r++) {
+                        if (graph.targets[r] != area) {
+                            addEdge(area, graph.targets[r], graph.distances[r], -1);
+                        }
+                    }
+                }
+            }
+
+            ContractionHierarchy run() {
+                int[] rank = new int[areaCount];
+                IndexedMinHeap order = new IndexedMinHeap();
+                order.reset(areaCount);
+                for (int area = 0; area < areaCount; area++) {
+                    order.pushOrDecrease(area, priority(area));
+                }
+                int nextRank = 0;
+                while (!order.isEmpty()) {
+                    int area = order.poll();
+                    int priority = priority(area); // lazy update: requeue if it is no longer the minimum
+                    if (!order.isEmpty() && priority > order.peekKey()) {
+                        order.pushOrDecrease(area, priority);
+                        continue;
+                    }
+                    shortcuts(area, true);
+                    contracted[area] = true;
+                    rank[area] = nextRank++;
+                    for (int i = 0; i < edgeCounts[area]; i++) {
+                        contractedNeighbors[edgeTargets[area][i]]++;
+                    }
+                }
+
+                int[] upOffsets = new int[areaCount + 1];
+                for (int area = 0; area < areaCount; area++) {
+                    for (int i = 0; i < edgeCounts[area]; i++) {
+                        if (rank[edgeTargets[area][i]] > rank[area]) upOffsets[area + 1]++;
+                    }
+                }
+                for (int area = 0; area < areaCount; area++) {
+                    upOffsets[area + 1] += upOffsets[area];
+                }
+                int[] upTargets = new int[upOffsets[areaCount]];
+                int[] upDistances = new int[upTargets.length];
+                int[] upMiddles = new int[upTargets.length];
+                for (int area = 0; area < areaCount; area++) {
+                    int e = upOffsets[area];
+                    for (int i = 0; i < edgeCounts[area]; i++) {
+                        if (rank[edgeTargets[area][i]] > rank[area]) {
+                            upTargets[e] = edgeTargets[area][i];
+                            upDistances[e] = edgeDistances[area][i];
+                            upMiddles[e] = edgeMiddles[area][i];
+                            e++;
+                        }
+                    }
+                }
+                return new ContractionHierarchy(rank, upOffsets, upTargets, upDistances, upMiddles, shortcutCount);
+            }
+
+            // Edge difference plus contracted neighbours, which spreads contraction evenly over the graph.
+            private int priority(int area) {
+                int degree = collectNeighbors(area);
+                return shortcuts(area, false) - degree + contractedNeighbors[area];
+            }
+
+            private int collectNeighbors(int area) {
+                int count = 0;
+                for (int i = 0; i < edgeCounts[area]; i++) {
+                    int neighbor = edgeTargets[area][i];
+                    if (contracted[neighbor]) continue;
+                    if (count == neighbors.length) {
+                        neighbors = Arrays.copyOf(neighbors, count * 2);
+                        neighborDistances = Arrays.copyOf(neighborDistances, count * 2);
+                    }
+                    neighbors[count] = neighbor;
+                    neighborDistances[count] = edgeDistances[area][i];
+                    count++;
+                }
+                return count;
+            }
+
+            // Counts (and with apply, adds) the shortcuts needed to contract the area.
+            private int shortcuts(int area, boolean apply) {
+                int count = collectNeighbors(area);
+                int[] around = Arrays.copyOf(neighbors, count);
+                int[] aroundDistances = Arrays.copyOf(neighborDistances, count);
+                int needed = 0;
+                for (int i = 0; i < count - 1; i++) {
+                    int limit = 0;
+                    for (int j = i + 1; j < count; j++) {
+                        limit = Math.max(limit, aroundDistances[i] + aroundDistances[j]);
+                    }
+                    witnessSearch(around[i], area, limit);
+                    for (int j = i + 1; j < count; j++) {
+                        int via = aroundDistances[i] + aroundDistances[j];
+                        if (witness.distance(around[j]) > via) {
+                            needed++;
+                            if (apply) {
+                                addEdge(around[i], around[j], via, area);
+                                addEdge(around[j], around[i], via, area);
+                                shortcutCount++;
+                            }
+                        }
+                    }
+                }
+                return needed;
+            }
+
+            // Bounded Dijkstra among the remaining areas that avoids the area being contracted.
+            private void witnessSearch(int source, int skip, int limit) {
+                witness.reset(areaCount);
+                witness.reach(source, 0, -1, 0);
+                int settledCount = 0;
+                while (!witness.heap.isEmpty() && witness.heap.peekKey() <= limit && settledCount++ < WITNESS_SETTLE_LIMIT) {
+                    int current = witness.heap.poll();
+                    int currentDistance = witness.distance(current);
+                    for (int i = 0; i < edgeCounts[current]; i++) {
+                        int neighbor = edgeTargets[current][i];
+                        if (neighbor == skip || contracted[neighbor]) continue;
+                        int newDist = currentDistance + edgeDistances[current][i];
+                        if (newDist < witness.distance(neighbor)) {
+                            witness.reach(neighbor, newDist, current, newDist);
+                        }
+                    }
+                }
+            }
+
+            private void addEdge(int from, int to, int distance, int middle) {
+                for (int i = 0; i < edgeCounts[from]; i++) {
+                    if (edgeTargets[from][i] == to) {
+                        if (distance < edgeDistances[from][i]) {
+                            edgeDistances[from][i] = distance;
+                            edgeMiddles[from][i] = middle;
+                        }
+                        return;
+                    }
+                }
+                int count = edgeCounts[from];
+                if (count == edgeTargets[from].length) {
+                    edgeTargets[from] = Arrays.copyOf(edgeTargets[from], count * 2);
+                    edgeDistances[from] = Arrays.copyOf(edgeDistances[from], count * 2);
+                    edgeMiddles[from] = Arrays.copyOf(edgeMiddles[from], count * 2);
+                }
+                edgeTargets[from][count] = to;
+                edgeDistances[from][count] = distance;
+                edgeMiddles[from][count] = middle;
+                edgeCounts[from]++;
+            }
+        }
     }
 
-    private static class GraphPanel extends JPanel {
-        private final int nodeRadius = 30;
-        private final int panelPadding = 50;
+    // Per-area distance/predecessor labels for one search. An entry only counts when its stamp matches
+    // the current generation, so reset() is O(1) instead of refilling arrays sized to the whole graph.
+    private static class SearchState {
+        private int[] distance = new int[0];
+        private int[] previous = new int[0];
+        private int[] stamp = new int[0];
+        private int generation;
+        final IndexedMinHeap heap = new IndexedMinHeap();
 
-        // Store calculated node positions to reuse across different paints
-        private final Map<String, Point> nodePositions = new HashMap<>();
-        private List<String> highlightedRoute = new ArrayList<>(); // Store the optimized route
+        void reset(int areaCount) {
+            if (stamp.length < areaCount) {
+                distance = new int[areaCount];
+                previous = new int[areaCount];
+                stamp = new int[areaCount];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                generation = 1;
+            }
+            heap.reset(areaCount);
+        }
 
-        public void setHighlightedRoute(List<String> route) {
-            highlightedRoute = route;
-            repaint(); // Trigger re-render
+        int distance(int area) {
+            return stamp[area] == generation ? distance[area] : Integer.MAX_VALUE;
         }
 
-        @Override
-        protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2d = (Graphics2D) g;
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        int previous(int area) {
+            return stamp[area] == generation ? previous[area] : -1;
+        }
+
+        // Labels the area with distance 0 without queueing it.
+        void mark(int area) {
+            stamp[area] = generation;
+            distance[area] = 0;
+            previous[area] = -1;
+        }
 
-            calculateNodePositions();
+        // Records a better label and queues (or decreases) the area in the heap under the given key.
+        void reach(int area, int dist, int from, int key) {
+            stamp[area] = generation;
+            distance[area] = dist;
+            previous[area] = from;
+            heap.pushOrDecrease(area, key);
+        }
 
-            // Draw edges
-            for (var entry : areaGraph.adjacencyList.entrySet()) {
-                String from = entry.getKey();
-                Point fromPoint = nodePositions.get(from);
+        List<String> pathTo(CompactGraph graph, int target) {
+            List<String> path = new ArrayList<>();
+            for (int at = target; at != -1; at = previous(at)) {
+                path.add(graph.areaName(at));
+            }
+            Collections.reverse(path);
+            return path;
+        }
+    }
 
-                for (Route route : entry.getValue()) {
-                    String to = route.area;
-                    Point toPoint = nodePositions.get(to);
+    // Binary min-heap of area ids with decrease-key. Each area is in the heap at most once, so there
+    // are never stale entries to skip and the heap never grows beyond the number of areas.
+    private static class IndexedMinHeap {
+        private int[] heap = new int[0];
+        private int[] keys = new int[0];
+        private int[] position = new int[0]; // heap slot + 1 for every queued area, 0 otherwise
+        private int size;
 
-                    if (toPoint != null && fromPoint != null) {
-                        boolean isHighlighted = isRouteHighlighted(from, to);
-                        drawEdge(g2d, from, to, route.distance, fromPoint, toPoint, isHighlighted);
-                    }
+        void reset(int areaCount) {
+            if (position.length < areaCount) {
+                heap = new int[areaCount];
+                keys = new int[areaCount];
+                position = new int[areaCount];
+            } else {
+                for (int i = 0; i < size; i++) {
+                    position[heap[i]] = 0;
                 }
             }
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int peekKey() {
+            return keys[0];
+        }
+
+        boolean contains(int area) {
+            return position[area] != 0;
+        }
+
+        int poll() {
+            int area = heap[0];
+            position[area] = 0;
+            if (--size > 0) {
+                heap[0] = heap[size];
+                keys[0] = keys[size];
+                position[heap[0]] = 1;
+                siftDown(0);
+            }
+            return area;
+        }
 
-            // Draw nodes
-            for (var entry : nodePositions.entrySet()) {
-                String label = entry.getKey();
-                Point position = entry.getValue();
-                boolean isHighlighted = highlightedRoute.contains(label);
-                drawNode(g2d, label, position, isHighlighted);
+        void pushOrDecrease(int area, int key) {
+            int slot = position[area] - 1;
+            if (slot < 0) {
+                slot = size++;
+                heap[slot] = area;
+                keys[slot] = key;
+                position[area] = slot + 1;
+                siftUp(slot);
+            } else if (key < keys[slot]) {
+                keys[slot] = key;
+                siftUp(slot);
             }
         }
 
-        private void calculateNodePositions() {
-            int centerX = getWidth() / 2;
-            int centerY = getHeight() / 2;
-            int radius = Math.min(getWidth(), getHeight()) / 3;
-            int totalNodes = areaGraph.adjacencyList.size();
-            int angleStep = 360 / totalNodes;
+        private void siftUp(int slot) {
+            int area = heap[slot];
+            int key = keys[slot];
+            while (slot > 0) {
+                int parent = (slot - 1) >>> 1;
+                if (keys[parent] <= key) break;
+                move(parent, slot);
+                slot = parent;
+            }
+            place(area, key, slot);
+        }
 
-            int i = 0;
-            for (String area : areaGraph.adjacencyList.keySet()) {
-                int angle = i * angleStep;
-                int x = centerX + (int) (radius * Math.cos(Math.toRadians(angle)));
-                int y = centerY + (int) (radius * Math.sin(Math.toRadians(angle)));
-                nodePositions.put(area, new Point(x, y));
-                i++;
+        private void siftDown(int slot) {
+            int area = heap[slot];
+            int key = keys[slot];
+            int half = size >>> 1;
+            while (slot < half) {
+                int child = 2 * slot + 1;
+                if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+                if (key <= keys[child]) break;
+                move(child, slot);
+                slot = child;
             }
+            place(area, key, slot);
+        }
+
+        private void move(int from, int to) {
+            heap[to] = heap[from];
+            keys[to] = keys[from];
+            position[heap[to]] = to + 1;
         }
 
-        private void drawNode(Graphics2D g2d, String label, Point position, boolean isHighlighted) {
-            g2d.setColor(isHighlighted ? Color.RED : Color.BLUE);
-            g2d.fillOval(position.x - nodeRadius / 2, position.y - nodeRadius / 2, nodeRadius, nodeRadius);
-            g2d.setColor(Color.WHITE);
-            g2d.drawString(label, position.x - 5, position.y + 5);
+        private void place(int area, int key, int slot) {
+            heap[slot] = area;
+            keys[slot] = key;
+            position[area] = slot + 1;
         }
+    }
 
-        private void drawEdge(Graphics2D g2d, String from, String to, int distance, Point fromPoint, Point toPoint, boolean isHighlighted) {
-            g2d.setColor(isHighlighted ? Color.RED : Color.BLACK);
-            g2d.drawLine(fromPoint.x, fromPoint.y, toPoint.x, toPoint.y);
+    // Immutable CSR form of the area network: area names are interned to dense int ids and the
+    // routes leaving area i are targets/distances[offsets[i] .. offsets[i + 1]).
+    private static class CompactGraph {
+        private final Map<String, Integer> areaIds; // shared with the builder; ids are never reassigned and
+                                                    // ids beyond this snapshot are ignored
+        private final String[] areaNames;
+        final int[] offsets;
+        final int[] targets;
+        final int[] distances;
+        // Area positions in km, or null unless every area has one
+        final double[] xs;
+        final double[] ys;
+        // Largest factor that keeps straight-line distance below road distance on every route
+        private final double lowerBoundScale;
+        private volatile ContractionHierarchy hierarchy; // built in the background, null until ready
+        final long version;
+        // Routes this version added to the previous one as (from, to, distance) triples; null after a load
+        // or when there were more than TRACKED_ADDITIONS. Edits only ever add, so nothing else changed.
+        final int[] added;
+        static final int TRACKED_ADDITIONS = 64;
 
-            int midX = (fromPoint.x + toPoint.x) / 2;
-            int midY = (fromPoint.y + toPoint.y) / 2;
-            g2d.setColor(Color.BLACK);
-            g2d.drawString(distance + " km", midX, midY);
+        private CompactGraph(long version, Map<String, Integer> areaIds, String[] areaNames, int[] offsets, int[] targets,
+                             int[] distances, double[] xs, double[] ys, int[] added) {
+            this.version = version;
+            this.added = added;
+            this.areaIds = areaIds;
+            this.areaNames = areaNames;
+            this.offsets = offsets;
+            this.targets = targets;
+            this.distances = distances;
+            this.xs = xs;
+            this.ys = ys;
+            this.lowerBoundScale = xs == null ? 0 : computeLowerBoundScale();
         }
 
-        private boolean isRouteHighlighted(String from, String to) {
-            for (int i = 0; i < highlightedRoute.size() - 1; i++) {
-                if ((highlightedRoute.get(i).equals(from) && highlightedRoute.get(i + 1).equals(to)) ||
-                    (highlightedRoute.get(i).equals(to) && highlightedRoute.get(i + 1).equals(from))) {
-                    return true;
+        private double computeLowerBoundScale() {
+            double scale = 1.0;
+            for (int area = 0; area < areaCount(); area++) {
+                for (int r = offsets[area]; r < offsets[area + 1]; r++) {
+                    double straight = Math.hypot(xs[area] - xs[targets[r]], ys[area] - ys[targets[r]]);
+                    if (straight > 0) {
+                        scale = Math.min(scale, distances[r] / straight);
+                    }
                 }
             }
+            return scale;
+        }
+
+        public boolean hasLocations() {
+            return xs != null;
+        }
+
+        // Admissible and consistent A* heuristic: scaled straight-line distance, rounded down.
+        int lowerBound(int area, int target) {
+            return (int) (lowerBoundScale * Math.hypot(xs[area] - xs[target], ys[area] - ys[target]));
+        }
+
+        ContractionHierarchy hierarchy() {
+            return hierarchy;
+        }
+
+        void attachHierarchy(ContractionHierarchy hierarchy) {
+            this.hierarchy = hierarchy;
+        }
+
+        // Prefers the contraction hierarchy once it is ready; A* needs coordinates, and without them
+        // bidirectional search settles the fewest areas.
+        public SearchStrategy fastestStrategy() {
+            if (hierarchy != null) return SearchStrategy.CONTRACTION_HIERARCHY;
+            return hasLocations() ? SearchStrategy.A_STAR : SearchStrategy.BIDIRECTIONAL;
+        }
+
+        public int areaCount() {
+            return areaNames.length;
+        }
+
+        public int routeCount() {
+            return targets.length;
+        }
+
+        public String areaName(int id) {
+            return areaNames[id];
+        }
+
+        public int idOf(String area) {
+            Integer id = area == null ? null : areaIds.get(area);
+            return id != null && id < areaNames.length ? id : -1;
+        }
+
+        // True when a route joins the two areas directly.
+        public boolean hasRoute(int from, int to) {
+            for (int route = offsets[from]; route < offsets[from + 1]; route++) {
+                if (targets[route] == to) return true;
+            }
             return false;
         }
-    }
 
+        // Everything a Builder holds, as plain arrays: areas with their positions (NaN when unknown) and
+        // the routes in insertion order. Used to save and restore a network.
+        static class Image {
+            final String[] areaNames;
+            final double[] xs;
+            final double[] ys;
+            final int[] routeFrom;
+            final int[] routeTo;
+            final int[] routeDistance;
 
-    
-    private static void viewCitizenFeedback() {
-        String feedback = citizenFeedback.isEmpty() ? "No feedback submitted." : String.join("\n", citizenFeedback);
-        JOptionPane.showMessageDialog(null, "Citizen Feedback:\n" + feedback);
-    }
+            Image(String[] areaNames, double[] xs, double[] ys, int[] routeFrom, int[] routeTo, int[] routeDistance) {
+                this.areaNames = areaNames;
+                this.xs = xs;
+                this.ys = ys;
+                this.routeFrom = routeFrom;
+                this.routeTo = routeTo;
+                this.routeDistance = routeDistance;
+            }
+        }
 
-    private static void addNewRoute() {
-        String startArea = JOptionPane.showInputDialog("Enter starting area:");
-        String destinationArea = JOptionPane.showInputDialog("Enter destination area:");
-        int distance = Integer.parseInt(JOptionPane.showInputDialog("Enter distance (in km):"));
+        private static class Builder {
+            private final Map<String, Integer> areaIds = new ConcurrentHashMap<>(); // read by published snapshots
+            private String[] areaNames = new String[16];
+            private double[] xs = filledWithNaN(16);
+            private double[] ys = filledWithNaN(16);
+            private int areaCount;
+            private int[] routeFrom = new int[16];
+            private int[] routeTo = new int[16];
+            private int[] routeDistance = new int[16];
+            private int routeCount;
+            private int builtRoutes; // routes in the last built snapshot
+            private boolean reloaded; // load() ran since the last build
+            int modifications;
+
+            public int addArea(String area) {
+                Integer id = areaIds.get(area);
+                if (id != null) {
+                    return id;
+                }
+                modifications++;
+                if (areaCount == areaNames.length) {
+                    areaNames = Arrays.copyOf(areaNames, areaCount * 2);
+                    double[] grownXs = filledWithNaN(areaCount * 2);
+                    double[] grownYs = filledWithNaN(areaCount * 2);
+                    System.arraycopy(xs, 0, grownXs, 0, areaCount);
+                    System.arraycopy(ys, 0, grownYs, 0, areaCount);
+                    xs = grownXs;
+                    ys = grownYs;
+                }
+                areaNames[areaCount] = area;
+                areaIds.put(area, areaCount);
+                return areaCount++;
+            }
 
-        areaGraph.addArea(startArea);
-        areaGraph.addArea(destinationArea);
-        areaGraph.addRoute(startArea, destinationArea, distance);
-        JOptionPane.showMessageDialog(null, "New route added successfully!");
+            public void setLocation(int area, double x, double y) {
+                modifications++;
+                xs[area] = x;
+                ys[area] = y;
+            }
+
+            private static double[] filledWithNaN(int length) {
+                double[] values = new double[length];
+                Arrays.fill(values, Double.NaN);
+                return values;
+            }
+
+            public void addRoute(String from, String to, int distance) {
+                Integer fromId = areaIds.get(from);
+                Integer toId = areaIds.get(to);
+                if (fromId == null || toId == null) {
+                    throw new IllegalArgumentException("Unknown area in route " + from + " -> " + to);
+                }
+                addRoute(fromId, toId, distance);
+            }
+
+            public void addRoute(int from, int to, int distance) {
+                if (routeCount == routeFrom.length) {
+                    routeFrom = Arrays.copyOf(routeFrom, routeCount * 2);
+                    routeTo = Arrays.copyOf(routeTo, routeCount * 2);
+                    routeDistance = Arrays.copyOf(routeDistance, routeCount * 2);
+                }
+                routeFrom[routeCount] = from;
+                routeTo[routeCount] = to;
+                routeDistance[routeCount] = distance;
+                routeCount++;
+                modifications++;
+            }
+
+            public Image image() {
+                return new Image(Arrays.copyOf(areaNames, areaCount), Arrays.copyOf(xs, areaCount),
+                        Arrays.copyOf(ys, areaCount), Arrays.copyOf(routeFrom, routeCount),
+                        Arrays.copyOf(routeTo, routeCount), Arrays.copyOf(routeDistance, routeCount));
+            }
+
+            // Adopts a saved network. Only allowed while empty, because published ids are never reassigned.
+            public void load(Image image) {
+                if (areaCount != 0 || routeCount != 0) {
+                    throw new IllegalStateException("Can only load into an empty graph");
+                }
+                areaNames = Arrays.copyOf(image.areaNames, Math.max(16, image.areaNames.length));
+                xs = filledWithNaN(areaNames.length);
+                ys = filledWithNaN(areaNames.length);
+                System.arraycopy(image.xs, 0, xs, 0, image.xs.length);
+                System.arraycopy(image.ys, 0, ys, 0, image.ys.length);
+                areaCount = image.areaNames.length;
+                for (int i = 0; i < areaCount; i++) {
+                    areaIds.put(areaNames[i], i);
+                }
+                routeCount = image.routeFrom.length;
+                routeFrom = Arrays.copyOf(image.routeFrom, Math.max(16, routeCount));
+                routeTo = Arrays.copyOf(image.routeTo, Math.max(16, routeCount));
+                routeDistance = Arrays.copyOf(image.routeDistance, Math.max(16, routeCount));
+                reloaded = true;
+                modifications++;
+            }
+
+            // Counting sort of both directions of every route; keeps insertion order per area.
+            public CompactGraph build(long version) {
+                int[] offsets = new int[areaCount + 1];
+                for (int i = 0; i < routeCount; i++) {
+                    offsets[routeFrom[i] + 1]++;
+                    offsets[routeTo[i] + 1]++;
+                }
+                for (int i = 0; i < areaCount; i++) {
+                    offsets[i + 1] += offsets[i];
+                }
+                int[] next = Arrays.copyOf(offsets, areaCount);
+                int[] targets = new int[routeCount * 2];
+                int[] distances = new int[routeCount * 2];
+                for (int i = 0; i < routeCount; i++) {
+                    int a = next[routeFrom[i]]++;
+                    targets[a] = routeTo[i];
+                    distances[a] = routeDistance[i];
+                    int b = next[routeTo[i]]++;
+                    targets[b] = routeFrom[i];
+                    distances[b] = routeDistance[i];
+                }
+                boolean located = true;
+                for (int i = 0; i < areaCount && located; i++) {
+                    located = !Double.isNaN(xs[i]);
+                }
+                int[] added = null;
+                if (!reloaded && routeCount - builtRoutes <= TRACKED_ADDITIONS) {
+                    added = new int[3 * (routeCount - builtRoutes)];
+                    for (int i = builtRoutes, at = 0; i < routeCount; i++) {
+                        added[at++] = routeFrom[i];
+                        added[at++] = routeTo[i];
+                        added[at++] = routeDistance[i];
+                    }
+                }
+                builtRoutes = routeCount;
+                reloaded = false;
+                return new CompactGraph(version, areaIds, Arrays.copyOf(areaNames, areaCount), offsets, targets, distances,
+                        located ? Arrays.copyOf(xs, areaCount) : null, located ? Arrays.copyOf(ys, areaCount) : null, added);
+            }
+        }
     }
-    
-    
 
-    private static void showCollectorDashboard() {
-        JFrame frame = new JFrame("Collector Dashboard");
-        frame.setSize(600, 600);
-        frame.setLayout(new BorderLayout());
+    // Road distances from every origin to every destination, stored row-major in one int[] with
+    // Integer.MAX_VALUE for unreachable pairs. Each row is an independent one-to-many Dijkstra, so rows
+    // are computed in parallel on a fork-join pool, each worker using its own thread-local RouteEngine.
+    private static class DistanceMatrix {
+        private static final int FILE_MAGIC = 0x53574D44; // "SWMD"
 
-        JPanel inputPanel = new JPanel(new GridLayout(3, 2));
-        JTextField startField = new JTextField();
-        JTextField destinationField = new JTextField();
-        JButton findRouteButton = new JButton("Find Optimized Route");
-        
-        inputPanel.add(new JLabel("Start Area:"));
-        inputPanel.add(startField);
-        inputPanel.add(new JLabel("Destination Area:"));
-        inputPanel.add(destinationField);
-        inputPanel.add(findRouteButton);
+        final String[] origins;
+        final String[] destinations;
+        final int[] distances;
 
-        GraphPanel graphPanel = new GraphPanel();
+        DistanceMatrix(String[] origins, String[] destinations, int[] distances) {
+            this.origins = origins;
+            this.destinations = destinations;
+            this.distances = distances;
+        }
 
-        findRouteButton.addActionListener(e -> {
-            String start = startField.getText().trim();
-            String destination = destinationField.getText().trim();
-            List<String> route = areaGraph.getOptimizedRoute(start, destination);
-            if (route.isEmpty()) {
-                JOptionPane.showMessageDialog(frame, "No route found between " + start + " and " + destination);
-            } else {
-                JOptionPane.showMessageDialog(frame, "Optimized route: " + String.join(" -> ", route));
-                graphPanel.setHighlightedRoute(route);
+        public int distance(int origin, int destination) {
+            return distances[origin * destinations.length + destination];
+        }
+
+        public static DistanceMatrix compute(CompactGraph graph, List<String> origins, List<String> destinations) {
+            return compute(graph, origins, destinations, ForkJoinPool.commonPool());
+        }
+
+        public static DistanceMatrix compute(CompactGraph graph, List<String> origins, List<String> destinations,
+                                             ForkJoinPool pool) {
+            int[] originIds = idsOf(graph, origins);
+            int[] destinationIds = idsOf(graph, destinations);
+            int[] distances = new int[originIds.length * destinationIds.length];
+            pool.invoke(new RowTask(graph, originIds, destinationIds, distances, 0, originIds.length));
+            return new DistanceMatrix(origins.toArray(new String[0]), destinations.toArray(new String[0]), distances);
+        }
+
+        private static int[] idsOf(CompactGraph graph, List<String> areas) {
+            int[] ids = new int[areas.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = graph.idOf(areas.get(i));
+                if (ids[i] < 0) {
+                    throw new IllegalArgumentException("Unknown area: " + areas.get(i));
+                }
             }
-        });
+            return ids;
+        }
 
-        JPanel dashboardPanel = new JPanel(new GridLayout(3, 1));
-        JButton communityProgramsButton = new JButton("View Community Programs"); // New button
-        JButton policyUpdatesButton = new JButton("View Policy Updates"); // New button
-        JButton backButton = new JButton("Back to Main Menu");
+        private static class RowTask extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
 
+            private final CompactGraph graph;
+            private final int[] origins;
+            private final int[] destinations;
+            private final int[] distances;
+            private final int from;
+            private final int to;
 
-        communityProgramsButton.addActionListener(e -> viewCommunityPrograms()); // Action for community programs
-        policyUpdatesButton.addActionListener(e -> viewPolicyUpdates()); // Action for policy updates
-        backButton.addActionListener(e -> frame.dispose());
-        dashboardPanel.add(communityProgramsButton);
-        dashboardPanel.add(policyUpdatesButton);
-        dashboardPanel.add(backButton);
+            RowTask(CompactGraph graph, int[] origins, int[] destinations, int[] distances, int from, int to) {
+                this.graph = graph;
+                this.origins = origins;
+                this.destinations = destinations;
+                this.distances = distances;
+                this.from = from;
+                this.to = to;
+            }
 
-        frame.add(inputPanel, BorderLayout.NORTH);
-        frame.add(graphPanel, BorderLayout.CENTER);
-        frame.add(dashboardPanel, BorderLayout.SOUTH); 
-       
+            @Override
+            protected void compute() {
+                if (to - from <= 1) {
+                    if (to > from) { // an empty matrix has no rows at all
+                        RouteEngine.current().distancesFrom(graph, origins[from], destinations, distances, from * destinations.length);
+                    }
+                } else {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new RowTask(graph, origins, destinations, distances, from, middle),
+                            new RowTask(graph, origins, destinations, distances, middle, to));
+                }
+            }
+        }
 
+        public void save(Path file) throws IOException {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(origins.length);
+                out.writeInt(destinations.length);
+                for (String origin : origins) out.writeUTF(origin);
+                for (String destination : destinations) out.writeUTF(destination);
+                for (int distance : distances) out.writeInt(distance);
+            }
+        }
 
-        frame.setVisible(true);
+        public static DistanceMatrix load(Path file) throws IOException {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() != FILE_MAGIC) {
+                    throw new IOException("Not a distance matrix file: " + file);
+                }
+                String[] origins = new String[in.readInt()];
+                String[] destinations = new String[in.readInt()];
+                for (int i = 0; i < origins.length; i++) origins[i] = in.readUTF();
+                for (int i = 0; i < destinations.length; i++) destinations[i] = in.readUTF();
+                int[] distances = new int[origins.length * destinations.length];
+                for (int i = 0; i < distances.length; i++) distances[i] = in.readInt();
+                return new DistanceMatrix(origins, destinations, distances);
+            }
+        }
     }
 
-    private static void displayAllRoutes() {
-        JFrame frame = new JFrame("All Routes");
-        frame.setSize(500, 500);
-        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
-        frame.add(new GraphPanel());
-        frame.setVisible(true);
-    }
-    
-    
+    // Travel times on top of the route lengths. A route takes its length at free-flow speed, scaled by its
+    // time-of-day profile (a factor per quarter hour, interpolated in between so times change smoothly) or,
+    // while one is in force, by a live factor pushed by the traffic feed; a closed route cannot be used.
+    // Settings belong to a pair of areas and apply in both directions, so travel times stay symmetric.
+    // Readers work on an immutable View: one graph snapshot plus every route's travel time at the moment
+    // the view was made. A new view is made when the graph or a setting changes, at each quarter hour while
+    // a time-of-day profile is in use, and when a live factor runs out.
+    private static class Traffic {
+        static final int SLOTS = 96;
+        static final int SLOT_SECONDS = 24 * 3600 / SLOTS;
+        static final int SECONDS_PER_KM = 120; // 30 km/h, a collection truck in town
+        static final float CLOSED = Float.POSITIVE_INFINITY;
+        // Live factors outside this range are typing mistakes, and below it travel times round to nothing
+        static final float MIN_FACTOR = 0.1f;
+        static final float MAX_FACTOR = 100f;
+
+        private final Graph graph;
+        private final LongSupplier clock; // epoch seconds
+        private final Map<String, float[]> profiles = new LinkedHashMap<>();
+        private final Map<Long, String> profileOf = new HashMap<>(); // area pair -> profile name
+        private String defaultProfile = "flat";
+        private final Map<Long, Float> live = new HashMap<>(); // area pair -> factor, in force until liveUntil
+        private final Map<Long, Long> liveUntil = new HashMap<>();
+        private long views;
+        private View last; // guarded by this; the newest view, kept when a setting clears view
+        private volatile View view; // null after a setting changed
+
+        Traffic(Graph graph) {
+            this(graph, () -> System.currentTimeMillis() / 1000);
+        }
+
+        Traffic(Graph graph, LongSupplier clock) {
+            this.graph = graph;
+            this.clock = clock;
+            float[] flat = new float[SLOTS];
+            Arrays.fill(flat, 1f);
+            profiles.put("flat", flat);
+            // Weekday town traffic: slow morning and afternoon peaks, a light lunch hour, quick nights
+            float[] urban = new float[SLOTS];
+            for (int slot = 0; slot < SLOTS; slot++) {
+                double hour = slot / 4.0;
+                urban[slot] = (float) (1.0 + 0.8 * Math.exp(-Math.pow((hour - 8) / 1.0, 2))
+                        + 0.7 * Math.exp(-Math.pow((hour - 17.25) / 1.25, 2))
+                        + 0.2 * Math.exp(-Math.pow((hour - 12.5) / 0.75, 2))
+                        - (hour < 5 || hour >= 22 ? 0.1 : 0));
+            }
+            profiles.put("urban", urban);
+        }
+
+        // One travel-time factor per quarter hour from midnight, local time.
+        public synchronized void addProfile(String name, float[] factors) {
+            if (factors.length != SLOTS) throw new IllegalArgumentException("A profile needs " + SLOTS + " factors");
+            if (!profiles.containsKey(name) && profiles.size() == 256) throw new IllegalArgumentException("Too many traffic profiles");
+            for (float factor : factors) {
+                if (!(factor > 0) || factor == CLOSED) throw new IllegalArgumentException("Profile factors must be positive");
+            }
+            profiles.put(name, factors.clone());
+            view = null;
+        }
+
+        public synchronized void setDefaultProfile(String name) {
+            requireProfile(name);
+            defaultProfile = name;
+            view = null;
+        }
+
+        public synchronized void setProfile(String from, String to, String name) {
+            requireProfile(name);
+            profileOf.put(route(from, to), name);
+            view = null;
+        }
+
+        // Scales the route's free-flow time by factor until the given epoch second.
+        public synchronized void setLive(String from, String to, double factor, long until) {
+            float stored = (float) factor;
+            if (stored != CLOSED && !(stored >= MIN_FACTOR && stored <= MAX_FACTOR)) {
+                throw new IllegalArgumentException("A live factor must be between " + MIN_FACTOR + " and " + MAX_FACTOR);
+            }
+            long key = route(from, to);
+            live.put(key, stored);
+            liveUntil.put(key, until);
+            view = null;
+        }
+
+        public void close(String from, String to, long until) {
+            setLive(from, to, CLOSED, until);
+        }
+
+        public synchronized void clearLive(String from, String to) {
+            long key = pair(from, to);
+            live.remove(key);
+            liveUntil.remove(key);
+            view = null;
+        }
+
+        // True when travel times differ from plain free-flow times scaled by route length.
+        public synchronized boolean active() {
+            return !live.isEmpty() || !profileOf.isEmpty() || !defaultProfile.equals("flat");
+        }
+
+        public synchronized Set<String> profileNames() {
+            return new HashSet<>(profiles.keySet());
+        }
+
+        private void requireProfile(String name) {
+            if (!profiles.containsKey(name)) throw new IllegalArgumentException("Unknown traffic profile: " + name);
+        }
+
+        private long pair(String from, String to) {
+            CompactGraph snapshot = graph.compact();
+            int a = snapshot.idOf(from);
+            int b = snapshot.idOf(to);
+            if (a < 0 || b < 0) throw new IllegalArgumentException("Unknown area: " + (a < 0 ? from : to));
+            return pair(a, b);
+        }
+
+        // Like pair, for two areas a route joins; settings for anything else would never apply.
+        private long route(String from, String to) {
+            CompactGraph snapshot = graph.compact();
+            long key = pair(from, to);
+            if (!snapshot.hasRoute(snapshot.idOf(from), snapshot.idOf(to))) {
+                throw new IllegalArgumentException("No route from " + from + " to " + to);
+            }
+            return key;
+        }
+
+        // Area ids never change once assigned, so keys stay valid across graph snapshots.
+        private static long pair(int a, int b) {
+            return (long) Math.min(a, b) << 32 | Math.max(a, b);
+        }
+
+        public long now() {
+            return clock.getAsLong();
+        }
+
+        public View view() {
+            View current = view;
+            long now = clock.getAsLong();
+            CompactGraph snapshot = graph.compact();
+            if (current != null && current.graph == snapshot && now < current.validUntil) {
+                return current;
+            }
+            synchronized (this) {
+                current = view;
+                if (current == null || current.graph != snapshot || now >= current.validUntil) {
+                    live.keySet().removeIf(key -> liveUntil.get(key) <= now);
+                    liveUntil.keySet().retainAll(live.keySet());
+                    current = new View(this, snapshot, now, ++views, last);
+                    view = current;
+                    last = current;
+                }
+                return current;
+            }
+        }
+
+        // Fastest way from one area to another when leaving at departure (epoch seconds), or null when an
+        // area is unknown; the path is empty when every way is closed.
+        public Journey fastest(String from, String to, long departure) {
+            View current = view();
+            int source = current.graph.idOf(from);
+            int target = current.graph.idOf(to);
+            if (source < 0 || target < 0) return null;
+            long started = System.nanoTime();
+            RouteEngine engine = RouteEngine.current();
+            int seconds = engine.earliestArrival(current, source, target, departure);
+            List<String> path = seconds == Integer.MAX_VALUE ? new ArrayList<>() : engine.forwardPath(current.graph, target);
+            Metrics.ROUTE_QUERIES.recordSince(started);
+            Metrics.ROUTE_SETTLED.record(engine.settled());
+            return new Journey(path, departure, seconds);
+        }
+
+        static class Journey {
+            final List<String> path;
+            final long departure;
+            final int seconds; // Integer.MAX_VALUE when there is no open way
+
+            Journey(List<String> path, long departure, int seconds) {
+                this.path = path;
+                this.departure = departure;
+                this.seconds = seconds;
+            }
+        }
+
+        // Travel times for one graph snapshot. weights holds every CSR route's time in seconds when the view
+        // was made (Integer.MAX_VALUE when closed); travelTime gives it for any other moment. changes lists the
+        // routes whose weight differs from the view before, as (area, CSR route) pairs, or is null when the
+        // graph changed or too many routes did for a repair to pay off.
+        static class View {
+            static final int REPAIR_FRACTION = 8; // more changed routes than 1 / REPAIR_FRACTION: recompute
+
+            final CompactGraph graph;
+            final long id;
+            final long createdAt;
+            final long validUntil;
+            final int[] weights;
+            final long previousId;
+            final int[] changes;
+            private final float[][] profiles;
+            private final byte[] profile; // index into profiles for every route
+            private final float[] liveFactor; // 0 when none; null when no route has one
+            private final long[] liveUntil;
+            private final int utcOffset;
+
+            private View(Traffic traffic, CompactGraph graph, long now, long id, View previous) {
+                this.graph = graph;
+                this.id = id;
+                this.createdAt = now;
+                this.previousId = previous != null ? previous.id : -1;
+                List<String> names = new ArrayList<>(traffic.profiles.keySet());
+                profiles = new float[names.size()][];
+                for (int i = 0; i < profiles.length; i++) profiles[i] = traffic.profiles.get(names.get(i));
+                utcOffset = java.time.ZoneId.systemDefault().getRules()
+                        .getOffset(java.time.Instant.ofEpochSecond(now)).getTotalSeconds();
+                int routes = graph.targets.length;
+                profile = new byte[routes];
+                Arrays.fill(profile, (byte) names.indexOf(traffic.defaultProfile));
+                traffic.profileOf.forEach((key, name) -> {
+                    byte index = (byte) names.indexOf(name);
+                    forEachRoute(key, route -> profile[route] = index);
+                });
+                boolean timeOfDay = !traffic.defaultProfile.equals("flat") || !traffic.profileOf.isEmpty();
+                long until = timeOfDay ? (Math.floorDiv(now, SLOT_SECONDS) + 1) * SLOT_SECONDS : Long.MAX_VALUE;
+                if (traffic.live.isEmpty()) {
+                    liveFactor = null;
+                    liveUntil = null;
+                } else {
+                    liveFactor = new float[routes];
+                    liveUntil = new long[routes];
+                    for (var entry : traffic.live.entrySet()) {
+                        long expiry = traffic.liveUntil.get(entry.getKey());
+                        until = Math.min(until, expiry);
+                        forEachRoute(entry.getKey(), route -> {
+                            liveFactor[route] = entry.getValue();
+                            liveUntil[route] = expiry;
+                        });
+                    }
+                }
+                validUntil = until;
+                weights = new int[routes];
+                for (int route = 0; route < routes; route++) weights[route] = travelTime(route, now);
+                changes = previous != null && previous.graph == graph ? changes(previous.weights, this) : null;
+            }
+
+            // Routes of after whose weight differs from before, for the same graph; null when there are too many.
+            static int[] changes(int[] before, View after) {
+                CompactGraph graph = after.graph;
+                int[] weights = after.weights;
+                int[] found = new int[16];
+                int count = 0;
+                int limit = Math.max(1, weights.length / REPAIR_FRACTION);
+                for (int area = 0; area < graph.areaCount(); area++) {
+                    for (int r = graph.offsets[area]; r < graph.offsets[area + 1]; r++) {
+                        if (before[r] == weights[r]) continue;
+                        if (count == limit) return null;
+                        if (2 * count + 2 > found.length) found = Arrays.copyOf(found, found.length * 2);
+                        found[2 * count] = area;
+                        found[2 * count + 1] = r;
+                        count++;
+                    }
+                }
+                return Arrays.copyOf(found, 2 * count);
+            }
+
+            private void forEachRoute(long key, java.util.function.IntConsumer action) {
+                int a = (int) (key >>> 32);
+                int b = (int) key;
+                if (Math.max(a, b) >= graph.areaCount()) return;
+                for (int r = graph.offsets[a]; r < graph.offsets[a + 1]; r++) {
+                    if (graph.targets[r] == b) action.accept(r);
+                }
+                for (int r = graph.offsets[b]; r < graph.offsets[b + 1]; r++) {
+                    if (graph.targets[r] == a) action.accept(r);
+                }
+            }
+
+            // Seconds to drive the CSR route when entering it at the given epoch second.
+            int travelTime(int route, long at) {
+                float factor = liveFactor != null && liveFactor[route] != 0 && at < liveUntil[route]
+                        ? liveFactor[route] : profileFactor(profiles[profile[route] & 0xFF], at);
+                if (factor == CLOSED) return Integer.MAX_VALUE;
+                return (int) Math.min(Integer.MAX_VALUE - 1, Math.round((double) graph.distances[route] * SECONDS_PER_KM * factor));
+            }
+
+            private float profileFactor(float[] factors, long at) {
+                double position = Math.floorMod(at + utcOffset, 24 * 3600L) / (double) SLOT_SECONDS - 0.5;
+                int slot = (int) Math.floor(position);
+                double fraction = position - slot;
+                float before = factors[Math.floorMod(slot, SLOTS)];
+                float after = factors[Math.floorMod(slot + 1, SLOTS)];
+                return (float) (before + (after - before) * fraction);
+            }
+        }
+    }
+
+    // Travel times from one area to all others under a traffic View, kept current as views change. When only
+    // some route times changed, the tree is repaired rather than rebuilt: areas hanging below a route that
+    // got slower are cut loose and offered their cheapest intact neighbour, the far ends of routes that got
+    // faster are offered the shortcut, and Dijkstra spreads the corrections from those areas only. A new
+    // graph snapshot, or changes to more than an eighth of the routes, rebuild the tree.
+    private static class ShortestPathTree {
+        final int source;
+        private Traffic.View view;
+        private int[] distance;
+        private int[] parent;
+        private final IndexedMinHeap heap = new IndexedMinHeap();
+        private int[] cut = new int[64];
+        private int settled; // by the last build or repair
+        private boolean rebuilt;
+
+        ShortestPathTree(Traffic.View view, int source) {
+            this.source = source;
+            rebuild(view);
+        }
+
+        int distance(int area) {
+            return distance[area];
+        }
+
+        int settled() {
+            return settled;
+        }
+
+        boolean rebuilt() {
+            return rebuilt;
+        }
+
+        List<String> pathTo(int area) {
+            List<String> path = new ArrayList<>();
+            if (distance[area] == Integer.MAX_VALUE) return path;
+            for (int at = area; at != -1; at = parent[at]) path.add(view.graph.areaName(at));
+            Collections.reverse(path);
+            return path;
+        }
+
+        void update(Traffic.View next) {
+            if (next == view) return;
+            int[] changes = next.previousId == view.id ? next.changes : null;
+            if (changes == null && next.graph == view.graph) {
+                changes = Traffic.View.changes(view.weights, next); // this tree skipped a view
+            }
+            if (changes == null) {
+                rebuild(next);
+                return;
+            }
+            int[] before = view.weights;
+            view = next;
+            repair(before, next.weights, changes);
+        }
+
+        private void rebuild(Traffic.View next) {
+            view = next;
+            rebuilt = true;
+            int areas = next.graph.areaCount();
+            if (distance == null || distance.length != areas) {
+                distance = new int[areas];
+                parent = new int[areas];
+            }
+            Arrays.fill(distance, Integer.MAX_VALUE);
+            Arrays.fill(parent, -1);
+            heap.reset(areas);
+            distance[source] = 0;
+            heap.pushOrDecrease(source, 0);
+            settled = 0;
+            propagate(next.weights);
+        }
+
+        private void repair(int[] before, int[] after, int[] changes) {
+            int changeCount = changes.length / 2;
+            rebuilt = false;
+            settled = 0;
+            CompactGraph graph = view.graph;
+            heap.reset(graph.areaCount());
+            // Slower tree routes: the subtree below loses its labels
+            int cutCount = 0;
+            for (int i = 0; i < changeCount; i++) {
+                int from = changes[2 * i];
+                int r = changes[2 * i + 1];
+                int to = graph.targets[r];
+                if (after[r] > before[r] && parent[to] == from && distance[to] != Integer.MAX_VALUE
+                        && distance[from] != Integer.MAX_VALUE && (long) distance[from] + before[r] == distance[to]) {
+                    cutCount = cutSubtree(to, cutCount);
+                }
+            }
+            // Cut areas hang on again below their cheapest intact neighbour, if any
+            for (int i = 0; i < cutCount; i++) {
+                int area = cut[i];
+                for (int r = graph.offsets[area]; r < graph.offsets[area + 1]; r++) {
+                    int neighbor = graph.targets[r];
+                    offer(neighbor, area, after[r]); // times are symmetric, so after[r] is also neighbor -> area
+                }
+            }
+            // Faster routes offer their far end a shortcut
+            for (int i = 0; i < changeCount; i++) {
+                int r = changes[2 * i + 1];
+                if (after[r] < before[r]) offer(changes[2 * i], graph.targets[r], after[r]);
+            }
+            propagate(after);
+        }
+
+        private int cutSubtree(int root, int cutCount) {
+            CompactGraph graph = view.graph;
+            int start = cutCount;
+            distance[root] = Integer.MAX_VALUE;
+            cutCount = push(root, cutCount);
+            for (int i = start; i < cutCount; i++) {
+                int area = cut[i];
+                for (int r = graph.offsets[area]; r < graph.offsets[area + 1]; r++) {
+                    int child = graph.targets[r];
+                    if (parent[child] == area && distance[child] != Integer.MAX_VALUE) {
+                        distance[child] = Integer.MAX_VALUE;
+                        cutCount = push(child, cutCount);
+                    }
+                }
+            }
+            for (int i = start; i < cutCount; i++) parent[cut[i]] = -1;
+            return cutCount;
+        }
+
+        private int push(int area, int cutCount) {
+            if (cutCount == cut.length) cut = Arrays.copyOf(cut, cut.length * 2);
+            cut[cutCount] = area;
+            return cutCount + 1;
+        }
+
+        private void offer(int from, int to, int time) {
+            if (distance[from] == Integer.MAX_VALUE || time == Integer.MAX_VALUE) return;
+            long candidate = (long) distance[from] + time;
+            if (candidate < distance[to]) {
+                distance[to] = (int) candidate;
+                parent[to] = from;
+                heap.pushOrDecrease(to, (int) candidate);
+            }
+        }
+
+        private void propagate(int[] weights) {
+            CompactGraph graph = view.graph;
+            while (!heap.isEmpty()) {
+                int area = heap.poll();
+                settled++;
+                for (int r = graph.offsets[area]; r < graph.offsets[area + 1]; r++) {
+                    offer(area, graph.targets[r], weights[r]);
+                }
+            }
+        }
+    }
+
+    // Travel-time matrix between fixed origins and destinations that follows the traffic: one
+    // ShortestPathTree per origin, repaired whenever the view changes, so a refresh after a few live
+    // updates costs a small part of recomputing every row. Times are in seconds, Integer.MAX_VALUE when
+    // every way is closed.
+    private static class LiveDistanceMatrix {
+        private final Traffic traffic;
+        private final List<String> origins;
+        private final List<String> destinations;
+        private ShortestPathTree[] trees;
+        private Traffic.View view;
+        private DistanceMatrix matrix;
+        private long settled; // by the last refresh, over all trees
+
+        LiveDistanceMatrix(Traffic traffic, List<String> origins, List<String> destinations) {
+            this.traffic = traffic;
+            this.origins = new ArrayList<>(origins);
+            this.destinations = new ArrayList<>(destinations);
+        }
+
+        public synchronized DistanceMatrix current() {
+            Traffic.View next = traffic.view();
+            if (next == view) return matrix;
+            long started = System.nanoTime();
+            CompactGraph graph = next.graph;
+            int[] originIds = idsOf(graph, origins);
+            int[] destinationIds = idsOf(graph, destinations);
+            if (trees == null) trees = new ShortestPathTree[originIds.length];
+            IntStream.range(0, trees.length).parallel().forEach(i -> {
+                if (trees[i] == null) trees[i] = new ShortestPathTree(next, originIds[i]);
+                else trees[i].update(next);
+            });
+            int[] distances = new int[originIds.length * destinationIds.length];
+            settled = 0;
+            for (int row = 0; row < trees.length; row++) {
+                settled += trees[row].settled();
+                for (int col = 0; col < destinationIds.length; col++) {
+                    distances[row * destinationIds.length + col] = trees[row].distance(destinationIds[col]);
+                }
+            }
+            view = next;
+            matrix = new DistanceMatrix(origins.toArray(new String[0]), destinations.toArray(new String[0]), distances);
+            Metrics.MATRIX_REFRESHES.recordSince(started);
+            return matrix;
+        }
+
+        // Fastest path behind the current matrix entry; empty when unreachable.
+        public synchronized List<String> path(int origin, String destination) {
+            current();
+            return trees[origin].pathTo(view.graph.idOf(destination));
+        }
+
+        public synchronized long settled() {
+            return settled;
+        }
+
+        private static int[] idsOf(CompactGraph graph, List<String> areas) {
+            int[] ids = new int[areas.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = graph.idOf(areas.get(i));
+                if (ids[i] < 0) {
+                    throw new IllegalArgumentException("Unknown area: " + areas.get(i));
+                }
+            }
+            return ids;
+        }
+    }
+
+    // Distance from every area to its nearest facility (depot or recycling centre), found in one multi-source
+    // Dijkstra: every facility starts at 0 and each area is settled once, by the closest. The search stops at
+    // the bound, so areas farther than that (or unreachable) are simply not covered, and isochrone bands are
+    // read off the distances. Adding a facility is incremental: a search from the new site only goes on
+    // through areas it reaches strictly sooner than their current facility, so it touches exactly the areas
+    // that change hands. Scoring candidate sites runs the same search without writing, one per site, in parallel.
+    private static class Coverage {
+        private static final ThreadLocal<SearchState> SEARCHES = ThreadLocal.withInitial(SearchState::new);
+
+        final CompactGraph graph;
+        final int bound; // km; Integer.MAX_VALUE for none
+        final int[] distance; // to the nearest facility; Integer.MAX_VALUE when not covered
+        final int[] nearest; // index into facilities; -1 when not covered
+        private int[] facilities;
+        private int facilityCount;
+
+        // What adding one site would change.
+        static class Candidate {
+            final int site;
+            final int areas; // areas it would serve instead of their current facility
+            final int broughtWithin; // areas it would bring within the threshold
+            final long kmSaved; // over the areas that are covered now
+
+            Candidate(int site, int areas, int broughtWithin, long kmSaved) {
+                this.site = site;
+                this.areas = areas;
+                this.broughtWithin = broughtWithin;
+                this.kmSaved = kmSaved;
+            }
+        }
+
+        private Coverage(CompactGraph graph, int bound) {
+            this.graph = graph;
+            this.bound = bound;
+            distance = new int[graph.areaCount()];
+            nearest = new int[graph.areaCount()];
+            facilities = new int[8];
+        }
+
+        static Coverage of(CompactGraph graph, int[] sites, int bound) {
+            Coverage coverage = new Coverage(graph, bound);
+            Arrays.fill(coverage.distance, Integer.MAX_VALUE);
+            Arrays.fill(coverage.nearest, -1);
+            SearchState state = SEARCHES.get();
+            state.reset(graph.areaCount());
+            for (int site : sites) {
+                if (coverage.indexOf(site) >= 0) continue;
+                coverage.nearest[site] = coverage.append(site);
+                state.reach(site, 0, -1, 0);
+            }
+            while (!state.heap.isEmpty()) {
+                int current = state.heap.poll();
+                int currentDistance = state.distance(current);
+                coverage.distance[current] = currentDistance;
+                for (int r = graph.offsets[current]; r < graph.offsets[current + 1]; r++) {
+                    int neighbor = graph.targets[r];
+                    int newDist = currentDistance + graph.distances[r];
+                    if (newDist < state.distance(neighbor) && newDist <= bound) {
+                        state.reach(neighbor, newDist, current, newDist);
+                        coverage.nearest[neighbor] = coverage.nearest[current];
+                    }
+                }
+            }
+            return coverage;
+        }
+
+        // Makes the site a facility, updating only the areas it now serves. Returns how many that is.
+        public int add(int site) {
+            if (indexOf(site) >= 0) return 0;
+            int index = append(site);
+            return spread(site, -1, index);
+        }
+
+        // What adding the site would change for the given threshold (km), without changing anything.
+        public Candidate score(int site, int threshold) {
+            if (distance[site] == 0) return new Candidate(site, 0, 0, 0); // already a facility
+            int[] counts = new int[1];
+            long[] saved = new long[1];
+            int areas = spread(site, threshold, -1, counts, saved);
+            return new Candidate(site, areas, counts[0], saved[0]);
+        }
+
+        // Scores every candidate on the common fork-join pool; best first (most areas brought within the
+        // threshold, then most km saved).
+        public List<Candidate> scoreAll(int[] candidates, int threshold) {
+            return IntStream.of(candidates).parallel().mapToObj(site -> score(site, threshold))
+                    .sorted(Comparator.comparingInt((Candidate c) -> c.broughtWithin).reversed()
+                            .thenComparing(Comparator.comparingLong((Candidate c) -> c.kmSaved).reversed()))
+                    .collect(Collectors.toList());
+        }
+
+        private int spread(int site, int threshold, int index) {
+            return spread(site, threshold, index, null, null);
+        }
+
+        // Dijkstra from site through the areas it reaches sooner than their current facility, within the
+        // bound. With index >= 0 it takes those areas over; otherwise it only counts.
+        private int spread(int site, int threshold, int index, int[] counts, long[] saved) {
+            SearchState state = SEARCHES.get();
+            state.reset(graph.areaCount());
+            state.reach(site, 0, -1, 0);
+            int changed = 0;
+            while (!state.heap.isEmpty()) {
+                int current = state.heap.poll();
+                int currentDistance = state.distance(current);
+                int before = distance[current];
+                changed++;
+                if (index >= 0) {
+                    distance[current] = currentDistance;
+                    nearest[current] = index;
+                } else {
+                    if (before > threshold && currentDistance <= threshold) counts[0]++;
+                    if (before != Integer.MAX_VALUE) saved[0] += before - currentDistance;
+                }
+                for (int r = graph.offsets[current]; r < graph.offsets[current + 1]; r++) {
+                    int neighbor = graph.targets[r];
+                    int newDist = currentDistance + graph.distances[r];
+                    if (newDist <= bound && newDist < state.distance(neighbor) && newDist < distance[neighbor]) {
+                        state.reach(neighbor, newDist, current, newDist);
+                    }
+                }
+            }
+            return changed;
+        }
+
+        private int append(int site) {
+            if (facilityCount == facilities.length) facilities = Arrays.copyOf(facilities, facilityCount * 2);
+            facilities[facilityCount] = site;
+            return facilityCount++;
+        }
+
+        private int indexOf(int site) {
+            for (int i = 0; i < facilityCount; i++) {
+                if (facilities[i] == site) return i;
+            }
+            return -1;
+        }
+
+        public int[] facilities() {
+            return Arrays.copyOf(facilities, facilityCount);
+        }
+
+        // Areas farther than km from every facility, or not reachable from any, farthest first.
+        public int[] beyond(int km) {
+            return IntStream.range(0, distance.length).filter(area -> distance[area] > km).boxed()
+                    .sorted(Comparator.comparingInt((Integer area) -> distance[area]).reversed())
+                    .mapToInt(Integer::intValue).toArray();
+        }
+
+        // Areas in each isochrone band: within limits[0], then up to limits[1], ..., and a last count for the rest.
+        public int[] bands(int... limits) {
+            int[] counts = new int[limits.length + 1];
+            for (int d : distance) {
+                int band = 0;
+                while (band < limits.length && d > limits[band]) band++;
+                counts[band]++;
+            }
+            return counts;
+        }
+
+        // Areas each facility serves, in the order they were added.
+        public int[] served() {
+            int[] counts = new int[facilityCount];
+            for (int index : nearest) {
+                if (index >= 0) counts[index]++;
+            }
+            return counts;
+        }
+    }
+
+    // Remembers route answers for repeated queries, such as the depot-to-district routes collectors ask for
+    // every shift: the last `routes` answers (least recently used out first) and, for sources that keep
+    // missing, the whole shortest-path tree, so every destination from them is a lookup. A source gets a
+    // tree on its TREE_AFTER-th miss; trees hold at most TREE_CELLS areas between them.
+    //
+    // Everything cached belongs to one graph version, and other snapshots bypass the cache. Edits only add
+    // routes, which can only make paths shorter, so when a version adds a few routes the cache keeps every
+    // entry that none of them improves: a tree checks the new route u-v (length w) against its own
+    // distances, and an answer from s to t of length d is dropped when d(s,u) + w + d(v,t) < d, or the same
+    // through v-u, with the distances found by one-to-many searches from u and v on the new snapshot.
+    // A load, or a version adding more than CompactGraph.TRACKED_ADDITIONS routes, clears the cache.
+    private static class RouteCache {
+        static final int TREE_AFTER = 3;
+        static final int TREE_CELLS = 4_000_000; // 32 MB of distances and parents
+        static final int MAX_TREES = 64;
+        // Checks new versions against the cache off the graph's lock, one at a time and in publication order.
+        private static final ExecutorService checker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "route-cache-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        static class Answer {
+            final List<String> path; // empty when there is no route
+            final int distance; // Integer.MAX_VALUE when there is no route
+            final boolean cached; // false when this query had to search
+
+            Answer(List<String> path, int distance, boolean cached) {
+                this.path = path;
+                this.distance = distance;
+                this.cached = cached;
+            }
+        }
+
+        private static class Entry {
+            final int source;
+            final int target;
+            final List<String> path;
+            final int distance;
+
+            Entry(int source, int target, List<String> path, int distance) {
+                this.source = source;
+                this.target = target;
+                this.path = path;
+                this.distance = distance;
+            }
+        }
+
+        private static class Tree {
+            final int source;
+            final int[] distance;
+            final int[] parent;
+
+            Tree(CompactGraph graph, int source) {
+                this.source = source;
+                distance = new int[graph.areaCount()];
+                parent = new int[graph.areaCount()];
+                RouteEngine.current().shortestPathTree(graph, source, distance, parent);
+            }
+
+            int distance(int area) {
+                return area < distance.length ? distance[area] : Integer.MAX_VALUE; // newer areas are unreached
+            }
+
+            // True when the route could shorten the way to one of its ends
+            boolean improvedBy(int from, int to, int length) {
+                long viaFrom = (long) distance(from) + length;
+                long viaTo = (long) distance(to) + length;
+                return distance(from) != Integer.MAX_VALUE && viaFrom < distance(to)
+                        || distance(to) != Integer.MAX_VALUE && viaTo < distance(from);
+            }
+
+            List<String> pathTo(CompactGraph graph, int target) {
+                List<String> path = new ArrayList<>();
+                if (distance(target) == Integer.MAX_VALUE) return path;
+                for (int at = target; at != -1; at = parent[at]) path.add(graph.areaName(at));
+                Collections.reverse(path);
+                return path;
+            }
+        }
+
+        private final int capacity;
+        private final LinkedHashMap<Long, Entry> answers; // by (source, target) ids; guarded by this
+        private final LinkedHashMap<Integer, Tree> trees = new LinkedHashMap<>(16, 0.75f, true); // guarded by this
+        private final LinkedHashMap<Integer, Integer> sourceMisses; // sources without a tree; guarded by this
+        private long version; // guarded by this; -1 while a new version's routes are being checked
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder treeHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder bypassed = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder invalidated = new LongAdder();
+        private final LongAdder kept = new LongAdder();
+        private final LongAdder clears = new LongAdder();
+        private final LongAdder treesBuilt = new LongAdder();
+
+        RouteCache(int capacity, CompactGraph current) {
+            this.capacity = capacity;
+            this.version = current.version;
+            this.answers = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                    if (size() <= capacity) return false;
+                    evictions.increment();
+                    return true;
+                }
+            };
+            this.sourceMisses = new LinkedHashMap<Integer, Integer>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        // The shortest route on graph, from the cache when it holds one for this version.
+        public Answer route(CompactGraph graph, String start, String destination) {
+            int source = graph.idOf(start);
+            int target = graph.idOf(destination);
+            if (source < 0 || target < 0) {
+                return new Answer(new ArrayList<>(), Integer.MAX_VALUE, false);
+            }
+            long key = ((long) source << 32) | target;
+            boolean buildTree = false;
+            synchronized (this) {
+                if (graph.version != version) {
+                    bypassed.increment();
+                    return search(graph, start, destination);
+                }
+                Tree tree = trees.get(source);
+                if (tree != null) {
+                    treeHits.increment();
+                    return new Answer(tree.pathTo(graph, target), tree.distance(target), true);
+                }
+                tree = trees.get(target); // routes are symmetric, so the target's tree answers backwards
+                if (tree != null) {
+                    treeHits.increment();
+                    List<String> path = tree.pathTo(graph, source);
+                    Collections.reverse(path);
+                    return new Answer(path, tree.distance(source), true);
+                }
+                Entry entry = answers.get(key);
+                if (entry != null) {
+                    hits.increment();
+                    return new Answer(entry.path, entry.distance, true);
+                }
+                misses.increment();
+                if (sourceMisses.merge(source, 1, Integer::sum) >= TREE_AFTER && graph.areaCount() <= TREE_CELLS) {
+                    sourceMisses.remove(source);
+                    buildTree = true;
+                }
+            }
+            if (buildTree) {
+                Tree tree = new Tree(graph, source);
+                treesBuilt.increment();
+                synchronized (this) {
+                    if (graph.version == version) {
+                        trees.put(source, tree);
+                        int limit = Math.min(MAX_TREES, Math.max(1, TREE_CELLS / graph.areaCount()));
+                        for (var eldest = trees.keySet().iterator(); trees.size() > limit; ) {
+                            eldest.next();
+                            eldest.remove();
+                            evictions.increment();
+                        }
+                    }
+                }
+                return new Answer(tree.pathTo(graph, target), tree.distance(target), false);
+            }
+            Answer answer = search(graph, start, destination);
+            synchronized (this) {
+                if (graph.version == version) {
+                    answers.put(key, new Entry(source, target, List.copyOf(answer.path), answer.distance));
+                }
+            }
+            return answer;
+        }
+
+        private static Answer search(CompactGraph graph, String start, String destination) {
+            RouteEngine engine = RouteEngine.current();
+            List<String> path = engine.findRoute(graph, start, destination, graph.fastestStrategy());
+            return new Answer(path, engine.lastDistance(), false);
+        }
+
+        // Called by the graph, under its lock, with every new snapshot in order. The check runs on the checker
+        // thread so an edit never waits for it; until it is done queries for the new version bypass the cache.
+        void published(CompactGraph next) {
+            checker.execute(() -> {
+                try {
+                    check(next);
+                } catch (RuntimeException e) {
+                    synchronized (this) { // nothing checked can be trusted, so start this version empty
+                        answers.clear();
+                        trees.clear();
+                        version = next.version;
+                        clears.increment();
+                    }
+                    throw e;
+                }
+            });
+        }
+
+        // Waits for the checks of every snapshot published so far.
+        void awaitChecks() throws InterruptedException {
+            try {
+                checker.submit(() -> { }).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        private void check(CompactGraph next) {
+            List<Entry> entries;
+            List<Tree> checkedTrees;
+            synchronized (this) {
+                if (next.added == null || next.version != version + 1) {
+                    answers.clear();
+                    trees.clear();
+                    version = next.version;
+                    clears.increment();
+                    return;
+                }
+                if (next.added.length == 0) {
+                    version = next.version;
+                    return;
+                }
+                entries = new ArrayList<>(answers.values());
+                checkedTrees = new ArrayList<>(trees.values());
+                version = -1; // queries bypass the cache until the check is done
+            }
+            int[] added = next.added;
+            Set<Integer> staleTrees = new HashSet<>();
+            for (Tree tree : checkedTrees) {
+                for (int i = 0; i < added.length && !staleTrees.contains(tree.source); i += 3) {
+                    if (tree.improvedBy(added[i], added[i + 1], added[i + 2])) staleTrees.add(tree.source);
+                }
+            }
+            Set<Long> staleAnswers = new HashSet<>();
+            if (!entries.isEmpty()) {
+                Map<Integer, Integer> index = new HashMap<>(); // area -> column among the endpoints
+                for (Entry entry : entries) {
+                    index.putIfAbsent(entry.source, index.size());
+                    index.putIfAbsent(entry.target, index.size());
+                }
+                int[] endpoints = new int[index.size()];
+                index.forEach((area, column) -> endpoints[column] = area);
+                int[] fromU = new int[endpoints.length];
+                int[] fromV = new int[endpoints.length];
+                RouteEngine engine = RouteEngine.current();
+                for (int i = 0; i < added.length; i += 3) {
+                    engine.distancesFrom(next, added[i], endpoints, fromU, 0);
+                    engine.distancesFrom(next, added[i + 1], endpoints, fromV, 0);
+                    long length = added[i + 2];
+                    for (Entry entry : entries) {
+                        int s = index.get(entry.source);
+                        int t = index.get(entry.target);
+                        long forward = (long) fromU[s] + length + fromV[t];
+                        long backward = (long) fromV[s] + length + fromU[t];
+                        if (fromU[s] != Integer.MAX_VALUE && fromV[t] != Integer.MAX_VALUE && forward < entry.distance
+                                || fromV[s] != Integer.MAX_VALUE && fromU[t] != Integer.MAX_VALUE && backward < entry.distance) {
+                            staleAnswers.add(((long) entry.source << 32) | entry.target);
+                        }
+                    }
+                }
+            }
+            synchronized (this) {
+                trees.keySet().removeAll(staleTrees);
+                answers.keySet().removeAll(staleAnswers);
+                invalidated.add(staleTrees.size() + staleAnswers.size());
+                kept.add(checkedTrees.size() + entries.size() - staleTrees.size() - staleAnswers.size());
+                version = next.version;
+            }
+        }
+
+        public String stats() {
+            long answered = hits.sum() + treeHits.sum() + misses.sum();
+            int cachedAnswers;
+            int cachedTrees;
+            synchronized (this) {
+                cachedAnswers = answers.size();
+                cachedTrees = trees.size();
+            }
+            return String.format("Route queries: %d (%d while the network was changing)%n"
+                            + "Hit rate: %.1f%% (%d answers, %d from shortest-path trees), %d misses%n"
+                            + "Cached answers: %d of %d, trees: %d (%d built)%n"
+                            + "Evicted: %d, invalidated by new routes: %d, kept across new routes: %d, cleared: %d times",
+                    answered + bypassed.sum(), bypassed.sum(),
+                    answered == 0 ? 0.0 : 100.0 * (hits.sum() + treeHits.sum()) / answered, hits.sum(), treeHits.sum(),
+                    misses.sum(), cachedAnswers, capacity, cachedTrees, treesBuilt.sum(),
+                    evictions.sum(), invalidated.sum(), kept.sum(), clears.sum());
+        }
+
+        // The counters behind stats(), by name
+        public Map<String, Long> counters() {
+            Map<String, Long> counters = new LinkedHashMap<>();
+            counters.put("hits", hits.sum());
+            counters.put("treeHits", treeHits.sum());
+            counters.put("misses", misses.sum());
+            counters.put("bypassed", bypassed.sum());
+            counters.put("evictions", evictions.sum());
+            counters.put("invalidated", invalidated.sum());
+            counters.put("kept", kept.sum());
+            counters.put("clears", clears.sum());
+            counters.put("treesBuilt", treesBuilt.sum());
+            return counters;
+        }
+    }
+
+    // Runs route queries on a small bounded pool so the event dispatch thread never searches. A dashboard
+    // keeps one Session, which cancels (and interrupts) its previous query when a new one is submitted.
+    private static class AsyncRouter {
+        private static final int WORKERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+        private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(WORKERS, WORKERS,
+                30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256), r -> {
+                    Thread thread = new Thread(r, "route-query");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        static {
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        static class RouteResult {
+            final List<String> path; // empty when there is no route
+            final int distance;
+            final SearchStrategy strategy;
+            final int settled;
+            final long nanos;
+            final boolean cached; // answered by the route cache without searching
+
+            RouteResult(List<String> path, int distance, SearchStrategy strategy, int settled, long nanos, boolean cached) {
+                this.path = path;
+                this.distance = distance;
+                this.strategy = strategy;
+                this.settled = settled;
+                this.nanos = nanos;
+                this.cached = cached;
+            }
+        }
+
+        public static CompletableFuture<RouteResult> findRoute(CompactGraph graph, String start, String destination) {
+            return findRoute(null, graph, start, destination);
+        }
+
+        // Searches the given snapshot with its fastest strategy, or asks the cache when there is one.
+        // Cancelling the returned future interrupts the search; a full queue fails it with
+        // RejectedExecutionException.
+        public static CompletableFuture<RouteResult> findRoute(RouteCache cache, CompactGraph graph, String start,
+                                                               String destination) {
+            CompletableFuture<RouteResult> result = new CompletableFuture<>();
+            try {
+                Future<?> task = executor.submit(() -> {
+                    long begin = System.nanoTime();
+                    try {
+                        SearchStrategy strategy = graph.fastestStrategy();
+                        RouteEngine engine = RouteEngine.current();
+                        if (cache != null) {
+                            RouteCache.Answer answer = cache.route(graph, start, destination);
+                            result.complete(new RouteResult(answer.path, answer.distance, strategy,
+                                    answer.cached ? 0 : engine.settled(), System.nanoTime() - begin, answer.cached));
+                            return;
+                        }
+                        List<String> path = engine.findRoute(graph, start, destination, strategy);
+                        result.complete(new RouteResult(path, engine.lastDistance(), strategy, engine.settled(),
+                                System.nanoTime() - begin, false));
+                    } catch (CancellationException e) {
+                        result.cancel(false);
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                });
+                result.whenComplete((route, error) -> {
+                    if (result.isCancelled()) task.cancel(true);
+                });
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+
+        static class Session {
+            private final RouteCache cache; // may be null
+            private CompletableFuture<RouteResult> current;
+
+            Session() {
+                this(null);
+            }
+
+            Session(RouteCache cache) {
+                this.cache = cache;
+            }
+
+            // Must be called on the event dispatch thread; handler also runs there, never for a stale query.
+            public void submit(CompactGraph graph, String start, String destination,
+                               BiConsumer<RouteResult, Throwable> handler) {
+                if (current != null) current.cancel(true);
+                CompletableFuture<RouteResult> query = findRoute(cache, graph, start, destination);
+                current = query;
+                query.whenCompleteAsync((route, error) -> {
+                    if (query == current && !query.isCancelled()) {
+                        current = null;
+                        handler.accept(route, error);
+                    }
+                }, SwingUtilities::invokeLater);
+            }
+        }
+    }
+
+    // Splits a network into regions of about equal size, each to be served by a PartitionWorker process.
+    // With coordinates it bisects recursively along the wider side at the median (recursive coordinate
+    // bisection). Without, it bisects by growing a breadth-first ball from an area on the rim of the piece,
+    // found by two sweeps, which keeps each half in one piece on road-like networks. Either way a region
+    // of k parts is cut into k / 2 and k - k / 2 parts in proportion, so any number of regions works.
+    // The directory gets:
+    //   regions.swpart       every area's name, region and id inside its region, and the routes between regions
+    //   partition-<i>.swpart region i as a network image, plus its boundary areas (those with a route out)
+    private static class GraphPartitioner {
+        static final int MAGIC = 0x53575047; // "SWPG"
+        static final int FORMAT = 1;
+
+        static int[] partition(CompactGraph graph, int parts) {
+            if (parts < 1 || parts > graph.areaCount()) {
+                throw new IllegalArgumentException("Cannot split " + graph.areaCount() + " areas into " + parts + " regions");
+            }
+            int[] region = new int[graph.areaCount()];
+            bisect(graph, IntStream.range(0, graph.areaCount()).toArray(), 0, parts, region);
+            return region;
+        }
+
+        private static void bisect(CompactGraph graph, int[] areas, int firstRegion, int parts, int[] region) {
+            if (parts == 1 || areas.length <= 1) {
+                for (int area : areas) region[area] = firstRegion;
+                return;
+            }
+            int leftParts = parts / 2;
+            int leftSize = (int) ((long) areas.length * leftParts / parts);
+            int[] order = graph.hasLocations() ? alongWiderSide(graph, areas) : grownOrder(graph, areas);
+            bisect(graph, Arrays.copyOfRange(order, 0, leftSize), firstRegion, leftParts, region);
+            bisect(graph, Arrays.copyOfRange(order, leftSize, order.length), firstRegion + leftParts, parts - leftParts, region);
+        }
+
+        private static int[] alongWiderSide(CompactGraph graph, int[] areas) {
+            double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+            for (int area : areas) {
+                minX = Math.min(minX, graph.xs[area]);
+                maxX = Math.max(maxX, graph.xs[area]);
+                minY = Math.min(minY, graph.ys[area]);
+                maxY = Math.max(maxY, graph.ys[area]);
+            }
+            double[] key = maxX - minX >= maxY - minY ? graph.xs : graph.ys;
+            return IntStream.of(areas).boxed().sorted(Comparator.comparingDouble(area -> key[area]))
+                    .mapToInt(Integer::intValue).toArray();
+        }
+
+        // Breadth-first order over the piece, starting from the last area reached by a first sweep.
+        private static int[] grownOrder(CompactGraph graph, int[] areas) {
+            boolean[] member = new boolean[graph.areaCount()];
+            for (int area : areas) member[area] = true;
+            int[] first = sweep(graph, areas, member.clone(), areas[0], false);
+            return sweep(graph, areas, member, first[first.length - 1], true);
+        }
+
+        // Areas of the piece in breadth-first order from start; with all, then the other components in turn.
+        // Clears member for every area it visits.
+        private static int[] sweep(CompactGraph graph, int[] areas, boolean[] member, int start, boolean all) {
+            int[] queue = new int[areas.length];
+            int head = 0;
+            int tail = 0;
+            member[start] = false;
+            queue[tail++] = start;
+            int next = 0;
+            while (true) {
+                while (head < tail) {
+                    int area = queue[head++];
+                    for (int r = graph.offsets[area]; r < graph.offsets[area + 1]; r++) {
+                        int neighbor = graph.targets[r];
+                        if (member[neighbor]) {
+                            member[neighbor] = false;
+                            queue[tail++] = neighbor;
+                        }
+                    }
+                }
+                if (!all) return Arrays.copyOf(queue, tail);
+                while (next < areas.length && !member[areas[next]]) next++;
+                if (next == areas.length) return queue;
+                member[areas[next]] = false;
+                queue[tail++] = areas[next];
+            }
+        }
+
+        // Partitions the graph into the directory and describes the result.
+        static String write(CompactGraph graph, int parts, Path directory) throws IOException {
+            int[] region = partition(graph, parts);
+            int[] local = new int[graph.areaCount()];
+            int[] sizes = new int[parts];
+            for (int area = 0; area < graph.areaCount(); area++) local[area] = sizes[region[area]]++;
+            int[][] members = new int[parts][];
+            for (int p = 0; p < parts; p++) members[p] = new int[sizes[p]];
+            for (int area = 0; area < graph.areaCount(); area++) members[region[area]][local[area]] = area;
+            String[] names = new String[graph.areaCount()];
+            for (int area = 0; area < names.length; area++) names[area] = graph.areaName(area);
+
+            int cut = 0;
+            for (int area = 0; area < graph.areaCount(); area++) {
+                for (int r = graph.offsets[area]; r < graph.offsets[area + 1]; r++) {
+                    if (area < graph.targets[r] && region[area] != region[graph.targets[r]]) cut++;
+                }
+            }
+            int[] cutFrom = new int[cut];
+            int[] cutTo = new int[cut];
+            int[] cutDistance = new int[cut];
+            cut = 0;
+            for (int area = 0; area < graph.areaCount(); area++) {
+                for (int r = graph.offsets[area]; r < graph.offsets[area + 1]; r++) {
+                    if (area < graph.targets[r] && region[area] != region[graph.targets[r]]) {
+                        cutFrom[cut] = area;
+                        cutTo[cut] = graph.targets[r];
+                        cutDistance[cut++] = graph.distances[r];
+                    }
+                }
+            }
+            Files.createDirectories(directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(directory.resolve("regions.swpart")), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeInt(parts);
+                DataStore.writeStrings(out, names);
+                DataStore.writeInts(out, region);
+                DataStore.writeInts(out, local);
+                DataStore.writeInts(out, cutFrom);
+                DataStore.writeInts(out, cutTo);
+                DataStore.writeInts(out, cutDistance);
+            }
+
+            StringBuilder summary = new StringBuilder(String.format("%,d areas in %d regions, %,d routes between regions%n",
+                    graph.areaCount(), parts, cut));
+            for (int p = 0; p < parts; p++) {
+                int[] area = members[p];
+                String[] regionNames = new String[area.length];
+                double[] xs = new double[area.length];
+                double[] ys = new double[area.length];
+                int routes = 0;
+                int boundaryCount = 0;
+                boolean[] boundary = new boolean[area.length];
+                for (int i = 0; i < area.length; i++) {
+                    regionNames[i] = names[area[i]];
+                    xs[i] = graph.hasLocations() ? graph.xs[area[i]] : Double.NaN;
+                    ys[i] = graph.hasLocations() ? graph.ys[area[i]] : Double.NaN;
+                    for (int r = graph.offsets[area[i]]; r < graph.offsets[area[i] + 1]; r++) {
+                        int target = graph.targets[r];
+                        if (region[target] != p) {
+                            boundary[i] = true;
+                        } else if (area[i] < target) {
+                            routes++;
+                        }
+                    }
+                    if (boundary[i]) boundaryCount++;
+                }
+                int[] routeFrom = new int[routes];
+                int[] routeTo = new int[routes];
+                int[] routeDistance = new int[routes];
+                int[] boundaryIds = new int[boundaryCount];
+                routes = 0;
+                boundaryCount = 0;
+                for (int i = 0; i < area.length; i++) {
+                    if (boundary[i]) boundaryIds[boundaryCount++] = i;
+                    for (int r = graph.offsets[area[i]]; r < graph.offsets[area[i] + 1]; r++) {
+                        int target = graph.targets[r];
+                        if (region[target] == p && area[i] < target) {
+                            routeFrom[routes] = i;
+                            routeTo[routes] = local[target];
+                            routeDistance[routes++] = graph.distances[r];
+                        }
+                    }
+                }
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(directory.resolve("partition-" + p + ".swpart")), 1 << 16))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT);
+                    out.writeInt(p);
+                    DataStore.writeStrings(out, regionNames);
+                    DataStore.writeDoubles(out, xs);
+                    DataStore.writeDoubles(out, ys);
+                    DataStore.writeInts(out, routeFrom);
+                    DataStore.writeInts(out, routeTo);
+                    DataStore.writeInts(out, routeDistance);
+                    DataStore.writeInts(out, boundaryIds);
+                }
+                summary.append(String.format("  region %d: %,d areas, %,d routes, %,d boundary areas%n",
+                        p, area.length, routes, boundaryCount));
+            }
+            return summary.toString();
+        }
+    }
+
+    // Serves one region written by GraphPartitioner from its own JVM:
+    //   java project2.WasteCollectionSwingVisualizer --partition-worker <dir> <region> [port]
+    // On start it loads partition-<region>.swpart and works out the region's overlay edges: the shortest
+    // distance inside the region between each pair of its boundary areas, leaving out pairs whose path runs
+    // through a third boundary area, since the overlay gets that distance by way of it. It then prints
+    // "listening on <port>" and answers binary requests on loopback connections, one thread per connection
+    // (ids are the region's own):
+    //   OVERLAY              -> boundary ids, then the overlay edges as (from, to, distance)
+    //   FROM source target   -> distance from source to each boundary area, in order; with target >= 0 also
+    //                           the distance to target inside the region and its path
+    //   PATHS n (from, to)*  -> the path inside the region for each pair
+    // The worker exits when its standard input closes, so workers started by a coordinator go with it.
+    private static class PartitionWorker {
+        static final byte OVERLAY = 1;
+        static final byte FROM = 2;
+        static final byte PATHS = 3;
+
+        final int region;
+        final CompactGraph graph;
+        final int[] boundary;
+        final int[] overlayEdges; // (from, to, distance) triples
+
+        private PartitionWorker(int region, CompactGraph graph, int[] boundary) {
+            this.region = region;
+            this.graph = graph;
+            this.boundary = boundary;
+            this.overlayEdges = overlayEdges();
+        }
+
+        static PartitionWorker load(Path directory, int region) throws IOException {
+            Path file = directory.resolve("partition-" + region + ".swpart");
+            CompactGraph.Image image;
+            int[] boundary;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != GraphPartitioner.MAGIC || buffer.getInt() != GraphPartitioner.FORMAT
+                        || buffer.getInt() != region) {
+                    throw new IOException("Not region " + region + " of a partitioned network: " + file);
+                }
+                image = new CompactGraph.Image(DataStore.readStrings(buffer), DataStore.readDoubles(buffer),
+                        DataStore.readDoubles(buffer), DataStore.readInts(buffer), DataStore.readInts(buffer),
+                        DataStore.readInts(buffer));
+                boundary = DataStore.readInts(buffer);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Truncated region file: " + file, e);
+            }
+            Graph graph = new Graph();
+            graph.load(image);
+            graph.enableHierarchy();
+            return new PartitionWorker(region, graph.compact(), boundary);
+        }
+
+        private int[] overlayEdges() {
+            int areas = graph.areaCount();
+            boolean[] isBoundary = new boolean[areas];
+            for (int area : boundary) isBoundary[area] = true;
+            int[] distance = new int[areas];
+            int[] parent = new int[areas];
+            int[] seen = new int[areas]; // which source's tree via[] belongs to, + 1
+            boolean[] via = new boolean[areas]; // a boundary area lies strictly between the source and here
+            int[] chain = new int[areas];
+            int[] edges = new int[48];
+            int count = 0;
+            RouteEngine engine = RouteEngine.current();
+            for (int i = 0; i < boundary.length; i++) {
+                int source = boundary[i];
+                engine.shortestPathTree(graph, source, distance, parent);
+                seen[source] = i + 1;
+                via[source] = false;
+                for (int j = i + 1; j < boundary.length; j++) {
+                    int target = boundary[j];
+                    if (distance[target] == Integer.MAX_VALUE) continue;
+                    int length = 0;
+                    int at = target;
+                    while (seen[at] != i + 1) {
+                        chain[length++] = at;
+                        at = parent[at];
+                    }
+                    while (length > 0) {
+                        int child = chain[--length];
+                        via[child] = via[at] || at != source && isBoundary[at];
+                        seen[child] = i + 1;
+                        at = child;
+                    }
+                    if (via[target]) continue;
+                    if (count + 3 > edges.length) edges = Arrays.copyOf(edges, edges.length * 2);
+                    edges[count++] = source;
+                    edges[count++] = target;
+                    edges[count++] = distance[target];
+                }
+            }
+            return Arrays.copyOf(edges, count);
+        }
+
+        java.net.ServerSocket serve(int port) throws IOException {
+            java.net.ServerSocket server = new java.net.ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(() -> {
+                int connections = 0;
+                while (!server.isClosed()) {
+                    try {
+                        java.net.Socket socket = server.accept();
+                        socket.setTcpNoDelay(true);
+                        Thread handler = new Thread(() -> {
+                            try (socket) {
+                                answer(new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                                        new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+                            } catch (IOException e) {
+                                // the coordinator went away
+                            }
+                        }, "partition-connection-" + ++connections);
+                        handler.setDaemon(true);
+                        handler.start();
+                    } catch (IOException e) {
+                        if (!server.isClosed()) System.err.println("Partition worker stopped listening: " + e.getMessage());
+                        return;
+                    }
+                }
+            }, "partition-listener");
+            acceptor.start();
+            return server;
+        }
+
+        private void answer(DataInputStream in, DataOutputStream out) throws IOException {
+            RouteEngine engine = RouteEngine.current();
+            int[] targets = Arrays.copyOf(boundary, boundary.length + 1);
+            int[] distances = new int[targets.length];
+            while (true) {
+                byte request;
+                try {
+                    request = in.readByte();
+                } catch (java.io.EOFException e) {
+                    return;
+                }
+                switch (request) {
+                    case OVERLAY:
+                        writeInts(out, boundary);
+                        writeInts(out, overlayEdges);
+                        break;
+                    case FROM: {
+                        int source = area(in.readInt());
+                        int target = in.readInt(); // negative for distances to the boundary only
+                        if (target >= 0) area(target);
+                        targets[boundary.length] = target >= 0 ? target : source;
+                        engine.distancesFrom(graph, source, targets, distances, 0);
+                        for (int i = 0; i < boundary.length; i++) out.writeInt(distances[i]);
+                        if (target >= 0) {
+                            out.writeInt(distances[boundary.length]);
+                            writePath(out, distances[boundary.length] == Integer.MAX_VALUE ? new int[0]
+                                    : path(engine.forwardPath(graph, target)));
+                        }
+                        break;
+                    }
+                    case PATHS: {
+                        int pairs = in.readInt();
+                        if (pairs < 0 || pairs > graph.areaCount()) { // stretches of one route are disjoint
+                            throw new IOException("Bad partition request for " + pairs + " paths");
+                        }
+                        int[] ends = new int[2 * pairs];
+                        for (int i = 0; i < ends.length; i++) ends[i] = area(in.readInt());
+                        for (int i = 0; i < pairs; i++) {
+                            writePath(out, path(engine.findRoute(graph, graph.areaName(ends[2 * i]),
+                                    graph.areaName(ends[2 * i + 1]), graph.fastestStrategy())));
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IOException("Unknown partition request " + request);
+                }
+                out.flush();
+            }
+        }
+
+        // A requested area id, when it is one of this region's; requests come over the network.
+        private int area(int id) throws IOException {
+            if (id < 0 || id >= graph.areaCount()) throw new IOException("No area " + id + " in region " + region);
+            return id;
+        }
+
+        private int[] path(List<String> names) {
+            int[] ids = new int[names.size()];
+            for (int i = 0; i < ids.length; i++) ids[i] = graph.idOf(names.get(i));
+            return ids;
+        }
+
+        private static void writePath(DataOutputStream out, int[] path) throws IOException {
+            writeInts(out, path);
+        }
+
+        private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+            out.writeInt(values.length);
+            for (int value : values) out.writeInt(value);
+        }
+
+        static int[] readInts(DataInputStream in) throws IOException {
+            int[] values = new int[in.readInt()];
+            for (int i = 0; i < values.length; i++) values[i] = in.readInt();
+            return values;
+        }
+
+        // --partition-worker <dir> <region> [port]
+        static void main(String[] args) {
+            Path directory = Path.of(args[1]);
+            int region = Integer.parseInt(args[2]);
+            int port = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+            try {
+                long started = System.nanoTime();
+                PartitionWorker worker = load(directory, region);
+                java.net.ServerSocket server = worker.serve(port);
+                System.out.printf("Region %d: %,d areas, %,d boundary areas, %,d overlay edges, ready in %d ms,"
+                                + " listening on %d%n", region, worker.graph.areaCount(), worker.boundary.length,
+                        worker.overlayEdges.length / 3, (System.nanoTime() - started) / 1_000_000, server.getLocalPort());
+                System.out.flush();
+                while (System.in.read() >= 0) {
+                    // keep running until the coordinator closes our input
+                }
+            } catch (IOException e) {
+                System.err.println("Partition worker " + region + " failed: " + e.getMessage());
+                System.exit(1);
+            }
+            System.exit(0);
+        }
+    }
+
+    // Answers routes over the regions of a partitioned network, each served by a PartitionWorker process.
+    // It keeps only the area names, each area's region and the overlay: the regions' boundary areas,
+    // joined by the routes between regions and by the overlay edges of every region. A route from s to t
+    //   1. asks the workers of s's and t's regions, in parallel, for the distances from s and from t to
+    //      their region's boundary areas, and for the way inside the region when both are in one
+    //   2. searches the overlay from s's boundary areas, seeded with their distances, until its queue can no
+    //      longer beat the best boundary area of t's region plus that area's distance to t
+    //   3. asks the workers, in parallel again, for the paths behind the overlay edges it used
+    // Without paths a route takes two parallel round trips. Each worker gets a pool of connections, one per
+    // query in flight.
+    private static class PartitionedRouter {
+        private static final ExecutorService requests = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "partition-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private static final ThreadLocal<SearchState> SEARCHES = ThreadLocal.withInitial(SearchState::new);
+
+        static class Answer {
+            final List<String> path; // empty when there is no route, or when it was not asked for
+            final int distance; // Integer.MAX_VALUE when there is no route
+
+            Answer(List<String> path, int distance) {
+                this.path = path;
+                this.distance = distance;
+            }
+        }
+
+        // Open connections to one worker, taken by one query at a time.
+        private static class Worker {
+            final InetSocketAddress address;
+            final int[] boundary; // the region's boundary areas, in its own ids
+            int[] overlayEdges; // dropped once the overlay is built
+            final ArrayBlockingQueue<Connection> idle = new ArrayBlockingQueue<>(64);
+
+            Worker(InetSocketAddress address) throws IOException {
+                this.address = address;
+                Connection connection = new Connection(address);
+                connection.out.writeByte(PartitionWorker.OVERLAY);
+                connection.out.flush();
+                boundary = PartitionWorker.readInts(connection.in);
+                overlayEdges = PartitionWorker.readInts(connection.in);
+                idle.offer(connection);
+            }
+
+            Connection take() throws IOException {
+                Connection connection = idle.poll();
+                return connection != null ? connection : new Connection(address);
+            }
+
+            void give(Connection connection) throws IOException {
+                if (!idle.offer(connection)) connection.socket.close();
+            }
+        }
+
+        private static class Connection {
+            final java.net.Socket socket;
+            final DataInputStream in;
+            final DataOutputStream out;
+
+            Connection(InetSocketAddress address) throws IOException {
+                socket = new java.net.Socket(address.getAddress(), address.getPort());
+                socket.setTcpNoDelay(true);
+                in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            }
+        }
+
+        // What a worker said about one end of a route
+        private static class End {
+            int[] toBoundary;
+            int direct = Integer.MAX_VALUE; // inside the region, when both ends are in it
+            int[] directPath;
+        }
+
+        private final String[] names;
+        private final Map<String, Integer> ids;
+        private final int[] region;
+        private final int[] local;
+        private final int[][] globalOf; // per region: own id -> area
+        private final Worker[] workers;
+        private final List<Process> processes;
+        private final int[] overlayOf; // area -> overlay node, -1 inside a region
+        private final int[] firstNode; // per region: its first overlay node; a region's nodes follow its boundary order
+        private final int[] overlayArea;
+        private final int[] offsets;
+        private final int[] targets;
+        private final int[] distances;
+        private final LongAdder queries = new LongAdder();
+        private final LongAdder queryNanos = new LongAdder();
+        private final LongAdder roundTrips = new LongAdder();
+
+        private PartitionedRouter(Path directory, List<InetSocketAddress> addresses, List<Process> processes) throws IOException {
+            this.processes = processes;
+            Path file = directory.resolve("regions.swpart");
+            int[] cutFrom;
+            int[] cutTo;
+            int[] cutDistance;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != GraphPartitioner.MAGIC || buffer.getInt() != GraphPartitioner.FORMAT) {
+                    throw new IOException("Not a partitioned network: " + file);
+                }
+                int parts = buffer.getInt();
+                if (parts != addresses.size()) {
+                    throw new IOException(parts + " regions but " + addresses.size() + " workers");
+                }
+                names = DataStore.readStrings(buffer);
+                region = DataStore.readInts(buffer);
+                local = DataStore.readInts(buffer);
+                cutFrom = DataStore.readInts(buffer);
+                cutTo = DataStore.readInts(buffer);
+                cutDistance = DataStore.readInts(buffer);
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Truncated region file: " + file, e);
+            }
+            ids = new HashMap<>(names.length * 2);
+            for (int area = 0; area < names.length; area++) ids.put(names[area], area);
+            int parts = addresses.size();
+            int[] sizes = new int[parts];
+            for (int area = 0; area < names.length; area++) sizes[region[area]]++;
+            globalOf = new int[parts][];
+            for (int p = 0; p < parts; p++) globalOf[p] = new int[sizes[p]];
+            for (int area = 0; area < names.length; area++) globalOf[region[area]][local[area]] = area;
+
+            workers = new Worker[parts];
+            List<CompletableFuture<Worker>> connecting = new ArrayList<>();
+            for (InetSocketAddress address : addresses) {
+                connecting.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return new Worker(address);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, requests));
+            }
+            for (int p = 0; p < parts; p++) workers[p] = await(connecting.get(p));
+
+            overlayOf = new int[names.length];
+            Arrays.fill(overlayOf, -1);
+            firstNode = new int[parts + 1];
+            int nodes = 0;
+            for (int p = 0; p < parts; p++) {
+                firstNode[p] = nodes;
+                for (int id : workers[p].boundary) overlayOf[globalOf[p][id]] = nodes++;
+            }
+            firstNode[parts] = nodes;
+            overlayArea = new int[nodes];
+            for (int area = 0; area < names.length; area++) {
+                if (overlayOf[area] >= 0) overlayArea[overlayOf[area]] = area;
+            }
+            // Both directions of every overlay edge and route between regions, counting-sorted by node
+            offsets = new int[nodes + 1];
+            for (int p = 0; p < parts; p++) {
+                int[] edges = workers[p].overlayEdges;
+                for (int e = 0; e < edges.length; e += 3) {
+                    offsets[overlayOf[globalOf[p][edges[e]]] + 1]++;
+                    offsets[overlayOf[globalOf[p][edges[e + 1]]] + 1]++;
+                }
+            }
+            for (int c = 0; c < cutFrom.length; c++) {
+                offsets[overlayOf[cutFrom[c]] + 1]++;
+                offsets[overlayOf[cutTo[c]] + 1]++;
+            }
+            for (int i = 0; i < nodes; i++) offsets[i + 1] += offsets[i];
+            targets = new int[offsets[nodes]];
+            distances = new int[offsets[nodes]];
+            int[] next = Arrays.copyOf(offsets, nodes);
+            for (int p = 0; p < parts; p++) {
+                int[] edges = workers[p].overlayEdges;
+                for (int e = 0; e < edges.length; e += 3) {
+                    link(next, overlayOf[globalOf[p][edges[e]]], overlayOf[globalOf[p][edges[e + 1]]], edges[e + 2]);
+                }
+                workers[p].overlayEdges = null;
+            }
+            for (int c = 0; c < cutFrom.length; c++) link(next, overlayOf[cutFrom[c]], overlayOf[cutTo[c]], cutDistance[c]);
+        }
+
+        private void link(int[] next, int a, int b, int distance) {
+            targets[next[a]] = b;
+            distances[next[a]++] = distance;
+            targets[next[b]] = a;
+            distances[next[b]++] = distance;
+        }
+
+        // Starts a local worker JVM for every region in the directory (heap from -Dwaste.partition.heap, e.g.
+        // 2g) or, with addresses ("host:port,..." in region order), uses workers that are already running.
+        static PartitionedRouter start(Path directory, String addresses) throws IOException {
+            List<InetSocketAddress> workers = new ArrayList<>();
+            if (addresses != null) {
+                for (String address : addresses.split(",")) {
+                    int colon = address.lastIndexOf(':');
+                    workers.add(new InetSocketAddress(address.substring(0, colon).trim(),
+                            Integer.parseInt(address.substring(colon + 1).trim())));
+                }
+                return new PartitionedRouter(directory, workers, new ArrayList<>());
+            }
+            int parts;
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(directory.resolve("regions.swpart")))) {
+                in.readInt();
+                in.readInt();
+                parts = in.readInt();
+            }
+            List<Process> processes = new ArrayList<>();
+            try {
+                for (int p = 0; p < parts; p++) {
+                    List<String> command = new ArrayList<>();
+                    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+                    String heap = System.getProperty("waste.partition.heap");
+                    if (heap != null) command.add("-Xmx" + heap);
+                    command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"),
+                            WasteCollectionSwingVisualizer.class.getName(), "--partition-worker", directory.toString(),
+                            String.valueOf(p), "0"));
+                    processes.add(new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start());
+                }
+                for (int p = 0; p < parts; p++) {
+                    java.io.BufferedReader out = new java.io.BufferedReader(new java.io.InputStreamReader(
+                            processes.get(p).getInputStream(), StandardCharsets.UTF_8));
+                    String line = out.readLine();
+                    if (line == null || !line.contains("listening on ")) {
+                        throw new IOException("Worker for region " + p + " did not start");
+                    }
+                    workers.add(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                            Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1))));
+                }
+                return new PartitionedRouter(directory, workers, processes);
+            } catch (IOException | RuntimeException e) {
+                for (Process process : processes) process.destroy();
+                throw e;
+            }
+        }
+
+        public int regions() {
+            return workers.length;
+        }
+
+        public boolean knows(String area) {
+            return ids.containsKey(area);
+        }
+
+        public Answer route(String start, String destination, boolean withPath) throws IOException {
+            long started = System.nanoTime();
+            Integer s = ids.get(start);
+            Integer t = ids.get(destination);
+            if (s == null || t == null) return new Answer(new ArrayList<>(), Integer.MAX_VALUE);
+            int sourceRegion = region[s];
+            int targetRegion = region[t];
+            CompletableFuture<End> far = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return from(targetRegion, local[t], -1);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, requests);
+            End near = from(sourceRegion, local[s], sourceRegion == targetRegion ? local[t] : -1);
+            End end = await(far);
+
+            SearchState search = SEARCHES.get();
+            search.reset(overlayArea.length);
+            for (int i = 0; i < near.toBoundary.length; i++) {
+                int d = near.toBoundary[i];
+                if (d != Integer.MAX_VALUE) search.reach(firstNode[sourceRegion] + i, d, -1, d);
+            }
+            int best = near.direct;
+            int last = -1; // overlay node the best route leaves it at; -1 for the way inside the region
+            while (!search.heap.isEmpty() && search.heap.peekKey() < best) {
+                int node = search.heap.poll();
+                int distance = search.distance(node);
+                int offset = node - firstNode[targetRegion];
+                if (offset >= 0 && node < firstNode[targetRegion + 1] && end.toBoundary[offset] != Integer.MAX_VALUE
+                        && (long) distance + end.toBoundary[offset] < best) {
+                    best = distance + end.toBoundary[offset];
+                    last = node;
+                }
+                for (int e = offsets[node]; e < offsets[node + 1]; e++) {
+                    int neighbor = targets[e];
+                    int newDistance = distance + distances[e];
+                    if (newDistance < search.distance(neighbor)) {
+                        search.reach(neighbor, newDistance, node, newDistance);
+                    }
+                }
+            }
+            List<String> path = new ArrayList<>();
+            if (withPath && best != Integer.MAX_VALUE) {
+                if (last < 0) {
+                    for (int id : near.directPath) path.add(names[globalOf[sourceRegion][id]]);
+                } else {
+                    path = unpack(s, t, search, last);
+                }
+            }
+            queries.increment();
+            queryNanos.add(System.nanoTime() - started);
+            return new Answer(path, best);
+        }
+
+        private End from(int part, int source, int target) throws IOException {
+            Worker worker = workers[part];
+            Connection connection = worker.take();
+            connection.out.writeByte(PartitionWorker.FROM);
+            connection.out.writeInt(source);
+            connection.out.writeInt(target);
+            connection.out.flush();
+            End end = new End();
+            end.toBoundary = new int[worker.boundary.length];
+            for (int i = 0; i < end.toBoundary.length; i++) end.toBoundary[i] = connection.in.readInt();
+            if (target >= 0) {
+                end.direct = connection.in.readInt();
+                end.directPath = PartitionWorker.readInts(connection.in);
+            }
+            worker.give(connection);
+            roundTrips.increment();
+            return end;
+        }
+
+        // The areas from s to t along the overlay nodes the search went through, with every stretch inside a
+        // region filled in by that region's worker.
+        private List<String> unpack(int s, int t, SearchState search, int last) throws IOException {
+            List<Integer> nodes = new ArrayList<>();
+            for (int node = last; node != -1; node = search.previous(node)) nodes.add(overlayArea[node]);
+            Collections.reverse(nodes);
+            List<int[]> stretches = new ArrayList<>(); // (from area, to area); a route between regions when they differ
+            stretches.add(new int[] {s, nodes.get(0)});
+            for (int i = 0; i + 1 < nodes.size(); i++) stretches.add(new int[] {nodes.get(i), nodes.get(i + 1)});
+            stretches.add(new int[] {nodes.get(nodes.size() - 1), t});
+
+            Map<Integer, List<Integer>> byRegion = new LinkedHashMap<>(); // region -> indexes into stretches
+            for (int i = 0; i < stretches.size(); i++) {
+                int[] stretch = stretches.get(i);
+                if (region[stretch[0]] == region[stretch[1]] && stretch[0] != stretch[1]) {
+                    byRegion.computeIfAbsent(region[stretch[0]], p -> new ArrayList<>()).add(i);
+                }
+            }
+            int[][] filled = new int[stretches.size()][];
+            List<CompletableFuture<Void>> asked = new ArrayList<>();
+            for (Map.Entry<Integer, List<Integer>> entry : byRegion.entrySet()) {
+                asked.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        paths(entry.getKey(), entry.getValue(), stretches, filled);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }, requests));
+            }
+            for (CompletableFuture<Void> request : asked) await(request);
+
+            List<String> path = new ArrayList<>();
+            path.add(names[s]);
+            for (int i = 0; i < stretches.size(); i++) {
+                int[] stretch = stretches.get(i);
+                if (filled[i] == null) {
+                    if (stretch[0] != stretch[1]) path.add(names[stretch[1]]); // a route between regions
+                    continue;
+                }
+                int[] areas = globalOf[region[stretch[0]]];
+                for (int k = 1; k < filled[i].length; k++) path.add(names[areas[filled[i][k]]]);
+            }
+            return path;
+        }
+
+        private void paths(int part, List<Integer> indexes, List<int[]> stretches, int[][] filled) throws IOException {
+            Worker worker = workers[part];
+            Connection connection = worker.take();
+            connection.out.writeByte(PartitionWorker.PATHS);
+            connection.out.writeInt(indexes.size());
+            for (int index : indexes) {
+                connection.out.writeInt(local[stretches.get(index)[0]]);
+                connection.out.writeInt(local[stretches.get(index)[1]]);
+            }
+            connection.out.flush();
+            for (int index : indexes) filled[index] = PartitionWorker.readInts(connection.in);
+            worker.give(connection);
+            roundTrips.increment();
+        }
+
+        private static <T> T await(CompletableFuture<T> future) throws IOException {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw e;
+            }
+        }
+
+        public String stats() {
+            long answered = queries.sum();
+            return String.format("%d regions, %,d areas, overlay of %,d boundary areas and %,d edges%n"
+                            + "Routes: %,d, mean %.0f us, %.1f worker round trips each",
+                    workers.length, names.length, overlayArea.length, targets.length / 2, answered,
+                    answered == 0 ? 0.0 : queryNanos.sum() / 1000.0 / answered,
+                    answered == 0 ? 0.0 : (double) roundTrips.sum() / answered);
+        }
+
+        public void close() {
+            for (Worker worker : workers) {
+                for (Connection connection : worker.idle) {
+                    try {
+                        connection.socket.close();
+                    } catch (IOException ignored) {
+                        // already gone
+                    }
+                }
+            }
+            for (Process process : processes) process.destroy();
+        }
+    }
+
+    // Plans collection tours that start and end at a depot without exceeding the truck capacity.
+    // Each worker builds a randomised nearest-neighbour solution, improves it with 2-opt and Or-opt,
+    // then keeps perturbing and re-optimising until the time budget is spent; the cheapest plan wins.
+    private static class TourPlanner {
+        // The matrix for the last depot/stop set, reused while the graph snapshot is unchanged
+        private static CompactGraph cachedGraph;
+        private static List<String> cachedPoints;
+        private static DistanceMatrix cachedMatrix;
+        // Travel times for the last depot/stop set, repaired as the traffic changes
+        private static Traffic cachedTraffic;
+        private static List<String> cachedTimePoints;
+        private static LiveDistanceMatrix cachedTimes;
+
+        static class TourPlan {
+            final List<List<String>> tours = new ArrayList<>(); // stops only, depot excluded
+            final List<List<String>> paths = new ArrayList<>(); // full road paths, depot to depot
+            final List<Integer> loads = new ArrayList<>();
+            final List<String> skipped = new ArrayList<>(); // unreachable or larger than the truck
+            long totalDistance; // km, or seconds when byTime
+            boolean byTime;
+        }
+
+        public static TourPlan plan(CompactGraph graph, String depot, List<String> areas, Map<String, Integer> demands,
+                                    int capacity, long budgetMillis) {
+            List<String> points = points(depot, areas);
+            RouteEngine engine = RouteEngine.current();
+            return solve(new TourPlan(), points, matrixFor(graph, points), new HashSet<>(points), demands, capacity, budgetMillis,
+                    (from, to) -> engine.findRoute(graph, points.get(from), points.get(to), graph.fastestStrategy()));
+        }
+
+        // Like plan, but minimising driving time under the current traffic instead of distance.
+        public static TourPlan planByTime(Traffic traffic, String depot, List<String> areas, Map<String, Integer> demands,
+                                          int capacity, long budgetMillis) {
+            List<String> points = points(depot, areas);
+            LiveDistanceMatrix times = timesFor(traffic, points);
+            TourPlan plan = new TourPlan();
+            plan.byTime = true;
+            return solve(plan, points, times.current(), new HashSet<>(points), demands, capacity, budgetMillis,
+                    (from, to) -> times.path(from, points.get(to)));
+        }
+
+        // Tours through stops, a subset of candidates, by time when traffic is given and by distance otherwise.
+        // The matrix covers all the candidates, so while they stay the same it is reused (or its travel times
+        // repaired) however the stops change from one plan to the next.
+        public static TourPlan planAmong(CompactGraph graph, Traffic traffic, String depot, List<String> candidates,
+                                         Collection<String> stops, Map<String, Integer> demands, int capacity, long budgetMillis) {
+            List<String> points = points(depot, candidates);
+            Set<String> visit = new HashSet<>(stops);
+            if (traffic != null) {
+                LiveDistanceMatrix times = timesFor(traffic, points);
+                TourPlan plan = new TourPlan();
+                plan.byTime = true;
+                return solve(plan, points, times.current(), visit, demands, capacity, budgetMillis,
+                        (from, to) -> times.path(from, points.get(to)));
+            }
+            RouteEngine engine = RouteEngine.current();
+            return solve(new TourPlan(), points, matrixFor(graph, points), visit, demands, capacity, budgetMillis,
+                    (from, to) -> engine.findRoute(graph, points.get(from), points.get(to), graph.fastestStrategy()));
+        }
+
+        private static List<String> points(String depot, List<String> areas) {
+            Set<String> points = new LinkedHashSet<>();
+            points.add(depot);
+            points.addAll(areas);
+            return new ArrayList<>(points);
+        }
+
+        interface Legs {
+            List<String> path(int from, int to); // indexes into the planned points, 0 being the depot
+        }
+
+        // Plans tours through the points that are in visit; the matrix has a row and column for every point.
+        private static TourPlan solve(TourPlan plan, List<String> points, DistanceMatrix matrix, Collection<String> visit,
+                                      Map<String, Integer> demands, int capacity, long budgetMillis, Legs legs) {
+            String depot = points.get(0);
+
+            // Solver indices: 0 is the depot, 1..n the stops that can actually be served
+            List<String> stops = new ArrayList<>();
+            stops.add(depot);
+            List<Integer> columns = new ArrayList<>();
+            columns.add(0);
+            for (int i = 1; i < points.size(); i++) {
+                if (!visit.contains(points.get(i))) continue;
+                int demand = demands.getOrDefault(points.get(i), 0);
+                if (matrix.distance(0, i) == Integer.MAX_VALUE || demand > capacity) {
+                    plan.skipped.add(points.get(i));
+                } else {
+                    stops.add(points.get(i));
+                    columns.add(i);
+                }
+            }
+            int size = stops.size();
+            int[] distances = new int[size * size];
+            int[] demand = new int[size];
+            for (int a = 0; a < size; a++) {
+                demand[a] = a == 0 ? 0 : demands.getOrDefault(stops.get(a), 0);
+                for (int b = 0; b < size; b++) {
+                    distances[a * size + b] = matrix.distance(columns.get(a), columns.get(b));
+                }
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+            List<Callable<Solver>> workers = new ArrayList<>();
+            int parallelism = ForkJoinPool.commonPool().getParallelism();
+            for (int seed = 0; seed < parallelism; seed++) {
+                long workerSeed = seed;
+                workers.add(() -> new Solver(distances, demand, capacity, workerSeed).run(deadline));
+            }
+            Solver best = null;
+            try {
+                for (Future<Solver> result : ForkJoinPool.commonPool().invokeAll(workers)) {
+                    Solver solver = result.get();
+                    if (best == null || solver.bestCost < best.bestCost) best = solver;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Tour planning was interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Tour planning failed", e.getCause());
+            }
+
+            for (int r = 0; r < best.bestRouteCount; r++) {
+                List<String> tour = new ArrayList<>();
+                List<String> path = new ArrayList<>();
+                path.add(depot);
+                int load = 0;
+                int at = 0;
+                for (int i = 0; i <= best.bestLengths[r]; i++) {
+                    int next = i < best.bestLengths[r] ? columns.get(best.bestTours[r][i]) : 0;
+                    if (i < best.bestLengths[r]) {
+                        tour.add(points.get(next));
+                        load += demand[best.bestTours[r][i]];
+                    }
+                    List<String> leg = legs.path(at, next);
+                    path.addAll(leg.subList(Math.min(1, leg.size()), leg.size()));
+                    at = next;
+                }
+                plan.tours.add(tour);
+                plan.paths.add(path);
+                plan.loads.add(load);
+            }
+            plan.totalDistance = best.bestCost;
+            return plan;
+        }
+
+        private static synchronized DistanceMatrix matrixFor(CompactGraph graph, List<String> points) {
+            if (graph != cachedGraph || !points.equals(cachedPoints)) {
+                cachedMatrix = DistanceMatrix.compute(graph, points, points);
+                cachedGraph = graph;
+                cachedPoints = new ArrayList<>(points);
+            }
+            return cachedMatrix;
+        }
+
+        private static synchronized LiveDistanceMatrix timesFor(Traffic traffic, List<String> points) {
+            if (traffic != cachedTraffic || !points.equals(cachedTimePoints)) {
+                cachedTimes = new LiveDistanceMatrix(traffic, points, points);
+                cachedTraffic = traffic;
+                cachedTimePoints = new ArrayList<>(points);
+            }
+            return cachedTimes;
+        }
+
+        // One iterated-local-search worker over a symmetric distance matrix. Tours hold stop indices
+        // without the depot (index 0), which is implicitly at both ends.
+        private static class Solver {
+            private static final int MAX_SEGMENT = 3;
+
+            private final int[] distances;
+            private final int[] demand;
+            private final int size;
+            private final int capacity;
+            private final Random random;
+            private final boolean randomized;
+            private int[][] tours;
+            private int[] lengths;
+            private int[] loads;
+            private int routeCount;
+            int[][] bestTours;
+            int[] bestLengths;
+            int bestRouteCount;
+            long bestCost = Long.MAX_VALUE;
+
+            Solver(int[] distances, int[] demand, int capacity, long seed) {
+                this.distances = distances;
+                this.demand = demand;
+                this.size = demand.length;
+                this.capacity = capacity;
+                this.random = new Random(seed);
+                this.randomized = seed != 0;
+                tours = new int[Math.max(1, size)][Math.max(1, size)];
+                lengths = new int[tours.length];
+                loads = new int[tours.length];
+            }
+
+            Solver run(long deadline) {
+                construct();
+                improve(deadline);
+                keepIfBest();
+                while (System.nanoTime() < deadline && size > 2) {
+                    for (int kick = 0; kick < 2; kick++) randomMove();
+                    improve(deadline);
+                    if (!keepIfBest()) restoreBest();
+                }
+                if (bestTours == null) keepIfBest();
+                return this;
+            }
+
+            private int d(int a, int b) {
+                return distances[a * size + b];
+            }
+
+            // Stop at position p of tour r, where positions 0 and length + 1 are the depot.
+            private int node(int r, int p) {
+                return p == 0 || p == lengths[r] + 1 ? 0 : tours[r][p - 1];
+            }
+
+            // Nearest feasible stop first; worker 0 is fully greedy, the others pick among the 3 nearest.
+            private void construct() {
+                boolean[] visited = new boolean[size];
+                int remaining = size - 1;
+                routeCount = 0;
+                while (remaining > 0) {
+                    int r = routeCount++;
+                    lengths[r] = 0;
+                    loads[r] = 0;
+                    int at = 0;
+                    while (true) {
+                        int[] nearest = {-1, -1, -1};
+                        for (int stop = 1; stop < size; stop++) {
+                            if (visited[stop] || loads[r] + demand[stop] > capacity) continue;
+                            for (int k = 0; k < nearest.length; k++) {
+                                if (nearest[k] < 0 || d(at, stop) < d(at, nearest[k])) {
+                                    System.arraycopy(nearest, k, nearest, k + 1, nearest.length - k - 1);
+                                    nearest[k] = stop;
+                                    break;
+                                }
+                            }
+                        }
+                        if (nearest[0] < 0) break;
+                        int pick = nearest[0];
+                        if (randomized && nearest[1] >= 0 && random.nextInt(4) == 0) {
+                            pick = nearest[random.nextInt(nearest[2] >= 0 ? 3 : 2)];
+                        }
+                        visited[pick] = true;
+                        remaining--;
+                        tours[r][lengths[r]++] = pick;
+                        loads[r] += demand[pick];
+                        at = pick;
+                    }
+                }
+            }
+
+            private void improve(long deadline) {
+                boolean improved = true;
+                while (improved && System.nanoTime() < deadline) {
+                    improved = false;
+                    for (int r = 0; r < routeCount; r++) {
+                        improved |= twoOpt(r);
+                    }
+                    improved |= orOpt();
+                }
+            }
+
+            // Reverses a stretch of one tour when that shortens it.
+            private boolean twoOpt(int r) {
+                boolean improved = false;
+                for (int i = 0; i < lengths[r] - 1; i++) {
+                    for (int j = i + 2; j <= lengths[r]; j++) {
+                        int a = node(r, i), b = node(r, i + 1), c = node(r, j), e = node(r, j + 1);
+                        long delta = (long) d(a, c) + d(b, e) - d(a, b) - d(c, e);
+                        if (delta < 0) {
+                            for (int lo = i, hi = j - 1; lo < hi; lo++, hi--) {
+                                int swap = tours[r][lo];
+                                tours[r][lo] = tours[r][hi];
+                                tours[r][hi] = swap;
+                            }
+                            improved = true;
+                        }
+                    }
+                }
+                return improved;
+            }
+
+            // Moves a segment of up to three stops (possibly reversed) to the cheapest feasible position.
+            private boolean orOpt() {
+                for (int a = 0; a < routeCount; a++) {
+                    for (int length = 1; length <= MAX_SEGMENT; length++) {
+                        for (int start = 0; start + length <= lengths[a]; start++) {
+                            int first = tours[a][start];
+                            int last = tours[a][start + length - 1];
+                            int prev = node(a, start);
+                            int next = node(a, start + length + 1);
+                            long removal = (long) d(prev, first) + d(last, next) - d(prev, next);
+                            int segmentLoad = 0;
+                            for (int k = start; k < start + length; k++) segmentLoad += demand[tours[a][k]];
+
+                            for (int b = 0; b < routeCount; b++) {
+                                if (b != a && loads[b] + segmentLoad > capacity) continue;
+                                for (int q = 0; q <= lengths[b]; q++) {
+                                    if (b == a && q >= start && q <= start + length) continue;
+                                    int x = node(b, q);
+                                    int y = node(b, q + 1);
+                                    long forward = (long) d(x, first) + d(last, y) - d(x, y);
+                                    long reversed = (long) d(x, last) + d(first, y) - d(x, y);
+                                    long insertion = Math.min(forward, reversed);
+                                    if (insertion - removal < 0) {
+                                        moveSegment(a, start, length, b, q, reversed < forward);
+                                        return true;
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+                return false;
+            }
+
+            // Inserts tours[a][start .. start + length) between positions q and q + 1 of tour b.
+            private void moveSegment(int a, int start, int length, int b, int q, boolean reverse) {
+                int[] segment = Arrays.copyOfRange(tours[a], start, start + length);
+                if (reverse) {
+                    for (int lo = 0, hi = length - 1; lo < hi; lo++, hi--) {
+                        int swap = segment[lo];
+                        segment[lo] = segment[hi];
+                        segment[hi] = swap;
+                    }
+                }
+                System.arraycopy(tours[a], start + length, tours[a], start, lengths[a] - start - length);
+                lengths[a] -= length;
+                int segmentLoad = 0;
+                for (int stop : segment) segmentLoad += demand[stop];
+                loads[a] -= segmentLoad;
+                if (b == a && q > start) q -= length;
+                System.arraycopy(tours[b], q, tours[b], q + length, lengths[b] - q);
+                System.arraycopy(segment, 0, tours[b], q, length);
+                lengths[b] += length;
+                loads[b] += segmentLoad;
+                if (lengths[a] == 0) { // drop the emptied tour
+                    routeCount--;
+                    int[] emptied = tours[a];
+                    tours[a] = tours[routeCount];
+                    lengths[a] = lengths[routeCount];
+                    loads[a] = loads[routeCount];
+                    tours[routeCount] = emptied;
+                }
+            }
+
+            // Perturbation: relocate one random stop to a random feasible position.
+            private void randomMove() {
+                int a = random.nextInt(routeCount);
+                int start = random.nextInt(lengths[a]);
+                int stop = tours[a][start];
+                int b = random.nextInt(routeCount);
+                if (b != a && loads[b] + demand[stop] > capacity) return;
+                int q = random.nextInt(lengths[b] + 1);
+                if (b == a && (q == start || q == start + 1)) return;
+                moveSegment(a, start, 1, b, q, false);
+            }
+
+            private long cost() {
+                long total = 0;
+                for (int r = 0; r < routeCount; r++) {
+                    for (int p = 0; p <= lengths[r]; p++) {
+                        total += d(node(r, p), node(r, p + 1));
+                    }
+                }
+                return total;
+            }
+
+            private boolean keepIfBest() {
+                long cost = cost();
+                if (cost >= bestCost) return false;
+                bestCost = cost;
+                bestRouteCount = routeCount;
+                bestLengths = Arrays.copyOf(lengths, lengths.length);
+                bestTours = new int[tours.length][];
+                for (int r = 0; r < tours.length; r++) bestTours[r] = Arrays.copyOf(tours[r], tours[r].length);
+                return true;
+            }
+
+            private void restoreBest() {
+                routeCount = bestRouteCount;
+                for (int r = 0; r < tours.length; r++) {
+                    System.arraycopy(bestTours[r], 0, tours[r], 0, tours[r].length);
+                    lengths[r] = bestLengths[r];
+                    loads[r] = 0;
+                    for (int p = 0; p < lengths[r]; p++) loads[r] += demand[tours[r][p]];
+                }
+            }
+        }
+    }
+
+    // Fill levels reported by the smart bins, one reading per line: "time,bin,area,fill[,capacity]" with the
+    // time in epoch milliseconds, the bin's id, the area it stands in, how full it is (percent) and,
+    // optionally, how many kg it holds when full. Readings come from a replayed file or TCP connections.
+    //
+    // Feed threads parse their input into batches and publish them on a fixed ring. Publishing is
+    // lock-free (one atomic add claims a batch of slots); a feed that gets RING readings ahead of the
+    // writer waits, so a fast feed is slowed down instead of using more memory. One writer thread drains
+    // the ring, up to DRAIN readings at a time, into column arrays:
+    //   - the latest level and capacity of every bin, and the waste waiting in every area (kg), which it
+    //     copies into the per-area map the tour planners read;
+    //   - per area with bins, 15-minute buckets over the last day: readings, sum and highest fill, and the
+    //     waste added to the bins (rises between a bin's readings), for windowed summaries.
+    // Memory is the ring plus a few values per bin and per area, and at most MAX_BINS bins are tracked.
+    // An area needs collection while one of its bins is THRESHOLD percent full or more; listeners hear
+    // when an area starts or stops needing collection. Windows end at the newest reading, not the wall
+    // clock, so a replayed day gives the same summaries as the live one did.
+    private static class BinSensors {
+        static final int RING = 1 << 16; // slots, a power of two
+        static final int BATCH = 256; // readings a feed publishes at once
+        static final int DRAIN = 4096; // readings the writer applies under one lock
+        static final int MAX_BINS = 1 << 20;
+        static final long BUCKET_MILLIS = 15 * 60_000;
+        static final int BUCKETS = 96; // one day
+        static final float THRESHOLD = Float.parseFloat(System.getProperty("waste.sensors.threshold", "80"));
+        static final float HYSTERESIS = 10; // a full bin stays full until it reports below THRESHOLD - HYSTERESIS
+        static final float DEFAULT_CAPACITY = 100; // kg, for bins whose readings never say
+
+        private final Graph graph;
+        private final Map<String, Integer> waste; // kg waiting per area, shared with the planners
+
+        // The ring: a slot is readable once published holds its sequence number
+        private final long[] ringTimes = new long[RING];
+        private final int[] ringBins = new int[RING];
+        private final int[] ringAreas = new int[RING];
+        private final float[] ringLevels = new float[RING];
+        private final float[] ringCapacities = new float[RING];
+        private final AtomicLongArray published = new AtomicLongArray(RING);
+        private final AtomicLong claimed = new AtomicLong();
+        private volatile long consumed; // every sequence below has been applied
+        private volatile boolean stopped;
+
+        // Bin ids are assigned by the feeds, in order of first appearance
+        private final ConcurrentHashMap<String, Integer> binIds = new ConcurrentHashMap<>();
+
+        // Columns below are written by the writer thread under the lock on this
+        private float[] binLevel = new float[1024];
+        private float[] binCapacity = new float[1024];
+        private int[] binArea = new int[1024];
+        private long[] binSeen = new long[1024]; // time of the applied reading, 0 when none yet
+        private boolean[] binFull = new boolean[1024];
+        private double[] areaKg = new double[0];
+        private int[] areaBins = new int[0];
+        private int[] areaFull = new int[0]; // bins at or over the threshold
+        private boolean[] areaAnnounced = new boolean[0]; // needs collection, as last told to listeners
+        private int[] areaRow = new int[0]; // 1 + row in the bucket columns, 0 for areas without bins
+        private int rows;
+        private int[] bucketNumber = new int[0]; // time / BUCKET_MILLIS of the bucket in the slot
+        private int[] bucketReadings = new int[0];
+        private float[] bucketSum = new float[0];
+        private float[] bucketHigh = new float[0];
+        private float[] bucketAdded = new float[0];
+        private int[] dirty = new int[64];
+        private int dirtyCount;
+        private boolean[] isDirty = new boolean[0];
+        private long newest; // time of the newest reading
+        private long applied;
+        private long stale; // older than the bin's last reading
+
+        private final LongAdder rejected = new LongAdder();
+        private final List<Consumer<Event>> listeners = new CopyOnWriteArrayList<>();
+
+        static class Event {
+            final String area;
+            final boolean needsCollection; // false: collected, every bin is below the threshold again
+            final int kg;
+            final long time;
+
+            Event(String area, boolean needsCollection, int kg, long time) {
+                this.area = area;
+                this.needsCollection = needsCollection;
+                this.kg = kg;
+                this.time = time;
+            }
+        }
+
+        static class AreaStatus {
+            final String area;
+            final int bins;
+            final int kg;
+            final int fullBins;
+            final boolean needsCollection;
+            final long readings; // in the window
+            final float meanLevel; // percent, over the window's readings; NaN without any
+            final float highestLevel;
+            final double kgPerHour; // waste added over the window, collections not subtracted
+
+            AreaStatus(String area, int bins, int kg, int fullBins, boolean needsCollection, long readings,
+                       float meanLevel, float highestLevel, double kgPerHour) {
+                this.area = area;
+                this.bins = bins;
+                this.kg = kg;
+                this.fullBins = fullBins;
+                this.needsCollection = needsCollection;
+                this.readings = readings;
+                this.meanLevel = meanLevel;
+                this.highestLevel = highestLevel;
+                this.kgPerHour = kgPerHour;
+            }
+        }
+
+        BinSensors(Graph graph, Map<String, Integer> waste) {
+            this.graph = graph;
+            this.waste = waste;
+            for (int i = 0; i < RING; i++) published.set(i, -1);
+            Thread writer = new Thread(this::drain, "sensor-writer");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        void addListener(Consumer<Event> listener) {
+            listeners.add(listener);
+        }
+
+        void close() {
+            stopped = true;
+        }
+
+        // Replays a recorded feed on a background thread. At speed 1 readings are paced by their times,
+        // at speed 60 an hour takes a minute, and at speed 0 they go in as fast as they can be applied.
+        // Completes with the number of readings accepted.
+        CompletableFuture<Long> replay(Path file, double speed) {
+            CompletableFuture<Long> done = new CompletableFuture<>();
+            Thread thread = new Thread(() -> {
+                try (java.io.InputStream in = Files.newInputStream(file)) {
+                    done.complete(ingest(in, speed));
+                } catch (IOException | RuntimeException e) {
+                    done.completeExceptionally(e);
+                }
+            }, "sensor-replay");
+            thread.setDaemon(true);
+            thread.start();
+            return done;
+        }
+
+        // Accepts feed connections on the loopback interface, each read on its own thread.
+        java.net.ServerSocket listen(int port) throws IOException {
+            java.net.ServerSocket server = new java.net.ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(() -> {
+                int connections = 0;
+                while (!stopped && !server.isClosed()) {
+                    try {
+                        java.net.Socket socket = server.accept();
+                        Thread reader = new Thread(() -> {
+                            try (socket) {
+                                ingest(socket.getInputStream(), 0);
+                            } catch (IOException e) {
+                                System.err.println("Sensor feed from " + socket.getRemoteSocketAddress() + " failed: " + e.getMessage());
+                            }
+                        }, "sensor-feed-" + ++connections);
+                        reader.setDaemon(true);
+                        reader.start();
+                    } catch (IOException e) {
+                        if (!server.isClosed()) System.err.println("Sensor feed listener stopped: " + e.getMessage());
+                        return;
+                    }
+                }
+            }, "sensor-listener");
+            acceptor.setDaemon(true);
+            acceptor.start();
+            return server;
+        }
+
+        // Reads a feed to its end; returns the number of readings accepted. Lines that cannot be read, or
+        // name an unknown area, are counted as rejected and skipped.
+        long ingest(java.io.InputStream in, double speed) throws IOException {
+            Batch batch = new Batch();
+            byte[] buffer = new byte[1 << 16];
+            int length = 0;
+            long accepted = 0;
+            long firstTime = Long.MIN_VALUE;
+            long startNanos = System.nanoTime();
+            boolean firstLine = true;
+            while (true) {
+                int read = in.read(buffer, length, buffer.length - length);
+                if (read < 0 && length == 0) break;
+                if (read > 0) length += read;
+                int start = 0;
+                for (int i = 0; i < length; i++) {
+                    if (buffer[i] != '\n') continue;
+                    int end = i > start && buffer[i - 1] == '\r' ? i - 1 : i;
+                    if (parse(buffer, start, end, batch, firstLine)) {
+                        accepted++;
+                        long time = batch.times[batch.size - 1];
+                        if (speed > 0) {
+                            if (firstTime == Long.MIN_VALUE) firstTime = time;
+                            long due = startNanos + (long) ((time - firstTime) * 1e6 / speed);
+                            if (due - System.nanoTime() > 1_000_000) {
+                                publish(batch);
+                                LockSupport.parkNanos(due - System.nanoTime());
+                            }
+                        }
+                        if (batch.size == BATCH) publish(batch);
+                    }
+                    firstLine = false;
+                    start = i + 1;
+                }
+                if (read < 0) {
+                    if (start < length && parse(buffer, start, length, batch, firstLine)) accepted++;
+                    break;
+                }
+                if (start == 0 && length == buffer.length) {
+                    rejected.increment(); // a line longer than the buffer
+                    length = 0;
+                    continue;
+                }
+                System.arraycopy(buffer, start, buffer, 0, length - start);
+                length -= start;
+            }
+            publish(batch);
+            return accepted;
+        }
+
+        // Readings parsed by one feed, waiting to be published together
+        private static class Batch {
+            final long[] times = new long[BATCH];
+            final int[] bins = new int[BATCH];
+            final int[] areas = new int[BATCH];
+            final float[] levels = new float[BATCH];
+            final float[] capacities = new float[BATCH];
+            final int[] commas = new int[5]; // positions in the line being parsed
+            int size;
+        }
+
+        private boolean parse(byte[] line, int start, int end, Batch batch, boolean firstLine) {
+            if (start == end || line[start] == '#') return false;
+            int[] commas = batch.commas;
+            int fields = 0;
+            for (int i = start; i < end && fields < commas.length; i++) {
+                if (line[i] == ',') commas[fields++] = i;
+            }
+            if (fields < 3) {
+                rejected.increment();
+                return false;
+            }
+            long time = wholeNumber(line, start, commas[0]);
+            if (time < 0) {
+                if (!firstLine) rejected.increment(); // a header names the columns
+                return false;
+            }
+            float level = number(line, commas[2] + 1, fields > 3 ? commas[3] : end);
+            float capacity = fields > 3 ? number(line, commas[3] + 1, fields > 4 ? commas[4] : end) : Float.NaN;
+            if (!(level >= 0 && level <= 100) || (fields > 3 && !(capacity > 0)) || commas[0] + 1 == commas[1]) {
+                rejected.increment();
+                return false;
+            }
+            int area = graph.compact().idOf(text(line, commas[1] + 1, commas[2]));
+            int bin = area < 0 ? -1 : binId(text(line, commas[0] + 1, commas[1]));
+            if (bin < 0) {
+                rejected.increment();
+                return false;
+            }
+            int i = batch.size++;
+            batch.times[i] = time;
+            batch.bins[i] = bin;
+            batch.areas[i] = area;
+            batch.levels[i] = level;
+            batch.capacities[i] = capacity;
+            return true;
+        }
+
+        private static String text(byte[] line, int start, int end) {
+            return new String(line, start, end - start, StandardCharsets.UTF_8).trim();
+        }
+
+        // Digits only; -1 when there are none or anything else
+        private static long wholeNumber(byte[] line, int start, int end) {
+            if (start == end) return -1;
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                int digit = line[i] - '0';
+                if (digit < 0 || digit > 9 || value > Long.MAX_VALUE / 10) return -1;
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        // A plain decimal such as 72 or 72.5; NaN for anything else
+        private static float number(byte[] line, int start, int end) {
+            while (start < end && line[start] == ' ') start++;
+            while (end > start && line[end - 1] == ' ') end--;
+            long digits = 0;
+            int scale = -1;
+            int count = 0;
+            for (int i = start; i < end; i++) {
+                if (line[i] == '.' && scale < 0) {
+                    scale = 0;
+                } else if (line[i] >= '0' && line[i] <= '9' && count < 15) {
+                    digits = digits * 10 + line[i] - '0';
+                    count++;
+                    if (scale >= 0) scale++;
+                } else {
+                    return Float.NaN;
+                }
+            }
+            if (count == 0) return Float.NaN;
+            return (float) (scale > 0 ? digits / Math.pow(10, scale) : digits);
+        }
+
+        private int binId(String name) {
+            Integer id = binIds.get(name);
+            if (id != null) return id;
+            synchronized (binIds) {
+                id = binIds.get(name);
+                if (id != null) return id;
+                if (binIds.size() == MAX_BINS) return -1;
+                binIds.put(name, binIds.size());
+                return binIds.size() - 1;
+            }
+        }
+
+        private void publish(Batch batch) {
+            int size = batch.size;
+            if (size == 0) return;
+            batch.size = 0;
+            long first = claimed.getAndAdd(size);
+            int idle = 0;
+            while (first + size - consumed > RING) {
+                if (stopped) return;
+                idle = backOff(idle);
+            }
+            for (int i = 0; i < size; i++) {
+                int slot = (int) (first + i) & (RING - 1);
+                ringTimes[slot] = batch.times[i];
+                ringBins[slot] = batch.bins[i];
+                ringAreas[slot] = batch.areas[i];
+                ringLevels[slot] = batch.levels[i];
+                ringCapacities[slot] = batch.capacities[i];
+                published.lazySet(slot, first + i);
+            }
+        }
+
+        private static int backOff(int idle) {
+            if (idle < 100) Thread.onSpinWait();
+            else LockSupport.parkNanos(idle < 1000 ? 50_000 : 1_000_000);
+            return idle + 1;
+        }
+
+        private void drain() {
+            long next = 0;
+            int idle = 0;
+            List<Event> events = new ArrayList<>();
+            while (!stopped) {
+                int count = 0;
+                while (count < DRAIN && published.get((int) (next + count) & (RING - 1)) == next + count) count++;
+                if (count == 0) {
+                    idle = backOff(idle);
+                    continue;
+                }
+                idle = 0;
+                long started = System.nanoTime();
+                synchronized (this) {
+                    for (int i = 0; i < count; i++) apply((int) (next + i) & (RING - 1));
+                    finishBatch(events);
+                }
+                next += count;
+                consumed = next;
+                Metrics.SENSOR_BATCHES.recordSince(started);
+                for (Event event : events) {
+                    for (Consumer<Event> listener : listeners) listener.accept(event);
+                }
+                events.clear();
+            }
+        }
+
+        private void apply(int slot) {
+            long time = ringTimes[slot];
+            int bin = ringBins[slot];
+            int area = ringAreas[slot];
+            float level = ringLevels[slot];
+            growBins(bin);
+            growAreas(area);
+            if (time < binSeen[bin]) {
+                stale++;
+                return;
+            }
+            float before = Float.NaN; // kg in the bin at its last reading, if that was in the same area
+            if (binSeen[bin] != 0) {
+                if (binArea[bin] == area) before = binLevel[bin] * binCapacity[bin] / 100;
+                remove(bin);
+            } else {
+                binCapacity[bin] = DEFAULT_CAPACITY;
+            }
+            if (!Float.isNaN(ringCapacities[slot])) binCapacity[bin] = ringCapacities[slot];
+            binLevel[bin] = level;
+            binArea[bin] = area;
+            binSeen[bin] = Math.max(1, time);
+            binFull[bin] = binFull[bin] ? level >= THRESHOLD - HYSTERESIS : level >= THRESHOLD;
+            add(bin);
+            applied++;
+            newest = Math.max(newest, time);
+
+            int number = (int) (time / BUCKET_MILLIS);
+            int at = row(area) * BUCKETS + number % BUCKETS;
+            if (bucketNumber[at] > number) return; // older than the day the buckets hold
+            if (bucketNumber[at] < number) {
+                bucketNumber[at] = number;
+                bucketReadings[at] = 0;
+                bucketSum[at] = 0;
+                bucketHigh[at] = 0;
+                bucketAdded[at] = 0;
+            }
+            bucketReadings[at]++;
+            bucketSum[at] += level;
+            bucketHigh[at] = Math.max(bucketHigh[at], level);
+            float after = level * binCapacity[bin] / 100;
+            if (after > before) bucketAdded[at] += after - before;
+        }
+
+        private void remove(int bin) {
+            int area = binArea[bin];
+            areaKg[area] -= binLevel[bin] * binCapacity[bin] / 100;
+            areaBins[area]--;
+            if (binFull[bin]) areaFull[area]--;
+            markDirty(area);
+        }
+
+        private void add(int bin) {
+            int area = binArea[bin];
+            areaKg[area] += binLevel[bin] * binCapacity[bin] / 100;
+            areaBins[area]++;
+            if (binFull[bin]) areaFull[area]++;
+            markDirty(area);
+        }
+
+        private void markDirty(int area) {
+            if (isDirty[area]) return;
+            isDirty[area] = true;
+            if (dirtyCount == dirty.length) dirty = Arrays.copyOf(dirty, 2 * dirtyCount);
+            dirty[dirtyCount++] = area;
+        }
+
+        // Publishes the waiting waste of the areas the batch touched and notes which changed state.
+        private void finishBatch(List<Event> events) {
+            CompactGraph snapshot = graph.compact();
+            for (int i = 0; i < dirtyCount; i++) {
+                int area = dirty[i];
+                isDirty[area] = false;
+                String name = snapshot.areaName(area);
+                int kg = (int) Math.round(Math.max(0, areaKg[area]));
+                waste.put(name, kg);
+                boolean needsCollection = areaFull[area] > 0;
+                if (needsCollection != areaAnnounced[area]) {
+                    areaAnnounced[area] = needsCollection;
+                    events.add(new Event(name, needsCollection, kg, newest));
+                }
+            }
+            dirtyCount = 0;
+        }
+
+        private void growBins(int bin) {
+            if (bin < binLevel.length) return;
+            int size = Math.max(bin + 1, 2 * binLevel.length);
+            binLevel = Arrays.copyOf(binLevel, size);
+            binCapacity = Arrays.copyOf(binCapacity, size);
+            binArea = Arrays.copyOf(binArea, size);
+            binSeen = Arrays.copyOf(binSeen, size);
+            binFull = Arrays.copyOf(binFull, size);
+        }
+
+        private void growAreas(int area) {
+            if (area < areaKg.length) return;
+            int size = Math.max(area + 1, 2 * areaKg.length);
+            areaKg = Arrays.copyOf(areaKg, size);
+            areaBins = Arrays.copyOf(areaBins, size);
+            areaFull = Arrays.copyOf(areaFull, size);
+            areaAnnounced = Arrays.copyOf(areaAnnounced, size);
+            areaRow = Arrays.copyOf(areaRow, size);
+            isDirty = Arrays.copyOf(isDirty, size);
+        }
+
+        private int row(int area) {
+            if (areaRow[area] == 0) {
+                if (rows * BUCKETS == bucketNumber.length) {
+                    int size = BUCKETS * (rows + Math.max(1, rows / 2));
+                    bucketNumber = Arrays.copyOf(bucketNumber, size);
+                    bucketReadings = Arrays.copyOf(bucketReadings, size);
+                    bucketSum = Arrays.copyOf(bucketSum, size);
+                    bucketHigh = Arrays.copyOf(bucketHigh, size);
+                    bucketAdded = Arrays.copyOf(bucketAdded, size);
+                    Arrays.fill(bucketNumber, rows * BUCKETS, size, -1);
+                }
+                areaRow[area] = ++rows;
+            }
+            return areaRow[area] - 1;
+        }
+
+        // Every area with bins, over the last minutes (at most a day) before the newest reading
+        synchronized List<AreaStatus> summary(int minutes) {
+            CompactGraph snapshot = graph.compact();
+            int last = (int) (newest / BUCKET_MILLIS);
+            int window = (int) Math.min(BUCKETS, Math.max(1, minutes * 60_000L / BUCKET_MILLIS));
+            List<AreaStatus> statuses = new ArrayList<>();
+            for (int area = 0; area < areaRow.length; area++) {
+                if (areaRow[area] == 0 || areaBins[area] == 0) continue;
+                int row = (areaRow[area] - 1) * BUCKETS;
+                long readings = 0;
+                double sum = 0;
+                float high = 0;
+                double added = 0;
+                for (int number = Math.max(0, last - window + 1); number <= last; number++) {
+                    int at = row + number % BUCKETS;
+                    if (bucketNumber[at] != number) continue;
+                    readings += bucketReadings[at];
+                    sum += bucketSum[at];
+                    high = Math.max(high, bucketHigh[at]);
+                    added += bucketAdded[at];
+                }
+                statuses.add(new AreaStatus(snapshot.areaName(area), areaBins[area], (int) Math.round(Math.max(0, areaKg[area])),
+                        areaFull[area], areaFull[area] > 0, readings, readings == 0 ? Float.NaN : (float) (sum / readings),
+                        high, added * 60.0 / (window * BUCKET_MILLIS / 60_000.0)));
+            }
+            statuses.sort(Comparator.comparing(status -> status.area));
+            return statuses;
+        }
+
+        // Areas where a bin is full, by name
+        synchronized List<String> needingCollection() {
+            CompactGraph snapshot = graph.compact();
+            List<String> areas = new ArrayList<>();
+            for (int area = 0; area < areaFull.length; area++) {
+                if (areaFull[area] > 0) areas.add(snapshot.areaName(area));
+            }
+            Collections.sort(areas);
+            return areas;
+        }
+
+        // Areas that have (or had) bins, by name
+        synchronized List<String> areas() {
+            CompactGraph snapshot = graph.compact();
+            List<String> areas = new ArrayList<>();
+            for (int area = 0; area < areaRow.length; area++) {
+                if (areaRow[area] != 0) areas.add(snapshot.areaName(area));
+            }
+            Collections.sort(areas);
+            return areas;
+        }
+
+        synchronized long applied() {
+            return applied;
+        }
+
+        synchronized long stale() {
+            return stale;
+        }
+
+        synchronized long newest() {
+            return newest;
+        }
+
+        long rejected() {
+            return rejected.sum();
+        }
+
+        int bins() {
+            return binIds.size();
+        }
+
+        // True once everything published so far has been applied
+        boolean caughtUp() {
+            return consumed == claimed.get();
+        }
+    }
+
+    // Keeps collection tours planned for the areas the bin sensors say need collection. A change in that set
+    // schedules a new plan after DELAY_MILLIS, so a burst of readings leads to one plan. The depot and truck
+    // capacity come from -Dwaste.depot and -Dwaste.truck.capacity until a tour is planned by hand.
+    private static class CollectionScheduler {
+        static final long DELAY_MILLIS = 2000;
+        static final long BUDGET_MILLIS = 500;
+        // Up to this many sensor areas the matrix covers all of them, so it is reused as stops come and go;
+        // beyond it the matrix covers just the current stops, keeping a plan's searches bounded by them.
+        static final int MAX_CANDIDATES = 200;
+
+        private final Graph graph;
+        private final Traffic traffic;
+        private final BinSensors sensors;
+        private final Map<String, Integer> waste;
+        private final ScheduledExecutorService planner;
+        private final AtomicBoolean pending = new AtomicBoolean();
+        private final List<Consumer<Schedule>> listeners = new CopyOnWriteArrayList<>();
+        private volatile String depot = System.getProperty("waste.depot", "A");
+        private volatile int capacity = Integer.getInteger("waste.truck.capacity", 1000);
+        private volatile Schedule latest;
+        private int revision;
+
+        static class Schedule {
+            final int revision;
+            final long plannedAt; // epoch milliseconds
+            final String depot;
+            final List<String> stops;
+            final TourPlanner.TourPlan plan;
+
+            Schedule(int revision, long plannedAt, String depot, List<String> stops, TourPlanner.TourPlan plan) {
+                this.revision = revision;
+                this.plannedAt = plannedAt;
+                this.depot = depot;
+                this.stops = stops;
+                this.plan = plan;
+            }
+        }
+
+        CollectionScheduler(Graph graph, Traffic traffic, BinSensors sensors, Map<String, Integer> waste) {
+            this.graph = graph;
+            this.traffic = traffic;
+            this.sensors = sensors;
+            this.waste = waste;
+            planner = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "collection-planner");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sensors.addListener(event -> replanSoon());
+        }
+
+        void configure(String depot, int capacity) {
+            this.depot = depot;
+            this.capacity = capacity;
+            replanSoon();
+        }
+
+        void addListener(Consumer<Schedule> listener) {
+            listeners.add(listener);
+        }
+
+        void removeListener(Consumer<Schedule> listener) {
+            listeners.remove(listener);
+        }
+
+        // The current plan, or null before the sensors reported any area needing collection
+        Schedule latest() {
+            return latest;
+        }
+
+        String depot() {
+            return depot;
+        }
+
+        BinSensors sensors() {
+            return sensors;
+        }
+
+        void replanSoon() {
+            if (pending.compareAndSet(false, true)) {
+                planner.schedule(this::replan, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void replan() {
+            pending.set(false);
+            long started = System.nanoTime();
+            try {
+                CompactGraph snapshot = graph.compact();
+                String from = depot;
+                if (snapshot.idOf(from) < 0) {
+                    System.err.println("Cannot plan collection: unknown depot " + from);
+                    return;
+                }
+                List<String> stops = sensors.needingCollection();
+                TourPlanner.TourPlan plan;
+                if (stops.isEmpty()) {
+                    plan = new TourPlanner.TourPlan();
+                } else {
+                    List<String> candidates = sensors.areas();
+                    if (candidates.size() > MAX_CANDIDATES) candidates = stops;
+                    plan = TourPlanner.planAmong(snapshot, traffic.active() ? traffic : null, from, candidates, stops,
+                            new HashMap<>(waste), capacity, BUDGET_MILLIS);
+                }
+                Schedule schedule = new Schedule(++revision, System.currentTimeMillis(), from, stops, plan);
+                latest = schedule;
+                for (Consumer<Schedule> listener : listeners) listener.accept(schedule);
+            } catch (RuntimeException e) {
+                System.err.println("Collection planning failed: " + e);
+            } finally {
+                Metrics.COLLECTION_PLANS.recordSince(started);
+            }
+        }
+    }
+
+    private static class Route {
+        String area;
+        int distance;
+
+        Route(String area, int distance) {
+            this.area = area;
+            this.distance = distance;
+        }
+    }
+
+    // Read-optimised recycling-tip index. Tips are collected in a sorted map and frozen on first lookup
+    // into a trie laid out in plain arrays: nodes are numbered breadth-first, so the children of node i
+    // are the consecutive nodes firstChild[i] .. firstChild[i + 1] - 1, sorted by the label
+    // character on their incoming edge. Identical tips share one entry of the tip pool.
+    //
+    // Items are ranked shortest name first, then alphabetically; every node records the best rank in its
+    // subtree so prefix completion can walk the trie best-first and stop after k results.
+    private static class RecyclingTrie {
+        private final TreeMap<String, String> pending = new TreeMap<>();
+        private volatile Index index; // null after an addition, rebuilt on the next lookup
+
+        private static class Index {
+            final char[] labels;
+            final int[] firstChild;
+            final int[] parents;
+            final int[] tipIds; // -1 when no item ends at the node
+            final String[] tipPool;
+            final int[] ranks; // rank of the item ending at the node, -1 when none
+            final int[] bestRanks; // best rank in the subtree, Integer.MAX_VALUE when empty
+            final int[] nodesByRank;
+            final int maxDepth;
+
+            Index(char[] labels, int[] firstChild, int[] parents, int[] tipIds, String[] tipPool,
+                  int[] ranks, int[] bestRanks, int[] nodesByRank, int maxDepth) {
+                this.labels = labels;
+                this.firstChild = firstChild;
+                this.parents = parents;
+                this.tipIds = tipIds;
+                this.tipPool = tipPool;
+                this.ranks = ranks;
+                this.bestRanks = bestRanks;
+                this.nodesByRank = nodesByRank;
+                this.maxDepth = maxDepth;
+            }
+
+            String itemAt(int node) {
+                int length = 0;
+                for (int n = node; n != 0; n = parents[n]) length++;
+                char[] item = new char[length];
+                for (int n = node; n != 0; n = parents[n]) item[--length] = labels[n];
+                return new String(item);
+            }
+        }
+
+        // One search result: the stored item, its tip and how many edits separate it from the query.
+        static class Suggestion {
+            final String item;
+            final String tip;
+            final int edits;
+
+            Suggestion(String item, String tip, int edits) {
+                this.item = item;
+                this.tip = tip;
+                this.edits = edits;
+            }
+
+            @Override
+            public String toString() {
+                return item.replace('_', ' ');
+            }
+        }
+
+        public synchronized void addRecyclingTip(String item, String tip) {
+            pending.put(lowerCase(item), tip);
+            index = null;
+        }
+
+        public String getRecyclingTip(String item) {
+            Index current = current();
+            int node = find(current, item, item.length());
+            if (node < 0) {
+                return "No recycling tips available for this item.";
+            }
+            int tip = current.tipIds[node];
+            return tip >= 0 ? current.tipPool[tip] : "No specific tip available for this item.";
+        }
+
+        // The tip stored for exactly this item, or null.
+        public String value(String item) {
+            Index current = current();
+            int node = find(current, item, item.length());
+            return node >= 0 && current.tipIds[node] >= 0 ? current.tipPool[current.tipIds[node]] : null;
+        }
+
+        // The best-ranked items starting with prefix, at most limit of them.
+        public List<Suggestion> complete(String prefix, int limit) {
+            Index current = current();
+            List<Suggestion> result = new ArrayList<>();
+            int node = find(current, prefix, prefix.length());
+            if (node < 0 || limit <= 0) {
+                return result;
+            }
+            // Entries pack (rank << 32) | (node << 1) | emit; an emit entry stands for the item ending at
+            // the node, the others for the node's whole subtree.
+            PriorityQueue<Long> frontier = new PriorityQueue<>();
+            frontier.add(pack(current.bestRanks[node], node, 0));
+            while (!frontier.isEmpty() && result.size() < limit) {
+                long entry = frontier.poll();
+                int next = (int) (entry & 0xffffffffL) >>> 1;
+                if ((entry & 1) != 0) {
+                    result.add(suggestion(current, next, 0));
+                    continue;
+                }
+                if (current.ranks[next] >= 0) {
+                    frontier.add(pack(current.ranks[next], next, 1));
+                }
+                for (int child = current.firstChild[next]; child < current.firstChild[next + 1]; child++) {
+                    if (current.bestRanks[child] != Integer.MAX_VALUE) {
+                        frontier.add(pack(current.bestRanks[child], child, 0));
+                    }
+                }
+            }
+            return result;
+        }
+
+        // Items within maxEdits insertions, deletions or substitutions of query, closest first. The trie is
+        // walked depth-first carrying one row of the edit-distance table per level, and a branch is
+        // abandoned as soon as every entry of its row exceeds maxEdits.
+        public List<Suggestion> similar(String query, int maxEdits, int limit) {
+            Index current = current();
+            int n = query.length();
+            char[] folded = new char[n];
+            for (int i = 0; i < n; i++) folded[i] = fold(query.charAt(i));
+            int[][] rows = new int[current.maxDepth + 1][n + 1];
+            for (int j = 0; j <= n; j++) rows[0][j] = j;
+            long[] matches = new long[16];
+            int[] matchCount = {0};
+            matches = similar(current, 0, 0, folded, maxEdits, rows, matches, matchCount);
+            Arrays.sort(matches, 0, matchCount[0]);
+            List<Suggestion> result = new ArrayList<>();
+            for (int i = 0; i < matchCount[0] && result.size() < limit; i++) {
+                long match = matches[i];
+                result.add(suggestion(current, current.nodesByRank[(int) match], (int) (match >>> 32)));
+            }
+            return result;
+        }
+
+        // Completions of the typed text, topped up with close matches when the text is not a known prefix.
+        public List<Suggestion> suggest(String typed, int limit) {
+            List<Suggestion> result = complete(typed, limit);
+            if (result.size() < limit && typed.length() >= 3) {
+                int maxEdits = typed.length() <= 5 ? 1 : 2;
+                for (Suggestion close : similar(typed, maxEdits, limit)) {
+                    if (result.size() == limit) break;
+                    boolean seen = false;
+                    for (Suggestion s : result) seen |= s.item.equals(close.item);
+                    if (!seen) result.add(close);
+                }
+            }
+            return result;
+        }
+
+        private static long[] similar(Index index, int node, int depth, char[] query, int maxEdits,
+                                      int[][] rows, long[] matches, int[] matchCount) {
+            int[] row = rows[depth];
+            int n = query.length;
+            if (index.ranks[node] >= 0 && row[n] <= maxEdits) {
+                if (matchCount[0] == matches.length) matches = Arrays.copyOf(matches, matches.length * 2);
+                matches[matchCount[0]++] = ((long) row[n] << 32) | index.ranks[node];
+            }
+            for (int child = index.firstChild[node]; child < index.firstChild[node + 1]; child++) {
+                char c = index.labels[child];
+                int[] next = rows[depth + 1];
+                next[0] = row[0] + 1;
+                int best = next[0];
+                for (int j = 1; j <= n; j++) {
+                    int cost = query[j - 1] == c ? 0 : 1;
+                    next[j] = Math.min(Math.min(next[j - 1] + 1, row[j] + 1), row[j - 1] + cost);
+                    best = Math.min(best, next[j]);
+                }
+                if (best <= maxEdits) {
+                    matches = similar(index, child, depth + 1, query, maxEdits, rows, matches, matchCount);
+                }
+            }
+            return matches;
+        }
+
+        private static long pack(int rank, int node, int emit) {
+            return ((long) rank << 32) | ((long) node << 1) | emit;
+        }
+
+        private static Suggestion suggestion(Index index, int node, int edits) {
+            int tip = index.tipIds[node];
+            return new Suggestion(index.itemAt(node), tip >= 0 ? index.tipPool[tip] : null, edits);
+        }
+
+        private Index current() {
+            Index current = index;
+            return current != null ? current : freeze();
+        }
+
+        // Node reached by the first length characters of item, or -1.
+        private static int find(Index index, String item, int length) {
+            int node = 0;
+            for (int i = 0; i < length && node >= 0; i++) {
+                node = child(index, node, fold(item.charAt(i)));
+            }
+            return node;
+        }
+
+        private static int child(Index index, int node, char c) {
+            int low = index.firstChild[node];
+            int high = index.firstChild[node + 1] - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char label = index.labels[middle];
+                if (label < c) low = middle + 1;
+                else if (label > c) high = middle - 1;
+                else return middle;
+            }
+            return -1;
+        }
+
+        // Lower case, with spaces and hyphens treated like the underscores used in stored names.
+        static char fold(char c) {
+            return c == ' ' || c == '-' ? '_' : Character.toLowerCase(c);
+        }
+
+        // Same per-character folding as lookups, so stored keys and queries always agree.
+        static String lowerCase(String item) {
+            char[] chars = item.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = fold(chars[i]);
+            }
+            return new String(chars);
+        }
+
+        // Breadth-first over the sorted keys: every node owns the key range [rangeLow, rangeHigh) that
+        // shares its prefix, and splits it by the character at its depth.
+        public synchronized Index freeze() {
+            if (index != null) {
+                return index;
+            }
+            String[] keys = pending.keySet().toArray(new String[0]);
+            // Counting sort by length keeps equal lengths in alphabetical order.
+            int longest = 0;
+            for (String key : keys) longest = Math.max(longest, key.length());
+            int[] nextRank = new int[longest + 2];
+            for (String key : keys) nextRank[key.length() + 1]++;
+            for (int length = 1; length < nextRank.length; length++) nextRank[length] += nextRank[length - 1];
+            int[] keyRanks = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) keyRanks[i] = nextRank[keys[i].length()]++;
+
+            int capacity = 16;
+            char[] labels = new char[capacity];
+            int[] firstChild = new int[capacity + 1];
+            int[] parents = new int[capacity];
+            int[] tipIds = new int[capacity];
+            int[] ranks = new int[capacity];
+            int[] rangeLow = new int[capacity];
+            int[] rangeHigh = new int[capacity];
+            int[] depth = new int[capacity];
+            int[] nodesByRank = new int[keys.length];
+            Map<String, Integer> tipIdsByText = new HashMap<>();
+            List<String> tipPool = new ArrayList<>();
+
+            int count = 1;
+            rangeHigh[0] = keys.length;
+            for (int node = 0; node < count; node++) {
+                firstChild[node] = count;
+                tipIds[node] = -1;
+                ranks[node] = -1;
+                int i = rangeLow[node];
+                int d = depth[node];
+                if (i < rangeHigh[node] && keys[i].length() == d) {
+                    String tip = pending.get(keys[i]);
+                    Integer id = tipIdsByText.get(tip);
+                    if (id == null) {
+                        id = tipPool.size();
+                        tipPool.add(tip);
+                        tipIdsByText.put(tip, id);
+                    }
+                    tipIds[node] = id;
+                    ranks[node] = keyRanks[i];
+                    nodesByRank[keyRanks[i]] = node;
+                    i++;
+                }
+                while (i < rangeHigh[node]) {
+                    char c = keys[i].charAt(d);
+                    int j = i;
+                    while (j < rangeHigh[node] && keys[j].charAt(d) == c) j++;
+                    if (count == capacity) {
+                        capacity *= 2;
+                        labels = Arrays.copyOf(labels, capacity);
+                        firstChild = Arrays.copyOf(firstChild, capacity + 1);
+                        parents = Arrays.copyOf(parents, capacity);
+                        tipIds = Arrays.copyOf(tipIds, capacity);
+                        ranks = Arrays.copyOf(ranks, capacity);
+                        rangeLow = Arrays.copyOf(rangeLow, capacity);
+                        rangeHigh = Arrays.copyOf(rangeHigh, capacity);
+                        depth = Arrays.copyOf(depth, capacity);
+                    }
+                    labels[count] = c;
+                    parents[count] = node;
+                    rangeLow[count] = i;
+                    rangeHigh[count] = j;
+                    depth[count] = d + 1;
+                    count++;
+                    i = j;
+                }
+            }
+            firstChild[count] = count;
+            // Children are numbered after their parents, so one backwards pass settles every subtree.
+            int[] bestRanks = new int[count];
+            for (int node = count - 1; node >= 0; node--) {
+                int best = ranks[node] >= 0 ? ranks[node] : Integer.MAX_VALUE;
+                for (int child = firstChild[node]; child < firstChild[node + 1]; child++) {
+                    best = Math.min(best, bestRanks[child]);
+                }
+                bestRanks[node] = best;
+            }
+            index = new Index(Arrays.copyOf(labels, count), Arrays.copyOf(firstChild, count + 1),
+                    Arrays.copyOf(parents, count), Arrays.copyOf(tipIds, count), tipPool.toArray(new String[0]),
+                    Arrays.copyOf(ranks, count), bestRanks, nodesByRank, count > 0 ? depth[count - 1] : 0);
+            return index;
+        }
+    }
+
+    // Everything known about an item in one place: its waste category and recycling tip, reached through the
+    // item's own name or any alias. Names are folded once by RecyclingTrie.lowerCase and resolved through one
+    // hash lookup. A name that is not known is matched against the catalogue allowing a typo or two, which
+    // costs a trie walk, so those answers, "nothing found" included, are kept in a bounded least-recently-used
+    // cache that is cleared whenever the catalogue changes. A name only displaces the cache's eldest entry if
+    // it has been asked for more often recently (TinyLFU admission), so one-off queries from the long tail
+    // cannot push out the misspellings kiosk users keep making.
+    private static class ProductKnowledge {
+        static class Product {
+            final String name;
+            final String category; // null when unknown
+            final String tip; // null when unknown
+
+            Product(String name, String category, String tip) {
+                this.name = name;
+                this.category = category;
+                this.tip = tip;
+            }
+        }
+
+        private static final Product MISSING = new Product("", null, null);
+
+        private final Map<String, Product> byName = new ConcurrentHashMap<>(); // names and aliases
+        private final Map<String, String> aliases = new HashMap<>(); // guarded by this
+        private final RecyclingTrie names = new RecyclingTrie(); // name or alias -> canonical name
+        private final int cacheCapacity;
+        private final LinkedHashMap<String, Product> cache;
+        private long generation; // guarded by cache; bumped on every catalogue change
+        private final byte[] frequencies; // count-min sketch, guarded by cache
+        private int samples; // guarded by cache
+        private final LongAdder lookups = new LongAdder();
+        private final LongAdder exactHits = new LongAdder();
+        private final LongAdder cacheHits = new LongAdder();
+        private final LongAdder corrected = new LongAdder();
+        private final LongAdder notFound = new LongAdder();
+        private final LongAdder lookupNanos = new LongAdder();
+
+        ProductKnowledge() {
+            this(512);
+        }
+
+        ProductKnowledge(int cacheCapacity) {
+            this.cacheCapacity = cacheCapacity;
+            this.cache = new LinkedHashMap<String, Product>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Product> eldest) {
+                    return size() > cacheCapacity;
+                }
+            };
+            this.frequencies = new byte[Integer.highestOneBit(Math.max(8 * cacheCapacity, 64))];
+        }
+
+        public void addCategory(String item, String category) {
+            update(RecyclingTrie.lowerCase(item), category, null);
+        }
+
+        public void addTip(String item, String tip) {
+            update(RecyclingTrie.lowerCase(item), null, tip);
+        }
+
+        // Makes alias another name for item. An alias that was an item of its own is merged into item.
+        public synchronized void addAlias(String alias, String item) {
+            String name = RecyclingTrie.lowerCase(alias);
+            String target = canonical(RecyclingTrie.lowerCase(item));
+            if (name.equals(target)) {
+                return;
+            }
+            Product merged = byName.get(name);
+            aliases.replaceAll((other, canonical) -> canonical.equals(name) ? target : canonical);
+            aliases.put(name, target);
+            update(target, merged != null ? merged.category : null, merged != null ? merged.tip : null);
+        }
+
+        private synchronized void update(String name, String category, String tip) {
+            String canonical = canonical(name);
+            Product old = byName.get(canonical);
+            Product product = new Product(canonical,
+                    category != null ? category : old != null ? old.category : null,
+                    tip != null ? tip : old != null ? old.tip : null);
+            byName.put(canonical, product);
+            names.addRecyclingTip(canonical, canonical);
+            aliases.forEach((alias, target) -> {
+                if (target.equals(canonical)) {
+                    byName.put(alias, product);
+                    names.addRecyclingTip(alias, canonical);
+                }
+            });
+            synchronized (cache) {
+                cache.clear();
+                generation++;
+            }
+        }
+
+        private synchronized String canonical(String name) {
+            return aliases.getOrDefault(name, name);
+        }
+
+        // The product called item, or the only one within a typo or two of it (two from eight characters on),
+        // or null. The returned product's name tells which one was found.
+        public Product lookup(String item) {
+            long start = System.nanoTime();
+            String name = RecyclingTrie.lowerCase(item.trim());
+            Product product = byName.get(name);
+            if (product != null) {
+                exactHits.increment();
+            } else {
+                long seen;
+                synchronized (cache) {
+                    product = cache.get(name);
+                    seen = generation;
+                    recordAccess(name);
+                }
+                if (product != null) {
+                    cacheHits.increment();
+                } else {
+                    product = closest(name);
+                    synchronized (cache) {
+                        if (generation == seen && admit(name)) cache.put(name, product);
+                    }
+                }
+                if (product == MISSING) notFound.increment();
+                else corrected.increment();
+            }
+            long nanos = System.nanoTime() - start;
+            lookups.increment();
+            lookupNanos.add(nanos);
+            Metrics.PRODUCT_LOOKUPS.record(nanos);
+            return product != MISSING ? product : null;
+        }
+
+        private Product closest(String name) {
+            if (name.length() < 4) {
+                return MISSING;
+            }
+            List<RecyclingTrie.Suggestion> close = names.similar(name, name.length() < 8 ? 1 : 2, 2);
+            if (close.isEmpty() || close.size() > 1 && close.get(1).edits == close.get(0).edits
+                    && !close.get(1).tip.equals(close.get(0).tip)) {
+                return MISSING; // nothing close, or a tie between different products
+            }
+            Product product = byName.get(close.get(0).tip);
+            return product != null ? product : MISSING;
+        }
+
+        private boolean admit(String name) {
+            if (cache.size() < cacheCapacity) {
+                return true;
+            }
+            if (cacheCapacity == 0) {
+                return false;
+            }
+            String eldest = cache.keySet().iterator().next();
+            return frequency(name) > frequency(eldest);
+        }
+
+        // Four counters per name, each saturating at 15; all are halved every 10 * cacheCapacity accesses
+        // so the estimates follow changing popularity.
+        private void recordAccess(String name) {
+            int hash = name.hashCode();
+            for (int i = 0; i < 4; i++) {
+                int slot = sketchSlot(hash, i);
+                if (frequencies[slot] < 15) frequencies[slot]++;
+            }
+            if (++samples >= 10 * cacheCapacity) {
+                for (int slot = 0; slot < frequencies.length; slot++) frequencies[slot] >>= 1;
+                samples /= 2;
+            }
+        }
+
+        private int frequency(String name) {
+            int hash = name.hashCode();
+            int frequency = 15;
+            for (int i = 0; i < 4; i++) frequency = Math.min(frequency, frequencies[sketchSlot(hash, i)]);
+            return frequency;
+        }
+
+        private int sketchSlot(int hash, int i) {
+            int mixed = (hash + i) * (0x9E3779B9 + 2 * i);
+            return (mixed ^ (mixed >>> 16)) & (frequencies.length - 1);
+        }
+
+        // Every product under its canonical name, for saving.
+        public synchronized List<Product> products() {
+            List<Product> result = new ArrayList<>();
+            byName.forEach((name, product) -> {
+                if (name.equals(product.name)) result.add(product);
+            });
+            return result;
+        }
+
+        public synchronized Map<String, String> aliases() {
+            return new HashMap<>(aliases);
+        }
+
+        // Bulk counterpart of addCategory, addTip and addAlias for restoring a saved catalogue.
+        public synchronized void load(List<Product> saved, Map<String, String> savedAliases) {
+            for (Product product : saved) {
+                byName.put(product.name, product);
+                names.addRecyclingTip(product.name, product.name);
+            }
+            savedAliases.forEach((alias, target) -> {
+                aliases.put(alias, target);
+                Product product = byName.get(target);
+                if (product != null) byName.put(alias, product);
+                names.addRecyclingTip(alias, target);
+            });
+            synchronized (cache) {
+                cache.clear();
+                generation++;
+            }
+        }
+
+        // Name and alias index, for suggestions; a suggestion's tip is the canonical item name.
+        public RecyclingTrie names() {
+            return names;
+        }
+
+        public String stats() {
+            long count = lookups.sum();
+            long unresolved = count - exactHits.sum();
+            long hits = cacheHits.sum();
+            int cached;
+            synchronized (cache) {
+                cached = cache.size();
+            }
+            return String.format("Product lookups: %d (%d by exact name)%nMisspelled or unknown: %d corrected, %d not found%n"
+                            + "Cache hit rate for those: %.1f%% (%d hits)%nMean lookup time: %.1f us%n"
+                            + "Cached names: %d of %d%nKnown names: %d",
+                    count, exactHits.sum(), corrected.sum(), notFound.sum(),
+                    unresolved == 0 ? 0.0 : 100.0 * hits / unresolved, hits,
+                    count == 0 ? 0.0 : lookupNanos.sum() / 1000.0 / count, cached, cacheCapacity, byName.size());
+        }
+    }
+
+    // Keeps the area graph, the product catalogue and the program and policy lists on disk. The data
+    // directory holds one snapshot and the change logs written since:
+    //   snapshot.swdb   header, then blocks of big-endian ints, doubles and chars in a fixed order; read
+    //                   through a MappedByteBuffer and bulk-copied into arrays, with nothing parsed per field
+    //   changes-N.log   one record per edit: length, CRC-32, then the type byte and its fields
+    // The snapshot header names the first log it does not cover. Every COMPACT_AFTER records the log is
+    // rotated and a background thread writes a new snapshot covering the closed logs, renames it into place
+    // and only then deletes them, so a crash at any point leaves a snapshot plus the logs that follow it.
+    // Edits go to the log before they are applied; a torn record at the end of a log is dropped on load.
+    // Citizen feedback lives in its own FeedbackStore; feedback found in older snapshots and logs is moved
+    // there by moveFeedback once that store is open.
+    private static class DataStore {
+        private static final int SNAPSHOT_MAGIC = 0x53574442; // "SWDB"
+        private static final int FORMAT = 1;
+        private static final int COMPACT_AFTER = 256;
+        private static final byte ROUTE = 1;
+        private static final byte FEEDBACK = 2; // only read, from data written before FeedbackStore
+        private static final byte PROGRAM = 3;
+        private static final byte POLICY = 4;
+        private static final String NONE = "\u0000"; // stands for null in string blocks
+        private static final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "data-store-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        private final Path directory; // null keeps everything in memory only
+        private final Graph graph;
+        private final ProductKnowledge products;
+        private final List<String> movedFeedback = new ArrayList<>(); // found while loading; guarded by this
+        private final List<String> programs;
+        private final List<String> policies;
+        private long logNumber; // guarded by this
+        private FileChannel log; // guarded by this
+        private int logRecords; // guarded by this
+        private Future<?> compaction = CompletableFuture.completedFuture(null); // guarded by this
+
+        DataStore(Path directory, Graph graph, ProductKnowledge products, List<String> programs, List<String> policies) {
+            this.directory = directory;
+            this.graph = graph;
+            this.products = products;
+            this.programs = programs;
+            this.policies = policies;
+        }
+
+        // Everything a snapshot holds, captured under the store's lock and written outside it.
+        private static class Snapshot {
+            final long firstLog;
+            final CompactGraph.Image graph;
+            final List<ProductKnowledge.Product> products;
+            final Map<String, String> aliases;
+            final String[] feedback;
+            final String[] programs;
+            final String[] policies;
+
+            Snapshot(long firstLog, CompactGraph.Image graph, List<ProductKnowledge.Product> products,
+                     Map<String, String> aliases, String[] feedback, String[] programs, String[] policies) {
+                this.firstLog = firstLog;
+                this.graph = graph;
+                this.products = products;
+                this.aliases = aliases;
+                this.feedback = feedback;
+                this.programs = programs;
+                this.policies = policies;
+            }
+        }
+
+        // Restores the saved state into the (still empty) graph, catalogue and lists, then replays the change
+        // logs. Returns false without touching anything when there is no snapshot yet. Everything is read and
+        // checked before the first change is applied, so a failure leaves the in-memory state as it was.
+        public synchronized boolean load() throws IOException {
+            if (directory == null || !Files.exists(directory.resolve("snapshot.swdb"))) {
+                return false;
+            }
+            Snapshot snapshot = readSnapshot(directory.resolve("snapshot.swdb"));
+            List<Long> numbers = logNumbers();
+            List<byte[]> records = new ArrayList<>();
+            long last = snapshot.firstLog;
+            int recordsInLast = 0;
+            for (long number : numbers) {
+                if (number < snapshot.firstLog) continue;
+                recordsInLast = readLog(logPath(number), records);
+                last = number;
+            }
+
+            graph.load(snapshot.graph);
+            products.load(snapshot.products, snapshot.aliases);
+            movedFeedback.addAll(Arrays.asList(snapshot.feedback));
+            programs.addAll(Arrays.asList(snapshot.programs));
+            policies.addAll(Arrays.asList(snapshot.policies));
+            for (byte[] record : records) {
+                apply(record);
+            }
+            logNumber = last;
+            logRecords = recordsInLast;
+            openLog();
+            for (long number : numbers) {
+                if (number < snapshot.firstLog) Files.deleteIfExists(logPath(number)); // left by an interrupted compaction
+            }
+            return true;
+        }
+
+        // Hands the feedback found in older snapshots and logs to the (open) feedback store. A crash
+        // between the two writes leaves the feedback in both places; the undated records in the feedback
+        // store show it was already moved. Snapshots keep it until the store is on disk.
+        public void moveFeedback(FeedbackStore feedback) throws IOException {
+            Future<?> write;
+            synchronized (this) {
+                if (movedFeedback.isEmpty()) return;
+                if (feedback.undated() == 0) {
+                    List<FeedbackStore.Feedback> batch = new ArrayList<>();
+                    for (String text : movedFeedback) batch.add(new FeedbackStore.Feedback(-1, 0, "", text));
+                    feedback.addAll(batch);
+                }
+                if (directory == null || !feedback.persistent()) return;
+                movedFeedback.clear();
+                write = submitSnapshot(rotate());
+            }
+            await(write);
+        }
+
+        // Writes a snapshot of the current state right away, e.g. after seeding a new data directory.
+        public void save() throws IOException {
+            Future<?> write;
+            synchronized (this) {
+                if (directory == null) return;
+                Files.createDirectories(directory);
+                write = submitSnapshot(rotate());
+            }
+            await(write);
+        }
+
+        // Every snapshot is written on the compactor thread, in the order rotate() captured them (the caller
+        // holds the store's lock), so two writes never share the temporary file and an older snapshot never
+        // replaces a newer one whose logs are already deleted.
+        private Future<?> submitSnapshot(Snapshot snapshot) {
+            return compactor.submit(() -> {
+                writeSnapshot(snapshot);
+                return null;
+            });
+        }
+
+        private static void await(Future<?> write) throws IOException {
+            try {
+                write.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IOException("Writing the snapshot failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new java.io.InterruptedIOException("Interrupted while writing the snapshot");
+            }
+        }
+
+        // Closes the change log; edits made afterwards fail. Whatever was saved stays as it is.
+        public synchronized void close() throws IOException {
+            if (log != null) log.close();
+            log = null;
+        }
+
+        // Checked by NetworkImporter.routeProblem, as imported routes are, before anything reaches the log.
+        public void addRoute(String from, String to, int distance) throws IOException {
+            String problem = NetworkImporter.routeProblem(from, to, distance);
+            if (problem != null) throw new IllegalArgumentException(problem);
+            record(ROUTE, new String[] {from, to}, distance);
+        }
+
+        public void addProgram(String text) throws IOException {
+            record(PROGRAM, new String[] {text}, 0);
+        }
+
+        public void addPolicy(String text) throws IOException {
+            record(POLICY, new String[] {text}, 0);
+        }
+
+        private synchronized void record(byte type, String[] fields, int number) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            for (String field : fields) out.writeUTF(field);
+            if (type == ROUTE) out.writeInt(number);
+            byte[] payload = bytes.toByteArray();
+            if (directory != null) {
+                if (log == null) {
+                    throw new IOException("Data store is not open");
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+                frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+                while (frame.hasRemaining()) log.write(frame);
+                log.force(false);
+            }
+            apply(payload);
+            if (directory != null && ++logRecords >= COMPACT_AFTER && compaction.isDone()) {
+                Snapshot snapshot = rotate();
+                compaction = compactor.submit(() -> { // queued behind any snapshot submitSnapshot wrote earlier
+                    try {
+                        writeSnapshot(snapshot);
+                    } catch (IOException e) {
+                        System.err.println("Compacting " + directory + " failed, keeping the change logs: " + e.getMessage());
+                    }
+                });
+            }
+        }
+
+        private void apply(byte[] record) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+            byte type = in.readByte();
+            String text = in.readUTF();
+            switch (type) {
+                case ROUTE: {
+                    String to = in.readUTF();
+                    int distance = in.readInt();
+                    graph.update(edit -> {
+                        edit.addArea(text);
+                        edit.addArea(to);
+                        edit.addRoute(text, to, distance);
+                    });
+                    break;
+                }
+                case FEEDBACK: movedFeedback.add(text); break;
+                case PROGRAM: programs.add(text); break;
+                case POLICY: policies.add(text); break;
+                default: throw new IOException("Unknown change type " + type);
+            }
+        }
+
+        // Closes the current log, starts the next one and captures the state it leaves behind.
+        private Snapshot rotate() throws IOException {
+            if (log != null) log.close();
+            logNumber++;
+            logRecords = 0;
+            openLog();
+            return new Snapshot(logNumber, graph.image(), products.products(), products.aliases(),
+                    movedFeedback.toArray(new String[0]), programs.toArray(new String[0]), policies.toArray(new String[0]));
+        }
+
+        private void openLog() throws IOException {
+            log = FileChannel.open(logPath(logNumber), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+
+        private Path logPath(long number) {
+            return directory.resolve("changes-" + number + ".log");
+        }
+
+        private List<Long> logNumbers() throws IOException {
+            List<Long> numbers = new ArrayList<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith("changes-") && name.endsWith(".log")) {
+                        numbers.add(Long.parseLong(name.substring(8, name.length() - 4)));
+                    }
+                });
+            }
+            Collections.sort(numbers);
+            return numbers;
+        }
+
+        // Appends the log's intact records to records and cuts off a torn tail. Returns the record count.
+        private static int readLog(Path file, List<byte[]> records) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            int count = 0;
+            while (buffer.remaining() >= 8) {
+                int length = buffer.getInt(buffer.position());
+                int checksum = buffer.getInt(buffer.position() + 4);
+                if (length < 1 || length > buffer.remaining() - 8) break;
+                CRC32 crc = new CRC32();
+                crc.update(buffer.array(), buffer.position() + 8, length);
+                if ((int) crc.getValue() != checksum) break;
+                records.add(Arrays.copyOfRange(buffer.array(), buffer.position() + 8, buffer.position() + 8 + length));
+                buffer.position(buffer.position() + 8 + length);
+                count++;
+            }
+            if (buffer.hasRemaining()) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(buffer.position());
+                }
+            }
+            return count;
+        }
+
+        private void writeSnapshot(Snapshot snapshot) throws IOException {
+            Path file = directory.resolve("snapshot.swdb");
+            Path temporary = directory.resolve("snapshot.swdb.tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(snapshot.firstLog);
+                CompactGraph.Image graph = snapshot.graph;
+                writeStrings(out, graph.areaNames);
+                writeDoubles(out, graph.xs);
+                writeDoubles(out, graph.ys);
+                writeInts(out, graph.routeFrom);
+                writeInts(out, graph.routeTo);
+                writeInts(out, graph.routeDistance);
+                String[] names = new String[snapshot.products.size()];
+                String[] categories = new String[names.length];
+                String[] tips = new String[names.length];
+                for (int i = 0; i < names.length; i++) {
+                    ProductKnowledge.Product product = snapshot.products.get(i);
+                    names[i] = product.name;
+                    categories[i] = product.category;
+                    tips[i] = product.tip;
+                }
+                writeStrings(out, names);
+                writeStrings(out, categories);
+                writeStrings(out, tips);
+                writeStrings(out, snapshot.aliases.keySet().toArray(new String[0]));
+                writeStrings(out, snapshot.aliases.values().toArray(new String[0]));
+                writeStrings(out, snapshot.feedback);
+                writeStrings(out, snapshot.programs);
+                writeStrings(out, snapshot.policies);
+            }
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (long number : logNumbers()) {
+                if (number < snapshot.firstLog) Files.deleteIfExists(logPath(number));
+            }
+        }
+
+        private static Snapshot readSnapshot(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != FORMAT) {
+                    throw new IOException("Not a data snapshot: " + file);
+                }
+                long firstLog = buffer.getLong();
+                CompactGraph.Image graph = new CompactGraph.Image(readStrings(buffer), readDoubles(buffer),
+                        readDoubles(buffer), readInts(buffer), readInts(buffer), readInts(buffer));
+                String[] names = readStrings(buffer);
+                String[] categories = readStrings(buffer);
+                String[] tips = readStrings(buffer);
+                List<ProductKnowledge.Product> products = new ArrayList<>(names.length);
+                for (int i = 0; i < names.length; i++) {
+                    products.add(new ProductKnowledge.Product(names[i], categories[i], tips[i]));
+                }
+                String[] aliasNames = readStrings(buffer);
+                String[] aliasTargets = readStrings(buffer);
+                Map<String, String> aliases = new HashMap<>();
+                for (int i = 0; i < aliasNames.length; i++) aliases.put(aliasNames[i], aliasTargets[i]);
+                return new Snapshot(firstLog, graph, products, aliases, readStrings(buffer), readStrings(buffer),
+                        readStrings(buffer));
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                throw new IOException("Truncated data snapshot: " + file, e);
+            }
+        }
+
+        // Strings are stored as a count, count + 1 char offsets and one block of chars.
+        private static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+            out.writeInt(strings.length);
+            int offset = 0;
+            out.writeInt(offset);
+            for (String string : strings) {
+                offset += (string != null ? string : NONE).length();
+                out.writeInt(offset);
+            }
+            for (String string : strings) out.writeChars(string != null ? string : NONE);
+        }
+
+        private static String[] readStrings(ByteBuffer buffer) {
+            int[] offsets = new int[buffer.getInt() + 1];
+            buffer.asIntBuffer().get(offsets);
+            buffer.position(buffer.position() + 4 * offsets.length);
+            char[] chars = new char[offsets[offsets.length - 1]];
+            buffer.asCharBuffer().get(chars);
+            buffer.position(buffer.position() + 2 * chars.length);
+            String[] strings = new String[offsets.length - 1];
+            for (int i = 0; i < strings.length; i++) {
+                String string = new String(chars, offsets[i], offsets[i + 1] - offsets[i]);
+                strings[i] = string.equals(NONE) ? null : string;
+            }
+            return strings;
+        }
+
+        private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+            out.writeInt(values.length);
+            for (int value : values) out.writeInt(value);
+        }
+
+        private static int[] readInts(ByteBuffer buffer) {
+            int[] values = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(values);
+            buffer.position(buffer.position() + 4 * values.length);
+            return values;
+        }
+
+        private static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+            out.writeInt(values.length);
+            for (double value : values) out.writeDouble(value);
+        }
+
+        private static double[] readDoubles(ByteBuffer buffer) {
+            double[] values = new double[buffer.getInt()];
+            buffer.asDoubleBuffer().get(values);
+            buffer.position(buffer.position() + 8 * values.length);
+            return values;
+        }
+    }
+
+    // Citizen feedback, kept apart from DataStore because it only ever grows. It is an append-only log in
+    // <data>/feedback: segments feedback-N.seg, each record framed like the change logs (length, CRC-32,
+    // then the submission time, area and text). A segment is closed once it passes SEGMENT_BYTES and is
+    // never written again. Memory holds only what finding and counting need:
+    //   - where each record starts, so a page of results is a few positional reads whatever its offset
+    //   - an inverted index from every word and every area to the ascending ids of the records holding it,
+    //     extended as records are added; a search intersects the lists, shortest first
+    //   - hourly counts per area and per keyword over the last WINDOW_HOURS hours, with running totals for
+    //     the window, so the trends never look at older history
+    // Opening reads the segments once to rebuild all three and cuts off a torn record at the end of a segment.
+    // Without a directory the texts stay in memory.
+    private static class FeedbackStore {
+        static final int SEGMENT_BYTES = 16 << 20;
+        static final int WINDOW_HOURS = 24;
+        static final int MAX_LENGTH = 4000; // chars; records are written with writeUTF
+        private static final int WRITE_BUFFER = 1 << 20;
+        private static final long HOUR = 3_600_000;
+        private static final Pattern NOT_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+        private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList("a", "an", "and", "are", "as", "at",
+                "be", "been", "but", "by", "can", "for", "from", "has", "have", "i", "in", "is", "it", "its", "me", "my",
+                "no", "not", "of", "on", "or", "our", "please", "so", "that", "the", "there", "they", "this", "to",
+                "too", "very", "was", "we", "were", "will", "with", "you"));
+
+        static class Feedback {
+            final int id; // -1 until stored
+            final long time; // epoch milliseconds, 0 when not known (feedback moved over from the data snapshot)
+            final String area; // "" when not about one area
+            final String text;
+
+            Feedback(int id, long time, String area, String text) {
+                this.id = id;
+                this.time = time;
+                this.area = area;
+                this.text = text;
+            }
+        }
+
+        static class Page {
+            final int total; // matching records, of which items is the requested slice, newest first
+            final List<Feedback> items;
+
+            Page(int total, List<Feedback> items) {
+                this.total = total;
+                this.items = items;
+            }
+        }
+
+        // How often an area or keyword came up: over the window, in the current hour and in its busiest hour.
+        static class Count {
+            final String key;
+            final int window;
+            final int lastHour;
+            final int peak;
+
+            Count(String key, int window, int lastHour, int peak) {
+                this.key = key;
+                this.window = window;
+                this.lastHour = lastHour;
+                this.peak = peak;
+            }
+        }
+
+        // Record ids in the order they were added.
+        private static class Postings {
+            int[] ids = new int[4];
+            int size;
+
+            void add(int id) {
+                if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+                ids[size++] = id;
+            }
+        }
+
+        private static class Hour {
+            long hour = Long.MIN_VALUE;
+            int total;
+            final Map<String, Integer> areas = new HashMap<>();
+            final Map<String, Integer> keywords = new HashMap<>();
+        }
+
+        private final Path directory; // null keeps the texts in memory
+        private final List<Feedback> inMemory = new ArrayList<>(); // only without a directory; guarded by this
+        private final Map<Integer, FileChannel> readers = new ConcurrentHashMap<>(); // by segment number
+        private long[] locations = new long[1024]; // segment << 32 | offset of each record; guarded by this
+        private int count; // guarded by this
+        private int undated; // guarded by this
+        private final Map<String, Postings> words = new HashMap<>(); // guarded by this
+        private final Map<String, Postings> areas = new HashMap<>(); // guarded by this
+        private int segment; // guarded by this
+        private FileChannel writer; // guarded by this
+        private long written; // bytes in the current segment, the buffer included; guarded by this
+        private final ByteBuffer pending = ByteBuffer.allocate(WRITE_BUFFER); // guarded by this
+        private final Hour[] hours = new Hour[WINDOW_HOURS]; // guarded by this
+        private long newestHour = Long.MIN_VALUE; // guarded by this
+        private final Map<String, Integer> areaTotals = new HashMap<>(); // over the window; guarded by this
+        private final Map<String, Integer> keywordTotals = new HashMap<>(); // guarded by this
+        private final LongAdder searches = new LongAdder();
+        private final LongAdder searchNanos = new LongAdder();
+
+        FeedbackStore(Path directory) {
+            this.directory = directory;
+            for (int i = 0; i < hours.length; i++) hours[i] = new Hour();
+        }
+
+        // Reads the segments written so far and opens the last one for appending.
+        public synchronized void open() throws IOException {
+            if (directory == null) return;
+            Files.createDirectories(directory);
+            List<Integer> numbers = segmentNumbers();
+            for (int number : numbers) {
+                Path file = segmentPath(number);
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+                while (buffer.remaining() >= 8) {
+                    int length = buffer.getInt(buffer.position());
+                    int checksum = buffer.getInt(buffer.position() + 4);
+                    if (length < 1 || length > buffer.remaining() - 8) break;
+                    CRC32 crc = new CRC32();
+                    crc.update(buffer.array(), buffer.position() + 8, length);
+                    if ((int) crc.getValue() != checksum) break;
+                    Feedback feedback = decode(count, buffer.array(), buffer.position() + 8, length);
+                    index(((long) number << 32) | buffer.position(), feedback);
+                    buffer.position(buffer.position() + 8 + length);
+                }
+                if (buffer.hasRemaining()) {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                        channel.truncate(buffer.position());
+                    }
+                }
+                segment = number;
+                written = buffer.position();
+            }
+            if (numbers.isEmpty()) segment = 1;
+            writer = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+
+        // Stores one submission and forces it to disk before returning.
+        public synchronized Feedback add(long time, String area, String text) throws IOException {
+            Feedback feedback = append(new Feedback(-1, time, area, text));
+            flush(true);
+            return feedback;
+        }
+
+        // Stores many submissions with one write per megabyte and one force at the end.
+        public synchronized void addAll(List<Feedback> batch) throws IOException {
+            for (Feedback feedback : batch) append(feedback);
+            flush(true);
+        }
+
+        private Feedback append(Feedback feedback) throws IOException {
+            if (feedback.text.length() > MAX_LENGTH) {
+                throw new IOException("Feedback is longer than " + MAX_LENGTH + " characters");
+            }
+            if (directory == null) {
+                Feedback stored = new Feedback(count, feedback.time, feedback.area, feedback.text);
+                inMemory.add(stored);
+                index(0, stored);
+                return stored;
+            }
+            if (writer == null) {
+                throw new IOException("Feedback store is not open");
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(feedback.time);
+            out.writeUTF(feedback.area);
+            out.writeUTF(feedback.text);
+            byte[] payload = bytes.toByteArray();
+            if (written > 0 && written + 8 + payload.length > SEGMENT_BYTES) {
+                flush(true);
+                writer.close();
+                segment++;
+                written = 0;
+                writer = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.APPEND);
+            }
+            if (pending.remaining() < 8 + payload.length) flush(false);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            pending.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            Feedback stored = new Feedback(count, feedback.time, feedback.area, feedback.text);
+            index(((long) segment << 32) | written, stored);
+            written += 8 + payload.length;
+            return stored;
+        }
+
+        private void flush(boolean force) throws IOException {
+            if (writer == null) return;
+            pending.flip();
+            while (pending.hasRemaining()) writer.write(pending);
+            pending.clear();
+            if (force) writer.force(false);
+        }
+
+        private void index(long location, Feedback feedback) {
+            if (count == locations.length) locations = Arrays.copyOf(locations, count * 2);
+            locations[count] = location;
+            Set<String> seen = words(feedback.text);
+            for (String word : seen) words.computeIfAbsent(word, w -> new Postings()).add(count);
+            if (!feedback.area.isEmpty()) areas.computeIfAbsent(feedback.area, a -> new Postings()).add(count);
+            count++;
+            if (feedback.time <= 0) {
+                undated++;
+                return;
+            }
+            long hour = feedback.time / HOUR;
+            advance(hour);
+            if (hour <= newestHour - WINDOW_HOURS) return; // older than the window
+            Hour bucket = hours[(int) Math.floorMod(hour, (long) WINDOW_HOURS)];
+            bucket.total++;
+            if (!feedback.area.isEmpty()) {
+                bucket.areas.merge(feedback.area, 1, Integer::sum);
+                areaTotals.merge(feedback.area, 1, Integer::sum);
+            }
+            for (String word : seen) {
+                if (word.length() < 3 || Character.isDigit(word.charAt(0))) continue;
+                bucket.keywords.merge(word, 1, Integer::sum);
+                keywordTotals.merge(word, 1, Integer::sum);
+            }
+        }
+
+        // Moves the window up to hour, taking the hours that fall out of it off the running totals.
+        private void advance(long hour) {
+            if (hour <= newestHour) return;
+            long first = newestHour == Long.MIN_VALUE ? hour - WINDOW_HOURS + 1 : Math.max(newestHour + 1, hour - WINDOW_HOURS + 1);
+            for (long h = first; h <= hour; h++) {
+                Hour bucket = hours[(int) Math.floorMod(h, (long) WINDOW_HOURS)];
+                bucket.areas.forEach((area, n) -> areaTotals.computeIfPresent(area, (k, total) -> total == n ? null : total - n));
+                bucket.keywords.forEach((word, n) -> keywordTotals.computeIfPresent(word, (k, total) -> total == n ? null : total - n));
+                bucket.areas.clear();
+                bucket.keywords.clear();
+                bucket.total = 0;
+                bucket.hour = h;
+            }
+            newestHour = hour;
+        }
+
+        // Lower-cased words of the text without the stop words, each once.
+        static Set<String> words(String text) {
+            Set<String> words = new LinkedHashSet<>();
+            for (String word : NOT_WORD.split(text.toLowerCase(Locale.ROOT))) {
+                if (!word.isEmpty() && !STOP_WORDS.contains(word)) words.add(word);
+            }
+            return words;
+        }
+
+        // The records holding every word of query (all records when it has none) and, unless area is null or
+        // empty, about that area: the limit newest after skipping offset, and how many match in all.
+        public Page page(String query, String area, int offset, int limit) throws IOException {
+            long started = System.nanoTime();
+            int total;
+            int[] ids;
+            long[] where;
+            synchronized (this) {
+                List<Postings> lists = new ArrayList<>();
+                boolean none = false;
+                for (String word : words(query == null ? "" : query)) {
+                    Postings postings = words.get(word);
+                    if (postings == null) none = true;
+                    lists.add(postings);
+                }
+                if (area != null && !area.isEmpty()) {
+                    Postings postings = areas.get(area);
+                    if (postings == null) none = true;
+                    lists.add(postings);
+                }
+                int[] matches;
+                if (none) {
+                    matches = new int[0];
+                    total = 0;
+                } else if (lists.isEmpty()) {
+                    matches = null;
+                    total = count;
+                } else if (lists.size() == 1) {
+                    matches = lists.get(0).ids;
+                    total = lists.get(0).size;
+                } else {
+                    matches = intersect(lists);
+                    total = matches.length;
+                }
+                int from = Math.max(0, Math.min(offset, total));
+                ids = new int[Math.max(0, Math.min(limit, total - from))];
+                where = new long[ids.length];
+                for (int i = 0; i < ids.length; i++) {
+                    int rank = total - 1 - from - i;
+                    ids[i] = matches == null ? rank : matches[rank];
+                    where[i] = locations[ids[i]];
+                }
+                if (directory == null) {
+                    List<Feedback> items = new ArrayList<>(ids.length);
+                    for (int id : ids) items.add(inMemory.get(id));
+                    record(started);
+                    return new Page(total, items);
+                }
+            }
+            List<Feedback> items = new ArrayList<>(ids.length);
+            for (int i = 0; i < ids.length; i++) items.add(read(ids[i], where[i]));
+            record(started);
+            return new Page(total, items);
+        }
+
+        private void record(long started) {
+            searches.increment();
+            searchNanos.add(System.nanoTime() - started);
+            Metrics.FEEDBACK_SEARCH.recordSince(started);
+        }
+
+        // Ids in all the lists, walking the shortest and galloping through the others.
+        private static int[] intersect(List<Postings> lists) {
+            lists.sort(Comparator.comparingInt(postings -> postings.size));
+            Postings shortest = lists.get(0);
+            int[] result = new int[shortest.size];
+            int found = 0;
+            int[] cursors = new int[lists.size()];
+            candidates:
+            for (int i = 0; i < shortest.size; i++) {
+                int id = shortest.ids[i];
+                for (int l = 1; l < lists.size(); l++) {
+                    Postings other = lists.get(l);
+                    int low = cursors[l];
+                    int step = 1;
+                    while (low + step < other.size && other.ids[low + step] < id) {
+                        low += step;
+                        step *= 2;
+                    }
+                    int at = Arrays.binarySearch(other.ids, low, Math.min(other.size, low + step + 1), id);
+                    if (at < 0) {
+                        cursors[l] = -at - 1;
+                        if (cursors[l] >= other.size) break candidates;
+                        continue candidates;
+                    }
+                    cursors[l] = at;
+                }
+                result[found++] = id;
+            }
+            return Arrays.copyOf(result, found);
+        }
+
+        private Feedback read(int id, long location) throws IOException {
+            int number = (int) (location >>> 32);
+            FileChannel channel = readers.get(number);
+            if (channel == null) {
+                FileChannel opened = FileChannel.open(segmentPath(number), StandardOpenOption.READ);
+                channel = readers.putIfAbsent(number, opened);
+                if (channel == null) {
+                    channel = opened;
+                } else {
+                    opened.close();
+                }
+            }
+            long position = location & 0xFFFFFFFFL;
+            ByteBuffer header = ByteBuffer.allocate(8);
+            readFully(channel, header, position);
+            ByteBuffer payload = ByteBuffer.allocate(header.getInt(0));
+            readFully(channel, payload, position + 8);
+            return decode(id, payload.array(), 0, payload.capacity());
+        }
+
+        private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Feedback record cut short");
+                }
+            }
+        }
+
+        private static Feedback decode(int id, byte[] bytes, int offset, int length) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, offset, length));
+            long time = in.readLong();
+            String area = in.readUTF();
+            return new Feedback(id, time, area, in.readUTF());
+        }
+
+        // The n areas (or keywords) mentioned most over the window, busiest first.
+        public synchronized List<Count> trending(boolean byArea, int n) {
+            advance(System.currentTimeMillis() / HOUR);
+            Map<String, Integer> totals = byArea ? areaTotals : keywordTotals;
+            PriorityQueue<Map.Entry<String, Integer>> top = new PriorityQueue<>(Map.Entry.comparingByValue());
+            for (Map.Entry<String, Integer> entry : totals.entrySet()) {
+                top.add(entry);
+                if (top.size() > n) top.poll();
+            }
+            List<Count> counts = new ArrayList<>(top.size());
+            Hour current = hours[(int) Math.floorMod(newestHour, (long) WINDOW_HOURS)];
+            for (Map.Entry<String, Integer> entry : top) {
+                int peak = 0;
+                for (Hour hour : hours) peak = Math.max(peak, (byArea ? hour.areas : hour.keywords).getOrDefault(entry.getKey(), 0));
+                counts.add(new Count(entry.getKey(), entry.getValue(),
+                        (byArea ? current.areas : current.keywords).getOrDefault(entry.getKey(), 0), peak));
+            }
+            counts.sort(Comparator.comparingInt((Count count) -> count.window).reversed().thenComparing(count -> count.key));
+            return counts;
+        }
+
+        // Submissions in each hour of the window, oldest first.
+        public synchronized int[] hourly() {
+            advance(System.currentTimeMillis() / HOUR);
+            int[] totals = new int[WINDOW_HOURS];
+            for (int i = 0; i < WINDOW_HOURS; i++) {
+                totals[i] = hours[(int) Math.floorMod(newestHour - WINDOW_HOURS + 1 + i, (long) WINDOW_HOURS)].total;
+            }
+            return totals;
+        }
+
+        public synchronized int size() {
+            return count;
+        }
+
+        public boolean persistent() {
+            return directory != null;
+        }
+
+        // Records without a submission time, i.e. those moved over from the data snapshot.
+        public synchronized int undated() {
+            return undated;
+        }
+
+        public String stats() {
+            int records;
+            int distinctWords;
+            long postings = 0;
+            synchronized (this) {
+                records = count;
+                distinctWords = words.size();
+                for (Postings list : words.values()) postings += list.size;
+            }
+            long searched = searches.sum();
+            return String.format("%,d submissions in %d segments, %,d distinct words, %,d index entries%n"
+                            + "Searches: %,d, mean %.0f us",
+                    records, directory == null ? 0 : segment, distinctWords, postings,
+                    searched, searched == 0 ? 0.0 : searchNanos.sum() / 1000.0 / searched);
+        }
+
+        public synchronized void close() throws IOException {
+            flush(true);
+            if (writer != null) writer.close();
+            writer = null;
+            for (FileChannel channel : readers.values()) channel.close();
+            readers.clear();
+        }
+
+        private Path segmentPath(int number) {
+            return directory.resolve("feedback-" + number + ".seg");
+        }
+
+        private List<Integer> segmentNumbers() throws IOException {
+            List<Integer> numbers = new ArrayList<>();
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith("feedback-") && name.endsWith(".seg")) {
+                        numbers.add(Integer.parseInt(name.substring(9, name.length() - 4)));
+                    }
+                });
+            }
+            Collections.sort(numbers);
+            return numbers;
+        }
+    }
+
+    // Bulk loader for municipal datasets. Reads road networks and bin inventories from disk and applies them to a
+    // Graph in one publication, so readers never see half an import and a cancelled import changes nothing.
+    //   .csv                routes (from,to,distance) or areas (area,x,y[,waste_kg]); the header row picks which.
+    //                       The file is cut into 4 MB chunks at line ends and parsed on the common fork-join
+    //                       pool, with at most 2 * parallelism chunks in memory at once.
+    //   .geojson / .json    Point features are areas (properties.name, optional waste_kg), LineString features
+    //                       are routes (properties.from / to, distance in km or else the line's length)
+    //   .osm / .xml         OSM XML: highway ways become routes between their end and junction nodes, with
+    //                       the way's length in between rounded to whole km (at least 1)
+    // Areas and routes are validated (unknown areas when createAreas is off, negative or unparsable distances,
+    // routes from an area to itself) and repeated routes are merged, keeping the shortest distance.
+    private static class NetworkImporter {
+        private static final int CHUNK_BYTES = 4 << 20;
+        private static final int MAX_PROBLEMS = 20;
+        private static final double KM_PER_DEGREE_LAT = 110.574;
+        private static final double KM_PER_DEGREE_LON = 111.320;
+
+        // Called after every chunk with the bytes read so far, the file size and the rows seen so far.
+        interface Progress {
+            void update(long bytesRead, long totalBytes, long rows);
+        }
+
+        static class Result {
+            int areasAdded;
+            int routesAdded;
+            int duplicates;
+            int rejected;
+            long rows;
+            long bytes;
+            long nanos;
+            final List<String> problems = new ArrayList<>(); // the first MAX_PROBLEMS, with line numbers
+            final Map<String, Integer> waste = new HashMap<>(); // waiting waste in kg, from bin inventories
+
+            @Override
+            public String toString() {
+                double seconds = nanos / 1e9;
+                return String.format("%,d rows in %.1f s (%.1f MB/s): %,d areas and %,d routes added, %,d duplicate routes merged, %,d rows rejected",
+                        rows, seconds, bytes / 1e6 / seconds, areasAdded, routesAdded, duplicates, rejected);
+            }
+        }
+
+        private final Graph graph;
+        private final boolean createAreas;
+        private final Progress progress;
+        private final Result result = new Result();
+
+        // Everything read so far, in local ids that are mapped to graph ids when the import is applied.
+        private final Map<String, Integer> localIds = new HashMap<>();
+        private String[] names = new String[1024];
+        private double[] xs = new double[1024];
+        private double[] ys = new double[1024];
+        private boolean[] declared = new boolean[1024]; // listed as an area, not only named by a route
+        private int nameCount;
+        private int[] routeFrom = new int[1024];
+        private int[] routeTo = new int[1024];
+        private int[] routeDistance = new int[1024];
+        private int routeCount;
+        private long[] routeKeys = new long[2048]; // open addressing, 0 = empty; key (min + 1) << 32 | (max + 1)
+        private int[] routeSlots = new int[2048];
+
+        NetworkImporter(Graph graph, boolean createAreas, Progress progress) {
+            this.graph = graph;
+            this.createAreas = createAreas;
+            this.progress = progress;
+        }
+
+        public Result importFile(Path file) throws IOException {
+            String name = file.getFileName().toString().toLowerCase();
+            long start = System.nanoTime();
+            if (name.endsWith(".csv") || name.endsWith(".txt")) {
+                readCsv(file);
+            } else if (name.endsWith(".geojson") || name.endsWith(".json")) {
+                readGeoJson(file);
+            } else if (name.endsWith(".osm") || name.endsWith(".xml")) {
+                readOsm(file);
+            } else if (name.endsWith(".pbf")) {
+                throw new IOException("OSM PBF is not supported; convert it to .osm XML first (e.g. osmium cat in.pbf -o out.osm)");
+            } else {
+                throw new IOException("Unknown file type: " + file.getFileName());
+            }
+            apply();
+            result.bytes = Files.size(file);
+            result.nanos = System.nanoTime() - start;
+            return result;
+        }
+
+        // ---- shared bookkeeping ----
+
+        private int localId(String name) {
+            Integer id = localIds.get(name);
+            if (id != null) {
+                return id;
+            }
+            if (nameCount == names.length) {
+                names = Arrays.copyOf(names, nameCount * 2);
+                xs = Arrays.copyOf(xs, nameCount * 2);
+                ys = Arrays.copyOf(ys, nameCount * 2);
+                declared = Arrays.copyOf(declared, nameCount * 2);
+            }
+            names[nameCount] = name;
+            xs[nameCount] = Double.NaN;
+            ys[nameCount] = Double.NaN;
+            localIds.put(name, nameCount);
+            return nameCount++;
+        }
+
+        private void area(String name, double x, double y, int wasteKg) {
+            int id = localId(name);
+            declared[id] = true;
+            if (!Double.isNaN(x) && !Double.isNaN(y)) {
+                xs[id] = x;
+                ys[id] = y;
+            }
+            if (wasteKg >= 0) {
+                result.waste.put(name, wasteKg);
+            }
+        }
+
+        private void route(String from, String to, int distance) {
+            int a = localId(from);
+            int b = localId(to);
+            long key = ((long) Math.min(a, b) + 1) << 32 | (Math.max(a, b) + 1);
+            int mask = routeKeys.length - 1;
+            int slot = (int) (key ^ key >>> 29) * 0x9E3779B9 >>> 7 & mask;
+            while (routeKeys[slot] != 0) {
+                if (routeKeys[slot] == key) {
+                    int existing = routeSlots[slot];
+                    routeDistance[existing] = Math.min(routeDistance[existing], distance);
+                    result.duplicates++;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (routeCount == routeFrom.length) {
+                routeFrom = Arrays.copyOf(routeFrom, routeCount * 2);
+                routeTo = Arrays.copyOf(routeTo, routeCount * 2);
+                routeDistance = Arrays.copyOf(routeDistance, routeCount * 2);
+            }
+            routeKeys[slot] = key;
+            routeSlots[slot] = routeCount;
+            routeFrom[routeCount] = a;
+            routeTo[routeCount] = b;
+            routeDistance[routeCount] = distance;
+            routeCount++;
+            if (2 * routeCount > routeKeys.length) {
+                rehashRoutes();
+            }
+        }
+
+        private void rehashRoutes() {
+            long[] oldKeys = routeKeys;
+            int[] oldSlots = routeSlots;
+            routeKeys = new long[oldKeys.length * 2];
+            routeSlots = new int[oldKeys.length * 2];
+            int mask = routeKeys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                long key = oldKeys[i];
+                if (key == 0) continue;
+                int slot = (int) (key ^ key >>> 29) * 0x9E3779B9 >>> 7 & mask;
+                while (routeKeys[slot] != 0) slot = (slot + 1) & mask;
+                routeKeys[slot] = key;
+                routeSlots[slot] = oldSlots[i];
+            }
+        }
+
+        private void reject(long line, String problem) {
+            result.rejected++;
+            if (result.problems.size() < MAX_PROBLEMS) {
+                result.problems.add((line > 0 ? "line " + line + ": " : "") + problem);
+            }
+        }
+
+        private static void checkCancelled() {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Import cancelled");
+            }
+        }
+
+        // Validates area references against the graph and publishes all areas and routes as one snapshot.
+        private void apply() {
+            checkCancelled();
+            CompactGraph current = graph.compact();
+            boolean[] keep = new boolean[routeCount];
+            for (int i = 0; i < routeCount; i++) {
+                String from = names[routeFrom[i]];
+                String to = names[routeTo[i]];
+                if (routeFrom[i] == routeTo[i]) {
+                    reject(0, "route from " + from + " to itself");
+                } else if (!createAreas && !known(current, routeFrom[i])) {
+                    reject(0, "unknown area " + from);
+                } else if (!createAreas && !known(current, routeTo[i])) {
+                    reject(0, "unknown area " + to);
+                } else {
+                    keep[i] = true;
+                }
+            }
+            graph.update(edit -> {
+                CompactGraph before = graph.compact();
+                int[] ids = new int[nameCount];
+                boolean[] used = new boolean[nameCount];
+                for (int i = 0; i < routeCount; i++) {
+                    if (keep[i]) used[routeFrom[i]] = used[routeTo[i]] = true;
+                }
+                for (int i = 0; i < nameCount; i++) {
+                    ids[i] = -1;
+                    if (!declared[i] && !used[i]) continue;
+                    if (before.idOf(names[i]) < 0) result.areasAdded++;
+                    ids[i] = edit.addArea(names[i]);
+                    if (!Double.isNaN(xs[i])) edit.setLocation(ids[i], xs[i], ys[i]);
+                }
+                for (int i = 0; i < routeCount; i++) {
+                    if (!keep[i]) continue;
+                    if (connected(before, ids[routeFrom[i]], ids[routeTo[i]])) {
+                        result.duplicates++;
+                        continue;
+                    }
+                    edit.addRoute(ids[routeFrom[i]], ids[routeTo[i]], routeDistance[i]);
+                    result.routesAdded++;
+                }
+            });
+        }
+
+        private boolean known(CompactGraph current, int local) {
+            return declared[local] || current.idOf(names[local]) >= 0;
+        }
+
+        private static boolean connected(CompactGraph graph, int a, int b) {
+            if (a >= graph.areaCount() || b >= graph.areaCount()) return false;
+            for (int i = graph.offsets[a]; i < graph.offsets[a + 1]; i++) {
+                if (graph.targets[i] == b) return true;
+            }
+            return false;
+        }
+
+        // ---- CSV ----
+
+        // Column positions picked from the header row; without a header the file is from,to,distance.
+        private static class Columns {
+            boolean areas;
+            int first; // from, or area
+            int second = 1; // to, or x
+            int third = 2; // distance, or y
+            int waste = -1;
+            int width = 3;
+        }
+
+        // Parsed rows of one chunk. Problems carry the line number within the chunk.
+        private static class Chunk {
+            int lines;
+            int rows;
+            String[] first;
+            String[] second;
+            int[] distances;
+            double[] xs;
+            double[] ys;
+            int[] waste;
+            final List<Integer> problemLines = new ArrayList<>();
+            final List<String> problems = new ArrayList<>();
+        }
+
+        private void readCsv(Path file) throws IOException {
+            long total = Files.size(file);
+            int parallelism = ForkJoinPool.commonPool().getParallelism();
+            ArrayDeque<CompletableFuture<Chunk>> inFlight = new ArrayDeque<>();
+            Columns columns = null;
+            long lineBase = 0;
+            long read = 0;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                byte[] carry = new byte[0];
+                boolean end = false;
+                while (!end || !inFlight.isEmpty()) {
+                    checkCancelled();
+                    if (!end && inFlight.size() < 2 * parallelism) {
+                        byte[] buffer = Arrays.copyOf(carry, Math.max(CHUNK_BYTES, carry.length * 2));
+                        ByteBuffer target = ByteBuffer.wrap(buffer, carry.length, buffer.length - carry.length);
+                        int n = 0;
+                        while (target.hasRemaining() && (n = channel.read(target)) >= 0) {
+                            read += n;
+                        }
+                        end = n < 0;
+                        int length = target.position();
+                        int cut = length;
+                        if (!end) {
+                            while (cut > 0 && buffer[cut - 1] != '\n') cut--;
+                            if (cut == 0) { // one line longer than the buffer: read on with a bigger one
+                                carry = Arrays.copyOf(buffer, length);
+                                continue;
+                            }
+                        }
+                        carry = Arrays.copyOfRange(buffer, cut, length);
+                        int start = 0;
+                        if (columns == null) {
+                            int lineEnd = 0;
+                            while (lineEnd < cut && buffer[lineEnd] != '\n') lineEnd++;
+                            columns = new Columns();
+                            if (parseHeader(buffer, 0, lineEnd, columns)) {
+                                start = Math.min(cut, lineEnd + 1);
+                                lineBase = 1;
+                            }
+                        }
+                        Columns chosen = columns;
+                        int from = start;
+                        int to = cut;
+                        inFlight.add(CompletableFuture.supplyAsync(() -> parseCsv(buffer, from, to, chosen)));
+                        continue;
+                    }
+                    Chunk chunk = join(inFlight.poll());
+                    for (int i = 0; i < chunk.problems.size(); i++) {
+                        reject(lineBase + chunk.problemLines.get(i), chunk.problems.get(i));
+                    }
+                    for (int i = 0; i < chunk.rows; i++) {
+                        if (columns.areas) area(chunk.first[i], chunk.xs[i], chunk.ys[i], chunk.waste[i]);
+                        else route(chunk.first[i], chunk.second[i], chunk.distances[i]);
+                    }
+                    lineBase += chunk.lines;
+                    result.rows += chunk.rows + chunk.problems.size();
+                    progress.update(read, total, result.rows);
+                }
+            } finally {
+                for (CompletableFuture<Chunk> pending : inFlight) pending.cancel(false);
+            }
+        }
+
+        private static Chunk join(CompletableFuture<Chunk> future) throws IOException {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                throw new IOException("Could not parse chunk: " + e.getCause(), e.getCause());
+            }
+        }
+
+        // Reads the first line as a header if it names the columns; returns false when it is data.
+        private static boolean parseHeader(byte[] buffer, int start, int end, Columns columns) {
+            List<String> fields = new ArrayList<>();
+            int[] bounds = new int[2];
+            int position = start;
+            while (position <= end) {
+                position = nextField(buffer, position, end, bounds);
+                fields.add(field(buffer, bounds).toLowerCase());
+            }
+            int from = -1, to = -1, distance = -1, area = -1, x = -1, y = -1, waste = -1;
+            for (int i = 0; i < fields.size(); i++) {
+                switch (fields.get(i)) {
+                    case "from": case "source": case "start": from = i; break;
+                    case "to": case "target": case "destination": case "end": to = i; break;
+                    case "distance": case "distance_km": case "length": case "km": distance = i; break;
+                    case "area": case "name": case "bin": area = i; break;
+                    case "x": case "lon": case "longitude": x = i; break;
+                    case "y": case "lat": case "latitude": y = i; break;
+                    case "waste": case "waste_kg": case "kg": waste = i; break;
+                    default: break;
+                }
+            }
+            if (from >= 0 && to >= 0 && distance >= 0) {
+                columns.first = from;
+                columns.second = to;
+                columns.third = distance;
+            } else if (area >= 0) {
+                columns.areas = true;
+                columns.first = area;
+                columns.second = x;
+                columns.third = y;
+                columns.waste = waste;
+            } else {
+                return false;
+            }
+            columns.width = Math.max(Math.max(columns.first, columns.second), Math.max(columns.third, columns.waste)) + 1;
+            return true;
+        }
+
+        private static Chunk parseCsv(byte[] buffer, int start, int end, Columns columns) {
+            Chunk chunk = new Chunk();
+            int capacity = 1024;
+            chunk.first = new String[capacity];
+            if (columns.areas) {
+                chunk.xs = new double[capacity];
+                chunk.ys = new double[capacity];
+                chunk.waste = new int[capacity];
+            } else {
+                chunk.second = new String[capacity];
+                chunk.distances = new int[capacity];
+            }
+            int[] fieldStarts = new int[columns.width];
+            int[] fieldEnds = new int[columns.width];
+            int[] bounds = new int[2];
+            int position = start;
+            while (position < end) {
+                int lineEnd = position;
+                while (lineEnd < end && buffer[lineEnd] != '\n') lineEnd++;
+                int contentEnd = lineEnd > position && buffer[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+                chunk.lines++;
+                int lineNumber = chunk.lines;
+                if (contentEnd > position) {
+                    int fields = 0;
+                    int at = position;
+                    while (at <= contentEnd && fields < columns.width) {
+                        at = nextField(buffer, at, contentEnd, bounds);
+                        fieldStarts[fields] = bounds[0];
+                        fieldEnds[fields] = bounds[1];
+                        fields++;
+                    }
+                    String problem = null;
+                    if (fields < columns.width && !columns.areas) {
+                        problem = "expected from,to,distance";
+                    } else if (chunk.rows == capacity) {
+                        capacity *= 2;
+                        chunk.first = Arrays.copyOf(chunk.first, capacity);
+                        if (columns.areas) {
+                            chunk.xs = Arrays.copyOf(chunk.xs, capacity);
+                            chunk.ys = Arrays.copyOf(chunk.ys, capacity);
+                            chunk.waste = Arrays.copyOf(chunk.waste, capacity);
+                        } else {
+                            chunk.second = Arrays.copyOf(chunk.second, capacity);
+                            chunk.distances = Arrays.copyOf(chunk.distances, capacity);
+                        }
+                    }
+                    if (problem == null) {
+                        problem = columns.areas ? parseArea(buffer, fieldStarts, fieldEnds, fields, columns, chunk)
+                                : parseRoute(buffer, fieldStarts, fieldEnds, columns, chunk);
+                    }
+                    if (problem != null) {
+                        chunk.problemLines.add(lineNumber);
+                        chunk.problems.add(problem);
+                    }
+                }
+                position = lineEnd + 1;
+            }
+            return chunk;
+        }
+
+        // The rule every new route meets, imported or added by hand: what is wrong with it, or null.
+        // Distances are in km and rounded to whole ones when stored.
+        static String routeProblem(String from, String to, double distance) {
+            if (from == null || from.isBlank() || to == null || to.isBlank()) {
+                return "missing area name";
+            }
+            if (from.equals(to)) {
+                return "route from " + from + " to itself";
+            }
+            if (Double.isNaN(distance)) {
+                return "distance is not a number";
+            }
+            if (distance < 0) {
+                return "negative distance " + distance;
+            }
+            if (Math.round(distance) < 1) {
+                return "distance " + distance + " rounds to 0 km";
+            }
+            if (distance > Integer.MAX_VALUE / 4) {
+                return "distance too large";
+            }
+            return null;
+        }
+
+        private static String parseRoute(byte[] buffer, int[] starts, int[] ends, Columns columns, Chunk chunk) {
+            String from = text(buffer, starts[columns.first], ends[columns.first]);
+            String to = text(buffer, starts[columns.second], ends[columns.second]);
+            double distance = number(buffer, starts[columns.third], ends[columns.third]);
+            String problem = routeProblem(from, to, distance);
+            if (problem != null) {
+                return problem;
+            }
+            chunk.first[chunk.rows] = from;
+            chunk.second[chunk.rows] = to;
+            chunk.distances[chunk.rows] = (int) Math.round(distance);
+            chunk.rows++;
+            return null;
+        }
+
+        private static String parseArea(byte[] buffer, int[] starts, int[] ends, int fields, Columns columns, Chunk chunk) {
+            if (columns.first >= fields) {
+                return "missing area name";
+            }
+            String name = text(buffer, starts[columns.first], ends[columns.first]);
+            if (name.isEmpty()) {
+                return "missing area name";
+            }
+            double x = columns.second >= 0 && columns.second < fields ? number(buffer, starts[columns.second], ends[columns.second]) : Double.NaN;
+            double y = columns.third >= 0 && columns.third < fields ? number(buffer, starts[columns.third], ends[columns.third]) : Double.NaN;
+            double waste = columns.waste >= 0 && columns.waste < fields ? number(buffer, starts[columns.waste], ends[columns.waste]) : Double.NaN;
+            if (waste < 0) {
+                return "negative waste amount";
+            }
+            chunk.first[chunk.rows] = name;
+            chunk.xs[chunk.rows] = x;
+            chunk.ys[chunk.rows] = y;
+            chunk.waste[chunk.rows] = Double.isNaN(waste) ? -1 : (int) Math.round(waste);
+            chunk.rows++;
+            return null;
+        }
+
+        // Finds the field starting at position, stores its content bounds (quotes excluded) and returns the
+        // position after its separator. A quoted field may contain commas; "" inside it stands for ".
+        private static int nextField(byte[] buffer, int position, int end, int[] bounds) {
+            if (position < end && buffer[position] == '"') {
+                int at = position + 1;
+                while (at < end && !(buffer[at] == '"' && (at + 1 >= end || buffer[at + 1] != '"'))) {
+                    at += buffer[at] == '"' ? 2 : 1;
+                }
+                bounds[0] = -(position + 1) - 1; // negative start marks a quoted field
+                bounds[1] = at;
+                while (at < end && buffer[at] != ',') at++;
+                return at + 1;
+            }
+            int at = position;
+            while (at < end && buffer[at] != ',') at++;
+            bounds[0] = position;
+            bounds[1] = at;
+            return at + 1;
+        }
+
+        private static String field(byte[] buffer, int[] bounds) {
+            return text(buffer, bounds[0], bounds[1]);
+        }
+
+        private static String text(byte[] buffer, int start, int end) {
+            boolean quoted = start < 0;
+            if (quoted) start = -start - 1;
+            while (start < end && buffer[start] == ' ') start++;
+            while (end > start && buffer[end - 1] == ' ') end--;
+            String text = new String(buffer, start, end - start, StandardCharsets.UTF_8);
+            return quoted ? text.replace("\"\"", "\"") : text;
+        }
+
+        // Plain decimal number without allocating; NaN when the field is empty or not a number.
+        private static double number(byte[] buffer, int start, int end) {
+            if (start < 0) start = -start - 1;
+            while (start < end && buffer[start] == ' ') start++;
+            while (end > start && buffer[end - 1] == ' ') end--;
+            if (start == end) return Double.NaN;
+            boolean negative = buffer[start] == '-';
+            if (negative || buffer[start] == '+') start++;
+            long whole = 0;
+            double fraction = 0;
+            double scale = 1;
+            boolean digits = false;
+            boolean point = false;
+            for (int i = start; i < end; i++) {
+                byte b = buffer[i];
+                if (b >= '0' && b <= '9') {
+                    digits = true;
+                    if (point) {
+                        scale /= 10;
+                        fraction += (b - '0') * scale;
+                    } else if (whole < Long.MAX_VALUE / 100) {
+                        whole = whole * 10 + (b - '0');
+                    }
+                } else if (b == '.' && !point) {
+                    point = true;
+                } else {
+                    return Double.NaN;
+                }
+            }
+            if (!digits) return Double.NaN;
+            double value = whole + fraction;
+            return negative ? -value : value;
+        }
+
+        // ---- GeoJSON ----
+
+        // Streams the features array one feature at a time; everything else at the top level is skipped.
+        private void readGeoJson(Path file) throws IOException {
+            long total = Files.size(file);
+            try (CountingReader in = new CountingReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+                JsonReader json = new JsonReader(in);
+                json.expect('{');
+                boolean first = true;
+                while (json.more('}', first)) {
+                    first = false;
+                    String key = json.string();
+                    json.expect(':');
+                    if (!key.equals("features")) {
+                        json.value();
+                        continue;
+                    }
+                    json.expect('[');
+                    boolean firstFeature = true;
+                    while (json.more(']', firstFeature)) {
+                        firstFeature = false;
+                        Object feature = json.value();
+                        result.rows++;
+                        feature(feature, result.rows);
+                        if (result.rows % 10_000 == 0) {
+                            checkCancelled();
+                            progress.update(in.count, total, result.rows);
+                        }
+                    }
+                }
+                progress.update(total, total, result.rows);
+            }
+        }
+
+        private double originLon = Double.NaN;
+        private double originLat;
+
+        @SuppressWarnings("unchecked")
+        private void feature(Object value, long number) {
+            if (!(value instanceof Map)) {
+                reject(0, "feature " + number + " is not an object");
+                return;
+            }
+            Map<String, Object> feature = (Map<String, Object>) value;
+            Object geometryValue = feature.get("geometry");
+            Object propertiesValue = feature.get("properties");
+            Map<String, Object> properties = propertiesValue instanceof Map ? (Map<String, Object>) propertiesValue : Map.of();
+            if (!(geometryValue instanceof Map)) {
+                reject(0, "feature " + number + " has no geometry");
+                return;
+            }
+            Map<String, Object> geometry = (Map<String, Object>) geometryValue;
+            Object type = geometry.get("type");
+            Object coordinates = geometry.get("coordinates");
+            if ("Point".equals(type)) {
+                Object name = properties.containsKey("name") ? properties.get("name") : properties.get("area");
+                double[] point = position(coordinates);
+                if (name == null) {
+                    reject(0, "feature " + number + ": point without a name");
+                } else if (point == null) {
+                    reject(0, "feature " + number + ": bad coordinates");
+                } else {
+                    Object waste = properties.containsKey("waste_kg") ? properties.get("waste_kg") : properties.get("waste");
+                    if (waste instanceof Double && (Double) waste < 0) {
+                        reject(0, "feature " + number + ": negative waste amount");
+                        return;
+                    }
+                    double[] km = project(point[0], point[1]);
+                    area(name.toString(), km[0], km[1], waste instanceof Double ? (int) Math.round((Double) waste) : -1);
+                }
+            } else if ("LineString".equals(type)) {
+                Object from = properties.get("from");
+                Object to = properties.get("to");
+                if (from == null || to == null) {
+                    reject(0, "feature " + number + ": line without from and to");
+                    return;
+                }
+                Object distance = properties.containsKey("distance") ? properties.get("distance") : properties.get("distance_km");
+                double km;
+                if (distance instanceof Double) {
+                    km = (Double) distance;
+                } else if (coordinates instanceof List && ((List<Object>) coordinates).size() >= 2) {
+                    km = 0;
+                    double[] previous = null;
+                    for (Object position : (List<Object>) coordinates) {
+                        double[] point = position(position);
+                        if (point == null) {
+                            reject(0, "feature " + number + ": bad coordinates");
+                            return;
+                        }
+                        if (previous != null) km += haversineKm(previous[0], previous[1], point[0], point[1]);
+                        previous = point;
+                    }
+                } else {
+                    reject(0, "feature " + number + ": line without distance or coordinates");
+                    return;
+                }
+                km = km < 0 ? km : Math.max(1, km); // short lines count as 1 km, as OSM ways do
+                String problem = routeProblem(from.toString(), to.toString(), km);
+                if (problem != null) {
+                    reject(0, "feature " + number + ": " + problem);
+                    return;
+                }
+                route(from.toString(), to.toString(), (int) Math.round(km));
+            } else {
+                reject(0, "feature " + number + ": unsupported geometry " + type);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static double[] position(Object value) {
+            if (!(value instanceof List) || ((List<Object>) value).size() < 2) return null;
+            List<Object> position = (List<Object>) value;
+            if (!(position.get(0) instanceof Double) || !(position.get(1) instanceof Double)) return null;
+            return new double[] {(Double) position.get(0), (Double) position.get(1)};
+        }
+
+        // Equirectangular projection around the first position seen, in km with y pointing south like the map view.
+        private double[] project(double lon, double lat) {
+            if (Double.isNaN(originLon)) {
+                originLon = lon;
+                originLat = lat;
+            }
+            return new double[] {(lon - originLon) * KM_PER_DEGREE_LON * Math.cos(Math.toRadians(originLat)),
+                    (originLat - lat) * KM_PER_DEGREE_LAT};
+        }
+
+        private static double haversineKm(double lon1, double lat1, double lon2, double lat2) {
+            double dLat = Math.toRadians(lat2 - lat1);
+            double dLon = Math.toRadians(lon2 - lon1);
+            double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                    + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+            return 2 * 6371.0 * Math.asin(Math.sqrt(a));
+        }
+
+        private static class CountingReader extends java.io.FilterReader {
+            long count; // chars so far, close enough to bytes for progress
+
+            CountingReader(java.io.Reader in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                int c = super.read();
+                if (c >= 0) count++;
+                return c;
+            }
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                if (n > 0) count += n;
+                return n;
+            }
+        }
+
+        // Just enough JSON: objects become maps, arrays lists, numbers doubles.
+        private static class JsonReader {
+            private final java.io.Reader in;
+            private int peeked = -2;
+
+            JsonReader(java.io.Reader in) {
+                this.in = in;
+            }
+
+            private int peek() throws IOException {
+                if (peeked == -2) peeked = in.read();
+                return peeked;
+            }
+
+            private int next() throws IOException {
+                int c = peek();
+                peeked = -2;
+                return c;
+            }
+
+            private int skipSpace() throws IOException {
+                while (Character.isWhitespace(peek())) next();
+                return peek();
+            }
+
+            void expect(char expected) throws IOException {
+                if (skipSpace() != expected) throw error("expected '" + expected + "'");
+                next();
+            }
+
+            // True while another element follows inside a container closed by close.
+            boolean more(char close, boolean first) throws IOException {
+                int c = skipSpace();
+                if (c == close) {
+                    next();
+                    return false;
+                }
+                if (!first) {
+                    expect(',');
+                }
+                return true;
+            }
+
+            Object value() throws IOException {
+                int c = skipSpace();
+                switch (c) {
+                    case '{': {
+                        next();
+                        Map<String, Object> object = new HashMap<>();
+                        boolean first = true;
+                        while (more('}', first)) {
+                            first = false;
+                            String key = string();
+                            expect(':');
+                            object.put(key, value());
+                        }
+                        return object;
+                    }
+                    case '[': {
+                        next();
+                        List<Object> array = new ArrayList<>();
+                        boolean first = true;
+                        while (more(']', first)) {
+                            first = false;
+                            array.add(value());
+                        }
+                        return array;
+                    }
+                    case '"':
+                        return string();
+                    case 't': literal("true"); return Boolean.TRUE;
+                    case 'f': literal("false"); return Boolean.FALSE;
+                    case 'n': literal("null"); return null;
+                    default:
+                        return number();
+                }
+            }
+
+            String string() throws IOException {
+                if (skipSpace() != '"') throw error("expected a string");
+                next();
+                StringBuilder text = new StringBuilder();
+                while (true) {
+                    int c = next();
+                    if (c < 0) throw error("unterminated string");
+                    if (c == '"') return text.toString();
+                    if (c == '\\') {
+                        int escaped = next();
+                        switch (escaped) {
+                            case 'n': text.append('\n'); break;
+                            case 't': text.append('\t'); break;
+                            case 'r': text.append('\r'); break;
+                            case 'b': text.append('\b'); break;
+                            case 'f': text.append('\f'); break;
+                            case 'u': {
+                                char[] hex = new char[4];
+                                for (int i = 0; i < 4; i++) hex[i] = (char) next();
+                                text.append((char) Integer.parseInt(new String(hex), 16));
+                                break;
+                            }
+                            default: text.append((char) escaped);
+                        }
+                    } else {
+                        text.append((char) c);
+                    }
+                }
+            }
+
+            private Double number() throws IOException {
+                StringBuilder text = new StringBuilder();
+                while (peek() >= 0 && "+-0123456789.eE".indexOf(peek()) >= 0) text.append((char) next());
+                try {
+                    return Double.valueOf(text.toString());
+                } catch (NumberFormatException e) {
+                    throw error("unexpected character");
+                }
+            }
+
+            private void literal(String word) throws IOException {
+                for (int i = 0; i < word.length(); i++) {
+                    if (next() != word.charAt(i)) throw error("expected " + word);
+                }
+            }
+
+            private IOException error(String problem) {
+                return new IOException("Malformed JSON: " + problem);
+            }
+        }
+
+        // ---- OSM XML ----
+
+        // One streaming pass keeps node positions and the node lists of highway ways; afterwards every way is
+        // cut at nodes that end a way or are shared with another way, and each piece becomes one route.
+        private void readOsm(Path file) throws IOException {
+            long total = Files.size(file);
+            LongIntMap nodeIds = new LongIntMap();
+            double[] lons = new double[1024];
+            double[] lats = new double[1024];
+            int nodeCount = 0;
+            long[] wayNodes = new long[1024];
+            int wayNodeCount = 0;
+            int[] wayStarts = new int[256];
+            int wayCount = 0;
+            try (java.io.InputStream raw = Files.newInputStream(file);
+                 CountingInputStream counted = new CountingInputStream(new BufferedInputStream(raw, 1 << 16))) {
+                javax.xml.stream.XMLInputFactory factory = javax.xml.stream.XMLInputFactory.newFactory();
+                factory.setProperty(javax.xml.stream.XMLInputFactory.SUPPORT_DTD, false);
+                javax.xml.stream.XMLStreamReader xml = factory.createXMLStreamReader(counted);
+                int wayStart = -1;
+                boolean highway = false;
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == javax.xml.stream.XMLStreamConstants.START_ELEMENT) {
+                        switch (xml.getLocalName()) {
+                            case "node": {
+                                result.rows++;
+                                try {
+                                    long id = Long.parseLong(xml.getAttributeValue(null, "id"));
+                                    double lat = Double.parseDouble(xml.getAttributeValue(null, "lat"));
+                                    double lon = Double.parseDouble(xml.getAttributeValue(null, "lon"));
+                                    if (nodeCount == lons.length) {
+                                        lons = Arrays.copyOf(lons, nodeCount * 2);
+                                        lats = Arrays.copyOf(lats, nodeCount * 2);
+                                    }
+                                    lons[nodeCount] = lon;
+                                    lats[nodeCount] = lat;
+                                    nodeIds.put(id, nodeCount++);
+                                } catch (NumberFormatException | NullPointerException e) {
+                                    reject(xml.getLocation().getLineNumber(), "node without id, lat and lon");
+                                }
+                                break;
+                            }
+                            case "way":
+                                result.rows++;
+                                wayStart = wayNodeCount;
+                                highway = false;
+                                break;
+                            case "nd":
+                                if (wayStart >= 0) {
+                                    if (wayNodeCount == wayNodes.length) wayNodes = Arrays.copyOf(wayNodes, wayNodeCount * 2);
+                                    try {
+                                        wayNodes[wayNodeCount++] = Long.parseLong(xml.getAttributeValue(null, "ref"));
+                                    } catch (NumberFormatException e) {
+                                        wayNodeCount--;
+                                    }
+                                }
+                                break;
+                            case "tag":
+                                if (wayStart >= 0 && "highway".equals(xml.getAttributeValue(null, "k"))) highway = true;
+                                break;
+                            default:
+                                break;
+                        }
+                    } else if (event == javax.xml.stream.XMLStreamConstants.END_ELEMENT && xml.getLocalName().equals("way")) {
+                        if (highway && wayNodeCount - wayStart >= 2) {
+                            if (wayCount + 1 >= wayStarts.length) wayStarts = Arrays.copyOf(wayStarts, wayStarts.length * 2);
+                            wayStarts[wayCount++] = wayStart;
+                            wayStarts[wayCount] = wayNodeCount;
+                        } else {
+                            wayNodeCount = wayStart;
+                        }
+                        wayStart = -1;
+                        if (wayCount % 1000 == 0) {
+                            checkCancelled();
+                            progress.update(counted.count, total, result.rows);
+                        }
+                    }
+                }
+                xml.close();
+            } catch (javax.xml.stream.XMLStreamException e) {
+                throw new IOException("Malformed OSM XML: " + e.getMessage(), e);
+            }
+            progress.update(total, total, result.rows);
+            osmNames = new String[nodeCount];
+
+            // A node splits ways if it ends one or appears more than once over all of them.
+            int[] uses = new int[nodeCount];
+            for (int w = 0; w < wayCount; w++) {
+                for (int i = wayStarts[w]; i < wayStarts[w + 1]; i++) {
+                    int node = nodeIds.get(wayNodes[i]);
+                    if (node >= 0) uses[node] += i == wayStarts[w] || i == wayStarts[w + 1] - 1 ? 2 : 1;
+                }
+            }
+            for (int w = 0; w < wayCount; w++) {
+                checkCancelled();
+                int start = -1;
+                double km = 0;
+                boolean broken = false;
+                for (int i = wayStarts[w]; i < wayStarts[w + 1] && !broken; i++) {
+                    int node = nodeIds.get(wayNodes[i]);
+                    if (node < 0) {
+                        reject(0, "way refers to unknown node " + wayNodes[i]);
+                        broken = true;
+                    } else if (start < 0) {
+                        start = node;
+                    } else {
+                        int previous = nodeIds.get(wayNodes[i - 1]);
+                        km += haversineKm(lons[previous], lats[previous], lons[node], lats[node]);
+                        if (uses[node] > 1 && node != start) {
+                            osmArea(start, lons, lats);
+                            osmArea(node, lons, lats);
+                            route(osmNames[start], osmNames[node], Math.max(1, (int) Math.round(km)));
+                            start = node;
+                            km = 0;
+                        }
+                    }
+                }
+            }
+        }
+
+        private String[] osmNames; // area name per node index, set once the node becomes an area
+
+        private void osmArea(int node, double[] lons, double[] lats) {
+            if (osmNames[node] == null) {
+                osmNames[node] = "osm-" + node;
+                double[] km = project(lons[node], lats[node]);
+                area(osmNames[node], km[0], km[1], -1);
+            }
+        }
+
+        private static class CountingInputStream extends java.io.FilterInputStream {
+            long count;
+
+            CountingInputStream(java.io.InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) count++;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                int n = super.read(buffer, offset, length);
+                if (n > 0) count += n;
+                return n;
+            }
+        }
+
+        // Open-addressing map from OSM node id to node index; -1 when absent.
+        private static class LongIntMap {
+            private long[] keys = new long[1024];
+            private int[] values = new int[1024];
+            private boolean[] used = new boolean[1024];
+            private int size;
+
+            void put(long key, int value) {
+                if (2 * (size + 1) > keys.length) grow();
+                int slot = slot(key, keys.length);
+                while (used[slot] && keys[slot] != key) slot = (slot + 1) & (keys.length - 1);
+                if (!used[slot]) size++;
+                used[slot] = true;
+                keys[slot] = key;
+                values[slot] = value;
+            }
+
+            int get(long key) {
+                int slot = slot(key, keys.length);
+                while (used[slot]) {
+                    if (keys[slot] == key) return values[slot];
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                return -1;
+            }
+
+            private static int slot(long key, int length) {
+                long mixed = key * 0x9E3779B97F4A7C15L;
+                return (int) (mixed >>> 40) & (length - 1);
+            }
+
+            private void grow() {
+                long[] oldKeys = keys;
+                int[] oldValues = values;
+                boolean[] oldUsed = used;
+                keys = new long[oldKeys.length * 2];
+                values = new int[oldKeys.length * 2];
+                used = new boolean[oldKeys.length * 2];
+                size = 0;
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldUsed[i]) put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+
+    // Always-on instrumentation for the hot paths. Each metric is a lock-free log-linear histogram in the
+    // style of HdrHistogram: values below 64 get a bucket each, larger ones share 32 buckets per power of
+    // two, so a recorded value is off by at most 2% and recording is one atomic increment plus two adders.
+    // Metrics are published as MBeans (project2:type=Metrics,name=<metric>) and, when -Dwaste.metrics.port
+    // is set, as Prometheus text on http://localhost:<port>/metrics.
+    private static class Metrics {
+        private static final Map<String, Histogram> REGISTRY = new LinkedHashMap<>();
+
+        static final Histogram ROUTE_QUERIES = register(new Histogram("route_query", "Route queries", true));
+        static final Histogram ROUTE_SETTLED = register(new Histogram("route_settled_areas", "Areas settled per route query", false));
+        static final Histogram PRODUCT_LOOKUPS = register(new Histogram("product_lookup", "Category and recycling tip lookups", true));
+        static final Histogram SUGGESTIONS = register(new Histogram("search_suggest", "As-you-type suggestions", true));
+        static final Histogram FEEDBACK = register(new Histogram("feedback_submit", "Feedback submissions, saving included", true));
+        static final Histogram FEEDBACK_SEARCH = register(new Histogram("feedback_search", "Feedback searches and pages", true));
+        static final Histogram REPAINTS = register(new Histogram("map_paint", "Map panel repaints", true));
+        static final Histogram API_REQUESTS = register(new Histogram("api_request", "Routing server requests", true));
+        static final Histogram MATRIX_REFRESHES = register(new Histogram("matrix_refresh", "Travel-time matrix refreshes", true));
+        static final Histogram SENSOR_BATCHES = register(new Histogram("sensor_batch", "Bin sensor reading batches applied", true));
+        static final Histogram COLLECTION_PLANS = register(new Histogram("collection_plan", "Collection plans from bin sensors", true));
+        static final Histogram COVERAGE = register(new Histogram("coverage", "Service coverage passes", true));
+        static final Histogram DASHBOARD_BUILDS = register(new Histogram("dashboard_build", "Dashboards built on first open", true));
+        static final Histogram STARTUP_MAIN = register(new Histogram("startup_main", "JVM start to main", true));
+        static final Histogram STARTUP_MENU = register(new Histogram("startup_menu", "JVM start to the main menu", true));
+        static final Histogram STARTUP_DATA = register(new Histogram("startup_data", "JVM start to network and catalogue loaded", true));
+        static final Histogram STARTUP_FEEDBACK = register(new Histogram("startup_feedback", "JVM start to feedback store open", true));
+
+        private static Histogram register(Histogram histogram) {
+            REGISTRY.put(histogram.name, histogram);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new HistogramMBean(histogram),
+                        new ObjectName("project2:type=Metrics,name=" + histogram.name));
+            } catch (JMException e) {
+                System.err.println("Metric " + histogram.name + " is not available over JMX: " + e.getMessage());
+            }
+            return histogram;
+        }
+
+        static Collection<Histogram> all() {
+            return REGISTRY.values();
+        }
+
+        // The metric of a StartupTimer milestone, or null when it has none.
+        static Histogram startup(String milestone) {
+            return REGISTRY.get("startup_" + milestone);
+        }
+
+        private static class Histogram {
+            private static final int SUB_BUCKETS = 32;
+            private static final int BUCKETS = 2 * SUB_BUCKETS + 58 * SUB_BUCKETS;
+
+            final String name;
+            final String help;
+            final boolean nanos; // latencies in nanoseconds, otherwise plain counts
+            private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+            private final LongAdder sum = new LongAdder();
+            private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+            Histogram(String name, String help, boolean nanos) {
+                this.name = name;
+                this.help = help;
+                this.nanos = nanos;
+            }
+
+            void record(long value) {
+                if (value < 0) value = 0;
+                counts.getAndIncrement(bucket(value));
+                sum.add(value);
+                max.accumulate(value);
+            }
+
+            void recordSince(long startNanos) {
+                record(System.nanoTime() - startNanos);
+            }
+
+            Snapshot snapshot() {
+                long[] copy = new long[BUCKETS];
+                for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+                return new Snapshot(copy, sum.sum(), max.get());
+            }
+
+            static int bucket(long value) {
+                if (value < 2 * SUB_BUCKETS) return (int) value;
+                int shift = 63 - Long.numberOfLeadingZeros(value) - 5; // keeps the top 6 bits, 1xxxxx
+                return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+            }
+
+            // Midpoint of the values counted in bucket
+            static long value(int bucket) {
+                if (bucket < 2 * SUB_BUCKETS) return bucket;
+                int shift = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+                long low = (long) (SUB_BUCKETS + (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS) << shift;
+                return low + (1L << shift) / 2;
+            }
+        }
+
+        // Bucket counts at one moment; the difference of two snapshots describes the interval between them.
+        private static class Snapshot {
+            final long[] counts;
+            final long total;
+            final long sum;
+            final long max; // largest value since start; an interval only knows its largest bucket
+
+            Snapshot(long[] counts, long sum, long max) {
+                this.counts = counts;
+                this.sum = sum;
+                this.max = max;
+                long total = 0;
+                for (long count : counts) total += count;
+                this.total = total;
+            }
+
+            Snapshot since(Snapshot earlier) {
+                long[] interval = new long[counts.length];
+                int highest = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    interval[i] = counts[i] - earlier.counts[i];
+                    if (interval[i] > 0) highest = i;
+                }
+                return new Snapshot(interval, sum - earlier.sum, Histogram.value(highest));
+            }
+
+            long percentile(double percentile) {
+                if (total == 0) return 0;
+                long rank = (long) Math.ceil(percentile / 100 * total);
+                long seen = 0;
+                for (int i = 0; i < counts.length; i++) {
+                    seen += counts[i];
+                    if (seen >= Math.max(1, rank)) return Histogram.value(i);
+                }
+                return max;
+            }
+
+            double mean() {
+                return total == 0 ? 0 : (double) sum / total;
+            }
+        }
+
+        // Read-only JMX view; latencies are in microseconds.
+        private static class HistogramMBean implements DynamicMBean {
+            private static final String[] ATTRIBUTES = {"Count", "Mean", "P50", "P90", "P99", "P999", "Max"};
+            private final Histogram histogram;
+
+            HistogramMBean(Histogram histogram) {
+                this.histogram = histogram;
+            }
+
+            @Override
+            public Object getAttribute(String attribute) throws AttributeNotFoundException {
+                Snapshot snapshot = histogram.snapshot();
+                double scale = histogram.nanos ? 1e-3 : 1;
+                switch (attribute) {
+                    case "Count": return snapshot.total;
+                    case "Mean": return snapshot.mean() * scale;
+                    case "P50": return snapshot.percentile(50) * scale;
+                    case "P90": return snapshot.percentile(90) * scale;
+                    case "P99": return snapshot.percentile(99) * scale;
+                    case "P999": return snapshot.percentile(99.9) * scale;
+                    case "Max": return snapshot.max * scale;
+                    default: throw new AttributeNotFoundException(attribute);
+                }
+            }
+
+            @Override
+            public AttributeList getAttributes(String[] attributes) {
+                AttributeList list = new AttributeList();
+                for (String attribute : attributes) {
+                    try {
+                        list.add(new Attribute(attribute, getAttribute(attribute)));
+                    } catch (AttributeNotFoundException e) {
+                        // left out, as the DynamicMBean contract allows
+                    }
+                }
+                return list;
+            }
+
+            @Override
+            public MBeanInfo getMBeanInfo() {
+                MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[ATTRIBUTES.length];
+                for (int i = 0; i < ATTRIBUTES.length; i++) {
+                    String type = i == 0 ? "long" : "double";
+                    String unit = i == 0 ? "" : histogram.nanos ? " (microseconds)" : "";
+                    attributes[i] = new MBeanAttributeInfo(ATTRIBUTES[i], type, ATTRIBUTES[i] + unit, true, false, false);
+                }
+                return new MBeanInfo(Histogram.class.getName(), histogram.help, attributes, null, null, null);
+            }
+
+            @Override
+            public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+                throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+            }
+
+            @Override
+            public AttributeList setAttributes(AttributeList attributes) {
+                return new AttributeList();
+            }
+
+            @Override
+            public Object invoke(String action, Object[] params, String[] signature) throws MBeanException {
+                throw new MBeanException(new UnsupportedOperationException(action));
+            }
+        }
+
+        // Prometheus text exposition: every histogram as a summary, latencies in seconds.
+        static String prometheusText() {
+            StringBuilder text = new StringBuilder();
+            for (Histogram histogram : all()) {
+                Snapshot snapshot = histogram.snapshot();
+                String name = "waste_" + histogram.name + (histogram.nanos ? "_seconds" : "");
+                double scale = histogram.nanos ? 1e-9 : 1;
+                text.append("# HELP ").append(name).append(' ').append(histogram.help).append('\n');
+                text.append("# TYPE ").append(name).append(" summary\n");
+                for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+                    text.append(String.format(Locale.ROOT, "%s{quantile=\"%s\"} %.9g%n", name, quantile,
+                            snapshot.percentile(quantile * 100) * scale));
+                }
+                text.append(String.format(Locale.ROOT, "%s_sum %.9g%n", name, snapshot.sum * scale));
+                text.append(name).append("_count ").append(snapshot.total).append('\n');
+            }
+            return text.toString();
+        }
+
+        // Serves /metrics on the loopback interface only; the server runs on its own daemon thread.
+        static HttpServer startEndpoint(int port) throws IOException {
+            System.setProperty("sun.net.httpserver.nodelay", "true"); // read once, by whichever server starts first
+            HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                byte[] body = prometheusText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (java.io.OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            return server;
+        }
+
+        static String format(Histogram histogram, double value) {
+            if (!histogram.nanos) return String.format("%,.0f", value);
+            if (value < 1e3) return String.format("%.0f ns", value);
+            if (value < 1e6) return String.format("%.1f \u00b5s", value / 1e3);
+            if (value < 1e9) return String.format("%.1f ms", value / 1e6);
+            return String.format("%.2f s", value / 1e9);
+        }
+    }
+
+    // Local HTTP/JSON access to routing and the product catalogue for dispatch systems, served from the same
+    // Graph and ProductKnowledge the dashboards use, so it runs headless (--serve) or next to the desktop UI
+    // (-Dwaste.api.port). Every request reads one graph snapshot, so a batch never mixes two versions.
+    //   GET  /route?from=A&to=B[&strategy=dijkstra|bidirectional|a_star|contraction_hierarchy]   from the
+    //        graph's route cache, when it has one, unless a strategy is asked for
+    //   POST /routes   {"pairs": [["A", "B"], ...], "paths": false, "strategy": "..."}
+    //   POST /matrix   {"origins": [...], "destinations": [...]}
+    //   GET  /fastest?from=A&to=B[&depart=<epoch seconds>]   fastest in traffic, leaving now by default
+    //   POST /traffic  {"events": [{"from": "A", "to": "B", "factor": 1.8, "minutes": 20},
+    //                              {"from": "B", "to": "C", "closed": true}, {"from": "B", "to": "C", "clear": true},
+    //                              {"from": "C", "to": "D", "profile": "urban"}]}
+    //   GET  /product?name=glass+bottle
+    //   GET  /bins[?minutes=60]   fill levels per area from the bin sensors, over the last minutes
+    //   GET  /schedule            collection tours for the areas the sensors say need collection
+    //   (the last two only when the server is given a CollectionScheduler)
+    //   GET  /health   GET /metrics (Prometheus text)
+    // Batch results are written out as they are computed, in request order, with chunked transfer encoding;
+    // connections are kept alive, so a client can send its next request without reconnecting. Distances are
+    // null when there is no route.
+    private static class RoutingServer {
+        private static final int MAX_BATCH = 100_000;
+
+        private final Graph graph;
+        private final ProductKnowledge catalogue;
+        private final Traffic traffic;
+        private final CollectionScheduler scheduler;
+        private final PartitionedRouter regions; // null routes in this process
+        private final HttpServer server;
+        private final ExecutorService workers;
+
+        RoutingServer(Graph graph, ProductKnowledge catalogue, Traffic traffic, CollectionScheduler scheduler,
+                      PartitionedRouter regions, int port, int threads) throws IOException {
+            this.graph = graph;
+            this.catalogue = catalogue;
+            this.traffic = traffic;
+            this.scheduler = scheduler;
+            this.regions = regions;
+            // Without TCP_NODELAY the closing chunk of a streamed response waits for the client's delayed ACK
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 128);
+            int[] created = {0};
+            workers = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "routing-api-" + created[0]++);
+                thread.setDaemon(true);
+                return thread;
+            });
+            server.setExecutor(workers);
+            server.createContext("/route", exchange -> handle(exchange, "GET", this::route));
+            server.createContext("/routes", exchange -> handle(exchange, "POST", this::routes));
+            server.createContext("/matrix", exchange -> handle(exchange, "POST", this::matrix));
+            server.createContext("/fastest", exchange -> handle(exchange, "GET", this::fastest));
+            server.createContext("/traffic", exchange -> handle(exchange, "POST", this::trafficEvents));
+            server.createContext("/product", exchange -> handle(exchange, "GET", this::product));
+            if (scheduler != null) {
+                server.createContext("/bins", exchange -> handle(exchange, "GET", this::bins));
+                server.createContext("/schedule", exchange -> handle(exchange, "GET", this::schedule));
+            }
+            server.createContext("/health", exchange -> handle(exchange, "GET", this::health));
+            server.createContext("/metrics", exchange -> handle(exchange, "GET", (request, out) -> {
+                request.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                request.sendResponseHeaders(200, 0);
+                out.write(Metrics.prometheusText());
+            }));
+        }
+
+        RoutingServer start() {
+            server.start();
+            return this;
+        }
+
+        int port() {
+            return server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+            workers.shutdownNow();
+        }
+
+        interface Handler {
+            void handle(com.sun.net.httpserver.HttpExchange exchange, java.io.Writer out) throws IOException;
+        }
+
+        // A request that cannot be answered, usually because the client got it wrong: answered with the status
+        // and the message, the connection stays usable.
+        private static class BadRequest extends IOException {
+            private static final long serialVersionUID = 1L;
+
+            final int status;
+
+            BadRequest(int status, String message) {
+                super(message);
+                this.status = status;
+            }
+        }
+
+        private void handle(com.sun.net.httpserver.HttpExchange exchange, String method, Handler handler) throws IOException {
+            long started = System.nanoTime();
+            try {
+                if (!exchange.getRequestMethod().equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", method);
+                    sendError(exchange, 405, "use " + method);
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                java.io.Writer out = new java.io.BufferedWriter(new java.io.OutputStreamWriter(
+                        exchange.getResponseBody(), StandardCharsets.UTF_8), 1 << 16);
+                handler.handle(exchange, out);
+                out.flush();
+            } catch (BadRequest e) {
+                sendError(exchange, e.status, e.getMessage());
+            } catch (RuntimeException e) {
+                sendError(exchange, 500, String.valueOf(e));
+            } catch (Error e) {
+                // The client still gets its answer, but the error is not swallowed: it ends this worker thread,
+                // which the pool replaces, and is reported there.
+                try {
+                    sendError(exchange, 500, "internal error");
+                } catch (IOException ignored) {
+                    // the client is gone; the error still matters
+                }
+                throw e;
+            } finally {
+                exchange.close();
+                Metrics.API_REQUESTS.recordSince(started);
+            }
+        }
+
+        private static void sendError(com.sun.net.httpserver.HttpExchange exchange, int status, String message) throws IOException {
+            if (exchange.getResponseCode() != -1) {
+                return; // headers already sent; the client sees a truncated body
+            }
+            byte[] body = ("{\"error\":" + quote(message) + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        }
+
+        private void route(com.sun.net.httpserver.HttpExchange exchange, java.io.Writer out) throws IOException {
+            Map<String, String> query = query(exchange);
+            String from = required(query, "from");
+            String to = required(query, "to");
+            if (regions != null && query.get("strategy") == null && regions.knows(from) && regions.knows(to)) {
+                long started = System.nanoTime();
+                PartitionedRouter.Answer answer;
+                try {
+                    answer = regions.route(from, to, true);
+                } catch (IOException e) {
+                    throw new BadRequest(503, "a region worker is not answering: " + e.getMessage());
+                }
+                Metrics.ROUTE_QUERIES.recordSince(started);
+                exchange.sendResponseHeaders(200, 0);
+                writeAnswer(out, from, to, answer.distance, answer.path);
+                return;
+            }
+            CompactGraph snapshot = graph.compact();
+            requireArea(snapshot, from);
+            requireArea(snapshot, to);
+            RouteCache cache = graph.routeCache();
+            if (cache != null && query.get("strategy") == null) {
+                long started = System.nanoTime();
+                RouteCache.Answer answer = cache.route(snapshot, from, to);
+                Metrics.ROUTE_QUERIES.recordSince(started);
+                exchange.sendResponseHeaders(200, 0);
+                writeAnswer(out, from, to, answer.distance, answer.path);
+                return;
+            }
+            SearchStrategy strategy = strategy(query.get("strategy"), snapshot);
+            exchange.sendResponseHeaders(200, 0);
+            writeRoute(out, snapshot, from, to, strategy, true);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void routes(com.sun.net.httpserver.HttpExchange exchange, java.io.Writer out) throws IOException {
+            Map<String, Object> request = body(exchange);
+            if (!(request.get("pairs") instanceof List)) throw new BadRequest(400, "pairs must be a list of [from, to]");
+            List<Object> pairs = (List<Object>) request.get("pairs");
+            if (pairs.size() > MAX_BATCH) throw new BadRequest(413, "at most " + MAX_BATCH + " pairs per request");
+            for (Object pair : pairs) {
+                if (!(pair instanceof List) || ((List<Object>) pair).size() != 2
+                        || !(((List<Object>) pair).get(0) instanceof String) || !(((List<Object>) pair).get(1) instanceof String)) {
+                    throw new BadRequest(400, "every pair must be [from, to] with two area names");
+                }
+            }
+            boolean paths = !Boolean.FALSE.equals(request.get("paths"));
+            CompactGraph snapshot = graph.compact();
+            SearchStrategy strategy = strategy((String) request.get("strategy"), snapshot);
+            exchange.sendResponseHeaders(200, 0);
+            out.write("{\"version\":" + snapshot.version + ",\"results\":[");
+            for (int i = 0; i < pairs.size(); i++) {
+                List<Object> pair = (List<Object>) pairs.get(i);
+                if (i > 0) out.write(',');
+                writeRoute(out, snapshot, (String) pair.get(0), (String) pair.get(1), strategy, paths);
+            }
+            out.write("]}");
+        }
+
+        private static void writeRoute(java.io.Writer out, CompactGraph snapshot, String from, String to,
+                                       SearchStrategy strategy, boolean paths) throws IOException {
+            out.write("{\"from\":" + quote(from) + ",\"to\":" + quote(to));
+            int source = snapshot.idOf(from);
+            int target = snapshot.idOf(to);
+            if (source < 0 || target < 0) {
+                out.write(",\"error\":" + quote("unknown area " + (source < 0 ? from : to)) + "}");
+                return;
+            }
+            long started = System.nanoTime();
+            RouteEngine engine = RouteEngine.current();
+            List<String> route = null;
+            int distance;
+            if (paths) {
+                route = engine.findRoute(snapshot, from, to, strategy);
+                distance = engine.lastDistance();
+            } else {
+                distance = engine.shortestDistance(snapshot, source, target, strategy);
+            }
+            Metrics.ROUTE_QUERIES.recordSince(started);
+            Metrics.ROUTE_SETTLED.record(engine.settled());
+            writeAnswer(out, null, null, distance, route);
+        }
+
+        // Writes the rest of a route object; from and to are null when writeRoute has already written them.
+        private static void writeAnswer(java.io.Writer out, String from, String to, int distance, List<String> route)
+                throws IOException {
+            if (from != null) out.write("{\"from\":" + quote(from) + ",\"to\":" + quote(to));
+            out.write(",\"distance\":" + (distance == Integer.MAX_VALUE ? "null" : String.valueOf(distance)));
+            if (route != null) {
+                out.write(",\"route\":[");
+                for (int i = 0; i < route.size(); i++) {
+                    if (i > 0) out.write(',');
+                    out.write(quote(route.get(i)));
+                }
+                out.write(']');
+            }
+            out.write('}');
+        }
+
+        @SuppressWarnings("unchecked")
+        private void matrix(com.sun.net.httpserver.HttpExchange exchange, java.io.Writer out) throws IOException {
+            Map<String, Object> request = body(exchange);
+            List<String> origins = names(request.get("origins"), "origins");
+            List<String> destinations = names(request.get("destinations"), "destinations");
+            if ((long) origins.size() * destinations.size() > MAX_BATCH) {
+                throw new BadRequest(413, "at most " + MAX_BATCH + " origin/destination pairs per request");
+            }
+            CompactGraph snapshot = graph.compact();
+            for (String area : origins) requireArea(snapshot, area);
+            for (String area : destinations) requireArea(snapshot, area);
+            DistanceMatrix matrix = DistanceMatrix.compute(snapshot, origins, destinations);
+            exchange.sendResponseHeaders(200, 0);
+            out.write("{\"version\":" + snapshot.version + ",\"distances\":[");
+            for (int row = 0; row < origins.size(); row++) {
+                out.write(row > 0 ? ",[" : "[");
+                for (int col = 0; col < destinations.size(); col++) {
+                    if (col > 0) out.write(',');
+                    int distance = matrix.distance(row, col);
+                    out.write(distance == Integer.MAX_VALUE ? "null" : String.valueOf(distance));
+                }
+                out.write(']');
+            }
+            out.write("]}");
+        }
+
+        private void fastest(com.sun.net.httpserver.HttpExchange exchange, java.io.Writer out) throws IOException {
+            Map<String, String> query = query(exchange);
+            String from = required(query, "from");
+            String to = required(query, "to");
+            long departure;
+            try {
+                departure = query.containsKey("depart") ? Long.parseLong(query.get("depart")) : traffic.now();
+            } catch (NumberFormatException e) {
+                throw new BadRequest(400, "depart must be epoch seconds");
+            }
+            Traffic.Journey journey = traffic.fastest(from, to, departure);
+            if (journey == null) throw new BadRequest(404, "unknown area " + (graph.compact().idOf(from) < 0 ? from : to));
+            exchange.sendResponseHeaders(200, 0);
+            out.write("{\"from\":" + quote(from) + ",\"to\":" + quote(to) + ",\"depart\":" + departure + ",\"seconds\":"
+                    + (journey.seconds == Integer.MAX_VALUE ? "null" : String.valueOf(journey.seconds)) + ",\"route\":[");
+            for (int i = 0; i < journey.path.size(); i++) {
+                if (i > 0) out.write(',');
+                out.write(quote(journey.path.get(i)));
+            }
+            out.write("]}");
+        }
+
+        // Applies every event or none: all are checked before the first one is applied.
+        @SuppressWarnings("unchecked")
+        private void trafficEvents(com.sun.net.httpserver.HttpExchange exchange, java.io.Writer out) throws IOException {
+            Map<String, Object> request = body(exchange);
+            if (!(request.get("events") instanceof List)) throw new BadRequest(400, "events must be a list");
+            List<Object> events = (List<Object>) request.get("events");
+            CompactGraph snapshot = graph.compact();
+            Set<String> profiles = traffic.profileNames();
+            for (Object value : events) {
+                if (!(value instanceof Map)) throw new BadRequest(400, "every event must be an object");
+                Map<String, Object> event = (Map<String, Object>) value;
+                if (!(event.get("from") instanceof String) || !(event.get("to") instanceof String)) {
+                    throw new BadRequest(400, "every event needs from and to");
+                }
+                int from = requireArea(snapshot, (String) event.get("from"));
+                int to = requireArea(snapshot, (String) event.get("to"));
+                Object factor = event.get("factor");
+                Object profile = event.get("profile");
+                float stored = factor instanceof Double ? (float) (double) (Double) factor : Float.NaN; // as Traffic keeps it
+                if (factor != null && !(stored >= Traffic.MIN_FACTOR && stored <= Traffic.MAX_FACTOR)) {
+                    throw new BadRequest(400, "factor must be between " + Traffic.MIN_FACTOR + " and " + Traffic.MAX_FACTOR);
+                }
+                if (profile != null && !profiles.contains(profile)) throw new BadRequest(400, "unknown profile " + profile);
+                if (factor == null && profile == null && !Boolean.TRUE.equals(event.get("closed"))
+                        && !Boolean.TRUE.equals(event.get("clear"))) {
+                    throw new BadRequest(400, "an event needs factor, closed, clear or profile");
+                }
+                if (event.get("minutes") != null && !(event.get("minutes") instanceof Double && (Double) event.get("minutes") > 0)) {
+                    throw new BadRequest(400, "minutes must be a positive number");
+                }
+                if (!Boolean.TRUE.equals(event.get("clear")) && !snapshot.hasRoute(from, to)) {
+                    throw new BadRequest(400, "no route from " + event.get("from") + " to " + event.get("to"));
+                }
+            }
+            long now = traffic.now();
+            for (Object value : events) {
+                Map<String, Object> event = (Map<String, Object>) value;
+                String from = (String) event.get("from");
+                String to = (String) event.get("to");
+                double seconds = event.get("minutes") != null ? (Double) event.get("minutes") * 60 : Double.POSITIVE_INFINITY;
+                long until = seconds < Long.MAX_VALUE - now ? now + Math.max(1, Math.round(seconds)) : Long.MAX_VALUE;
+                if (Boolean.TRUE.equals(event.get("clear"))) traffic.clearLive(from, to);
+                else if (Boolean.TRUE.equals(event.get("closed"))) traffic.close(from, to, until);
+                else if (event.get("factor") != null) traffic.setLive(from, to, (Double) event.get("factor"), until);
+                if (event.get("profile") != null) traffic.setProfile(from, to, (String) event.get("profile"));
+            }
+            exchange.sendResponseHeaders(200, 0);
+            out.write("{\"applied\":" + events.size() + "}");
+        }
+
+        private void product(com.sun.net.httpserver.HttpExchange exchange, java.io.Writer out) throws IOException {
+            String name = required(query(exchange), "name");
+            ProductKnowledge.Product product = catalogue.lookup(name);
+            if (product == null) {
+                StringBuilder body = new StringBuilder("{\"error\":" + quote("unknown product " + name) + ",\"suggestions\":[");
+                List<RecyclingTrie.Suggestion> close = catalogue.names().suggest(name, 3);
+                for (int i = 0; i < close.size(); i++) {
+                    if (i > 0) body.append(',');
+                    body.append(quote(close.get(i).tip));
+                }
+                byte[] bytes = body.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(404, bytes.length);
+                exchange.getResponseBody().write(bytes);
+                return;
+            }
+            exchange.sendResponseHeaders(200, 0);
+            out.write("{\"name\":" + quote(product.name) + ",\"category\":" + quote(product.category)
+                    + ",\"tip\":" + quote(product.tip) + "}");
+        }
+
+        private void bins(com.sun.net.httpserver.HttpExchange exchange, java.io.Writer out) throws IOException {
+            Map<String, String> query = query(exchange);
+            int minutes;
+            try {
+                minutes = query.containsKey("minutes") ? Integer.parseInt(query.get("minutes")) : 60;
+            } catch (NumberFormatException e) {
+                throw new BadRequest(400, "minutes must be a whole number");
+            }
+            if (minutes <= 0) throw new BadRequest(400, "minutes must be positive");
+            BinSensors sensors = scheduler.sensors();
+            List<BinSensors.AreaStatus> statuses = sensors.summary(minutes);
+            exchange.sendResponseHeaders(200, 0);
+            out.write("{\"bins\":" + sensors.bins() + ",\"readings\":" + sensors.applied() + ",\"rejected\":" + sensors.rejected()
+                    + ",\"newest\":" + sensors.newest() + ",\"areas\":[");
+            for (int i = 0; i < statuses.size(); i++) {
+                BinSensors.AreaStatus status = statuses.get(i);
+                if (i > 0) out.write(',');
+                out.write("{\"area\":" + quote(status.area) + ",\"bins\":" + status.bins + ",\"kg\":" + status.kg
+                        + ",\"fullBins\":" + status.fullBins + ",\"needsCollection\":" + status.needsCollection
+                        + ",\"readings\":" + status.readings
+                        + ",\"meanLevel\":" + (Float.isNaN(status.meanLevel) ? "null" : String.format(Locale.ROOT, "%.1f", status.meanLevel))
+                        + ",\"highestLevel\":" + String.format(Locale.ROOT, "%.1f", status.highestLevel)
+                        + ",\"kgPerHour\":" + String.format(Locale.ROOT, "%.1f", status.kgPerHour) + "}");
+            }
+            out.write("]}");
+        }
+
+        private void schedule(com.sun.net.httpserver.HttpExchange exchange, java.io.Writer out) throws IOException {
+            CollectionScheduler.Schedule schedule = scheduler.latest();
+            exchange.sendResponseHeaders(200, 0);
+            if (schedule == null) {
+                out.write("{\"revision\":0,\"depot\":" + quote(scheduler.depot()) + ",\"stops\":[],\"tours\":[]}");
+                return;
+            }
+            TourPlanner.TourPlan plan = schedule.plan;
+            out.write("{\"revision\":" + schedule.revision + ",\"planned\":" + schedule.plannedAt + ",\"depot\":"
+                    + quote(schedule.depot) + ",\"stops\":" + quoteAll(schedule.stops) + ",\"skipped\":" + quoteAll(plan.skipped)
+                    + (plan.byTime ? ",\"seconds\":" : ",\"distance\":") + plan.totalDistance + ",\"tours\":[");
+            for (int i = 0; i < plan.tours.size(); i++) {
+                if (i > 0) out.write(',');
+                out.write("{\"kg\":" + plan.loads.get(i) + ",\"stops\":" + quoteAll(plan.tours.get(i))
+                        + ",\"route\":" + quoteAll(plan.paths.get(i)) + "}");
+            }
+            out.write("]}");
+        }
+
+        private static String quoteAll(List<String> names) {
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) json.append(',');
+                json.append(quote(names.get(i)));
+            }
+            return json.append(']').toString();
+        }
+
+        private void health(com.sun.net.httpserver.HttpExchange exchange, java.io.Writer out) throws IOException {
+            CompactGraph snapshot = graph.compact();
+            exchange.sendResponseHeaders(200, 0);
+            out.write("{\"version\":" + snapshot.version + ",\"areas\":" + snapshot.areaCount() + ",\"routes\":"
+                    + snapshot.routeCount() / 2 + ",\"hierarchy\":" + (snapshot.hierarchy() != null));
+            RouteCache cache = graph.routeCache();
+            if (cache != null) {
+                out.write(",\"routeCache\":{");
+                String separator = "";
+                for (var counter : cache.counters().entrySet()) {
+                    out.write(separator + quote(counter.getKey()) + ":" + counter.getValue());
+                    separator = ",";
+                }
+                out.write('}');
+            }
+            if (regions != null) out.write(",\"regions\":" + regions.regions());
+            out.write('}');
+        }
+
+        private static SearchStrategy strategy(String name, CompactGraph snapshot) throws BadRequest {
+            if (name == null) return snapshot.fastestStrategy();
+            try {
+                return SearchStrategy.valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new BadRequest(400, "unknown strategy " + name);
+            }
+        }
+
+        private static int requireArea(CompactGraph snapshot, String area) throws BadRequest {
+            int id = snapshot.idOf(area);
+            if (id < 0) throw new BadRequest(404, "unknown area " + area);
+            return id;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<String> names(Object value, String field) throws BadRequest {
+            if (!(value instanceof List)) throw new BadRequest(400, field + " must be a list of area names");
+            for (Object name : (List<Object>) value) {
+                if (!(name instanceof String)) throw new BadRequest(400, field + " must be a list of area names");
+            }
+            if (((List<Object>) value).isEmpty()) throw new BadRequest(400, field + " must name at least one area");
+            return (List<String>) value;
+        }
+
+        private static String required(Map<String, String> query, String name) throws BadRequest {
+            String value = query.get(name);
+            if (value == null || value.isEmpty()) throw new BadRequest(400, "missing parameter " + name);
+            return value;
+        }
+
+        private static Map<String, String> query(com.sun.net.httpserver.HttpExchange exchange) {
+            Map<String, String> parameters = new HashMap<>();
+            String raw = exchange.getRequestURI().getRawQuery();
+            if (raw == null) return parameters;
+            for (String parameter : raw.split("&")) {
+                int equals = parameter.indexOf('=');
+                if (equals < 0) continue;
+                parameters.put(java.net.URLDecoder.decode(parameter.substring(0, equals), StandardCharsets.UTF_8),
+                        java.net.URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+            return parameters;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Map<String, Object> body(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+            java.io.Reader in = new java.io.BufferedReader(new java.io.InputStreamReader(exchange.getRequestBody(),
+                    StandardCharsets.UTF_8), 1 << 16);
+            Object value;
+            try {
+                value = new NetworkImporter.JsonReader(in).value();
+            } catch (IOException | RuntimeException e) {
+                throw new BadRequest(400, e.getMessage());
+            }
+            if (!(value instanceof Map)) throw new BadRequest(400, "expected a JSON object");
+            return (Map<String, Object>) value;
+        }
+
+        static String quote(String text) {
+            if (text == null) return "null";
+            StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '"' || c == '\\') {
+                    quoted.append('\\').append(c);
+                } else if (c < 0x20) {
+                    quoted.append(String.format("\\u%04x", (int) c));
+                } else {
+                    quoted.append(c);
+                }
+            }
+            return quoted.append('"').toString();
+        }
+    }
+
+    // Milliseconds from JVM start to each startup milestone: main entered, the main menu on screen, the saved
+    // network and catalogue loaded (dashboards usable) and the feedback store open. Milestones only note the
+    // clock; the JVM's start time is looked up, and the startup metrics recorded, once everything is loaded,
+    // so that neither the management classes nor the metrics (with their MBeans) are set up ahead of the menu.
+    private static class StartupTimer {
+        private static final Map<String, Long> reached = new LinkedHashMap<>(); // epoch ms; guarded by the class
+
+        static synchronized void reached(String milestone) {
+            reached.putIfAbsent(milestone, System.currentTimeMillis());
+        }
+
+        // Records the milestones reached so far in their metrics, e.g. "main 95 ms, menu 610 ms, data 1,420 ms".
+        static synchronized String publish() {
+            long started = ManagementFactory.getRuntimeMXBean().getStartTime();
+            StringBuilder text = new StringBuilder();
+            reached.forEach((milestone, time) -> {
+                long millis = time - started;
+                Metrics.Histogram metric = Metrics.startup(milestone);
+                if (metric != null && metric.snapshot().total == 0) metric.record(TimeUnit.MILLISECONDS.toNanos(millis));
+                text.append(text.length() == 0 ? "" : ", ").append(String.format("%s %,d ms", milestone, millis));
+            });
+            return text.toString();
+        }
+    }
+
+    private static final Graph areaGraph = new Graph();
+    private static final ProductKnowledge products = new ProductKnowledge();
+    private static final Traffic traffic = new Traffic(areaGraph);
+    private static DataStore dataStore; // saves edits made through the dashboards
+    private static final Map<String, Integer> wasteProductionData = new ConcurrentHashMap<>(); // kg per area, updated by the bin sensors
+    private static BinSensors sensors;
+    private static CollectionScheduler collectionScheduler;
+    private static FeedbackStore feedbackStore;
+    private static final List<String> communityPrograms = new ArrayList<>();
+    private static final List<String> policyUpdates = new ArrayList<>();
+    // Completed by the loader: the network, catalogue and services first, the feedback store last
+    private static final CompletableFuture<Void> dataLoaded = new CompletableFuture<>();
+    private static final CompletableFuture<Void> feedbackLoaded = new CompletableFuture<>();
+    // Dashboards by title, built when first opened and shown again afterwards; used on the event dispatch thread
+    private static final Map<String, JFrame> dashboards = new HashMap<>();
+
+
+    public static void main(String[] args) {
+        StartupTimer.reached("main");
+        if (args.length > 0 && args[0].equals("--benchmark")) {
+            Benchmarks.run(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--stress")) {
+            System.exit(Benchmarks.stress(args) ? 0 : 1);
+        }
+        if (args.length > 0 && args[0].equals("--suite")) {
+            System.exit(BenchmarkSuite.run(args) ? 0 : 1);
+        }
+        if (args.length > 0 && args[0].equals("--partition-worker")) {
+            PartitionWorker.main(args);
+            return;
+        }
+        if (args.length > 0 && (args[0].equals("--serve") || args[0].equals("--partition"))) {
+            System.setProperty("java.awt.headless", "true");
+        }
+        if (args.length > 0 && args[0].equals("--partition")) {
+            initializeData();
+            int areas = areaGraph.compact().areaCount();
+            int parts;
+            try {
+                parts = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+            } catch (NumberFormatException e) {
+                parts = 0;
+            }
+            if (parts < 1 || parts > areas) {
+                System.err.println("Usage: --partition [regions] [dir], with regions from 1 to the " + areas
+                        + " areas in the network");
+                System.exit(1);
+            }
+            Path directory = Path.of(args.length > 2 ? args[2] : "waste-partitions");
+            try {
+                System.out.print(GraphPartitioner.write(areaGraph.compact(), parts, directory));
+            } catch (IOException e) {
+                System.err.println("Could not write the regions to " + directory + ": " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        startMetricsEndpoint();
+        if (args.length > 0 && args[0].equals("--serve")) {
+            int port;
+            try {
+                port = args.length > 1 ? Integer.parseInt(args[1]) : 8080;
+            } catch (NumberFormatException e) {
+                port = 0;
+            }
+            if (port < 1 || port > 65535) {
+                System.err.println("Usage: --serve [port], with a port from 1 to 65535");
+                System.exit(1);
+            }
+            initializeData();
+            startServices();
+            areaGraph.enableHierarchy();
+            StartupTimer.reached("data");
+            initializeFeedback();
+            StartupTimer.reached("feedback");
+            if (startRoutingServer(port) == null) System.exit(1);
+            System.out.println("Started: " + StartupTimer.publish());
+            return; // the server's threads keep the JVM running
+        }
+        // The menu goes up at once and the data loads behind it. Dashboards wait for the network and catalogue,
+        // the feedback screens for the feedback store, which is opened last because re-indexing it takes longest.
+        if (!GraphicsEnvironment.isHeadless()) {
+            SwingUtilities.invokeLater(WasteCollectionSwingVisualizer::showMainMenu);
+        }
+        new Thread(() -> {
+            try {
+                initializeData();
+                startServices();
+                StartupTimer.reached("data");
+                dataLoaded.complete(null);
+                Integer apiPort = Integer.getInteger("waste.api.port");
+                if (apiPort != null) {
+                    startRoutingServer(apiPort);
+                }
+                initializeFeedback();
+                StartupTimer.reached("feedback");
+                feedbackLoaded.complete(null);
+                areaGraph.enableHierarchy(); // routes are answered without it meanwhile, so it is built last
+            } catch (RuntimeException | Error e) {
+                dataLoaded.completeExceptionally(e);
+                feedbackLoaded.completeExceptionally(e);
+                throw e;
+            }
+            SwingUtilities.invokeLater(() -> { // after the menu, which was queued first
+                System.out.println("Started: " + StartupTimer.publish());
+                if (Boolean.getBoolean("waste.startup.exit")) System.exit(0); // for timing runs and AppCDS archives
+            });
+        }, "data-loader").start();
+    }
+
+    // Runs action once ready has completed, on the event dispatch thread, showing a wait cursor over parent
+    // until then, so that what is clicked while the data is still loading opens when it is there.
+    private static void whenReady(CompletableFuture<Void> ready, Component parent, Runnable action) {
+        if (ready.isDone() && !ready.isCompletedExceptionally()) {
+            action.run();
+            return;
+        }
+        parent.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        ready.whenComplete((ignored, error) -> SwingUtilities.invokeLater(() -> {
+            parent.setCursor(Cursor.getDefaultCursor());
+            if (error != null) {
+                JOptionPane.showMessageDialog(parent, "The saved data could not be loaded: " + error);
+            } else {
+                action.run();
+            }
+        }));
+    }
+
+    // Shows the dashboard, building it the first time. Its "Back" button and closing the window only hide it,
+    // so it keeps its state, and its map its layout and view, for the next time.
+    private static void showDashboard(String title, Function<String, JFrame> build) {
+        JFrame frame = dashboards.get(title);
+        if (frame == null) {
+            long started = System.nanoTime();
+            frame = build.apply(title);
+            dashboards.put(title, frame);
+            Metrics.DASHBOARD_BUILDS.recordSince(started);
+        }
+        frame.setVisible(true);
+        frame.toFront();
+    }
+    
+    
+   
+    // With -Dwaste.partitions=<dir> (written by --partition) routes are answered by one worker JVM per region,
+    // started here unless -Dwaste.partition.workers lists running ones as host:port,... in region order.
+    private static RoutingServer startRoutingServer(int port) {
+        int threads = Integer.getInteger("waste.api.threads", 2 * Runtime.getRuntime().availableProcessors());
+        PartitionedRouter regions = null;
+        String partitions = System.getProperty("waste.partitions");
+        if (partitions != null) {
+            try {
+                regions = PartitionedRouter.start(Path.of(partitions), System.getProperty("waste.partition.workers"));
+                System.out.println("Routing over " + regions.regions() + " regions from " + partitions);
+            } catch (IOException e) {
+                System.err.println("Could not start the regions in " + partitions + ", routing in this process: " + e.getMessage());
+            }
+        }
+        try {
+            RoutingServer server = new RoutingServer(areaGraph, products, traffic, collectionScheduler, regions, port, threads).start();
+            System.out.println("Routing API on http://localhost:" + server.port() + "/");
+            return server;
+        } catch (IOException e) {
+            System.err.println("Could not start the routing API on port " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Starts taking bin fill levels, from -Dwaste.sensors.file (replayed at -Dwaste.sensors.speed, 0 for as
+    // fast as possible) and from feeds connecting to -Dwaste.sensors.port, and planning collection from them.
+    private static void startSensors() {
+        sensors = new BinSensors(areaGraph, wasteProductionData);
+        collectionScheduler = new CollectionScheduler(areaGraph, traffic, sensors, wasteProductionData);
+        String file = System.getProperty("waste.sensors.file");
+        if (file != null) {
+            double speed = Double.parseDouble(System.getProperty("waste.sensors.speed", "1"));
+            sensors.replay(Path.of(file), speed).whenComplete((readings, error) -> {
+                if (error != null) System.err.println("Could not replay " + file + ": " + error.getMessage());
+            });
+        }
+        Integer port = Integer.getInteger("waste.sensors.port");
+        if (port != null) {
+            try {
+                sensors.listen(port);
+            } catch (IOException e) {
+                System.err.println("Could not take sensor feeds on port " + port + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static void startMetricsEndpoint() {
+        Integer port = Integer.getInteger("waste.metrics.port");
+        if (port == null) {
+            return;
+        }
+        try {
+            Metrics.startEndpoint(port);
+        } catch (IOException e) {
+            System.err.println("Could not serve metrics on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    // Restores the saved network, catalogue and lists, or seeds a new data directory with the built-in sample data.
+    private static void initializeData() {
+        Path directory = Path.of(System.getProperty("waste.data", "waste-data"));
+        dataStore = new DataStore(directory, areaGraph, products, communityPrograms, policyUpdates);
+        boolean restored = false;
+        try {
+            restored = dataStore.load();
+        } catch (IOException e) {
+            System.err.println("Could not read saved data in " + directory + ", not saving changes this session: " + e.getMessage());
+            dataStore = new DataStore(null, areaGraph, products, communityPrograms, policyUpdates);
+        }
+        if (!restored) {
+            initializeGraph();
+            initializeRecyclingTips();
+            initializeWasteCategories();
+            initializeProductAliases();
+            initializeCommunityAndPolicyData(); // Initialize new data
+            try {
+                dataStore.save();
+            } catch (IOException e) {
+                System.err.println("Could not create " + directory + ", not saving changes this session: " + e.getMessage());
+                dataStore = new DataStore(null, areaGraph, products, communityPrograms, policyUpdates);
+            }
+        }
+        initializeWasteProductionData();
+    }
+
+    // Opens the feedback store, which re-indexes everything it holds, and moves in the feedback that older
+    // data directories kept with the rest of the data.
+    private static void initializeFeedback() {
+        Path directory = Path.of(System.getProperty("waste.data", "waste-data"));
+        FeedbackStore store = new FeedbackStore(directory.resolve("feedback"));
+        try {
+            store.open();
+        } catch (IOException e) {
+            System.err.println("Could not read saved feedback in " + directory + ", not saving feedback this session: " + e.getMessage());
+            store = new FeedbackStore(null);
+        }
+        try {
+            dataStore.moveFeedback(store);
+        } catch (IOException e) {
+            System.err.println("Could not move the feedback saved with the other data in " + directory + ": " + e.getMessage());
+        }
+        feedbackStore = store;
+    }
+
+    // The route cache over the loaded network, then the bin sensors. The route index (enableHierarchy) is left
+    // to the caller, because building it takes the CPU for seconds on a large network.
+    private static void startServices() {
+        areaGraph.enableRouteCache(Integer.getInteger("waste.routecache.size", 4096));
+        startSensors();
+    }
+
+    // Waste (kg) waiting for collection in each area
+    private static void initializeWasteProductionData() {
+        wasteProductionData.put("B", 35);
+        wasteProductionData.put("C", 20);
+        wasteProductionData.put("D", 45);
+        wasteProductionData.put("E", 30);
+    }
+
+
+    private static void initializeGraph() {
+        areaGraph.addArea("A");
+        areaGraph.addArea("B");
+        areaGraph.addArea("C");
+        areaGraph.addArea("D");
+        areaGraph.addArea("E");
+        
+        areaGraph.addRoute("A", "B", 5);
+        areaGraph.addRoute("A", "C", 10);
+        areaGraph.addRoute("B", "C", 2);
+        areaGraph.addRoute("C", "D", 3);
+        areaGraph.addRoute("B", "D", 8);
+        areaGraph.addRoute("A", "E", 7);
+    }
+
+    private static void initializeRecyclingTips() {
+        products.addTip("plastic", "Rinse and place in blue recycling bin.");
+        products.addTip("glass", "Separate by color and recycle in green bin.");
+        products.addTip("paper", "Flatten and put in paper recycling bin.");
+        products.addTip("cardboard", "Flatten and put in the cardboard recycling bin.");
+        products.addTip("metal", "Clean and place in the metal recycling bin.");
+        products.addTip("aluminum", "Rinse and recycle in aluminum bin.");
+        products.addTip("steel", "Place in the metal recycling bin.");
+        products.addTip("tin cans", "Rinse and recycle in metal bin.");
+        products.addTip("plastic_bottles", "Rinse and recycle in the plastic bin.");
+        products.addTip("magazines", "Flatten and recycle in the paper bin.");
+        products.addTip("newspapers", "Flatten and recycle in the paper bin.");
+        products.addTip("envelopes", "Remove any plastic windows and recycle in paper bin.");
+        products.addTip("cereal_boxes", "Flatten and recycle in the cardboard bin.");
+        products.addTip("junk_mail", "Flatten and recycle in paper bin.");
+        products.addTip("egg_cartons", "Recycling in the paper or cardboard bin.");
+        products.addTip("plastic_bags", "Recycling at special plastic bag collection points.");
+        products.addTip("batteries", "Take to a designated e-waste or hazardous waste facility.");
+        products.addTip("electronics", "Drop off at designated e-waste collection centers.");
+        products.addTip("light_bulbs", "Dispose of at a hazardous waste collection point.");
+        products.addTip("printer_cartridges", "Take to a recycling center for printer cartridges.");
+        products.addTip("cds_dvds", "Recycle at electronic waste collection points.");
+        products.addTip("paint", "Take to a hazardous waste recycling center.");
+        products.addTip("motor_oil", "Take to a hazardous waste collection site.");
+        products.addTip("furniture", "Donate if in good condition, otherwise check local waste programs.");
+        products.addTip("clothing", "Donate to charity or take to textile recycling centers.");
+        products.addTip("shoes", "Donate if still usable or take to textile recycling bins.");
+        products.addTip("tvs", "Recycle at an electronic waste recycling center.");
+        products.addTip("computers", "Take to a designated e-waste facility.");
+        products.addTip("phones", "Recycle at an electronic waste recycling center.");
+        products.addTip("bicycles", "Donate to local charity or recycle at a bike recycling center.");
+        products.addTip("fabrics", "Take to textile recycling centers.");
+        products.addTip("carpet", "Check for local carpet recycling programs.");
+        products.addTip("mirrors", "Dispose of in specialized recycling centers.");
+        products.addTip("kitchenware", "Donate or check with local recycling centers.");
+        products.addTip("toys", "Donate if in good condition or recycle at a toy recycling center.");
+        products.addTip("furniture", "Donate if in good condition or check with local programs.");
+        products.addTip("batteries", "Recycle at designated collection points.");
+        products.addTip("tyres", "Check with local tire recycling programs.");
+        products.addTip("wood", "Can be recycled at specialized recycling facilities.");
+        products.addTip("plastics", "Separate types of plastic before recycling.");
+        products.addTip("straws", "Avoid using plastic straws, use alternatives like paper.");
+        products.addTip("plastic_cutlery", "Recycle if possible or avoid disposable plastic.");
+        products.addTip("styrofoam", "Take to specific recycling centers for styrofoam.");
+        products.addTip("wine_bottles", "Rinse and place in glass recycling bins.");
+        products.addTip("beer_bottles", "Rinse and recycle in glass bins.");
+        products.addTip("food_cans", "Rinse and recycle in the metal bin.");
+        products.addTip("pizza_boxes", "Recycle if free from food, otherwise compost.");
+        products.addTip("wrapping_paper", "Recycle if free from plastic and glitter.");
+        products.addTip("gift_bags", "Recycle paper gift bags, reuse plastic ones.");
+        products.addTip("shrink_wrap", "Take to a specialized plastic recycling center.");
+        products.addTip("bubble_wrap", "Check with local recycling centers.");
+        products.addTip("aluminum_foil", "Rinse and recycle in aluminum recycling bins.");
+    }
+
+    
+    private static void initializeProductAliases() {
+        products.addAlias("lightbulbs", "light_bulbs");
+        products.addAlias("light bulb", "light_bulbs");
+        products.addAlias("aluminium", "aluminum");
+        products.addAlias("cans", "tin cans");
+        products.addAlias("bottles", "plastic_bottles");
+        products.addAlias("cell phones", "cellphones");
+        products.addAlias("mobile phones", "cellphones");
+        products.addAlias("laptops", "computers");
+        products.addAlias("tires", "car_tires");
+        products.addAlias("tyres", "car_tires");
+        products.addAlias("televisions", "tvs");
+        products.addAlias("clothes", "clothing");
+        products.addAlias("newspaper", "newspapers");
+        products.addAlias("cardboard_boxes", "cardboard");
+    }
+
+    private static void initializeWasteCategories() {
+        products.addCategory("plastic", "Recyclable");
+        products.addCategory("glass", "Recyclable");
+        products.addCategory("paper", "Recyclable");
+        products.addCategory("food", "Organic");
+        products.addCategory("electronics", "Hazardous");
+        products.addCategory("metal", "Recyclable");
+        products.addCategory("aluminum", "Recyclable");
+        products.addCategory("steel", "Recyclable");
+        products.addCategory("cardboard", "Recyclable");
+        products.addCategory("wood", "Compostable");
+        products.addCategory("rubber", "Non-Recyclable");
+        products.addCategory("textiles", "Recyclable");
+        products.addCategory("fabric", "Recyclable");
+        products.addCategory("batteries", "Hazardous");
+        products.addCategory("lightbulbs", "Hazardous");
+        products.addCategory("cellphones", "Electronic Waste");
+        products.addCategory("computers", "Electronic Waste");
+        products.addCategory("fridges", "Electronic Waste");
+        products.addCategory("microwaves", "Electronic Waste");
+        products.addCategory("toiletries", "Organic");
+        products.addCategory("fruit_peels", "Organic");
+        products.addCategory("vegetable_scraps", "Organic");
+        products.addCategory("flowers", "Organic");
+        products.addCategory("coffee_grounds", "Organic");
+        products.addCategory("eggshells", "Organic");
+        products.addCategory("meat_bones", "Non-Recyclable");
+        products.addCategory("chips_bags", "Non-Recyclable");
+        products.addCategory("plastic_bottles", "Recyclable");
+        products.addCategory("plastic_bags", "Non-Recyclable");
+        products.addCategory("shoes", "Non-Recyclable");
+        products.addCategory("car_tires", "Non-Recyclable");
+        products.addCategory("glass_bottles", "Recyclable");
+        products.addCategory("paper_towels", "Compostable");
+        products.addCategory("napkins", "Compostable");
+        products.addCategory("milk_cartons", "Recyclable");
+        products.addCategory("juice_boxes", "Recyclable");
+        products.addCategory("magazines", "Recyclable");
+        products.addCategory("newspapers", "Recyclable");
+        products.addCategory("books", "Recyclable");
+        products.addCategory("paint_cans", "Hazardous");
+        products.addCategory("oil_filters", "Hazardous");
+        products.addCategory("cleaning_products", "Hazardous");
+        products.addCategory("clothing", "Recyclable");
+        products.addCategory("dishes", "Recyclable");
+        products.addCategory("cutlery", "Recyclable");
+        products.addCategory("cans", "Recyclable");
+        products.addCategory("bottles", "Recyclable");
+        products.addCategory("jars", "Recyclable");
+        products.addCategory("packaging_materials", "Recyclable");
+        products.addCategory("plastic_wrap", "Non-Recyclable");
+        products.addCategory("styrofoam", "Non-Recyclable");
+        products.addCategory("syringes", "Hazardous");
+        products.addCategory("medicine", "Hazardous");
+        products.addCategory("sharp_objects", "Hazardous");
+        products.addCategory("furniture", "Non-Recyclable");
+        products.addCategory("garden_tools", "Non-Recyclable");
+    }
+    
+    
+    private static void showMainMenu() {
+        JFrame frame = new JFrame("Smart Waste Management System");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(400, 300);
+        frame.setLayout(new GridLayout(6, 1));
+
+        JButton citizenButton = new JButton("Citizen");
+        JButton collectorButton = new JButton("Collector");
+        JButton staffButton = new JButton("Waste Management Staff");
+        JButton routesButton = new JButton("Display All Routes");
+        JButton exitButton = new JButton("Exit");
+
+        JLabel statusLabel = new JLabel(dataLoaded.isDone() ? " " : "Loading saved data\u2026", SwingConstants.CENTER);
+
+        citizenButton.addActionListener(e -> whenReady(dataLoaded, frame, WasteCollectionSwingVisualizer::showCitizenDashboard));
+        collectorButton.addActionListener(e -> whenReady(dataLoaded, frame, WasteCollectionSwingVisualizer::showCollectorDashboard));
+        staffButton.addActionListener(e -> whenReady(dataLoaded, frame, WasteCollectionSwingVisualizer::showWasteManagementDashboard));
+        routesButton.addActionListener(e -> whenReady(dataLoaded, frame, WasteCollectionSwingVisualizer::displayAllRoutes));
+        exitButton.addActionListener(e -> {
+            dashboards.values().forEach(JFrame::dispose); // hidden dashboards would keep the event thread alive
+            frame.dispose();
+        });
+        dataLoaded.whenComplete((ignored, error) -> SwingUtilities.invokeLater(() ->
+                statusLabel.setText(error != null ? "The saved data could not be loaded" : " ")));
+
+        frame.add(citizenButton);
+        frame.add(collectorButton);
+        frame.add(staffButton);
+        frame.add(routesButton);
+        frame.add(exitButton);
+        frame.add(statusLabel);
+
+        frame.setVisible(true);
+        StartupTimer.reached("menu");
+    }
+
+    private static void showCitizenDashboard() {
+        showDashboard("Citizen Dashboard", WasteCollectionSwingVisualizer::buildCitizenDashboard);
+    }
+
+    private static JFrame buildCitizenDashboard(String title) {
+        JFrame frame = new JFrame(title);
+        frame.setSize(400, 300);
+        frame.setLayout(new GridLayout(3, 1));
+
+        JButton feedbackButton = new JButton("Submit Feedback");
+        JButton recyclingTipButton = new JButton("Get Recycling Tips");
+        JButton communityProgramsButton = new JButton("View Community Programs"); // New button
+        JButton policyUpdatesButton = new JButton("View Policy Updates");
+        JButton wasteCategoriesButton = new JButton("View Waste Categories"); 
+        JButton backButton = new JButton("Back to Main Menu");
+
+        feedbackButton.addActionListener(e -> whenReady(feedbackLoaded, frame, WasteCollectionSwingVisualizer::submitFeedback));
+        recyclingTipButton.addActionListener(e -> getRecyclingTips());
+        communityProgramsButton.addActionListener(e -> viewCommunityPrograms()); // Action for community programs
+        policyUpdatesButton.addActionListener(e -> viewPolicyUpdates());
+        wasteCategoriesButton.addActionListener(e -> viewWasteCategories());
+        backButton.addActionListener(e -> frame.setVisible(false));
+
+        frame.add(feedbackButton);
+        frame.add(recyclingTipButton);
+        frame.add(communityProgramsButton); // Add new button
+        frame.add(policyUpdatesButton);
+        frame.add(wasteCategoriesButton);
+        frame.add(backButton);
+
+        return frame;
+    }
+    
+    private static void viewWasteCategories() {
+        showLookupDialog("Waste Categories", "Enter a product name to check its waste category:", products.names(), item -> {
+            ProductKnowledge.Product product = products.lookup(item);
+            if (product == null || product.category == null) {
+                return "Sorry, no category found for the product '" + item + "'." + didYouMean(item);
+            }
+            String message = "The product '" + displayName(item, product) + "' is categorized as: " + product.category;
+            return product.tip != null ? message + "\nTip: " + product.tip : message;
+        });
+    }
+
+    // The name as typed, or the product it was corrected to.
+    private static String displayName(String item, ProductKnowledge.Product product) {
+        return product.name.equals(RecyclingTrie.lowerCase(item.trim())) ? item : product.name.replace('_', ' ');
+    }
+
+    private static String didYouMean(String item) {
+        List<RecyclingTrie.Suggestion> close = products.names().similar(item, item.length() <= 5 ? 1 : 2, 3);
+        if (close.isEmpty()) {
+            return "";
+        }
+        return "\nDid you mean: " + close.stream().map(Object::toString).collect(Collectors.joining(", ")) + "?";
+    }
+
+    // Text field with as-you-type suggestions from index; answer turns the chosen item into the message shown.
+    private static void showLookupDialog(String title, String prompt, RecyclingTrie index, Function<String, String> answer) {
+        JDialog dialog = new JDialog((Frame) null, title, false);
+        dialog.setSize(400, 300);
+        dialog.setLayout(new BorderLayout(5, 5));
+
+        JTextField field = new JTextField();
+        DefaultListModel<RecyclingTrie.Suggestion> model = new DefaultListModel<>();
+        JList<RecyclingTrie.Suggestion> suggestions = new JList<>(model);
+        JButton lookUpButton = new JButton("Look Up");
+
+        JPanel top = new JPanel(new BorderLayout());
+        top.add(new JLabel(prompt), BorderLayout.NORTH);
+        top.add(field, BorderLayout.CENTER);
+
+        Runnable refresh = () -> {
+            model.clear();
+            String typed = field.getText().trim();
+            if (!typed.isEmpty()) {
+                long started = System.nanoTime();
+                List<RecyclingTrie.Suggestion> found = index.suggest(typed, 8);
+                Metrics.SUGGESTIONS.recordSince(started);
+                for (RecyclingTrie.Suggestion suggestion : found) model.addElement(suggestion);
+            }
+        };
+        Consumer<String> lookUp = item -> {
+            if (item.isEmpty()) {
+                JOptionPane.showMessageDialog(dialog, "Please enter a valid product name.");
+                return;
+            }
+            JOptionPane.showMessageDialog(dialog, answer.apply(item));
+        };
+
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) { refresh.run(); }
+            public void removeUpdate(DocumentEvent e) { refresh.run(); }
+            public void changedUpdate(DocumentEvent e) { refresh.run(); }
+        });
+        field.addActionListener(e -> lookUp.accept(field.getText().trim()));
+        lookUpButton.addActionListener(e -> lookUp.accept(field.getText().trim()));
+        suggestions.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                RecyclingTrie.Suggestion chosen = suggestions.getSelectedValue();
+                if (chosen != null && e.getClickCount() == 2) {
+                    lookUp.accept(chosen.item);
+                } else if (chosen != null) {
+                    field.setText(chosen.toString());
+                }
+            }
+        });
+
+        dialog.add(top, BorderLayout.NORTH);
+        dialog.add(new JScrollPane(suggestions), BorderLayout.CENTER);
+        dialog.add(lookUpButton, BorderLayout.SOUTH);
+        dialog.setLocationRelativeTo(null);
+        dialog.setVisible(true);
+    }
+
+    private static void submitFeedback() {
+        JTextArea text = new JTextArea(5, 30);
+        text.setLineWrap(true);
+        text.setWrapStyleWord(true);
+        JTextField area = new JTextField();
+        JPanel areaRow = new JPanel(new BorderLayout(5, 0));
+        areaRow.add(new JLabel("Area (optional):"), BorderLayout.WEST);
+        areaRow.add(area, BorderLayout.CENTER);
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        panel.add(new JLabel("Enter your feedback:"), BorderLayout.NORTH);
+        panel.add(new JScrollPane(text), BorderLayout.CENTER);
+        panel.add(areaRow, BorderLayout.SOUTH);
+        if (JOptionPane.showConfirmDialog(null, panel, "Submit Feedback", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        String feedback = text.getText().trim();
+        String about = area.getText().trim();
+        if (!about.isEmpty() && areaGraph.compact().idOf(about) < 0) {
+            JOptionPane.showMessageDialog(null, "There is no area called " + about + ".");
+            return;
+        }
+        if (!feedback.isEmpty()) {
+            long started = System.nanoTime();
+            try {
+                feedbackStore.add(System.currentTimeMillis(), about, feedback);
+                Metrics.FEEDBACK.recordSince(started);
+                JOptionPane.showMessageDialog(null, "Thank you for your feedback!");
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(null, "Your feedback could not be saved: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void getRecyclingTips() {
+        showLookupDialog("Recycling Tips", "Enter item name for recycling tips:", products.names(), item -> {
+            ProductKnowledge.Product product = products.lookup(item);
+            if (product == null) {
+                return "No recycling tips available for this item." + didYouMean(item);
+            }
+            String tip = product.tip != null ? product.tip : "No specific tip available for this item.";
+            String shown = displayName(item, product);
+            return shown.equals(item) ? tip : "Showing results for '" + shown + "'.\n" + tip;
+        });
+    }
+
+    
+    
+ // Method to initialize programs and policy updates
+    private static void initializeCommunityAndPolicyData() {
+        // Example community programs
+        communityPrograms.add("Plastic Waste Reduction Campaign - Organizing community cleanups every weekend.");
+        communityPrograms.add("Composting Program - Encouraging households to compost organic waste.");
+
+        // Example policy updates
+        policyUpdates.add("New Policy on Electronic Waste - All e-waste should be dropped off at designated collection points.");
+        policyUpdates.add("Ban on Single-Use Plastics - Effective from next month, single-use plastics will be banned in public spaces.");
+    }
+
+    // Method to view community programs
+    private static void viewCommunityPrograms() {
+        if (communityPrograms.isEmpty()) {
+            JOptionPane.showMessageDialog(null, "No active community programs.");
+        } else {
+            String programs = String.join("\n", communityPrograms);
+            JOptionPane.showMessageDialog(null, "Community Waste Reduction Programs:\n" + programs);
+        }
+    }
+
+    // Method to view policy updates
+    private static void viewPolicyUpdates() {
+        if (policyUpdates.isEmpty()) {
+            JOptionPane.showMessageDialog(null, "No policy updates available.");
+        } else {
+            String policies = String.join("\n", policyUpdates);
+            JOptionPane.showMessageDialog(null, "Waste Disposal Policy Updates:\n" + policies);
+        }
+    }
+
+    // Method to add a new community program
+    private static void addCommunityProgram() {
+        String program = JOptionPane.showInputDialog("Enter new community waste reduction program:");
+        if (program != null && !program.isEmpty()) {
+            try {
+                dataStore.addProgram(program);
+                JOptionPane.showMessageDialog(null, "New community program added successfully!");
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(null, "The program could not be saved: " + e.getMessage());
+            }
+        }
+    }
+
+    // Method to add a new policy update
+    private static void addPolicyUpdate() {
+        String update = JOptionPane.showInputDialog("Enter new waste disposal policy update:");
+        if (update != null && !update.isEmpty()) {
+            try {
+                dataStore.addPolicy(update);
+                JOptionPane.showMessageDialog(null, "New policy update added successfully!");
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(null, "The policy update could not be saved: " + e.getMessage());
+            }
+        }
+    }
+
+ 
+
+    private static void showWasteManagementDashboard() {
+        showDashboard("Waste Management Dashboard", WasteCollectionSwingVisualizer::buildWasteManagementDashboard);
+    }
+
+    private static JFrame buildWasteManagementDashboard(String title) {
+        JFrame frame = new JFrame(title);
+        frame.setSize(400, 300);
+        frame.setLayout(new GridLayout(3, 1));
+
+        
+        JButton viewFeedbackButton = new JButton("View Citizen Feedback");
+        JButton addRouteButton = new JButton("Add New Route");
+        JButton backButton = new JButton("Back to Main Menu");
+        JButton communityProgramButton = new JButton("Community Waste Reduction Program");
+        JButton policyUpdatesButton = new JButton("Waste Disposal Policy Updates");
+        JButton lookupStatsButton = new JButton("Product Lookup Statistics");
+        JButton importButton = new JButton("Import Network Data");
+        JButton performanceButton = new JButton("Performance");
+        JButton sensorsButton = new JButton("Bin Sensors");
+        JButton routeCacheButton = new JButton("Route Cache Statistics");
+        JButton coverageButton = new JButton("Service Coverage");
+
+        
+        viewFeedbackButton.addActionListener(e -> whenReady(feedbackLoaded, frame, WasteCollectionSwingVisualizer::viewCitizenFeedback));
+        addRouteButton.addActionListener(e -> addNewRoute());
+        backButton.addActionListener(e -> frame.setVisible(false));
+        communityProgramButton.addActionListener(e -> showCommunityProgramDashboard());
+        policyUpdatesButton.addActionListener(e -> showPolicyUpdateDashboard());
+        lookupStatsButton.addActionListener(e -> JOptionPane.showMessageDialog(frame, products.stats()));
+        importButton.addActionListener(e -> showImportDialog(frame));
+        performanceButton.addActionListener(e -> showPerformancePanel());
+        sensorsButton.addActionListener(e -> showSensorPanel());
+        routeCacheButton.addActionListener(e -> JOptionPane.showMessageDialog(frame, areaGraph.routeCache().stats()));
+        coverageButton.addActionListener(e -> showCoveragePanel());
+        
+        frame.add(viewFeedbackButton);
+        frame.add(addRouteButton);
+        frame.add(communityProgramButton);
+        frame.add(policyUpdatesButton);
+        frame.add(lookupStatsButton);
+        frame.add(importButton);
+        frame.add(performanceButton);
+        frame.add(sensorsButton);
+        frame.add(routeCacheButton);
+        frame.add(coverageButton);
+        frame.add(backButton);
+        
+
+        return frame;
+    }
+    
+    // Which areas are farther than the threshold from every facility (depots and recycling centres), shown
+    // as a heat map, and what-if scoring of new sites: every area is scored when there are few enough,
+    // otherwise a random sample, and the best one can be added, updating only the areas it takes over.
+    private static void showCoveragePanel() {
+        int sampleSize = 2000;
+        JFrame frame = new JFrame("Service Coverage");
+        frame.setSize(900, 700);
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        JTextField facilitiesField = new JTextField(System.getProperty("waste.facilities", "A"), 25);
+        JTextField thresholdField = new JTextField("15", 4);
+        JButton computeButton = new JButton("Compute");
+        JButton scoreButton = new JButton("Score Sites");
+        JButton addButton = new JButton("Add Best Site");
+        scoreButton.setEnabled(false);
+        addButton.setEnabled(false);
+        GraphPanel graphPanel = new GraphPanel();
+        JTextArea summary = new JTextArea(8, 60);
+        summary.setEditable(false);
+        Coverage[] coverage = new Coverage[1];
+        int[] threshold = new int[1];
+        List<Coverage.Candidate> best = new ArrayList<>();
+
+        Runnable describe = () -> {
+            Coverage current = coverage[0];
+            CompactGraph graph = current.graph;
+            int t = threshold[0];
+            int[] bands = current.bands(t / 3, 2 * t / 3, t, current.bound);
+            int[] served = current.served();
+            int[] facilities = current.facilities();
+            StringBuilder text = new StringBuilder(String.format("%,d areas: %,d within %d km, %,d within %d km, "
+                            + "%,d within %d km, %,d farther, %,d beyond %d km or unreachable%n", graph.areaCount(),
+                    bands[0], t / 3, bands[1], 2 * t / 3, bands[2], t, bands[3], bands[4], current.bound));
+            for (int i = 0; i < facilities.length && i < 20; i++) {
+                text.append(i == 0 ? "Served: " : ", ").append(graph.areaName(facilities[i])).append(' ').append(served[i]);
+            }
+            text.append(facilities.length > 20 ? ", ...\n" : "\n");
+            int[] beyond = current.beyond(t);
+            text.append(String.format("More than %d km from every facility: %,d", t, beyond.length));
+            for (int i = 0; i < beyond.length && i < 20; i++) {
+                int d = current.distance[beyond[i]];
+                text.append(i == 0 ? " (" : ", ").append(graph.areaName(beyond[i]))
+                        .append(d == Integer.MAX_VALUE ? "" : " " + d + " km");
+            }
+            text.append(beyond.length > 20 ? ", ...)" : beyond.length > 0 ? ")" : "");
+            if (!best.isEmpty()) {
+                text.append("\nBest new sites:");
+                for (Coverage.Candidate candidate : best) {
+                    text.append(String.format("%n  %s: %,d areas brought within %d km, %,d served, %,d km saved",
+                            graph.areaName(candidate.site), candidate.broughtWithin, t, candidate.areas, candidate.kmSaved));
+                }
+            }
+            summary.setText(text.toString());
+            graphPanel.setHeat(current, t);
+        };
+
+        computeButton.addActionListener(e -> {
+            int t;
+            try {
+                t = Integer.parseInt(thresholdField.getText().trim());
+                if (t <= 0) throw new NumberFormatException();
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(frame, "Please enter a threshold in whole km.");
+                return;
+            }
+            List<String> names = new ArrayList<>();
+            for (String name : facilitiesField.getText().split("[,\\s]+")) {
+                if (!name.isEmpty()) names.add(name);
+            }
+            CompactGraph graph = areaGraph.compact();
+            List<String> unknown = names.stream().filter(name -> graph.idOf(name) < 0).collect(Collectors.toList());
+            if (names.isEmpty() || !unknown.isEmpty()) {
+                JOptionPane.showMessageDialog(frame, names.isEmpty() ? "Please enter at least one facility area."
+                        : "Unknown area: " + String.join(", ", unknown));
+                return;
+            }
+            computeButton.setEnabled(false);
+            new SwingWorker<Coverage, Void>() {
+                @Override
+                protected Coverage doInBackground() {
+                    return areaGraph.coverage(names, 2 * t); // twice the threshold is enough to rank what lies past it
+                }
+
+                @Override
+                protected void done() {
+                    computeButton.setEnabled(true);
+                    try {
+                        coverage[0] = get();
+                        threshold[0] = t;
+                        best.clear();
+                        scoreButton.setEnabled(true);
+                        addButton.setEnabled(false);
+                        describe.run();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        JOptionPane.showMessageDialog(frame, "Coverage failed: " + ex.getMessage());
+                    }
+                }
+            }.execute();
+        });
+
+        scoreButton.addActionListener(e -> {
+            Coverage current = coverage[0];
+            int t = threshold[0];
+            scoreButton.setEnabled(false);
+            addButton.setEnabled(false); // adding writes the distances the scoring reads
+            new SwingWorker<List<Coverage.Candidate>, Void>() {
+                @Override
+                protected List<Coverage.Candidate> doInBackground() {
+                    int n = current.graph.areaCount();
+                    int[] sites = n <= sampleSize ? IntStream.range(0, n).toArray()
+                            : new Random().ints(0, n).distinct().limit(sampleSize).toArray();
+                    List<Coverage.Candidate> scored = current.scoreAll(sites, t);
+                    return new ArrayList<>(scored.subList(0, Math.min(10, scored.size())));
+                }
+
+                @Override
+                protected void done() {
+                    scoreButton.setEnabled(true);
+                    try {
+                        if (coverage[0] != current) return; // recomputed meanwhile
+                        best.clear();
+                        best.addAll(get());
+                        addButton.setEnabled(!best.isEmpty() && best.get(0).areas > 0);
+                        describe.run();
+                    } catch (InterruptedException | ExecutionException ex) {
+                        JOptionPane.showMessageDialog(frame, "Scoring failed: " + ex.getMessage());
+                    }
+                }
+            }.execute();
+        });
+
+        addButton.addActionListener(e -> {
+            Coverage current = coverage[0];
+            String site = current.graph.areaName(best.get(0).site);
+            current.add(best.get(0).site); // touches only the areas the site takes over, so it stays on this thread
+            best.clear();
+            addButton.setEnabled(false);
+            facilitiesField.setText(facilitiesField.getText().trim() + ", " + site);
+            describe.run();
+        });
+
+        JPanel inputPanel = new JPanel();
+        inputPanel.add(new JLabel("Facilities:"));
+        inputPanel.add(facilitiesField);
+        inputPanel.add(new JLabel("Threshold (km):"));
+        inputPanel.add(thresholdField);
+        inputPanel.add(computeButton);
+        inputPanel.add(scoreButton);
+        inputPanel.add(addButton);
+        frame.add(inputPanel, BorderLayout.NORTH);
+        frame.add(graphPanel, BorderLayout.CENTER);
+        frame.add(new JScrollPane(summary), BorderLayout.SOUTH);
+        frame.setVisible(true);
+        computeButton.doClick();
+    }
+
+    // Live view of the hot-path metrics: rate, percentiles and largest value over the last second, plus totals.
+    private static void showPerformancePanel() {
+        JFrame frame = new JFrame("Performance");
+        frame.setSize(700, 250);
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        String[] columns = {"Metric", "Per second", "p50", "p99", "Max", "Total", "Mean (all)"};
+        javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        List<Metrics.Histogram> histograms = new ArrayList<>(Metrics.all());
+        Metrics.Snapshot[] previous = new Metrics.Snapshot[histograms.size()];
+        long[] previousTime = {System.nanoTime()};
+        for (int i = 0; i < histograms.size(); i++) {
+            previous[i] = histograms.get(i).snapshot();
+            model.addRow(new Object[] {histograms.get(i).help, "", "", "", "", "", ""});
+        }
+        Timer refresh = new Timer(1000, e -> {
+            long now = System.nanoTime();
+            double seconds = (now - previousTime[0]) / 1e9;
+            previousTime[0] = now;
+            for (int i = 0; i < histograms.size(); i++) {
+                Metrics.Histogram histogram = histograms.get(i);
+                Metrics.Snapshot current = histogram.snapshot();
+                Metrics.Snapshot interval = current.since(previous[i]);
+                previous[i] = current;
+                boolean idle = interval.total == 0;
+                model.setValueAt(String.format("%.1f", interval.total / seconds), i, 1);
+                model.setValueAt(idle ? "-" : Metrics.format(histogram, interval.percentile(50)), i, 2);
+                model.setValueAt(idle ? "-" : Metrics.format(histogram, interval.percentile(99)), i, 3);
+                model.setValueAt(idle ? "-" : Metrics.format(histogram, interval.max), i, 4);
+                model.setValueAt(String.format("%,d", current.total), i, 5);
+                model.setValueAt(current.total == 0 ? "-" : Metrics.format(histogram, current.mean()), i, 6);
+            }
+        });
+        refresh.setInitialDelay(0);
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                refresh.stop();
+            }
+        });
+        frame.add(new JScrollPane(new JTable(model)));
+        refresh.start();
+        frame.setVisible(true);
+    }
+
+    // Fill levels per area over the last hour, refreshed every second, with a button to replay a recorded feed.
+    private static void showSensorPanel() {
+        JFrame frame = new JFrame("Bin Sensors");
+        frame.setSize(800, 350);
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        String[] columns = {"Area", "Bins", "Waiting (kg)", "Full bins", "Readings (1 h)", "Mean fill", "Highest", "kg/h", "Collect"};
+        javax.swing.table.DefaultTableModel model = new javax.swing.table.DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JLabel totals = new JLabel(" ");
+        long[] previous = {sensors.applied(), System.nanoTime()};
+        Timer refresh = new Timer(1000, e -> {
+            long applied = sensors.applied();
+            long now = System.nanoTime();
+            double rate = (applied - previous[0]) / Math.max(1e-3, (now - previous[1]) / 1e9);
+            previous[0] = applied;
+            previous[1] = now;
+            List<BinSensors.AreaStatus> statuses = sensors.summary(60);
+            model.setRowCount(statuses.size());
+            for (int row = 0; row < statuses.size(); row++) {
+                BinSensors.AreaStatus status = statuses.get(row);
+                Object[] values = {status.area, status.bins, status.kg, status.fullBins, status.readings,
+                        Float.isNaN(status.meanLevel) ? "-" : String.format("%.0f%%", status.meanLevel),
+                        String.format("%.0f%%", status.highestLevel), String.format("%.1f", status.kgPerHour),
+                        status.needsCollection ? "yes" : ""};
+                for (int column = 0; column < values.length; column++) model.setValueAt(values[column], row, column);
+            }
+            totals.setText(String.format("%,d bins, %,d readings (%,.0f/s), %,d rejected, %,d out of order",
+                    sensors.bins(), applied, rate, sensors.rejected(), sensors.stale()));
+        });
+        refresh.setInitialDelay(0);
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                refresh.stop();
+            }
+        });
+
+        JButton replayButton = new JButton("Replay Feed File...");
+        replayButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+            Path file = chooser.getSelectedFile().toPath();
+            sensors.replay(file, 0).whenComplete((readings, error) -> SwingUtilities.invokeLater(() ->
+                    JOptionPane.showMessageDialog(frame, error != null ? "Replay failed: " + error.getMessage()
+                            : String.format("Replayed %,d readings from %s.", readings, file.getFileName()))));
+        });
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(totals, BorderLayout.CENTER);
+        bottom.add(replayButton, BorderLayout.EAST);
+        frame.add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+        frame.add(bottom, BorderLayout.SOUTH);
+        refresh.start();
+        frame.setVisible(true);
+    }
+
+    // Imports a road network or bin inventory in the background, showing progress and throughput, and saves
+    // the result as a new data snapshot.
+    private static void showImportDialog(JFrame owner) {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "Road networks and bin inventories (CSV, GeoJSON, OSM XML)", "csv", "txt", "geojson", "json", "osm", "xml", "pbf"));
+        if (chooser.showOpenDialog(owner) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        int createAreas = JOptionPane.showConfirmDialog(owner,
+                "Add areas that are not known yet?\n(No rejects routes to unknown areas.)", "Import", JOptionPane.YES_NO_CANCEL_OPTION);
+        if (createAreas == JOptionPane.CANCEL_OPTION || createAreas == JOptionPane.CLOSED_OPTION) {
+            return;
+        }
+
+        JDialog dialog = new JDialog(owner, "Importing " + file.getFileName(), false);
+        dialog.setSize(450, 150);
+        dialog.setLayout(new BorderLayout(5, 5));
+        JProgressBar progressBar = new JProgressBar(0, 1000);
+        JLabel status = new JLabel("Starting...");
+        JButton cancelButton = new JButton("Cancel");
+        dialog.add(status, BorderLayout.NORTH);
+        dialog.add(progressBar, BorderLayout.CENTER);
+        dialog.add(cancelButton, BorderLayout.SOUTH);
+        dialog.setLocationRelativeTo(owner);
+
+        long started = System.nanoTime();
+        SwingWorker<NetworkImporter.Result, long[]> worker = new SwingWorker<>() {
+            @Override
+            protected NetworkImporter.Result doInBackground() throws IOException {
+                NetworkImporter importer = new NetworkImporter(areaGraph, createAreas == JOptionPane.YES_OPTION,
+                        (read, total, rows) -> publish(new long[] {read, total, rows}));
+                NetworkImporter.Result result = importer.importFile(file);
+                try {
+                    dataStore.save();
+                } catch (IOException e) {
+                    result.problems.add("The import is in use but could not be saved: " + e.getMessage());
+                }
+                return result;
+            }
+
+            @Override
+            protected void process(List<long[]> updates) {
+                long[] latest = updates.get(updates.size() - 1);
+                double seconds = Math.max(1e-3, (System.nanoTime() - started) / 1e9);
+                progressBar.setValue((int) (1000 * latest[0] / Math.max(1, latest[1])));
+                status.setText(String.format("%.1f of %.1f MB, %,d rows (%.1f MB/s, %,.0f rows/s)",
+                        latest[0] / 1e6, latest[1] / 1e6, latest[2], latest[0] / 1e6 / seconds, latest[2] / seconds));
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+                try {
+                    NetworkImporter.Result result = get();
+                    wasteProductionData.putAll(result.waste);
+                    String message = result.toString();
+                    if (!result.problems.isEmpty()) {
+                        message += "\n\nFirst problems:\n" + String.join("\n", result.problems);
+                    }
+                    JOptionPane.showMessageDialog(owner, message, "Import finished", JOptionPane.INFORMATION_MESSAGE);
+                } catch (CancellationException e) {
+                    JOptionPane.showMessageDialog(owner, "Import cancelled.");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    String reason = cause instanceof CancellationException || cause instanceof java.nio.channels.ClosedByInterruptException
+                            ? "Import cancelled." : "Import failed: " + cause.getMessage();
+                    JOptionPane.showMessageDialog(owner, reason);
+                }
+            }
+        };
+        cancelButton.addActionListener(e -> worker.cancel(true));
+        worker.execute();
+        dialog.setVisible(true);
+    }
+
+    private static void showCommunityProgramDashboard() {
+        showDashboard("Community Waste Reduction Program", WasteCollectionSwingVisualizer::buildCommunityProgramDashboard);
+    }
+
+    private static JFrame buildCommunityProgramDashboard(String title) {
+        JFrame frame = new JFrame(title);
+        frame.setSize(400, 300);
+        frame.setLayout(new GridLayout(3, 1));
+
+        JButton viewProgramsButton = new JButton("View Community Programs");
+        JButton addProgramButton = new JButton("Add New Program");
+        JButton backButton = new JButton("Back to Main Menu");
+
+        viewProgramsButton.addActionListener(e -> viewCommunityPrograms());
+        addProgramButton.addActionListener(e -> addCommunityProgram());
+        backButton.addActionListener(e -> frame.setVisible(false));
+
+        frame.add(viewProgramsButton);
+        frame.add(addProgramButton);
+        frame.add(backButton);
+
+        return frame;
+    }
+
+    private static void showPolicyUpdateDashboard() {
+        showDashboard("Waste Disposal Policy Updates", WasteCollectionSwingVisualizer::buildPolicyUpdateDashboard);
+    }
+
+    private static JFrame buildPolicyUpdateDashboard(String title) {
+        JFrame frame = new JFrame(title);
+        frame.setSize(400, 300);
+        frame.setLayout(new GridLayout(3, 1));
+
+        JButton viewPoliciesButton = new JButton("View Policy Updates");
+        JButton addPolicyButton = new JButton("Add New Policy Update");
+        JButton backButton = new JButton("Back to Main Menu");
+
+        viewPoliciesButton.addActionListener(e -> viewPolicyUpdates());
+        addPolicyButton.addActionListener(e -> addPolicyUpdate());
+        backButton.addActionListener(e -> frame.setVisible(false));
+
+        frame.add(viewPoliciesButton);
+        frame.add(addPolicyButton);
+        frame.add(backButton);
+
+        return frame;
+    }
+
+    // World positions (km) of every area in one snapshot plus a quadtree over them. Imported coordinates
+    // are used as they are; other graphs get a force-directed layout computed in the background, seeded
+    // from the previous snapshot's layout so areas stay put when a route is added.
+    private static class MapLayout {
+        private static final ExecutorService layoutWorker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "map-layout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private static final Map<CompactGraph, CompletableFuture<MapLayout>> layouts = new WeakHashMap<>();
+
+        final double[] xs;
+        final double[] ys;
+        final double minX, minY, maxX, maxY;
+        final SpatialIndex index;
+
+        MapLayout(double[] xs, double[] ys) {
+            this.xs = xs;
+            this.ys = ys;
+            double lowX = 0, lowY = 0, highX = 1, highY = 1;
+            if (xs.length > 0) {
+                lowX = highX = xs[0];
+                lowY = highY = ys[0];
+                for (int i = 1; i < xs.length; i++) {
+                    lowX = Math.min(lowX, xs[i]);
+                    highX = Math.max(highX, xs[i]);
+                    lowY = Math.min(lowY, ys[i]);
+                    highY = Math.max(highY, ys[i]);
+                }
+            }
+            minX = lowX;
+            minY = lowY;
+            maxX = highX;
+            maxY = highY;
+            index = new SpatialIndex(xs, ys);
+        }
+
+        static synchronized CompletableFuture<MapLayout> of(CompactGraph graph, MapLayout seed) {
+            CompletableFuture<MapLayout> layout = layouts.get(graph);
+            if (layout == null) {
+                if (graph.hasLocations()) {
+                    layout = CompletableFuture.completedFuture(new MapLayout(graph.xs, graph.ys));
+                } else {
+                    layout = CompletableFuture.supplyAsync(() -> forceDirected(graph, seed), layoutWorker);
+                }
+                layouts.put(graph, layout);
+            }
+            return layout;
+        }
+
+        // Placeholder shown until the real layout is ready: every area on one ring.
+        static MapLayout circle(CompactGraph graph) {
+            int n = graph.areaCount();
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            double radius = Math.max(1, Math.sqrt(n));
+            for (int i = 0; i < n; i++) {
+                xs[i] = radius * Math.cos(2 * Math.PI * i / n);
+                ys[i] = radius * Math.sin(2 * Math.PI * i / n);
+            }
+            return new MapLayout(xs, ys);
+        }
+
+        // Fruchterman-Reingold with an ideal route length of 1. Repulsion is limited to a 2-unit radius
+        // and found through a uniform grid, so an iteration is linear in areas plus routes.
+        static MapLayout forceDirected(CompactGraph graph, MapLayout seed) {
+            int n = graph.areaCount();
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            Random random = new Random(n);
+            double side = Math.max(1, Math.sqrt(n));
+            int seeded = seed == null ? 0 : Math.min(n, seed.xs.length);
+            for (int i = 0; i < n; i++) {
+                if (i < seeded) {
+                    xs[i] = seed.xs[i];
+                    ys[i] = seed.ys[i];
+                    continue;
+                }
+                xs[i] = random.nextDouble() * side;
+                ys[i] = random.nextDouble() * side;
+                for (int r = graph.offsets[i]; r < graph.offsets[i + 1]; r++) {
+                    if (graph.targets[r] < seeded) { // new area: start next to a neighbour that already has a place
+                        xs[i] = seed.xs[graph.targets[r]] + random.nextDouble() - 0.5;
+                        ys[i] = seed.ys[graph.targets[r]] + random.nextDouble() - 0.5;
+                        break;
+                    }
+                }
+            }
+            int iterations = seeded == n ? 0 : seeded > 0 ? 60 : 200;
+            double temperature = seeded > 0 ? 0.5 : side / 10;
+            double cooling = temperature / Math.max(1, iterations);
+            double[] moveX = new double[n];
+            double[] moveY = new double[n];
+            int[] cellStart = new int[0];
+            int[] cellOrder = new int[n];
+            int[] cellOf = new int[n];
+
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                Arrays.fill(moveX, 0);
+                Arrays.fill(moveY, 0);
+                double lowX = Double.MAX_VALUE, lowY = Double.MAX_VALUE, highX = -Double.MAX_VALUE, highY = -Double.MAX_VALUE;
+                for (int i = 0; i < n; i++) {
+                    lowX = Math.min(lowX, xs[i]);
+                    lowY = Math.min(lowY, ys[i]);
+                    highX = Math.max(highX, xs[i]);
+                    highY = Math.max(highY, ys[i]);
+                }
+                double cell = Math.max(2, Math.max(highX - lowX, highY - lowY) / (2 * side));
+                int columns = (int) ((highX - lowX) / cell) + 1;
+                int rows = (int) ((highY - lowY) / cell) + 1;
+                if (cellStart.length < columns * rows + 1) cellStart = new int[columns * rows + 1];
+                Arrays.fill(cellStart, 0, columns * rows + 1, 0);
+                for (int i = 0; i < n; i++) {
+                    cellOf[i] = (int) ((ys[i] - lowY) / cell) * columns + (int) ((xs[i] - lowX) / cell);
+                    cellStart[cellOf[i] + 1]++;
+                }
+                for (int c = 0; c < columns * rows; c++) cellStart[c + 1] += cellStart[c];
+                int[] fill = Arrays.copyOf(cellStart, columns * rows);
+                for (int i = 0; i < n; i++) cellOrder[fill[cellOf[i]]++] = i;
+
+                for (int i = 0; i < n; i++) {
+                    int column = cellOf[i] % columns;
+                    int row = cellOf[i] / columns;
+                    for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                        for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                            for (int k = cellStart[r * columns + c]; k < cellStart[r * columns + c + 1]; k++) {
+                                int j = cellOrder[k];
+                                if (j == i) continue;
+                                double dx = xs[i] - xs[j];
+                                double dy = ys[i] - ys[j];
+                                double squared = dx * dx + dy * dy;
+                                if (squared > 4) continue;
+                                if (squared < 1e-9) {
+                                    dx = random.nextDouble() - 0.5;
+                                    dy = random.nextDouble() - 0.5;
+                                    squared = dx * dx + dy * dy;
+                                }
+                                moveX[i] += dx / squared; // k^2 / d along the unit vector
+                                moveY[i] += dy / squared;
+                            }
+                        }
+                    }
+                }
+                for (int a = 0; a < n; a++) {
+                    for (int r = graph.offsets[a]; r < graph.offsets[a + 1]; r++) {
+                        int b = graph.targets[r];
+                        double dx = xs[a] - xs[b];
+                        double dy = ys[a] - ys[b];
+                        double d = Math.sqrt(dx * dx + dy * dy); // d^2 / k along the unit vector
+                        moveX[a] -= dx * d;
+                        moveY[a] -= dy * d;
+                    }
+                }
+                for (int i = 0; i < n; i++) {
+                    double length = Math.sqrt(moveX[i] * moveX[i] + moveY[i] * moveY[i]);
+                    if (length > 0) {
+                        double step = Math.min(length, temperature) / length;
+                        xs[i] += moveX[i] * step;
+                        ys[i] += moveY[i] * step;
+                    }
+                }
+                temperature = Math.max(0.01, temperature - cooling);
+            }
+            return new MapLayout(xs, ys);
+        }
+    }
+
+    // Point quadtree over area positions. Areas are partitioned in place in 'order', so every tree
+    // node covers one contiguous range of it; leaves hold up to LEAF_SIZE areas.
+    private static class SpatialIndex {
+        private static final int LEAF_SIZE = 32;
+        private static final int MAX_DEPTH = 24;
+
+        private final double[] xs;
+        private final double[] ys;
+        private final int[] order;
+        // Per tree node: bounds, range in order[] and first child (-1 for leaves; children are consecutive)
+        private double[] minX = new double[64], minY = new double[64], maxX = new double[64], maxY = new double[64];
+        private int[] start = new int[64], end = new int[64], firstChild = new int[64];
+        private int nodeCount;
+
+        SpatialIndex(double[] xs, double[] ys) {
+            this.xs = xs;
+            this.ys = ys;
+            order = new int[xs.length];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            double lowX = 0, lowY = 0, highX = 0, highY = 0;
+            for (int i = 0; i < xs.length; i++) {
+                if (i == 0 || xs[i] < lowX) lowX = xs[i];
+                if (i == 0 || ys[i] < lowY) lowY = ys[i];
+                if (i == 0 || xs[i] > highX) highX = xs[i];
+                if (i == 0 || ys[i] > highY) highY = ys[i];
+            }
+            build(newNode(lowX, lowY, highX, highY, 0, order.length), 0);
+        }
+
+        private int newNode(double lowX, double lowY, double highX, double highY, int from, int to) {
+            if (nodeCount == start.length) {
+                int size = nodeCount * 2;
+                minX = Arrays.copyOf(minX, size);
+                minY = Arrays.copyOf(minY, size);
+                maxX = Arrays.copyOf(maxX, size);
+                maxY = Arrays.copyOf(maxY, size);
+                start = Arrays.copyOf(start, size);
+                end = Arrays.copyOf(end, size);
+                firstChild = Arrays.copyOf(firstChild, size);
+            }
+            minX[nodeCount] = lowX;
+            minY[nodeCount] = lowY;
+            maxX[nodeCount] = highX;
+            maxY[nodeCount] = highY;
+            start[nodeCount] = from;
+            end[nodeCount] = to;
+            firstChild[nodeCount] = -1;
+            return nodeCount++;
+        }
+
+        private void build(int node, int depth) {
+            if (end[node] - start[node] <= LEAF_SIZE || depth == MAX_DEPTH) return;
+            double midX = (minX[node] + maxX[node]) / 2;
+            double midY = (minY[node] + maxY[node]) / 2;
+            int splitY = partition(start[node], end[node], false, midY);
+            int splitLow = partition(start[node], splitY, true, midX);
+            int splitHigh = partition(splitY, end[node], true, midX);
+            // Allocate all four children first so they are consecutive, then recurse
+            int first = newNode(minX[node], minY[node], midX, midY, start[node], splitLow);
+            newNode(midX, minY[node], maxX[node], midY, splitLow, splitY);
+            newNode(minX[node], midY, midX, maxY[node], splitY, splitHigh);
+            newNode(midX, midY, maxX[node], maxY[node], splitHigh, end[node]);
+            firstChild[node] = first;
+            for (int child = first; child < first + 4; child++) {
+                build(child, depth + 1);
+            }
+        }
+
+        // Moves areas below the split value to the front of order[from, to) and returns the boundary.
+        private int partition(int from, int to, boolean byX, double split) {
+            int low = from;
+            for (int i = from; i < to; i++) {
+                int area = order[i];
+                if ((byX ? xs[area] : ys[area]) < split) {
+                    order[i] = order[low];
+                    order[low++] = area;
+                }
+            }
+            return low;
+        }
+
+        // Writes the areas inside the rectangle into out and returns how many there are; out must have
+        // room for every area.
+        int query(double lowX, double lowY, double highX, double highY, int[] out) {
+            return query(0, lowX, lowY, highX, highY, out, 0);
+        }
+
+        private int query(int node, double lowX, double lowY, double highX, double highY, int[] out, int count) {
+            if (nodeCount == 0 || maxX[node] < lowX || minX[node] > highX || maxY[node] < lowY || minY[node] > highY) {
+                return count;
+            }
+            if (firstChild[node] < 0) {
+                for (int i = start[node]; i < end[node]; i++) {
+                    int area = order[i];
+                    if (xs[area] >= lowX && xs[area] <= highX && ys[area] >= lowY && ys[area] <= highY) {
+                        out[count++] = area;
+                    }
+                }
+                return count;
+            }
+            for (int child = firstChild[node]; child < firstChild[node] + 4; child++) {
+                count = query(child, lowX, lowY, highX, highY, out, count);
+            }
+            return count;
+        }
+    }
+
+    // Map view of the current graph snapshot with pan (drag), zoom (mouse wheel) and fit (double
+    // click). Only areas inside the viewport are drawn, found through the layout's quadtree, and the
+    // detail level drops with zoom: labels and routes that shrink to a few pixels are skipped. The
+    // network is rendered into a back buffer that is reused until the snapshot, size or view changes,
+    // so a plain repaint only draws the highlighted route and tours on top of it.
+    private static class GraphPanel extends JPanel {
+        private final int nodeRadius = 30;
+        private final int panelPadding = 50;
+        private static final int DETAIL_LIMIT = 400; // most visible areas still drawn with circles and labels
+        private static final int MINOR_EDGE_PIXELS = 3;
+        private final Graph source;
+
+        private CompactGraph layoutGraph;
+        private MapLayout layout;
+        private boolean placeholder; // layout is the ring shown while the real one is computed
+        private boolean fitted;
+        // View transform: screen = world * scale + offset
+        private double scale = 1;
+        private double offsetX;
+        private double offsetY;
+        private BufferedImage networkImage;
+        private boolean viewChanged = true;
+        private int[] visible = new int[0];
+        private int visibleCount;
+        private int[] visibleStamp = new int[0];
+        private int visibleGeneration;
+        private boolean detailed;
+
+        private List<String> highlightedRoute = new ArrayList<>(); // Store the optimized route
+        private List<List<String>> highlightedTours = new ArrayList<>(); // Collection tours, one colour each
+        private static final Color[] TOUR_COLORS = {
+                new Color(0, 150, 0), new Color(230, 120, 0), new Color(140, 0, 170), new Color(0, 140, 160)
+        };
+        // Highlighted edges keyed by edgeKey and the areas on the route, resolved against highlightGraph
+        private CompactGraph highlightGraph;
+        private final Map<Long, Color> highlightedEdges = new HashMap<>();
+        private final List<Integer> highlightedAreas = new ArrayList<>();
+        // Heat overlay: areas coloured by distance to their nearest facility, while the snapshot is heat.graph
+        private Coverage heat;
+        private int heatThreshold;
+        private static final Color[] HEAT_COLORS = {
+                new Color(0, 160, 0), new Color(220, 200, 0), new Color(240, 130, 0), new Color(210, 0, 0), Color.LIGHT_GRAY
+        };
+
+        GraphPanel() {
+            this(areaGraph);
+        }
+
+        GraphPanel(Graph source) {
+            this.source = source;
+            MouseAdapter mouse = new MouseAdapter() {
+                private Point dragFrom;
+
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    dragFrom = e.getPoint();
+                }
+
+                @Override
+                public void mouseDragged(MouseEvent e) {
+                    if (dragFrom != null) {
+                        panBy(e.getX() - dragFrom.x, e.getY() - dragFrom.y);
+                        dragFrom = e.getPoint();
+                    }
+                }
+
+                @Override
+                public void mouseWheelMoved(MouseWheelEvent e) {
+                    zoomAt(Math.pow(1.15, -e.getPreciseWheelRotation()), e.getX(), e.getY());
+                }
+
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (e.getClickCount() == 2) fitToView();
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+            addMouseWheelListener(mouse);
+        }
+
+        public void setHighlightedRoute(List<String> route) {
+            highlightedRoute = route;
+            highlightGraph = null;
+            repaint(); // Trigger re-render
+        }
+
+        public void setHighlightedTours(List<List<String>> tours) {
+            highlightedTours = tours;
+            highlightGraph = null;
+            repaint();
+        }
+
+        // Colours areas by the distance to their nearest facility against threshold (km); null turns it off.
+        public void setHeat(Coverage coverage, int threshold) {
+            heat = coverage;
+            heatThreshold = threshold;
+            viewChanged = true;
+            repaint();
+        }
+
+        public void panBy(int dx, int dy) {
+            offsetX += dx;
+            offsetY += dy;
+            viewChanged = true;
+            repaint();
+        }
+
+        public void zoomAt(double factor, int x, int y) {
+            offsetX = x - (x - offsetX) * factor;
+            offsetY = y - (y - offsetY) * factor;
+            scale *= factor;
+            viewChanged = true;
+            repaint();
+        }
+
+        public void fitToView() {
+            fitted = false;
+            viewChanged = true;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            long started = System.nanoTime();
+            super.paintComponent(g);
+            Graphics2D g2d = (Graphics2D) g;
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            CompactGraph graph = source.compact();
+            if (graph != layoutGraph) {
+                updateLayout(graph);
+            }
+            if (!fitted && getWidth() > 0 && getHeight() > 0) {
+                fit();
+            }
+            if (viewChanged || networkImage == null
+                    || networkImage.getWidth() != getWidth() || networkImage.getHeight() != getHeight()) {
+                renderNetwork(graph);
+                viewChanged = false;
+            }
+            if (highlightGraph != graph) {
+                resolveHighlights(graph);
+            }
+            g2d.drawImage(networkImage, 0, 0, null);
+
+            // Overlay: highlighted edges, then the areas they touch so the circles stay on top
+            for (var entry : highlightedEdges.entrySet()) {
+                int from = (int) (entry.getKey() >>> 32);
+                int to = (int) (long) entry.getKey();
+                g2d.setColor(entry.getValue());
+                g2d.setStroke(new BasicStroke(detailed ? 1 : 2));
+                g2d.drawLine(screenX(from), screenY(from), screenX(to), screenY(to));
+            }
+            for (long key : highlightedEdges.keySet()) {
+                drawNode(g2d, graph, (int) (key >>> 32), false);
+                drawNode(g2d, graph, (int) key, false);
+            }
+            for (int area : highlightedAreas) {
+                drawNode(g2d, graph, area, true);
+            }
+            if (heat != null && heat.graph == graph) {
+                drawHeatLegend(g2d);
+            }
+            Metrics.REPAINTS.recordSince(started);
+        }
+
+        // Shows the previous layout, or a ring when areas were added, until the snapshot's layout is ready.
+        private void updateLayout(CompactGraph graph) {
+            MapLayout previous = layout;
+            boolean sameAreas = previous != null && previous.xs.length == graph.areaCount();
+            CompletableFuture<MapLayout> next = MapLayout.of(graph, placeholder ? null : previous);
+            layoutGraph = graph;
+            MapLayout ready = next.getNow(null);
+            if (ready != null) {
+                layout = ready;
+                placeholder = false;
+            } else {
+                if (!sameAreas) {
+                    layout = MapLayout.circle(graph);
+                    placeholder = true;
+                }
+                next.thenAccept(result -> SwingUtilities.invokeLater(() -> {
+                    if (layoutGraph != graph) return;
+                    if (placeholder) fitted = false; // keep the user's view if only routes changed
+                    layout = result;
+                    placeholder = false;
+                    viewChanged = true;
+                    repaint();
+                }));
+            }
+            if (!sameAreas) fitted = false;
+            viewChanged = true;
+        }
+
+        private void fit() {
+            double width = Math.max(1e-9, layout.maxX - layout.minX);
+            double height = Math.max(1e-9, layout.maxY - layout.minY);
+            scale = Math.min((getWidth() - 2.0 * panelPadding) / width, (getHeight() - 2.0 * panelPadding) / height);
+            if (!(scale > 0) || Double.isInfinite(scale)) scale = 1;
+            offsetX = getWidth() / 2.0 - (layout.minX + layout.maxX) / 2 * scale;
+            offsetY = getHeight() / 2.0 - (layout.minY + layout.maxY) / 2 * scale;
+            fitted = true;
+            viewChanged = true;
+        }
+
+        private int screenX(int area) {
+            return (int) Math.round(layout.xs[area] * scale + offsetX);
+        }
+
+        private int screenY(int area) {
+            return (int) Math.round(layout.ys[area] * scale + offsetY);
+        }
+
+        private void renderNetwork(CompactGraph graph) {
+            if (networkImage == null || networkImage.getWidth() != getWidth() || networkImage.getHeight() != getHeight()) {
+                networkImage = new BufferedImage(Math.max(1, getWidth()), Math.max(1, getHeight()), BufferedImage.TYPE_INT_ARGB);
+            }
+            Graphics2D g2d = networkImage.createGraphics();
+            g2d.setComposite(AlphaComposite.Clear);
+            g2d.fillRect(0, 0, networkImage.getWidth(), networkImage.getHeight());
+            g2d.setComposite(AlphaComposite.SrcOver);
+            g2d.setFont(getFont());
+
+            // Visible areas, with a margin of one circle so partly visible ones are drawn too
+            double margin = nodeRadius / scale;
+            if (visible.length < graph.areaCount()) {
+                visible = new int[graph.areaCount()];
+                visibleStamp = new int[graph.areaCount()];
+            }
+            visibleCount = layout.index.query((-offsetX) / scale - margin, (-offsetY) / scale - margin,
+                    (getWidth() - offsetX) / scale + margin, (getHeight() - offsetY) / scale + margin, visible);
+            if (++visibleGeneration == Integer.MAX_VALUE) {
+                Arrays.fill(visibleStamp, 0);
+                visibleGeneration = 1;
+            }
+            for (int i = 0; i < visibleCount; i++) visibleStamp[visible[i]] = visibleGeneration;
+            detailed = visibleCount <= DETAIL_LIMIT;
+            if (detailed) {
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            }
+
+            // Routes with at least one visible end; each drawn once, from its lower-numbered end when both
+            // ends are visible. Routes that would be only a few pixels long are skipped at low zoom.
+            g2d.setColor(detailed ? Color.BLACK : Color.GRAY);
+            for (int i = 0; i < visibleCount; i++) {
+                int from = visible[i];
+                int fromX = screenX(from);
+                int fromY = screenY(from);
+                for (int r = graph.offsets[from]; r < graph.offsets[from + 1]; r++) {
+                    int to = graph.targets[r];
+                    if (to == from || (visibleStamp[to] == visibleGeneration && to < from)) continue;
+                    int toX = screenX(to);
+                    int toY = screenY(to);
+                    int pixels = Math.abs(toX - fromX) + Math.abs(toY - fromY);
+                    if (!detailed && pixels < MINOR_EDGE_PIXELS) continue;
+                    g2d.drawLine(fromX, fromY, toX, toY);
+                    if (detailed && pixels > 60) {
+                        g2d.drawString(graph.distances[r] + " km", (fromX + toX) / 2, (fromY + toY) / 2);
+                    }
+                }
+            }
+            for (int i = 0; i < visibleCount; i++) {
+                drawNode(g2d, graph, visible[i], false);
+            }
+            g2d.dispose();
+        }
+
+        private void resolveHighlights(CompactGraph graph) {
+            highlightedEdges.clear();
+            highlightedAreas.clear();
+            for (int i = highlightedTours.size() - 1; i >= 0; i--) { // earlier tours win shared edges
+                addHighlightedEdges(graph, highlightedTours.get(i), TOUR_COLORS[i % TOUR_COLORS.length]);
+            }
+            addHighlightedEdges(graph, highlightedRoute, Color.RED);
+            for (String area : highlightedRoute) {
+                int id = graph.idOf(area);
+                if (id >= 0) highlightedAreas.add(id);
+            }
+            highlightGraph = graph;
+        }
+
+        private void addHighlightedEdges(CompactGraph graph, List<String> path, Color color) {
+            for (int i = 0; i + 1 < path.size(); i++) {
+                int from = graph.idOf(path.get(i));
+                int to = graph.idOf(path.get(i + 1));
+                if (from >= 0 && to >= 0 && from != to) {
+                    highlightedEdges.put(edgeKey(from, to), color);
+                }
+            }
+        }
+
+        private static long edgeKey(int a, int b) {
+            return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+        }
+
+        // Full circle with label when zoomed in enough, otherwise a small dot.
+        private void drawNode(Graphics2D g2d, CompactGraph graph, int area, boolean isHighlighted) {
+            int x = screenX(area);
+            int y = screenY(area);
+            g2d.setColor(isHighlighted ? Color.RED : heat != null && heat.graph == graph ? heatColor(area) : Color.BLUE);
+            if (detailed) {
+                g2d.fillOval(x - nodeRadius / 2, y - nodeRadius / 2, nodeRadius, nodeRadius);
+                g2d.setColor(Color.WHITE);
+                g2d.drawString(graph.areaName(area), x - 5, y + 5);
+            } else {
+                int size = isHighlighted ? 6 : 3;
+                g2d.fillRect(x - size / 2, y - size / 2, size, size);
+            }
+        }
+
+        // Facilities blue; other areas by thirds of the threshold, red past it, grey when not covered at all.
+        private Color heatColor(int area) {
+            int distance = heat.distance[area];
+            if (distance == 0 && heat.nearest[area] >= 0) return Color.BLUE;
+            if (distance == Integer.MAX_VALUE) return HEAT_COLORS[4];
+            if (distance > heatThreshold) return HEAT_COLORS[3];
+            return HEAT_COLORS[(int) Math.min(2, 3L * Math.max(0, distance - 1) / Math.max(1, heatThreshold))];
+        }
+
+        private void drawHeatLegend(Graphics2D g2d) {
+            int third = heatThreshold / 3;
+            String[] labels = {"up to " + third + " km", "up to " + 2 * third + " km", "up to " + heatThreshold + " km",
+                    "over " + heatThreshold + " km", "beyond " + heat.bound + " km or unreachable"};
+            int x = 10;
+            int y = getHeight() - 10 - 16 * labels.length;
+            for (int i = 0; i < labels.length; i++) {
+                if (i == labels.length - 1 && heat.bound == Integer.MAX_VALUE) labels[i] = "unreachable";
+                g2d.setColor(HEAT_COLORS[i]);
+                g2d.fillRect(x, y + 16 * i, 12, 12);
+                g2d.setColor(Color.BLACK);
+                g2d.drawString(labels[i], x + 18, y + 16 * i + 11);
+            }
+        }
+    }
+
+
+    
+    // Feedback a page at a time, newest first, narrowed by words and area, next to what it has been about
+    // over the last day (refreshed every five seconds).
+    private static void viewCitizenFeedback() {
+        int pageSize = 100;
+        JFrame frame = new JFrame("Citizen Feedback");
+        frame.setSize(850, 500);
+        frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        javax.swing.table.DefaultTableModel rows = new javax.swing.table.DefaultTableModel(
+                new String[] {"Submitted", "Area", "Feedback"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTextField query = new JTextField(20);
+        JTextField area = new JTextField(8);
+        JButton searchButton = new JButton("Search");
+        JButton newerButton = new JButton("Newer");
+        JButton olderButton = new JButton("Older");
+        JLabel status = new JLabel(" ");
+        int[] offset = {0};
+        Runnable showPage = () -> {
+            try {
+                FeedbackStore.Page page = feedbackStore.page(query.getText(), area.getText().trim(), offset[0], pageSize);
+                rows.setRowCount(0);
+                for (FeedbackStore.Feedback feedback : page.items) {
+                    rows.addRow(new Object[] {feedback.time > 0 ? String.format("%tF %<tR", feedback.time) : "-",
+                            feedback.area, feedback.text});
+                }
+                status.setText(page.total == 0 ? "No feedback found." : String.format("%,d-%,d of %,d",
+                        offset[0] + 1, offset[0] + page.items.size(), page.total));
+                newerButton.setEnabled(offset[0] > 0);
+                olderButton.setEnabled(offset[0] + page.items.size() < page.total);
+            } catch (IOException e) {
+                status.setText("Could not read the feedback: " + e.getMessage());
+            }
+        };
+        ActionListener search = e -> {
+            offset[0] = 0;
+            showPage.run();
+        };
+        query.addActionListener(search);
+        area.addActionListener(search);
+        searchButton.addActionListener(search);
+        newerButton.addActionListener(e -> {
+            offset[0] = Math.max(0, offset[0] - pageSize);
+            showPage.run();
+        });
+        olderButton.addActionListener(e -> {
+            offset[0] += pageSize;
+            showPage.run();
+        });
+        JPanel searchRow = new JPanel();
+        searchRow.add(new JLabel("Words:"));
+        searchRow.add(query);
+        searchRow.add(new JLabel("Area:"));
+        searchRow.add(area);
+        searchRow.add(searchButton);
+        JPanel pager = new JPanel(new BorderLayout());
+        JPanel pageButtons = new JPanel();
+        pageButtons.add(newerButton);
+        pageButtons.add(olderButton);
+        pager.add(status, BorderLayout.CENTER);
+        pager.add(pageButtons, BorderLayout.EAST);
+        JTable table = new JTable(rows);
+        table.getColumnModel().getColumn(0).setPreferredWidth(120);
+        table.getColumnModel().getColumn(1).setPreferredWidth(60);
+        table.getColumnModel().getColumn(2).setPreferredWidth(650);
+        JPanel browse = new JPanel(new BorderLayout());
+        browse.add(searchRow, BorderLayout.NORTH);
+        browse.add(new JScrollPane(table), BorderLayout.CENTER);
+        browse.add(pager, BorderLayout.SOUTH);
+
+        String[] counted = {"Last 24 h", "This hour", "Busiest hour"};
+        javax.swing.table.DefaultTableModel areaCounts = new javax.swing.table.DefaultTableModel(
+                new String[] {"Area", counted[0], counted[1], counted[2]}, 0);
+        javax.swing.table.DefaultTableModel keywordCounts = new javax.swing.table.DefaultTableModel(
+                new String[] {"Keyword", counted[0], counted[1], counted[2]}, 0);
+        BiConsumer<javax.swing.table.DefaultTableModel, List<FeedbackStore.Count>> fill = (model, counts) -> {
+            model.setRowCount(0);
+            for (FeedbackStore.Count count : counts) {
+                model.addRow(new Object[] {count.key, count.window, count.lastHour, count.peak});
+            }
+        };
+        JLabel dayTotals = new JLabel(" ");
+        Timer refresh = new Timer(5000, e -> {
+            fill.accept(areaCounts, feedbackStore.trending(true, 25));
+            fill.accept(keywordCounts, feedbackStore.trending(false, 25));
+            int[] hourly = feedbackStore.hourly();
+            dayTotals.setText(String.format("%,d submissions in the last 24 hours, %,d this hour; %,d in all",
+                    Arrays.stream(hourly).sum(), hourly[hourly.length - 1], feedbackStore.size()));
+        });
+        refresh.setInitialDelay(0);
+        JPanel tables = new JPanel(new GridLayout(1, 2));
+        for (javax.swing.table.DefaultTableModel model : List.of(areaCounts, keywordCounts)) {
+            JTable countTable = new JTable(model);
+            countTable.setDefaultEditor(Object.class, null);
+            tables.add(new JScrollPane(countTable));
+        }
+        JPanel trends = new JPanel(new BorderLayout());
+        trends.add(dayTotals, BorderLayout.NORTH);
+        trends.add(tables, BorderLayout.CENTER);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Feedback", browse);
+        tabs.addTab("Last 24 Hours", trends);
+        frame.addWindowListener(new java.awt.event.WindowAdapter() {
+            @Override
+            public void windowClosed(java.awt.event.WindowEvent e) {
+                refresh.stop();
+            }
+        });
+        frame.add(tabs);
+        showPage.run();
+        refresh.start();
+        frame.setVisible(true);
+    }
+
+    private static void addNewRoute() {
+        String startArea = JOptionPane.showInputDialog("Enter starting area:");
+        if (startArea == null) return;
+        String destinationArea = JOptionPane.showInputDialog("Enter destination area:");
+        if (destinationArea == null) return;
+        String distanceText = JOptionPane.showInputDialog("Enter distance (in km):");
+        if (distanceText == null) return;
+
+        try {
+            int distance = Integer.parseInt(distanceText.trim());
+            dataStore.addRoute(startArea.trim(), destinationArea.trim(), distance);
+            JOptionPane.showMessageDialog(null, "New route added successfully!");
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(null, "The distance must be a whole number of km.");
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(null, "The route was not added: " + e.getMessage());
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(null, "The route could not be saved: " + e.getMessage());
+        }
+    }
+    
+    
+
+    private static void showCollectorDashboard() {
+        showDashboard("Collector Dashboard", WasteCollectionSwingVisualizer::buildCollectorDashboard);
+    }
+
+    private static JFrame buildCollectorDashboard(String title) {
+        JFrame frame = new JFrame(title);
+        frame.setSize(600, 600);
+        frame.setLayout(new BorderLayout());
+
+        JPanel inputPanel = new JPanel(new GridLayout(5, 2));
+        JTextField startField = new JTextField();
+        JTextField destinationField = new JTextField();
+        JButton findRouteButton = new JButton("Find Optimized Route");
+        
+        inputPanel.add(new JLabel("Start Area:"));
+        inputPanel.add(startField);
+        inputPanel.add(new JLabel("Destination Area:"));
+        inputPanel.add(destinationField);
+        inputPanel.add(findRouteButton);
+        JButton planTourButton = new JButton("Plan Collection Tour");
+        inputPanel.add(planTourButton);
+        JButton fastestButton = new JButton("Fastest at Departure Time");
+        inputPanel.add(fastestButton);
+        JToggleButton followSensorsButton = new JToggleButton("Follow Bin Sensors");
+        inputPanel.add(followSensorsButton);
+
+        JLabel statusLabel = new JLabel(" ");
+        inputPanel.add(new JLabel("Status:"));
+        inputPanel.add(statusLabel);
+
+        GraphPanel graphPanel = new GraphPanel();
+        planTourButton.addActionListener(e -> planCollectionTour(frame, graphPanel));
+        fastestButton.addActionListener(e -> findFastestRoute(frame, graphPanel,
+                startField.getText().trim(), destinationField.getText().trim()));
+
+        // While following, every plan the sensors lead to is shown on the map as it arrives
+        Consumer<CollectionScheduler.Schedule> showSchedule = schedule -> SwingUtilities.invokeLater(() -> {
+            if (!followSensorsButton.isSelected()) return;
+            graphPanel.setHighlightedTours(schedule.plan.paths);
+            java.time.LocalTime planned = java.time.LocalTime.ofInstant(
+                    java.time.Instant.ofEpochMilli(schedule.plannedAt), java.time.ZoneId.systemDefault());
+            statusLabel.setText(schedule.stops.isEmpty() ? "No bins need collection (" + planned.withNano(0) + ")"
+                    : String.format("%d trucks for %d areas from %s (%s)", schedule.plan.tours.size(),
+                            schedule.stops.size(), schedule.depot, planned.withNano(0)));
+        });
+        followSensorsButton.addActionListener(e -> {
+            if (followSensorsButton.isSelected()) {
+                collectionScheduler.addListener(showSchedule);
+                CollectionScheduler.Schedule latest = collectionScheduler.latest();
+                if (latest != null) showSchedule.accept(latest);
+                else statusLabel.setText("Waiting for the bin sensors\u2026");
+            } else {
+                collectionScheduler.removeListener(showSchedule);
+                graphPanel.setHighlightedTours(List.of());
+                statusLabel.setText(" ");
+            }
+        });
+        frame.addComponentListener(new java.awt.event.ComponentAdapter() {
+            @Override
+            public void componentHidden(java.awt.event.ComponentEvent e) {
+                if (followSensorsButton.isSelected()) followSensorsButton.doClick(); // stops following
+            }
+        });
+
+        AsyncRouter.Session routing = new AsyncRouter.Session(areaGraph.routeCache());
+        findRouteButton.addActionListener(e -> {
+            String start = startField.getText().trim();
+            String destination = destinationField.getText().trim();
+            statusLabel.setText("Computing route " + start + " -> " + destination + "\u2026");
+            routing.submit(areaGraph.compact(), start, destination, (result, error) -> {
+                if (error != null) {
+                    statusLabel.setText("Route query failed");
+                    JOptionPane.showMessageDialog(frame, "Route query failed: " + error.getMessage());
+                    return;
+                }
+                statusLabel.setText(result.cached ? String.format("From the route cache: %.2f ms", result.nanos / 1e6)
+                        : String.format("%s: %.2f ms, %d areas settled", result.strategy.label, result.nanos / 1e6, result.settled));
+                if (result.path.isEmpty()) {
+                    JOptionPane.showMessageDialog(frame, "No route found between " + start + " and " + destination);
+                } else {
+                    graphPanel.setHighlightedRoute(result.path);
+                    JOptionPane.showMessageDialog(frame, "Optimized route: " + String.join(" -> ", result.path)
+                            + "\nTotal distance: " + result.distance + " km");
+                }
+            });
+        });
+
+        JPanel dashboardPanel = new JPanel(new GridLayout(3, 1));
+        JButton communityProgramsButton = new JButton("View Community Programs"); // New button
+        JButton policyUpdatesButton = new JButton("View Policy Updates"); // New button
+        JButton backButton = new JButton("Back to Main Menu");
+
+
+        communityProgramsButton.addActionListener(e -> viewCommunityPrograms()); // Action for community programs
+        policyUpdatesButton.addActionListener(e -> viewPolicyUpdates()); // Action for policy updates
+        backButton.addActionListener(e -> frame.setVisible(false));
+        dashboardPanel.add(communityProgramsButton);
+        dashboardPanel.add(policyUpdatesButton);
+        dashboardPanel.add(backButton);
+
+        frame.add(inputPanel, BorderLayout.NORTH);
+        frame.add(graphPanel, BorderLayout.CENTER);
+        frame.add(dashboardPanel, BorderLayout.SOUTH); 
+       
+
+
+        return frame;
+    }
+
+    private static void planCollectionTour(JFrame frame, GraphPanel graphPanel) {
+        String depot = JOptionPane.showInputDialog(frame, "Depot area:", "A");
+        if (depot == null || depot.trim().isEmpty()) return;
+        String capacityText = JOptionPane.showInputDialog(frame, "Truck capacity (kg):", "80");
+        if (capacityText == null) return;
+        int capacity;
+        try {
+            capacity = Integer.parseInt(capacityText.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(frame, "Please enter a valid capacity.");
+            return;
+        }
+        CompactGraph graph = areaGraph.compact();
+        if (graph.idOf(depot.trim()) < 0) {
+            JOptionPane.showMessageDialog(frame, "Unknown depot area: " + depot);
+            return;
+        }
+        List<String> stops = new ArrayList<>();
+        for (var entry : wasteProductionData.entrySet()) {
+            if (entry.getValue() > 0 && graph.idOf(entry.getKey()) >= 0) stops.add(entry.getKey());
+        }
+        Collections.sort(stops);
+        Map<String, Integer> demands = new HashMap<>(wasteProductionData);
+        collectionScheduler.configure(depot.trim(), capacity); // the sensor-driven plans use the same truck
+
+        // Planning uses its whole time budget, so keep it off the event dispatch thread
+        new SwingWorker<TourPlanner.TourPlan, Void>() {
+            @Override
+            protected TourPlanner.TourPlan doInBackground() {
+                if (traffic.active()) {
+                    return TourPlanner.planByTime(traffic, depot.trim(), stops, demands, capacity, 500);
+                }
+                return TourPlanner.plan(graph, depot.trim(), stops, demands, capacity, 500);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    TourPlanner.TourPlan plan = get();
+                    String total = plan.byTime ? formatDuration(plan.totalDistance) + " of driving in today's traffic"
+                            : plan.totalDistance + " km";
+                    StringBuilder message = new StringBuilder("Collection tours (" + total + " in total):");
+                    for (int i = 0; i < plan.tours.size(); i++) {
+                        message.append("\nTruck ").append(i + 1).append(" (").append(plan.loads.get(i)).append(" kg): ")
+                                .append(String.join(" -> ", plan.paths.get(i)));
+                    }
+                    if (!plan.skipped.isEmpty()) {
+                        message.append("\nCannot be served: ").append(String.join(", ", plan.skipped));
+                    }
+                    graphPanel.setHighlightedTours(plan.paths);
+                    JOptionPane.showMessageDialog(frame, message.toString());
+                } catch (InterruptedException | ExecutionException ex) {
+                    JOptionPane.showMessageDialog(frame, "Tour planning failed: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    // Asks for a departure time (HH:mm today, or now) and shows the fastest route under the current traffic.
+    private static void findFastestRoute(JFrame frame, GraphPanel graphPanel, String start, String destination) {
+        java.time.LocalTime now = java.time.LocalTime.now().withSecond(0).withNano(0);
+        String text = JOptionPane.showInputDialog(frame, "Departure time (HH:mm):", now.toString());
+        if (text == null) return;
+        long departure;
+        try {
+            java.time.LocalTime time = java.time.LocalTime.parse(text.trim());
+            departure = java.time.LocalDate.now().atTime(time).atZone(java.time.ZoneId.systemDefault()).toEpochSecond();
+        } catch (java.time.format.DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(frame, "Please enter a time such as 07:30.");
+            return;
+        }
+        new SwingWorker<Traffic.Journey, Void>() {
+            @Override
+            protected Traffic.Journey doInBackground() {
+                return traffic.fastest(start, destination, departure);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    Traffic.Journey journey = get();
+                    if (journey == null) {
+                        JOptionPane.showMessageDialog(frame, "Unknown area: " + start + " or " + destination);
+                    } else if (journey.path.isEmpty()) {
+                        JOptionPane.showMessageDialog(frame, "No open route between " + start + " and " + destination);
+                    } else {
+                        graphPanel.setHighlightedRoute(journey.path);
+                        java.time.LocalTime arrival = java.time.LocalTime.ofInstant(
+                                java.time.Instant.ofEpochSecond(journey.departure + journey.seconds), java.time.ZoneId.systemDefault());
+                        JOptionPane.showMessageDialog(frame, "Fastest route: " + String.join(" -> ", journey.path)
+                                + "\nDriving time: " + formatDuration(journey.seconds)
+                                + "\nArrival: " + arrival.withNano(0));
+                    }
+                } catch (InterruptedException | ExecutionException ex) {
+                    JOptionPane.showMessageDialog(frame, "Route query failed: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private static String formatDuration(long seconds) {
+        long minutes = (seconds + 30) / 60;
+        return minutes >= 60 ? String.format("%d h %02d min", minutes / 60, minutes % 60) : minutes + " min";
+    }
+
+    private static void displayAllRoutes() {
+        showDashboard("All Routes", title -> {
+            JFrame frame = new JFrame(title);
+            frame.setSize(500, 500);
+            frame.add(new GraphPanel());
+            return frame;
+        });
+    }
+
+    // Command-line comparisons between the original String-keyed structures and their replacements,
+    // and a concurrency stress check for the graph store:
+    //   java project2.WasteCollectionSwingVisualizer --benchmark [gridSide] [queries]
+    //   java project2.WasteCollectionSwingVisualizer --stress [seconds] [readers] [writers]
+    private static class Benchmarks {
+
+        // The adjacency map and Dijkstra that Graph used before it moved to CompactGraph.
+        private static class MapGraph {
+            private final Map<String, List<Route>> adjacencyList = new HashMap<>();
+
+            void addArea(String area) {
+                adjacencyList.putIfAbsent(area, new ArrayList<>());
+            }
+
+            void addRoute(String from, String to, int distance) {
+                adjacencyList.get(from).add(new Route(to, distance));
+                adjacencyList.get(to).add(new Route(from, distance));
+            }
+
+            List<String> getOptimizedRoute(String start, String destination) {
+                PriorityQueue<Route> pq = new PriorityQueue<>(Comparator.comparingInt(r -> r.distance));
+                Map<String, Integer> distances = new HashMap<>();
+                Map<String, String> previous = new HashMap<>();
+                for (String area : adjacencyList.keySet()) {
+                    distances.put(area, Integer.MAX_VALUE);
+                }
+                distances.put(start, 0);
+                pq.add(new Route(start, 0));
+                while (!pq.isEmpty()) {
+                    Route current = pq.poll();
+                    String currentArea = current.area;
+                    if (currentArea.equals(destination)) break;
+                    for (Route neighbor : adjacencyList.get(currentArea)) {
+                        int newDist = distances.get(currentArea) + neighbor.distance;
+                        if (newDist < distances.get(neighbor.area)) {
+                            distances.put(neighbor.area, newDist);
+                            previous.put(neighbor.area, currentArea);
+                            pq.add(new Route(neighbor.area, newDist));
+                        }
+                    }
+                }
+                List<String> path = new ArrayList<>();
+                for (String at = destination; at != null; at = previous.get(at)) {
+                    path.add(at);
+                }
+                Collections.reverse(path);
+                return path;
+            }
+
+            int routeCost(List<String> path) {
+                int cost = 0;
+                for (int i = 0; i + 1 < path.size(); i++) {
+                    int best = Integer.MAX_VALUE;
+                    for (Route route : adjacencyList.get(path.get(i))) {
+                        if (route.area.equals(path.get(i + 1))) best = Math.min(best, route.distance);
+                    }
+                    cost += best;
+                }
+                return cost;
+            }
+        }
+
+        // The HashMap-per-node trie RecyclingTrie replaced.
+        private static class TrieNode {
+            Map<Character, TrieNode> children = new HashMap<>();
+            String recyclingTip = null;
+        }
+
+        private static class MapTrie {
+            private final TrieNode root = new TrieNode();
+
+            void addRecyclingTip(String item, String tip) {
+                TrieNode current = root;
+                for (char c : item.toLowerCase().toCharArray()) {
+                    current.children.putIfAbsent(c, new TrieNode());
+                    current = current.children.get(c);
+                }
+                current.recyclingTip = tip;
+            }
+
+            String getRecyclingTip(String item) {
+                TrieNode current = root;
+                for (char c : item.toLowerCase().toCharArray()) {
+                    if (!current.children.containsKey(c)) {
+                        return "No recycling tips available for this item.";
+                    }
+                    current = current.children.get(c);
+                }
+                return current.recyclingTip != null ? current.recyclingTip : "No specific tip available for this item.";
+            }
+        }
+
+        static void run(String[] args) {
+            int side = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+            int queries = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+            String[] names = new String[side * side];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = "area-" + i;
+            }
+            Random random = new Random(42);
+            int[] weights = new int[names.length * 2];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = 1 + random.nextInt(20);
+            }
+            System.out.printf("Grid %dx%d: %d areas, %d routes%n", side, side, names.length, 2 * side * (side - 1));
+
+            long before = usedHeap();
+            MapGraph mapGraph = new MapGraph();
+            for (String name : names) mapGraph.addArea(name);
+            forEachGridRoute(side, (from, to, w) -> mapGraph.addRoute(names[from], names[to], weights[w]));
+            long mapBytes = usedHeap() - before;
+
+            before = usedHeap();
+            Graph graph = new Graph();
+            graph.update(edit -> {
+                for (int i = 0; i < names.length; i++) edit.setLocation(edit.addArea(names[i]), i % side, i / side);
+                forEachGridRoute(side, (from, to, w) -> edit.addRoute(from, to, weights[w]));
+            });
+            long compactBytes = usedHeap() - before;
+            System.out.printf("Heap (incl. builder): map %,d KB, compact %,d KB%n", mapBytes / 1024, compactBytes / 1024);
+
+            int[][] pairs = new int[queries][2];
+            for (int[] pair : pairs) {
+                pair[0] = random.nextInt(names.length);
+                pair[1] = random.nextInt(names.length);
+            }
+            int mismatches = 0;
+            for (int[] pair : pairs) {
+                int expected = mapGraph.routeCost(mapGraph.getOptimizedRoute(names[pair[0]], names[pair[1]]));
+                int actual = mapGraph.routeCost(graph.getOptimizedRoute(names[pair[0]], names[pair[1]]));
+                if (expected != actual) mismatches++;
+            }
+            System.out.printf("Route cost mismatches against the map baseline: %d of %d%n", mismatches, queries);
+
+            for (int round = 0; round < 2; round++) { // first round is warm-up
+                long start = System.nanoTime();
+                for (int[] pair : pairs) mapGraph.getOptimizedRoute(names[pair[0]], names[pair[1]]);
+                long mapNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (int[] pair : pairs) graph.getOptimizedRoute(names[pair[0]], names[pair[1]]);
+                long compactNanos = System.nanoTime() - start;
+                if (round == 1) {
+                    System.out.printf("Queries/s: map %.1f, compact %.1f%n",
+                            queries * 1e9 / mapNanos, queries * 1e9 / compactNanos);
+                }
+            }
+
+            CompactGraph compact = graph.compact();
+            long buildStart = System.nanoTime();
+            compact.attachHierarchy(ContractionHierarchy.build(compact));
+            System.out.printf("Contraction hierarchy: %.0f ms, %d shortcuts%n",
+                    (System.nanoTime() - buildStart) / 1e6, compact.hierarchy().shortcutCount);
+            RouteEngine engine = RouteEngine.current();
+            for (SearchStrategy strategy : SearchStrategy.values()) {
+                long settled = 0;
+                long relaxed = 0;
+                int wrong = 0;
+                for (int[] pair : pairs) { // also warms the strategy up
+                    List<String> path = engine.findRoute(compact, names[pair[0]], names[pair[1]], strategy);
+                    settled += engine.settled();
+                    relaxed += engine.relaxed();
+                    int expected = mapGraph.routeCost(mapGraph.getOptimizedRoute(names[pair[0]], names[pair[1]]));
+                    if (engine.lastDistance() != expected || mapGraph.routeCost(path) != expected) wrong++;
+                }
+                long start = System.nanoTime();
+                for (int[] pair : pairs) engine.shortestDistance(compact, pair[0], pair[1], strategy);
+                long nanos = System.nanoTime() - start;
+                System.out.printf("%-22s %8.1f queries/s, %9.1f settled, %9.1f relaxed per query, %d wrong%n",
+                        strategy.label, queries * 1e9 / nanos, (double) settled / queries, (double) relaxed / queries, wrong);
+            }
+
+            recyclingTips(random);
+            tipSearch(random);
+            productLookups(random);
+            persistence(names, side, weights, random);
+            feedback(random);
+            importing(args.length > 3 ? Integer.parseInt(args[3]) : 1_000_000, random);
+            distanceMatrix(compact, names, random);
+            trafficRepair(graph, names, random);
+            sensorIngest(graph, names, random);
+            routeCache(graph, names, random);
+            partitioned(graph, names, random);
+            coverage(graph, names, random);
+            tourPlanning(compact, names, random);
+            asyncRouting(compact, names, random);
+            panelRendering(random);
+        }
+
+        static void panelRendering(Random random) {
+            Graph network = new Graph();
+            int areas = 2000;
+            network.update(edit -> {
+                for (int i = 0; i < areas; i++) edit.addArea("area-" + i);
+                for (int i = 1; i < areas; i++) edit.addRoute(i, random.nextInt(i), 1 + random.nextInt(20));
+                for (int i = 0; i < areas; i++) edit.addRoute(random.nextInt(areas), random.nextInt(areas), 1 + random.nextInt(20));
+            });
+            long start = System.nanoTime();
+            MapLayout.forceDirected(network.compact(), null);
+            System.out.printf("Force-directed layout of %d areas: %.0f ms%n", areas, (System.nanoTime() - start) / 1e6);
+
+            int side = 316; // about 100k areas with coordinates
+            Graph city = new Graph();
+            city.update(edit -> {
+                for (int i = 0; i < side * side; i++) edit.setLocation(edit.addArea("area-" + i), i % side, i / side);
+                forEachGridRoute(side, (from, to, w) -> edit.addRoute(from, to, 1 + w % 7));
+            });
+            GraphPanel panel = new GraphPanel(city);
+            panel.setSize(1200, 900);
+            List<String> route = city.getOptimizedRoute("area-0", "area-" + (side * side - 1), SearchStrategy.A_STAR);
+            panel.setHighlightedRoute(route);
+            BufferedImage image = new BufferedImage(1200, 900, BufferedImage.TYPE_INT_ARGB);
+            start = System.nanoTime();
+            paintInto(panel, image);
+            System.out.printf("GraphPanel %d areas: first paint (whole city) %.1f ms%n", side * side, (System.nanoTime() - start) / 1e6);
+            int frames = 30;
+            start = System.nanoTime();
+            for (int i = 0; i < frames; i++) paintInto(panel, image);
+            System.out.printf("  cached repaint %.2f ms%n", (System.nanoTime() - start) / 1e6 / frames);
+            start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                panel.panBy(7, 3);
+                paintInto(panel, image);
+            }
+            System.out.printf("  pan frame, whole city visible %.2f ms%n", (System.nanoTime() - start) / 1e6 / frames);
+            panel.zoomAt(25, 600, 450);
+            paintInto(panel, image);
+            start = System.nanoTime();
+            for (int i = 0; i < frames; i++) {
+                panel.panBy(7, 3);
+                paintInto(panel, image);
+            }
+            System.out.printf("  pan frame, zoomed in (%d areas visible) %.2f ms%n", panel.visibleCount,
+                    (System.nanoTime() - start) / 1e6 / frames);
+        }
+
+        private static void paintInto(GraphPanel panel, BufferedImage image) {
+            Graphics2D g = image.createGraphics();
+            panel.paint(g);
+            g.dispose();
+        }
+
+        static void asyncRouting(CompactGraph graph, String[] names, Random random) {
+            CompletableFuture<AsyncRouter.RouteResult> stale = AsyncRouter.findRoute(graph, names[0], names[names.length - 1]);
+            stale.cancel(true);
+            List<CompletableFuture<AsyncRouter.RouteResult>> queries = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < 200; i++) {
+                queries.add(AsyncRouter.findRoute(graph, names[random.nextInt(names.length)], names[random.nextInt(names.length)]));
+            }
+            CompletableFuture.allOf(queries.toArray(new CompletableFuture<?>[0])).join();
+            System.out.printf("Async routing: 200 queries in %.1f ms, stale query %s%n",
+                    (System.nanoTime() - start) / 1e6, stale.isCancelled() ? "cancelled" : "finished before cancel");
+        }
+
+        static void tourPlanning(CompactGraph graph, String[] names, Random random) {
+            List<String> stops = new ArrayList<>();
+            Map<String, Integer> demands = new HashMap<>();
+            for (int i = 0; i < 80; i++) {
+                String area = names[random.nextInt(names.length)];
+                stops.add(area);
+                demands.put(area, 5 + random.nextInt(30));
+            }
+            for (long budget : new long[] {10, 1000}) {
+                TourPlanner.TourPlan plan = TourPlanner.plan(graph, names[0], stops, demands, 200, budget);
+                int served = 0;
+                boolean overloaded = false;
+                for (int i = 0; i < plan.tours.size(); i++) {
+                    served += plan.tours.get(i).size();
+                    overloaded |= plan.loads.get(i) > 200;
+                }
+                System.out.printf("Tour plan (%d ms budget): %d km over %d tours, %d of %d stops served%s%n", budget,
+                        plan.totalDistance, plan.tours.size(), served, new HashSet<>(stops).size(),
+                        overloaded ? ", CAPACITY EXCEEDED" : "");
+            }
+        }
+
+        // Synthetic catalogue of multi-word item names built from syllables, with a few hundred distinct tips.
+        static String[] catalogue(Random random, int size) {
+            String[] syllables = {"pla", "stic", "bot", "tle", "can", "glass", "pa", "per", "box", "card", "tin", "foil",
+                    "jar", "lid", "cup", "wrap", "bag", "tube", "sha", "mpoo", "oil", "ba", "tte", "ry", "lamp", "cord"};
+            Set<String> names = new HashSet<>();
+            StringBuilder name = new StringBuilder();
+            while (names.size() < size) {
+                name.setLength(0);
+                int words = 1 + random.nextInt(3);
+                for (int w = 0; w < words; w++) {
+                    if (w > 0) name.append('_');
+                    int parts = 1 + random.nextInt(3);
+                    for (int k = 0; k < parts; k++) name.append(syllables[random.nextInt(syllables.length)]);
+                }
+                names.add(name.toString());
+            }
+            return names.toArray(new String[0]);
+        }
+
+        static void recyclingTips(Random random) {
+            String[] items = catalogue(random, 300_000);
+            String[] tips = new String[300];
+            for (int i = 0; i < tips.length; i++) tips[i] = "Recycling tip number " + i + " for this kind of item.";
+            String[] queries = new String[100_000];
+            for (int i = 0; i < queries.length; i++) {
+                queries[i] = random.nextInt(4) == 0 ? items[random.nextInt(items.length)] + "x" : items[random.nextInt(items.length)];
+            }
+
+            long before = usedHeap();
+            MapTrie mapTrie = new MapTrie();
+            for (int i = 0; i < items.length; i++) mapTrie.addRecyclingTip(items[i], tips[i % tips.length]);
+            long mapBytes = usedHeap() - before;
+            before = usedHeap();
+            RecyclingTrie trie = new RecyclingTrie();
+            for (int i = 0; i < items.length; i++) trie.addRecyclingTip(items[i], tips[i % tips.length]);
+            trie.freeze();
+            trie.pending.clear(); // measure the frozen index only
+            long compactBytes = usedHeap() - before;
+            System.out.printf("Recycling tips (%,d items): map trie %,d KB, compact trie %,d KB%n",
+                    items.length, mapBytes / 1024, compactBytes / 1024);
+
+            int mismatches = 0;
+            for (String query : queries) {
+                if (!mapTrie.getRecyclingTip(query).equals(trie.getRecyclingTip(query))) mismatches++;
+            }
+            for (int round = 0; round < 3; round++) {
+                long mapAllocated = allocatedBytes();
+                long start = System.nanoTime();
+                for (String query : queries) mapTrie.getRecyclingTip(query);
+                long mapNanos = System.nanoTime() - start;
+                mapAllocated = allocatedBytes() - mapAllocated;
+                long compactAllocated = allocatedBytes();
+                start = System.nanoTime();
+                for (String query : queries) trie.getRecyclingTip(query);
+                long compactNanos = System.nanoTime() - start;
+                compactAllocated = allocatedBytes() - compactAllocated;
+                if (round == 2) {
+                    System.out.printf("  lookup: map %.0f ns (%d B allocated), compact %.0f ns (%d B allocated), %d mismatches%n",
+                            (double) mapNanos / queries.length, mapAllocated / queries.length,
+                            (double) compactNanos / queries.length, compactAllocated / queries.length, mismatches);
+                }
+            }
+        }
+
+        // Keystroke latency of suggest() on a 1M-item catalogue: half the queries are prefixes of stored items,
+        // half are whole items with one random typo.
+        static void tipSearch(Random random) {
+            String[] items = catalogue(random, 1_000_000);
+            RecyclingTrie trie = new RecyclingTrie();
+            for (String item : items) trie.addRecyclingTip(item, "tip");
+            long start = System.nanoTime();
+            trie.freeze();
+            System.out.printf("Tip search (%,d items): index built in %d ms%n",
+                    items.length, (System.nanoTime() - start) / 1_000_000);
+
+            String[] queries = new String[20_000];
+            for (int i = 0; i < queries.length; i++) {
+                String item = items[random.nextInt(items.length)];
+                if (i % 2 == 0) {
+                    queries[i] = item.substring(0, 1 + random.nextInt(item.length()));
+                } else {
+                    StringBuilder typo = new StringBuilder(item);
+                    int at = random.nextInt(item.length());
+                    switch (random.nextInt(3)) {
+                        case 0: typo.deleteCharAt(at); break;
+                        case 1: typo.insert(at, (char) ('a' + random.nextInt(26))); break;
+                        default: typo.setCharAt(at, (char) ('a' + random.nextInt(26)));
+                    }
+                    queries[i] = typo.toString();
+                }
+            }
+            for (String query : queries) trie.suggest(query, 10); // warm-up
+            long[] prefixNanos = new long[queries.length / 2];
+            long[] typoNanos = new long[queries.length / 2];
+            int found = 0;
+            for (int i = 0; i < queries.length; i++) {
+                start = System.nanoTime();
+                List<RecyclingTrie.Suggestion> suggestions = trie.suggest(queries[i], 10);
+                long nanos = System.nanoTime() - start;
+                if (i % 2 == 0) {
+                    prefixNanos[i / 2] = nanos;
+                } else {
+                    typoNanos[i / 2] = nanos;
+                    if (!suggestions.isEmpty()) found++;
+                }
+            }
+            Arrays.sort(prefixNanos);
+            Arrays.sort(typoNanos);
+            System.out.printf("  prefix: p50 %d us, p99 %d us; typo: p50 %d us, p99 %d us, %d%% with suggestions%n",
+                    prefixNanos[prefixNanos.length / 2] / 1000, prefixNanos[prefixNanos.length * 99 / 100] / 1000,
+                    typoNanos[typoNanos.length / 2] / 1000, typoNanos[typoNanos.length * 99 / 100] / 1000,
+                    100 * found / typoNanos.length);
+        }
+
+        // Kiosk-like traffic: 60% of lookups name one of 300 popular items, 20% misspell one of them (each the
+        // same way every time), and 20% come from the long tail, half of those naming nothing known. The
+        // separate category map and tip trie cannot correct typos; the store is run with and without its cache.
+        static void productLookups(Random random) {
+            String[] items = catalogue(random, 100_000);
+            Map<String, String> categories = new HashMap<>();
+            RecyclingTrie tips = new RecyclingTrie();
+            ProductKnowledge cached = new ProductKnowledge();
+            ProductKnowledge uncached = new ProductKnowledge(0);
+            for (int i = 0; i < items.length; i++) {
+                String category = "Category " + (i % 7);
+                String tip = "Tip " + (i % 300);
+                categories.put(items[i], category);
+                tips.addRecyclingTip(items[i], tip);
+                for (ProductKnowledge store : new ProductKnowledge[] {cached, uncached}) {
+                    store.addCategory(items[i], category);
+                    store.addTip(items[i], tip);
+                }
+            }
+            String[] misspelled = new String[300];
+            for (int i = 0; i < misspelled.length; i++) {
+                StringBuilder typo = new StringBuilder(items[i]);
+                typo.setCharAt(random.nextInt(typo.length()), '#');
+                misspelled[i] = typo.toString();
+            }
+            String[] mixed = new String[100_000];
+            for (int i = 0; i < mixed.length; i++) {
+                int roll = random.nextInt(10);
+                mixed[i] = roll < 6 ? items[random.nextInt(300)]
+                        : roll < 8 ? misspelled[random.nextInt(300)]
+                        : items[random.nextInt(items.length)] + (roll == 9 ? "_old" : "");
+            }
+            int disagreements = 0;
+            for (String query : mixed) {
+                ProductKnowledge.Product product = cached.lookup(query);
+                ProductKnowledge.Product direct = uncached.lookup(query);
+                if (product != direct && (product == null || direct == null || !product.name.equals(direct.name))) {
+                    disagreements++;
+                }
+                String category = categories.get(query.toLowerCase());
+                if (category != null && (product == null || !category.equals(product.category))) disagreements++;
+            }
+            long separateNanos = 0;
+            long cachedNanos = 0;
+            long uncachedNanos = 0;
+            int found = 0;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                for (String query : mixed) {
+                    if (categories.get(query.toLowerCase()) != null | tips.value(query) != null) found++;
+                }
+                separateNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (String query : mixed) {
+                    if (uncached.lookup(query) != null) found++;
+                }
+                uncachedNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                for (String query : mixed) {
+                    if (cached.lookup(query) != null) found++;
+                }
+                cachedNanos = System.nanoTime() - start;
+            }
+            System.out.printf("Product lookups (%,d items): map + trie %.0f ns (no typo correction), store %.0f ns uncached,"
+                            + " %.0f ns cached, %d disagreements%n", items.length, (double) separateNanos / mixed.length,
+                    (double) uncachedNanos / mixed.length, (double) cachedNanos / mixed.length, disagreements);
+            System.out.println("  " + cached.stats().replace(System.lineSeparator(), "; "));
+        }
+
+        // Cold start from code against cold start from a snapshot, then the cost of logging edits.
+        static void persistence(String[] names, int side, int[] weights, Random random) {
+            String[] items = catalogue(random, 100_000);
+            long start = System.nanoTime();
+            Graph graph = new Graph();
+            graph.update(edit -> {
+                for (int i = 0; i < names.length; i++) edit.setLocation(edit.addArea(names[i]), i % side, i / side);
+                forEachGridRoute(side, (from, to, w) -> edit.addRoute(from, to, weights[w]));
+            });
+            ProductKnowledge catalogue = new ProductKnowledge();
+            for (int i = 0; i < items.length; i++) {
+                catalogue.addCategory(items[i], "Category " + (i % 7));
+                catalogue.addTip(items[i], "Tip " + (i % 300));
+            }
+            long buildNanos = System.nanoTime() - start;
+            Path directory = null;
+            try {
+                directory = Files.createTempDirectory("waste-data");
+                DataStore store = new DataStore(directory, graph, catalogue, new ArrayList<>(), new ArrayList<>());
+                start = System.nanoTime();
+                store.save();
+                long saveNanos = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                Graph loaded = new Graph();
+                ProductKnowledge loadedCatalogue = new ProductKnowledge();
+                new DataStore(directory, loaded, loadedCatalogue, new ArrayList<>(), new ArrayList<>()).load();
+                long loadNanos = System.nanoTime() - start;
+                boolean same = loaded.compact().routeCount() == graph.compact().routeCount()
+                        && loaded.compact().areaCount() == graph.compact().areaCount()
+                        && loadedCatalogue.products().size() == catalogue.products().size();
+                System.out.printf("Persistence (%,d areas, %,d products, snapshot %,d KB): build in code %d ms, save %d ms,"
+                                + " load %d ms, %s%n", names.length, items.length, Files.size(directory.resolve("snapshot.swdb")) / 1024,
+                        buildNanos / 1_000_000, saveNanos / 1_000_000, loadNanos / 1_000_000, same ? "identical" : "DIFFERENT");
+
+                List<String> policies = new ArrayList<>();
+                DataStore logged = new DataStore(directory, new Graph(), new ProductKnowledge(), new ArrayList<>(), policies);
+                logged.load();
+                int edits = DataStore.COMPACT_AFTER - 1; // stay below compaction so the reload replays them all
+                start = System.nanoTime();
+                for (int i = 0; i < edits; i++) logged.addPolicy("Policy " + i);
+                long appendNanos = System.nanoTime() - start;
+                List<String> replayed = new ArrayList<>();
+                start = System.nanoTime();
+                new DataStore(directory, new Graph(), new ProductKnowledge(), new ArrayList<>(), replayed).load();
+                long reloadNanos = System.nanoTime() - start;
+                System.out.printf("  change log: %.0f us per forced append, reload with %d logged edits %d ms, %d of %d replayed%n",
+                        appendNanos / 1e3 / edits, edits, reloadNanos / 1_000_000, replayed.size(), policies.size());
+            } catch (IOException e) {
+                System.out.println("Persistence benchmark failed: " + e);
+            } finally {
+                if (directory != null) {
+                    try (Stream<Path> files = Files.list(directory)) {
+                        for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+                        Files.delete(directory);
+                    } catch (IOException ignored) {
+                        // leave the temporary directory behind
+                    }
+                }
+            }
+        }
+
+        // A month of feedback, a million submissions about 50 areas with words drawn from a skewed vocabulary,
+        // written in batches and reopened. Searches and trends are checked against counts kept while writing.
+        static void feedback(Random random) {
+            int submissions = 1_000_000;
+            String[] vocabulary = new String[2000];
+            for (int i = 0; i < vocabulary.length; i++) vocabulary[i] = "word" + Integer.toString(i, 36);
+            String[] districts = new String[50];
+            for (int i = 0; i < districts.length; i++) districts[i] = "district-" + i;
+            String common = vocabulary[0];
+            String rare = vocabulary[1500];
+            String district = districts[7];
+            long now = System.currentTimeMillis();
+            long month = 30L * 24 * 3_600_000;
+            int bothWords = 0;
+            int wordInDistrict = 0;
+            int districtToday = 0;
+            Path directory = null;
+            try {
+                directory = Files.createTempDirectory("waste-feedback");
+                FeedbackStore store = new FeedbackStore(directory);
+                store.open();
+                long before = usedHeap();
+                long start = System.nanoTime();
+                List<FeedbackStore.Feedback> batch = new ArrayList<>();
+                for (int i = 0; i < submissions; i++) {
+                    StringBuilder text = new StringBuilder();
+                    Set<String> used = new HashSet<>();
+                    for (int w = 8 + random.nextInt(12); w > 0; w--) {
+                        String word = vocabulary[(int) (vocabulary.length * Math.pow(random.nextDouble(), 3))];
+                        used.add(word);
+                        text.append(word).append(w % 5 == 0 ? ". " : " ");
+                    }
+                    long time = now - month + month * i / submissions;
+                    String area = random.nextInt(5) == 0 ? "" : districts[random.nextInt(districts.length)];
+                    if (used.contains(common) && used.contains(rare)) bothWords++;
+                    if (used.contains(rare) && area.equals(district)) wordInDistrict++;
+                    if (area.equals(district) && time / 3_600_000 > now / 3_600_000 - FeedbackStore.WINDOW_HOURS) districtToday++;
+                    batch.add(new FeedbackStore.Feedback(-1, time, area, text.toString().trim()));
+                    if (batch.size() == 10_000) {
+                        store.addAll(batch);
+                        batch.clear();
+                    }
+                }
+                store.addAll(batch);
+                long appendNanos = System.nanoTime() - start;
+                long heap = usedHeap() - before;
+                int forced = 200;
+                start = System.nanoTime();
+                for (int i = 0; i < forced; i++) store.add(now, district, "Bin overflowing again " + i);
+                long forcedNanos = System.nanoTime() - start;
+                store.close();
+                long bytes;
+                try (Stream<Path> files = Files.list(directory)) {
+                    bytes = files.mapToLong(file -> file.toFile().length()).sum();
+                }
+                System.out.printf("Feedback: %,d submissions in %.0f ms (%,.0f/s), %,d MB on disk, index heap %+,d MB,"
+                                + " %.0f us per forced add%n", submissions, appendNanos / 1e6, submissions * 1e9 / appendNanos,
+                        bytes >> 20, heap >> 20, forcedNanos / 1e3 / forced);
+
+                start = System.nanoTime();
+                FeedbackStore reopened = new FeedbackStore(directory);
+                reopened.open();
+                System.out.printf("  reopened in %.0f ms, %,d of %,d submissions%n", (System.nanoTime() - start) / 1e6,
+                        reopened.size(), submissions + forced);
+
+                String[][] searches = {{"", ""}, {common, ""}, {rare, ""}, {common + " " + rare, ""}, {rare, district}, {"", district}};
+                int wrong = 0;
+                for (String[] search : searches) {
+                    FeedbackStore.Page first = reopened.page(search[0], search[1], 0, 100);
+                    int rounds = 200;
+                    start = System.nanoTime();
+                    for (int i = 0; i < rounds; i++) reopened.page(search[0], search[1], 0, 100);
+                    double firstNanos = (System.nanoTime() - start) / (double) rounds;
+                    start = System.nanoTime();
+                    for (int i = 0; i < rounds; i++) reopened.page(search[0], search[1], first.total / 2, 100);
+                    double middleNanos = (System.nanoTime() - start) / (double) rounds;
+                    for (FeedbackStore.Feedback item : first.items) {
+                        if (!FeedbackStore.words(item.text).containsAll(FeedbackStore.words(search[0]))
+                                || !search[1].isEmpty() && !item.area.equals(search[1])) wrong++;
+                    }
+                    System.out.printf("  search %-26s %,9d matches, first page %6.0f us, middle page %6.0f us%n",
+                            "\"" + search[0] + "\"" + (search[1].isEmpty() ? "" : " in " + search[1]), first.total,
+                            firstNanos / 1e3, middleNanos / 1e3);
+                }
+                if (reopened.page(common + " " + rare, "", 0, 1).total != bothWords) wrong++;
+                if (reopened.page(rare, district, 0, 1).total != wordInDistrict) wrong++;
+
+                start = System.nanoTime();
+                List<FeedbackStore.Count> areas = reopened.trending(true, 25);
+                List<FeedbackStore.Count> keywords = reopened.trending(false, 25);
+                double trendNanos = System.nanoTime() - start;
+                int counted = areas.stream().filter(count -> count.key.equals(district)).mapToInt(count -> count.window).sum();
+                if (counted != districtToday + forced) wrong++;
+                System.out.printf("  trends (top 25 areas and keywords, last %d hours) in %.0f us, busiest keyword %s;"
+                                + " %d wrong%n", FeedbackStore.WINDOW_HOURS, trendNanos / 1e3,
+                        keywords.isEmpty() ? "-" : keywords.get(0).key, wrong);
+                reopened.close();
+            } catch (IOException e) {
+                System.out.println("Feedback benchmark failed: " + e);
+            } finally {
+                if (directory != null) {
+                    try (Stream<Path> files = Files.list(directory)) {
+                        for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+                        Files.delete(directory);
+                    } catch (IOException ignored) {
+                        // leave the temporary directory behind
+                    }
+                }
+            }
+        }
+
+        // Writes a road network CSV of a square grid with the given number of routes, salted with duplicates and
+        // bad rows, and imports it into an empty graph. Small GeoJSON and OSM XML files check the other readers.
+        static void importing(int routes, Random random) {
+            int side = (int) Math.ceil(Math.sqrt(routes / 2.0)) + 1;
+            Path directory = null;
+            try {
+                directory = Files.createTempDirectory("waste-import");
+                Path csv = directory.resolve("network.csv");
+                int written = 0;
+                int bad = 0;
+                try (java.io.Writer out = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+                    out.write("from,to,distance\n");
+                    outer:
+                    for (int row = 0; row < side; row++) {
+                        for (int col = 0; col < side; col++) {
+                            int id = row * side + col;
+                            if (col + 1 < side) {
+                                out.write("area-" + id + ",area-" + (id + 1) + "," + (1 + random.nextInt(20)) + "\n");
+                                if (++written == routes) break outer;
+                            }
+                            if (row + 1 < side) {
+                                out.write("area-" + id + ",area-" + (id + side) + "," + (1 + random.nextInt(20)) + "\n");
+                                if (++written == routes) break outer;
+                            }
+                            if (id % 1000 == 0 && col + 1 < side) {
+                                out.write("area-" + (id + 1) + ",area-" + id + ",99\n"); // duplicate, reversed
+                                out.write("area-" + id + ",area-" + (id + 1) + ",-4\n");
+                                out.write("\"area-" + id + "\",area-" + (id + 1) + ",far\n");
+                                bad += 2;
+                            }
+                        }
+                    }
+                }
+                Graph graph = new Graph();
+                long[] lastProgress = new long[1];
+                NetworkImporter.Result result = new NetworkImporter(graph, true, (read, total, rows) -> lastProgress[0] = rows)
+                        .importFile(csv);
+                System.out.printf("Import CSV (%,d MB): %s%n", Files.size(csv) >> 20, result);
+                System.out.printf("  %,d routes written, %,d in graph, %,d bad rows written, first problem: %s%n", written,
+                        graph.compact().routeCount() / 2, bad, result.problems.isEmpty() ? "none" : result.problems.get(0));
+
+                Path geoJson = directory.resolve("bins.geojson");
+                Files.writeString(geoJson, "{\"type\": \"FeatureCollection\", \"features\": ["
+                        + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [13.40, 52.52]},"
+                        + " \"properties\": {\"name\": \"Mitte\", \"waste_kg\": 120}},"
+                        + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [13.45, 52.50]},"
+                        + " \"properties\": {\"name\": \"Kreuzberg\", \"waste_kg\": 80}},"
+                        + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"LineString\", \"coordinates\": [[13.40, 52.52], [13.45, 52.50]]},"
+                        + " \"properties\": {\"from\": \"Mitte\", \"to\": \"Kreuzberg\"}},"
+                        + "{\"type\": \"Feature\", \"geometry\": {\"type\": \"LineString\", \"coordinates\": [[13.40, 52.52], [13.45, 52.50]]},"
+                        + " \"properties\": {\"from\": \"Mitte\", \"to\": \"Nowhere\", \"distance\": 3}}]}");
+                Graph small = new Graph();
+                small.addArea("Nowhere-else");
+                result = new NetworkImporter(small, false, (read, total, rows) -> { }).importFile(geoJson);
+                CompactGraph imported = small.compact();
+                System.out.printf("Import GeoJSON: %s; waste %s; Mitte-Kreuzberg %d km%n", result, result.waste,
+                        RouteEngine.current().shortestDistance(imported, imported.idOf("Mitte"), imported.idOf("Kreuzberg"),
+                                SearchStrategy.DIJKSTRA));
+
+                Path osm = directory.resolve("streets.osm");
+                Files.writeString(osm, "<?xml version='1.0'?><osm>"
+                        + "<node id='1' lat='52.50' lon='13.40'/><node id='2' lat='52.51' lon='13.40'/>"
+                        + "<node id='3' lat='52.52' lon='13.40'/><node id='4' lat='52.51' lon='13.42'/>"
+                        + "<way id='10'><nd ref='1'/><nd ref='2'/><nd ref='3'/><tag k='highway' v='residential'/></way>"
+                        + "<way id='11'><nd ref='2'/><nd ref='4'/><tag k='highway' v='service'/></way>"
+                        + "<way id='12'><nd ref='3'/><nd ref='4'/><tag k='building' v='yes'/></way></osm>");
+                result = new NetworkImporter(new Graph(), true, (read, total, rows) -> { }).importFile(osm);
+                System.out.printf("Import OSM XML: %s%n", result);
+            } catch (IOException e) {
+                System.out.println("Import benchmark failed: " + e);
+            } finally {
+                if (directory != null) {
+                    try (Stream<Path> files = Files.list(directory)) {
+                        for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+                        Files.delete(directory);
+                    } catch (IOException ignored) {
+                        // leave the temporary directory behind
+                    }
+                }
+            }
+        }
+
+        static long allocatedBytes() {
+            return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+        }
+
+        static void distanceMatrix(CompactGraph graph, String[] names, Random random) {
+            List<String> origins = new ArrayList<>();
+            List<String> destinations = new ArrayList<>();
+            for (int i = 0; i < 32; i++) origins.add(names[random.nextInt(names.length)]);
+            for (int i = 0; i < 512; i++) destinations.add(names[random.nextInt(names.length)]);
+            int cores = Runtime.getRuntime().availableProcessors();
+            DistanceMatrix.compute(graph, origins, destinations, new ForkJoinPool(1)); // warm-up
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                long start = System.nanoTime();
+                DistanceMatrix matrix = DistanceMatrix.compute(graph, origins, destinations, pool);
+                long nanos = System.nanoTime() - start;
+                pool.shutdown();
+                System.out.printf("Distance matrix %dx%d on %d thread(s): %.1f ms%n", origins.size(),
+                        destinations.size(), threads, nanos / 1e6);
+            }
+
+            DistanceMatrix matrix = DistanceMatrix.compute(graph, origins, destinations);
+            int wrong = 0;
+            RouteEngine engine = RouteEngine.current();
+            for (int col = 0; col < destinations.size(); col++) {
+                int expected = engine.shortestDistance(graph, graph.idOf(origins.get(0)), graph.idOf(destinations.get(col)),
+                        SearchStrategy.DIJKSTRA);
+                if (matrix.distance(0, col) != expected) wrong++;
+            }
+            try {
+                Path file = Files.createTempFile("distance-matrix", ".bin");
+                matrix.save(file);
+                boolean roundTrip = Arrays.equals(matrix.distances, DistanceMatrix.load(file).distances);
+                Files.delete(file);
+                System.out.printf("Distance matrix: %d wrong entries in row 0, save/load round trip %s%n",
+                        wrong, roundTrip ? "ok" : "FAILED");
+            } catch (IOException e) {
+                System.out.println("Distance matrix save/load failed: " + e);
+            }
+        }
+
+        // Collector-style queries (8 depots to 400 districts, some pairs far more popular than others) with and
+        // without the route cache, then routes added one at a time, checking cached answers against searches.
+        static void routeCache(Graph graph, String[] names, Random random) {
+            Graph city = new Graph();
+            city.load(graph.image());
+            RouteCache cache = city.enableRouteCache(4096);
+            String[] depots = new String[8];
+            String[] districts = new String[400];
+            for (int i = 0; i < depots.length; i++) depots[i] = names[random.nextInt(names.length)];
+            for (int i = 0; i < districts.length; i++) districts[i] = names[random.nextInt(names.length)];
+            int queries = 20_000;
+            String[][] pairs = new String[queries][];
+            for (int i = 0; i < queries; i++) {
+                pairs[i] = new String[] {depots[random.nextInt(1 + random.nextInt(depots.length))],
+                        districts[random.nextInt(1 + random.nextInt(districts.length))]};
+            }
+            CompactGraph compact = city.compact();
+            RouteEngine engine = RouteEngine.current();
+            int searched = 2000;
+            long start = System.nanoTime();
+            for (int i = 0; i < searched; i++) engine.findRoute(compact, pairs[i][0], pairs[i][1], compact.fastestStrategy());
+            double searchNanos = (System.nanoTime() - start) / (double) searched;
+            start = System.nanoTime();
+            for (String[] pair : pairs) cache.route(compact, pair[0], pair[1]);
+            double cachedNanos = (System.nanoTime() - start) / (double) queries;
+            System.out.printf("Route cache: %.1f us per query searching, %.1f us with the cache (%,d queries)%n",
+                    searchNanos / 1e3, cachedNanos / 1e3, queries);
+
+            int wrong = 0;
+            long updateNanos = 0;
+            long checkNanos = 0;
+            int additions = 20;
+            for (int k = 0; k < additions; k++) {
+                String from = names[random.nextInt(names.length)];
+                String to = names[random.nextInt(names.length)];
+                start = System.nanoTime();
+                city.addRoute(from, to, 1 + random.nextInt(20));
+                updateNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                try {
+                    cache.awaitChecks();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                checkNanos += System.nanoTime() - start;
+                CompactGraph now = city.compact();
+                for (int i = 0; i < 200; i++) {
+                    String[] pair = pairs[random.nextInt(queries)];
+                    int expected = engine.shortestDistance(now, now.idOf(pair[0]), now.idOf(pair[1]), SearchStrategy.DIJKSTRA);
+                    if (cache.route(now, pair[0], pair[1]).distance != expected) wrong++;
+                }
+            }
+            System.out.printf("Route cache after %d new routes: %.1f ms per addRoute, %.1f ms per cache check, %d wrong of %d answers%n%s%n",
+                    additions, updateNanos / 1e6 / additions, checkNanos / 1e6 / additions, wrong, additions * 200, cache.stats());
+        }
+
+        // The network split into four regions served by four local worker JVMs, against routing in this process:
+        // distances are checked against Dijkstra and paths for being made of real routes adding up to them.
+        static void partitioned(Graph graph, String[] names, Random random) {
+            CompactGraph compact = graph.compact();
+            int parts = 4;
+            Graph unlocated = new Graph();
+            CompactGraph.Image image = graph.image();
+            double[] unknown = new double[image.xs.length];
+            Arrays.fill(unknown, Double.NaN);
+            unlocated.load(new CompactGraph.Image(image.areaNames, unknown, unknown, image.routeFrom, image.routeTo, image.routeDistance));
+            System.out.printf("Partitioning into %d regions: %,d routes cut by coordinates, %,d by breadth-first growing%n",
+                    parts, cutRoutes(compact, GraphPartitioner.partition(compact, parts)),
+                    cutRoutes(unlocated.compact(), GraphPartitioner.partition(unlocated.compact(), parts)));
+            Path directory = null;
+            PartitionedRouter router = null;
+            try {
+                directory = Files.createTempDirectory("waste-regions");
+                long start = System.nanoTime();
+                System.out.print(GraphPartitioner.write(compact, parts, directory));
+                long writeNanos = System.nanoTime() - start;
+                start = System.nanoTime();
+                router = PartitionedRouter.start(directory, null);
+                System.out.printf("  written in %d ms, %d workers up in %d ms; %s%n", writeNanos / 1_000_000, parts,
+                        (System.nanoTime() - start) / 1_000_000, router.stats().replace(String.format("%n"), "; "));
+
+                int queries = 300;
+                String[][] pairs = new String[queries][];
+                for (int i = 0; i < queries; i++) {
+                    pairs[i] = new String[] {names[random.nextInt(names.length)], names[random.nextInt(names.length)]};
+                }
+                RouteEngine engine = RouteEngine.current();
+                int[] expected = new int[queries];
+                for (int round = 0; round < 2; round++) { // the first round warms up both sides
+                    start = System.nanoTime();
+                    for (int i = 0; i < queries; i++) {
+                        engine.findRoute(compact, pairs[i][0], pairs[i][1], compact.fastestStrategy());
+                        expected[i] = engine.lastDistance();
+                    }
+                    double localNanos = (System.nanoTime() - start) / (double) queries;
+                    start = System.nanoTime();
+                    for (String[] pair : pairs) engine.findRoute(compact, pair[0], pair[1], SearchStrategy.BIDIRECTIONAL);
+                    double bidirectionalNanos = (System.nanoTime() - start) / (double) queries;
+                    int wrong = 0;
+                    start = System.nanoTime();
+                    for (int i = 0; i < queries; i++) {
+                        if (router.route(pairs[i][0], pairs[i][1], false).distance != expected[i]) wrong++;
+                    }
+                    double distanceNanos = (System.nanoTime() - start) / (double) queries;
+                    int badPaths = 0;
+                    start = System.nanoTime();
+                    for (int i = 0; i < queries; i++) {
+                        PartitionedRouter.Answer answer = router.route(pairs[i][0], pairs[i][1], true);
+                        if (answer.distance != expected[i] || pathLength(compact, answer.path) != answer.distance) badPaths++;
+                    }
+                    double pathNanos = (System.nanoTime() - start) / (double) queries;
+                    if (round == 1) {
+                        System.out.printf("  per route: %.0f us in this process (%s), %.0f us bidirectional;"
+                                        + " %.0f us over the regions, %.0f us with the path; %d wrong distances, %d bad paths%n",
+                                localNanos / 1e3, compact.fastestStrategy().label, bidirectionalNanos / 1e3,
+                                distanceNanos / 1e3, pathNanos / 1e3, wrong, badPaths);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Partitioned routing benchmark failed: " + e);
+            } finally {
+                if (router != null) router.close();
+                if (directory != null) {
+                    try (Stream<Path> files = Files.list(directory)) {
+                        for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+                        Files.delete(directory);
+                    } catch (IOException ignored) {
+                        // leave the temporary directory behind
+                    }
+                }
+            }
+        }
+
+        // Nearest of 20 facilities for every area, checked on a sample against searches from each facility;
+        // then 2,000 candidate sites scored in parallel, and the best ones added one at a time, checking the
+        // incremental update and the score's prediction against a full pass.
+        static void coverage(Graph graph, String[] names, Random random) {
+            CompactGraph compact = graph.compact();
+            int threshold = 60;
+            int bound = 2 * threshold;
+            List<String> facilities = new ArrayList<>();
+            for (int i = 0; i < 20; i++) facilities.add(names[random.nextInt(names.length)]);
+            Coverage coverage = null;
+            long passNanos = Long.MAX_VALUE;
+            for (int round = 0; round < 5; round++) { // the first rounds warm up; the fastest counts
+                long start = System.nanoTime();
+                coverage = graph.coverage(facilities, bound);
+                passNanos = Math.min(passNanos, System.nanoTime() - start);
+            }
+            int[] sample = random.ints(1000, 0, compact.areaCount()).toArray();
+            int[] nearest = new int[sample.length];
+            Arrays.fill(nearest, Integer.MAX_VALUE);
+            int[] found = new int[sample.length];
+            RouteEngine engine = RouteEngine.current();
+            for (int site : coverage.facilities()) {
+                engine.distancesFrom(compact, site, sample, found, 0);
+                for (int i = 0; i < sample.length; i++) nearest[i] = Math.min(nearest[i], found[i]);
+            }
+            int wrong = 0;
+            for (int i = 0; i < sample.length; i++) {
+                if (coverage.distance[sample[i]] != (nearest[i] > bound ? Integer.MAX_VALUE : nearest[i])) wrong++;
+            }
+            int[] bands = coverage.bands(threshold, bound);
+            System.out.printf("Coverage of %,d areas by %d facilities within %d km: %.0f ms; %,d within %d km, %,d more"
+                            + " within %d km, %,d beyond; %d of %d sampled distances wrong%n", compact.areaCount(),
+                    coverage.facilities().length, bound, passNanos / 1e6, bands[0], threshold, bands[1], bound, bands[2],
+                    wrong, sample.length);
+
+            int[] candidates = random.ints(0, compact.areaCount()).distinct().limit(2000).toArray();
+            List<Coverage.Candidate> scored = null;
+            long scoreNanos = Long.MAX_VALUE;
+            for (int round = 0; round < 3; round++) {
+                long start = System.nanoTime();
+                scored = coverage.scoreAll(candidates, threshold);
+                scoreNanos = Math.min(scoreNanos, System.nanoTime() - start);
+            }
+            long start = System.nanoTime();
+            for (int site : candidates) coverage.score(site, threshold);
+            long sequentialNanos = System.nanoTime() - start;
+            System.out.printf("  %,d candidate sites scored in %.0f ms on %d threads (%.0f ms one at a time);"
+                            + " best brings %,d areas within %d km%n", candidates.length, scoreNanos / 1e6,
+                    ForkJoinPool.commonPool().getParallelism(), sequentialNanos / 1e6, scored.get(0).broughtWithin, threshold);
+
+            int mismatches = 0;
+            long addNanos = 0;
+            long fullNanos = 0;
+            int added = 0;
+            for (Coverage.Candidate candidate : scored.subList(0, 10)) {
+                int within = coverage.bands(threshold)[0];
+                Coverage.Candidate predicted = coverage.score(candidate.site, threshold);
+                start = System.nanoTime();
+                int changed = coverage.add(candidate.site);
+                addNanos += System.nanoTime() - start;
+                added += changed;
+                facilities.add(compact.areaName(candidate.site));
+                start = System.nanoTime();
+                Coverage full = graph.coverage(facilities, bound);
+                fullNanos += System.nanoTime() - start;
+                if (!Arrays.equals(full.distance, coverage.distance) || predicted.areas != changed
+                        || predicted.broughtWithin != coverage.bands(threshold)[0] - within) {
+                    mismatches++;
+                }
+            }
+            System.out.printf("  10 sites added: %.2f ms each, updating %,d areas on average, against %.0f ms for a"
+                    + " full pass; %d differ from the full pass or their score%n", addNanos / 10 / 1e6, added / 10,
+                    fullNanos / 10 / 1e6, mismatches);
+        }
+
+        private static int cutRoutes(CompactGraph graph, int[] region) {
+            int cut = 0;
+            for (int area = 0; area < graph.areaCount(); area++) {
+                for (int r = graph.offsets[area]; r < graph.offsets[area + 1]; r++) {
+                    if (area < graph.targets[r] && region[area] != region[graph.targets[r]]) cut++;
+                }
+            }
+            return cut;
+        }
+
+        // Total distance along the path's routes, -1 when two consecutive areas have no route between them.
+        private static int pathLength(CompactGraph graph, List<String> path) {
+            int length = 0;
+            for (int i = 0; i + 1 < path.size(); i++) {
+                int from = graph.idOf(path.get(i));
+                int to = graph.idOf(path.get(i + 1));
+                int best = Integer.MAX_VALUE;
+                for (int r = graph.offsets[from]; r < graph.offsets[from + 1]; r++) {
+                    if (graph.targets[r] == to) best = Math.min(best, graph.distances[r]);
+                }
+                if (best == Integer.MAX_VALUE) return -1;
+                length += best;
+            }
+            return path.isEmpty() ? Integer.MAX_VALUE : length;
+        }
+
+        // Two feeds of 500,000 readings each from 20,000 bins, parsed and applied concurrently; checks the waste
+        // waiting per area against the bins' last readings.
+        static void sensorIngest(Graph graph, String[] names, Random random) {
+            int bins = 20_000;
+            int perFeed = 500_000;
+            String[] binArea = new String[bins];
+            float[] capacity = new float[bins];
+            for (int bin = 0; bin < bins; bin++) {
+                binArea[bin] = names[random.nextInt(names.length)];
+                capacity[bin] = bin % 4 == 0 ? 240 : BinSensors.DEFAULT_CAPACITY;
+            }
+            for (int round = 0; round < 2; round++) { // the first round warms up
+                float[] level = new float[bins];
+                byte[][] feeds = new byte[2][];
+                long time = 1_700_000_000_000L;
+                for (int feed = 0; feed < 2; feed++) { // each bin reports on one feed, so its readings stay in order
+                    StringBuilder text = new StringBuilder(perFeed * 40).append("time,bin,area,fill,capacity\n");
+                    for (int i = 0; i < perFeed; i++) {
+                        int bin = 2 * random.nextInt(bins / 2) + feed;
+                        level[bin] += random.nextInt(4);
+                        if (level[bin] > 100) level[bin] = random.nextInt(5); // emptied
+                        time += 50;
+                        text.append(time).append(",bin-").append(bin).append(',').append(binArea[bin]).append(',')
+                                .append((int) level[bin]);
+                        if (capacity[bin] != BinSensors.DEFAULT_CAPACITY) text.append(',').append((int) capacity[bin]);
+                        text.append('\n');
+                    }
+                    feeds[feed] = text.toString().getBytes(StandardCharsets.UTF_8);
+                }
+                Map<String, Integer> waste = new ConcurrentHashMap<>();
+                BinSensors sensors = new BinSensors(graph, waste);
+                int[] changes = new int[1];
+                sensors.addListener(event -> changes[0]++);
+                long before = usedHeap();
+                long start = System.nanoTime();
+                List<Thread> feeders = new ArrayList<>();
+                for (byte[] feed : feeds) {
+                    Thread feeder = new Thread(() -> {
+                        try {
+                            sensors.ingest(new ByteArrayInputStream(feed), 0);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                    feeder.start();
+                    feeders.add(feeder);
+                }
+                try {
+                    for (Thread feeder : feeders) feeder.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                while (!sensors.caughtUp()) Thread.onSpinWait();
+                long nanos = System.nanoTime() - start;
+                long heap = usedHeap() - before;
+                sensors.close();
+
+                Map<String, Double> expected = new HashMap<>();
+                for (int bin = 0; bin < bins; bin++) {
+                    expected.merge(binArea[bin], (double) level[bin] * capacity[bin] / 100, Double::sum);
+                }
+                int wrong = 0;
+                for (var entry : expected.entrySet()) {
+                    if (Math.abs(waste.getOrDefault(entry.getKey(), -1) - entry.getValue()) > 1) wrong++;
+                }
+                if (round == 1) {
+                    System.out.printf("Sensors: %,d readings from %,d bins in %.0f ms (%,.0f readings/s), %,d rejected, "
+                                    + "%,d collection changes, %d of %d areas wrong, heap %+,d KB%n",
+                            sensors.applied(), sensors.bins(), nanos / 1e6, sensors.applied() * 1e9 / nanos,
+                            sensors.rejected(), changes[0], wrong, expected.size(), heap / 1024);
+                }
+            }
+        }
+
+        // A live matrix kept current through a stream of small traffic updates, against rebuilding it each time,
+        // and time-dependent queries against plain ones.
+        static void trafficRepair(Graph graph, String[] names, Random random) {
+            long[] clock = {1_700_000_000L};
+            Traffic traffic = new Traffic(graph, () -> clock[0]);
+            List<String> origins = new ArrayList<>();
+            List<String> destinations = new ArrayList<>();
+            for (int i = 0; i < 16; i++) origins.add(names[random.nextInt(names.length)]);
+            for (int i = 0; i < 64; i++) destinations.add(names[random.nextInt(names.length)]);
+            LiveDistanceMatrix live = new LiveDistanceMatrix(traffic, origins, destinations);
+            long start = System.nanoTime();
+            live.current();
+            System.out.printf("Traffic: live %dx%d matrix built in %.1f ms%n", origins.size(), destinations.size(),
+                    (System.nanoTime() - start) / 1e6);
+            CompactGraph compact = graph.compact();
+            long repairNanos = 0;
+            long rebuildNanos = 0;
+            long repairSettled = 0;
+            int wrong = 0;
+            int rounds = 40;
+            for (int round = -10; round < rounds; round++) { // the first ten rounds warm up
+                for (int k = 0; k < 5; k++) { // a few congested or closed streets, some cleared again
+                    int area = random.nextInt(compact.areaCount());
+                    int route = compact.offsets[area] + random.nextInt(compact.offsets[area + 1] - compact.offsets[area]);
+                    String from = compact.areaName(area);
+                    String to = compact.areaName(compact.targets[route]);
+                    int kind = random.nextInt(4);
+                    if (kind == 0) traffic.close(from, to, clock[0] + 600);
+                    else if (kind == 1) traffic.clearLive(from, to);
+                    else traffic.setLive(from, to, 0.5 + 3 * random.nextDouble(), clock[0] + 600);
+                }
+                start = System.nanoTime();
+                DistanceMatrix repaired = live.current();
+                long repairTime = System.nanoTime() - start;
+                start = System.nanoTime();
+                DistanceMatrix rebuilt = new LiveDistanceMatrix(traffic, origins, destinations).current();
+                long rebuildTime = System.nanoTime() - start;
+                if (!Arrays.equals(repaired.distances, rebuilt.distances)) wrong++;
+                if (round >= 0) {
+                    repairNanos += repairTime;
+                    rebuildNanos += rebuildTime;
+                    repairSettled += live.settled();
+                }
+            }
+            System.out.printf("  after 5 updates: repair %.2f ms (%,d areas settled), rebuild %.2f ms, %d of %d refreshes wrong%n",
+                    repairNanos / 1e6 / rounds, repairSettled / rounds, rebuildNanos / 1e6 / rounds, wrong, rounds + 10);
+
+            traffic.setDefaultProfile("urban");
+            int queries = 200;
+            int slower = 0;
+            java.time.LocalDate day = java.time.LocalDate.of(2024, 3, 5);
+            long morning = day.atTime(8, 0).atZone(java.time.ZoneId.systemDefault()).toEpochSecond();
+            long night = day.atTime(2, 0).atZone(java.time.ZoneId.systemDefault()).toEpochSecond();
+            start = System.nanoTime();
+            for (int i = 0; i < queries; i++) {
+                String from = names[random.nextInt(names.length)];
+                String to = names[random.nextInt(names.length)];
+                if (traffic.fastest(from, to, morning).seconds > traffic.fastest(from, to, night).seconds) slower++;
+            }
+            System.out.printf("  time-dependent query %.2f ms; %d of %d trips slower leaving at 08:00 than at 02:00%n",
+                    (System.nanoTime() - start) / 1e6 / (2 * queries), slower, queries);
+        }
+
+        // Writers keep extending chains of areas, each new area arriving together with the route that
+        // connects it, while readers query routes and check every snapshot they see. A half-applied
+        // edit would show up as an isolated area (no route found) or an inconsistent CSR snapshot.
+        static boolean stress(String[] args) {
+            int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+            int readers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+            int writers = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+            Graph graph = new Graph();
+            graph.addArea("depot");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            LongAdder queries = new LongAdder();
+            LongAdder edits = new LongAdder();
+            List<String> failures = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> threads = new ArrayList<>();
+
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                threads.add(new Thread(() -> {
+                    Random random = new Random(writer);
+                    String previous = "depot";
+                    for (int i = 0; System.nanoTime() < deadline; i++) {
+                        String area = "w" + writer + "-" + i;
+                        String from = random.nextInt(8) == 0 ? "depot" : previous;
+                        graph.update(edit -> {
+                            edit.addArea(area);
+                            edit.addRoute(from, area, 1 + random.nextInt(10));
+                        });
+                        previous = area;
+                        edits.increment();
+                    }
+                }, "stress-writer-" + w));
+            }
+            for (int r = 0; r < readers; r++) {
+                int reader = r;
+                threads.add(new Thread(() -> {
+                    Random random = new Random(100 + reader);
+                    RouteEngine engine = RouteEngine.current();
+                    while (System.nanoTime() < deadline && failures.size() < 10) {
+                        CompactGraph snapshot = graph.compact();
+                        String problem = checkSnapshot(snapshot);
+                        if (problem == null) {
+                            String from = snapshot.areaName(random.nextInt(snapshot.areaCount()));
+                            String to = snapshot.areaName(random.nextInt(snapshot.areaCount()));
+                            if (engine.findRoute(snapshot, from, to, SearchStrategy.BIDIRECTIONAL).isEmpty()) {
+                                problem = "no route " + from + " -> " + to + " in version " + snapshot.version;
+                            }
+                        }
+                        if (problem != null) failures.add(problem);
+                        queries.increment();
+                    }
+                }, "stress-reader-" + r));
+            }
+            Thread.UncaughtExceptionHandler handler = (thread, error) -> failures.add(thread.getName() + ": " + error);
+            for (Thread thread : threads) {
+                thread.setUncaughtExceptionHandler(handler);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            System.out.printf("Stress: %d edits, %d checked queries, final version %d with %d areas, %d failures%n",
+                    edits.sum(), queries.sum(), graph.compact().version, graph.compact().areaCount(), failures.size());
+            failures.forEach(failure -> System.out.println("  " + failure));
+            return failures.isEmpty();
+        }
+
+        private static String checkSnapshot(CompactGraph graph) {
+            if (graph.offsets.length != graph.areaCount() + 1 || graph.offsets[graph.areaCount()] != graph.routeCount()) {
+                return "offsets do not match route count in version " + graph.version;
+            }
+            for (int area = 0; area < graph.areaCount(); area++) {
+                if (graph.idOf(graph.areaName(area)) != area) {
+                    return "area id mismatch for " + graph.areaName(area) + " in version " + graph.version;
+                }
+                if (area > 0 && graph.offsets[area] == graph.offsets[area + 1]) {
+                    return "area " + graph.areaName(area) + " has no route in version " + graph.version;
+                }
+            }
+            return null;
+        }
+
+        interface GridRouteConsumer {
+            void accept(int from, int to, int weightIndex);
+        }
+
+        static void forEachGridRoute(int side, GridRouteConsumer consumer) {
+            for (int row = 0; row < side; row++) {
+                for (int col = 0; col < side; col++) {
+                    int id = row * side + col;
+                    if (col + 1 < side) consumer.accept(id, id + 1, 2 * id);
+                    if (row + 1 < side) consumer.accept(id, id + side, 2 * id + 1);
+                }
+            }
+        }
+
+        static long usedHeap() {
+            Runtime runtime = Runtime.getRuntime();
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+            }
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+
+    // Repeatable micro-benchmarks for routing, the tip index and map rendering, with allocation per
+    // operation so a change that adds garbage to a query shows up next to one that only adds time:
+    //   java project2.WasteCollectionSwingVisualizer --suite [pattern] [--sizes 1000,10000,100000]
+    //        [--save results.csv] [--compare baseline.csv]
+    // Each benchmark is warmed up, then measured over several timed iterations; scores carry a 99.9%
+    // confidence interval. -Dsuite.warmup, -Dsuite.iterations, -Dsuite.time (ms per iteration),
+    // -Dsuite.threads and -Dsuite.tolerance (allowed slowdown against the baseline) tune a run.
+    private static class BenchmarkSuite {
+        private static final int WARMUP = Integer.getInteger("suite.warmup", 3);
+        private static final int ITERATIONS = Integer.getInteger("suite.iterations", 5);
+        private static final long ITERATION_NANOS = TimeUnit.MILLISECONDS.toNanos(Integer.getInteger("suite.time", 500));
+        private static final int THREADS = Integer.getInteger("suite.threads", 4);
+        private static final double TOLERANCE = Double.parseDouble(System.getProperty("suite.tolerance", "0.10"));
+        private static final int QUERIES = 1024; // inputs per fixture, cycled through by invocation index
+        // Largest graphs given a contraction hierarchy; beyond these the build takes minutes, and hubs in
+        // scale-free graphs make contraction far more expensive than on road-like networks.
+        private static final int HIERARCHY_LIMIT = 100_000;
+        private static final int SCALE_FREE_HIERARCHY_LIMIT = 10_000;
+        // Two-sided 99.9% Student t quantiles for 1..30 degrees of freedom
+        private static final double[] T_QUANTILES = {636.62, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041,
+                4.781, 4.587, 4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850, 3.819, 3.792,
+                3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646};
+
+        static volatile Object sink; // keeps results alive so the JIT cannot drop the measured work
+
+        interface Operation {
+            Object run(int invocation);
+        }
+
+        private static class Result {
+            final String name;
+            final String mode; // "avgt" scores nanoseconds per operation, "thrpt" operations per millisecond
+            final double score;
+            final double error;
+            final double bytesPerOp;
+            final long collections;
+
+            Result(String name, String mode, double score, double error, double bytesPerOp, long collections) {
+                this.name = name;
+                this.mode = mode;
+                this.score = score;
+                this.error = error;
+                this.bytesPerOp = bytesPerOp;
+                this.collections = collections;
+            }
+
+            boolean lowerIsBetter() {
+                return mode.equals("avgt");
+            }
+
+            String unit() {
+                return lowerIsBetter() ? "ns/op" : "ops/ms";
+            }
+        }
+
+        private final Pattern filter;
+        private final List<Result> results = new ArrayList<>();
+
+        private BenchmarkSuite(Pattern filter) {
+            this.filter = filter;
+        }
+
+        // Returns false when a benchmark regressed against the --compare baseline.
+        static boolean run(String[] args) {
+            String pattern = "";
+            int[] sizes = {1_000, 10_000, 100_000};
+            Path save = null;
+            Path compare = null;
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--sizes":
+                        sizes = Arrays.stream(args[++i].split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+                        break;
+                    case "--save":
+                        save = Path.of(args[++i]);
+                        break;
+                    case "--compare":
+                        compare = Path.of(args[++i]);
+                        break;
+                    default:
+                        pattern = args[i];
+                }
+            }
+            System.setProperty("java.awt.headless", "true");
+            BenchmarkSuite suite = new BenchmarkSuite(Pattern.compile(pattern));
+            System.out.printf("%d warm-up and %d measured iterations of %d ms, %d threads for concurrent benchmarks%n",
+                    WARMUP, ITERATIONS, TimeUnit.NANOSECONDS.toMillis(ITERATION_NANOS), THREADS);
+            System.out.printf("%-52s %5s %3s %12s %10s %7s %10s %4s%n",
+                    "Benchmark", "Mode", "Cnt", "Score", "Error", "Units", "B/op", "GCs");
+            for (int size : sizes) {
+                for (String family : new String[] {"grid", "geometric", "scalefree"}) {
+                    suite.routing(family, size);
+                }
+                suite.catalogue(size);
+                suite.rendering(size);
+                suite.api(size);
+                suite.startup(size);
+            }
+            try {
+                if (save != null) {
+                    suite.save(save);
+                    System.out.println("Saved " + suite.results.size() + " results to " + save);
+                }
+                return compare == null || suite.compare(compare);
+            } catch (IOException e) {
+                System.out.println("Could not read or write benchmark results: " + e.getMessage());
+                return false;
+            }
+        }
+
+        private boolean wanted(String name) {
+            return filter.matcher(name).find();
+        }
+
+        private boolean anyWanted(String... names) {
+            for (String name : names) {
+                if (wanted(name)) return true;
+            }
+            return false;
+        }
+
+        private void routing(String family, int size) {
+            String suffix = "/" + family + "/" + size;
+            List<String> names = new ArrayList<>();
+            for (SearchStrategy strategy : SearchStrategy.values()) {
+                names.add("route.single." + strategyKey(strategy) + suffix);
+            }
+            names.add("route.batch" + suffix);
+            names.add("route.concurrent" + suffix);
+            if (!anyWanted(names.toArray(new String[0]))) return;
+
+            Graph graph = generate(family, size, new Random(size));
+            CompactGraph compact = graph.compact();
+            Random random = new Random(7);
+            String[] from = new String[QUERIES];
+            String[] to = new String[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                from[i] = compact.areaName(random.nextInt(compact.areaCount()));
+                to[i] = compact.areaName(random.nextInt(compact.areaCount()));
+            }
+            for (SearchStrategy strategy : SearchStrategy.values()) {
+                String name = "route.single." + strategyKey(strategy) + suffix;
+                if (!wanted(name)) continue;
+                if (strategy == SearchStrategy.A_STAR && !compact.hasLocations()) continue;
+                if (strategy == SearchStrategy.CONTRACTION_HIERARCHY) {
+                    if (size > (family.equals("scalefree") ? SCALE_FREE_HIERARCHY_LIMIT : HIERARCHY_LIMIT)) continue;
+                    if (compact.hierarchy() == null) compact.attachHierarchy(ContractionHierarchy.build(compact));
+                }
+                measure(name, i -> graph.getOptimizedRoute(from[i % QUERIES], to[i % QUERIES], strategy));
+            }
+            if (wanted("route.batch" + suffix)) {
+                List<List<String>> origins = new ArrayList<>();
+                for (int i = 0; i < QUERIES / 8; i++) {
+                    origins.add(Arrays.asList(from).subList(i * 8, i * 8 + 8));
+                }
+                List<String> destinations = Arrays.asList(to).subList(0, 64);
+                ForkJoinPool pool = new ForkJoinPool(1);
+                measure("route.batch" + suffix,
+                        i -> DistanceMatrix.compute(compact, origins.get(i % origins.size()), destinations, pool));
+                pool.shutdown();
+            }
+            if (wanted("route.concurrent" + suffix)) {
+                SearchStrategy fastest = compact.fastestStrategy();
+                measureConcurrent("route.concurrent" + suffix,
+                        i -> graph.getOptimizedRoute(from[i % QUERIES], to[i % QUERIES], fastest));
+            }
+        }
+
+        private static String strategyKey(SearchStrategy strategy) {
+            return strategy.name().toLowerCase().replace("_", "");
+        }
+
+        private void catalogue(int size) {
+            String suffix = "/" + size;
+            if (!anyWanted("trie.lookup.hit" + suffix, "trie.lookup.miss" + suffix, "trie.suggest" + suffix,
+                    "products.lookup" + suffix)) {
+                return;
+            }
+            Random random = new Random(size);
+            String[] items = Benchmarks.catalogue(random, size);
+            RecyclingTrie trie = new RecyclingTrie();
+            ProductKnowledge knowledge = new ProductKnowledge();
+            for (int i = 0; i < items.length; i++) {
+                trie.addRecyclingTip(items[i], "Tip " + (i % 300));
+                knowledge.addCategory(items[i], "Category " + (i % 7));
+                knowledge.addTip(items[i], "Tip " + (i % 300));
+            }
+            String[] hits = new String[QUERIES];
+            String[] misses = new String[QUERIES];
+            String[] prefixes = new String[QUERIES];
+            for (int i = 0; i < QUERIES; i++) {
+                hits[i] = items[random.nextInt(items.length)];
+                StringBuilder typo = new StringBuilder(hits[i]);
+                typo.setCharAt(random.nextInt(typo.length()), '#');
+                misses[i] = typo.toString();
+                prefixes[i] = hits[i].substring(0, Math.min(hits[i].length(), 2 + random.nextInt(3)));
+            }
+            measure("trie.lookup.hit" + suffix, i -> trie.getRecyclingTip(hits[i % QUERIES]));
+            measure("trie.lookup.miss" + suffix, i -> trie.getRecyclingTip(misses[i % QUERIES]));
+            measure("trie.suggest" + suffix, i -> trie.suggest(prefixes[i % QUERIES], 10));
+            measure("products.lookup" + suffix, i -> knowledge.lookup(hits[i % QUERIES]));
+        }
+
+        private void rendering(int size) {
+            String suffix = "/grid/" + size;
+            if (!anyWanted("render.cached" + suffix, "render.pan" + suffix)) return;
+            Graph graph = generate("grid", size, new Random(size));
+            GraphPanel panel = new GraphPanel(graph);
+            panel.setSize(1200, 900);
+            BufferedImage image = new BufferedImage(1200, 900, BufferedImage.TYPE_INT_ARGB);
+            Benchmarks.paintInto(panel, image); // fits the view and draws the cached network image
+            measure("render.cached" + suffix, i -> {
+                Benchmarks.paintInto(panel, image);
+                return image;
+            });
+            measure("render.pan" + suffix, i -> {
+                panel.panBy((i & 1) == 0 ? 7 : -7, 3 - (i & 2) * 3); // wanders around the fitted view
+                Benchmarks.paintInto(panel, image);
+                return image;
+            });
+        }
+
+        // Round trips to a RoutingServer on localhost over one kept-alive connection: single routes with paths,
+        // and batches of 256 distance-only queries.
+        private void api(int size) {
+            String suffix = "/grid/" + size;
+            if (!anyWanted("api.route" + suffix, "api.batch256" + suffix)) return;
+            Graph graph = generate("grid", size, new Random(size));
+            CompactGraph compact = graph.compact();
+            if (size <= HIERARCHY_LIMIT) compact.attachHierarchy(ContractionHierarchy.build(compact));
+            Random random = new Random(11);
+            RoutingServer server;
+            try {
+                server = new RoutingServer(graph, new ProductKnowledge(), new Traffic(graph), null, null, 0, 2 * Runtime.getRuntime().availableProcessors()).start();
+            } catch (IOException e) {
+                System.out.println("Could not start a routing server: " + e.getMessage());
+                return;
+            }
+            try {
+                String base = "http://localhost:" + server.port();
+                java.net.http.HttpClient client = java.net.http.HttpClient.newBuilder()
+                        .version(java.net.http.HttpClient.Version.HTTP_1_1).build();
+                java.net.http.HttpRequest[] routes = new java.net.http.HttpRequest[QUERIES];
+                java.net.http.HttpRequest[] batches = new java.net.http.HttpRequest[16];
+                for (int i = 0; i < QUERIES; i++) {
+                    String from = compact.areaName(random.nextInt(compact.areaCount()));
+                    String to = compact.areaName(random.nextInt(compact.areaCount()));
+                    routes[i] = java.net.http.HttpRequest.newBuilder(java.net.URI.create(base + "/route?from=" + from + "&to=" + to)).build();
+                }
+                for (int b = 0; b < batches.length; b++) {
+                    StringBuilder body = new StringBuilder("{\"paths\":false,\"pairs\":[");
+                    for (int i = 0; i < 256; i++) {
+                        if (i > 0) body.append(',');
+                        body.append("[\"").append(compact.areaName(random.nextInt(compact.areaCount()))).append("\",\"")
+                                .append(compact.areaName(random.nextInt(compact.areaCount()))).append("\"]");
+                    }
+                    batches[b] = java.net.http.HttpRequest.newBuilder(java.net.URI.create(base + "/routes"))
+                            .POST(java.net.http.HttpRequest.BodyPublishers.ofString(body.append("]}").toString())).build();
+                }
+                measure("api.route" + suffix, i -> send(client, routes[i % QUERIES]));
+                measure("api.batch256" + suffix, i -> send(client, batches[i % batches.length]));
+            } finally {
+                server.stop();
+            }
+        }
+
+        // Restoring a data directory holding a grid network and a catalogue of the given size into an empty graph
+        // and catalogue, which is what a start waits for before the dashboards open.
+        private void startup(int size) {
+            String name = "startup.load/" + size;
+            if (!wanted(name)) return;
+            Path directory = null;
+            try {
+                directory = Files.createTempDirectory("waste-startup");
+                String[] items = Benchmarks.catalogue(new Random(size), size);
+                ProductKnowledge catalogue = new ProductKnowledge();
+                for (int i = 0; i < items.length; i++) {
+                    catalogue.addCategory(items[i], "Category " + (i % 7));
+                    catalogue.addTip(items[i], "Tip " + (i % 300));
+                }
+                DataStore saved = new DataStore(directory, generate("grid", size, new Random(size)), catalogue,
+                        new ArrayList<>(), new ArrayList<>());
+                saved.save();
+                saved.close();
+                Path savedDirectory = directory;
+                measure(name, i -> {
+                    DataStore store = new DataStore(savedDirectory, new Graph(), new ProductKnowledge(), new ArrayList<>(), new ArrayList<>());
+                    try {
+                        store.load();
+                        store.close();
+                    } catch (IOException e) {
+                        throw new java.io.UncheckedIOException(e);
+                    }
+                    return store;
+                });
+            } catch (IOException e) {
+                System.out.println("Could not write a data directory to load: " + e.getMessage());
+            } finally {
+                if (directory != null) {
+                    try (Stream<Path> files = Files.list(directory)) {
+                        for (Path file : (Iterable<Path>) files::iterator) Files.delete(file);
+                        Files.delete(directory);
+                    } catch (IOException ignored) {
+                        // leave the temporary directory behind
+                    }
+                }
+            }
+        }
+
+        private static String send(java.net.http.HttpClient client, java.net.http.HttpRequest request) {
+            try {
+                java.net.http.HttpResponse<String> response = client.send(request, java.net.http.HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) throw new IllegalStateException("HTTP " + response.statusCode() + ": " + response.body());
+                return response.body();
+            } catch (IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+
+        // grid: square street grid with coordinates; geometric: areas scattered over a square, each
+        // joined to the neighbours within a radius giving about eight routes per area; scalefree:
+        // preferential attachment with three routes per new area and no coordinates, like the hub-heavy
+        // networks some imports produce.
+        static Graph generate(String family, int size, Random random) {
+            Graph graph = new Graph();
+            graph.update(edit -> {
+                switch (family) {
+                    case "grid": {
+                        int side = (int) Math.ceil(Math.sqrt(size));
+                        for (int i = 0; i < side * side; i++) edit.setLocation(edit.addArea("area-" + i), i % side, i / side);
+                        Benchmarks.forEachGridRoute(side, (from, to, w) -> edit.addRoute(from, to, 1 + random.nextInt(20)));
+                        break;
+                    }
+                    case "geometric": {
+                        double side = Math.sqrt(size); // one area per unit square
+                        double radius = Math.sqrt(8 / Math.PI);
+                        int cells = Math.max(1, (int) (side / radius));
+                        double[] xs = new double[size];
+                        double[] ys = new double[size];
+                        List<List<Integer>> buckets = new ArrayList<>();
+                        for (int i = 0; i < cells * cells; i++) buckets.add(new ArrayList<>());
+                        for (int i = 0; i < size; i++) {
+                            xs[i] = random.nextDouble() * side;
+                            ys[i] = random.nextDouble() * side;
+                            edit.setLocation(edit.addArea("area-" + i), xs[i], ys[i]);
+                            buckets.get(cell(ys[i], side, cells) * cells + cell(xs[i], side, cells)).add(i);
+                        }
+                        for (int i = 0; i < size; i++) {
+                            int cx = cell(xs[i], side, cells);
+                            int cy = cell(ys[i], side, cells);
+                            for (int y = Math.max(0, cy - 1); y <= Math.min(cells - 1, cy + 1); y++) {
+                                for (int x = Math.max(0, cx - 1); x <= Math.min(cells - 1, cx + 1); x++) {
+                                    for (int j : buckets.get(y * cells + x)) {
+                                        double distance = Math.hypot(xs[i] - xs[j], ys[i] - ys[j]);
+                                        if (j > i && distance <= radius) edit.addRoute(i, j, 1 + (int) (distance * 10));
+                                    }
+                                }
+                            }
+                        }
+                        break;
+                    }
+                    case "scalefree": {
+                        int[] ends = new int[2 * 3 * size]; // every route end once, so picks follow degree
+                        int endCount = 0;
+                        for (int i = 0; i < size; i++) {
+                            edit.addArea("area-" + i);
+                            if (i == 0) continue;
+                            int picks = Math.min(3, i);
+                            for (int k = 0; k < picks; k++) {
+                                int target = endCount == 0 ? 0 : ends[random.nextInt(endCount)];
+                                edit.addRoute(i, target, 1 + random.nextInt(20));
+                                ends[endCount++] = target;
+                                ends[endCount++] = i;
+                            }
+                        }
+                        break;
+                    }
+                    default:
+                        throw new IllegalArgumentException("Unknown graph family " + family);
+                }
+            });
+            return graph;
+        }
+
+        private static int cell(double coordinate, double side, int cells) {
+            return Math.min(cells - 1, (int) (coordinate / side * cells));
+        }
+
+        // Average time per operation on this thread. The batch size is doubled during the first warm-up
+        // iteration until one batch takes a millisecond, so the clock is not read around every call.
+        private void measure(String name, Operation operation) {
+            if (!wanted(name)) return;
+            int batch = 1;
+            int invocation = 0;
+            double[] scores = new double[ITERATIONS];
+            long bytes = 0;
+            long operations = 0;
+            long collections = 0;
+            for (int iteration = -WARMUP; iteration < ITERATIONS; iteration++) {
+                if (iteration == 0) collections = collectionCount();
+                long allocated = Benchmarks.allocatedBytes();
+                long count = 0;
+                long start = System.nanoTime();
+                long now = start;
+                while (now - start < ITERATION_NANOS) {
+                    long batchStart = now;
+                    for (int k = 0; k < batch; k++) sink = operation.run(invocation++ & Integer.MAX_VALUE);
+                    count += batch;
+                    now = System.nanoTime();
+                    if (iteration == -WARMUP && now - batchStart < 1_000_000 && batch < (1 << 20)) batch *= 2;
+                }
+                if (iteration >= 0) {
+                    scores[iteration] = (double) (now - start) / count;
+                    bytes += Benchmarks.allocatedBytes() - allocated;
+                    operations += count;
+                }
+            }
+            record(name, "avgt", scores, (double) bytes / operations, collectionCount() - collections);
+        }
+
+        // Combined throughput of THREADS threads sharing the same inputs and graph snapshot.
+        private void measureConcurrent(String name, Operation operation) {
+            double[] scores = new double[ITERATIONS];
+            long[] bytes = new long[1];
+            long[] operations = new long[1];
+            long collections = 0;
+            for (int iteration = -WARMUP; iteration < ITERATIONS; iteration++) {
+                if (iteration == 0) collections = collectionCount();
+                LongAdder count = new LongAdder();
+                LongAdder allocated = new LongAdder();
+                List<Thread> threads = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    int first = t * 7919;
+                    threads.add(new Thread(() -> {
+                        long before = Benchmarks.allocatedBytes();
+                        long start = System.nanoTime();
+                        int invocation = first;
+                        while (System.nanoTime() - start < ITERATION_NANOS) {
+                            sink = operation.run(invocation++ & Integer.MAX_VALUE);
+                        }
+                        count.add(invocation - first);
+                        allocated.add(Benchmarks.allocatedBytes() - before);
+                    }, "suite-worker-" + t));
+                }
+                long start = System.nanoTime();
+                threads.forEach(Thread::start);
+                for (Thread thread : threads) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (iteration >= 0) {
+                    scores[iteration] = count.sum() / ((System.nanoTime() - start) / 1e6);
+                    bytes[0] += allocated.sum();
+                    operations[0] += count.sum();
+                }
+            }
+            record(name, "thrpt", scores, (double) bytes[0] / operations[0], collectionCount() - collections);
+        }
+
+        private void record(String name, String mode, double[] scores, double bytesPerOp, long collections) {
+            double mean = Arrays.stream(scores).average().orElse(0);
+            double error = 0;
+            if (scores.length > 1) {
+                double variance = 0;
+                for (double score : scores) variance += (score - mean) * (score - mean);
+                variance /= scores.length - 1;
+                int freedom = scores.length - 1;
+                double t = freedom <= T_QUANTILES.length ? T_QUANTILES[freedom - 1] : 3.291;
+                error = t * Math.sqrt(variance / scores.length);
+            }
+            Result result = new Result(name, mode, mean, error, bytesPerOp, collections);
+            results.add(result);
+            System.out.printf("%-52s %5s %3d %12.1f %10.1f %7s %10.1f %4d%n", name, mode, scores.length, mean, error,
+                    result.unit(), bytesPerOp, collections);
+        }
+
+        private static long collectionCount() {
+            long count = 0;
+            for (java.lang.management.GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                count += Math.max(0, collector.getCollectionCount());
+            }
+            return count;
+        }
+
+        private void save(Path file) throws IOException {
+            List<String> lines = new ArrayList<>();
+            lines.add("benchmark,mode,score,error,unit,bytes_per_op");
+            for (Result result : results) {
+                lines.add(String.format(Locale.ROOT, "%s,%s,%.3f,%.3f,%s,%.1f", result.name, result.mode,
+                        result.score, result.error, result.unit(), result.bytesPerOp));
+            }
+            Files.write(file, lines, StandardCharsets.UTF_8);
+        }
+
+        // A benchmark regresses when its score is worse than the baseline by more than the tolerance and
+        // by more than both error margins together, or when it allocates noticeably more per operation
+        // (10% plus 16 bytes, about one small object).
+        private boolean compare(Path file) throws IOException {
+            Map<String, String[]> baseline = new HashMap<>();
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(",");
+                if (fields.length == 6 && !fields[0].equals("benchmark")) baseline.put(fields[0], fields);
+            }
+            System.out.printf("%nAgainst %s (tolerance %.0f%%):%n", file, TOLERANCE * 100);
+            int regressions = 0;
+            for (Result result : results) {
+                String[] base = baseline.get(result.name);
+                if (base == null) continue;
+                double score = Double.parseDouble(base[2]);
+                double bytes = Double.parseDouble(base[5]);
+                double change = (result.score - score) / score;
+                boolean slower = (result.lowerIsBetter() ? change > TOLERANCE : change < -TOLERANCE)
+                        && Math.abs(result.score - score) > result.error + Double.parseDouble(base[3]);
+                boolean moreGarbage = result.bytesPerOp > bytes * 1.1 + 16;
+                if (slower || moreGarbage) regressions++;
+                System.out.printf("%-52s %+7.1f%% score, %10.1f -> %10.1f B/op%s%n", result.name, change * 100, bytes,
+                        result.bytesPerOp, slower || moreGarbage ? "  REGRESSION" : "");
+            }
+            System.out.println(regressions == 0 ? "No regressions" : regressions + " regression(s)");
+            return regressions == 0;
+        }
+    }
 }